@@ -0,0 +1,96 @@
+package org.example.benchmarks;
+
+import org.example.search.CompletionIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures type ahead over {@code titles} synthetic titles, the way the borrowing dialog asks for the
+ * top 10 completions on every keystroke.
+ *
+ * <p>{@link #oneLetter()}, {@link #twoLetters()} and {@link #fourLetters()} complete prefixes of
+ * words drawn like the words of the titles, so the short ones match a large part of the index.
+ * {@link #renameTitle()} measures an update, which merges one changed title into a new snapshot.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class AutocompleteBenchmark {
+
+    private static final int WORDS = 50_000;
+    private static final int LIMIT = 10;
+    private static final int QUERIES = 1024;
+
+    @Param({"100000", "1000000"})
+    public int titles;
+
+    private CompletionIndex index;
+    private String[][] prefixes;
+    private String renamed;
+    private boolean isRenamed;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        String[] words = SyntheticTexts.vocabulary(WORDS, random);
+        Map<Integer, String> rows = new HashMap<>();
+        for (int id = 1; id <= titles; id++) {
+            rows.put(id, SyntheticTexts.title(words, random));
+        }
+        index = CompletionIndex.perRow();
+        long start = System.nanoTime();
+        index.update(Collections.emptyMap(), rows);
+        System.out.printf("Built %d entries in %d ms%n", index.size(), (System.nanoTime() - start) / 1_000_000);
+
+        int[] lengths = {1, 2, 4};
+        prefixes = new String[lengths.length][QUERIES];
+        for (int l = 0; l < lengths.length; l++) {
+            for (int q = 0; q < QUERIES; q++) {
+                String word = words[SyntheticTexts.zipf(random, WORDS)];
+                prefixes[l][q] = word.substring(0, Math.min(lengths[l], word.length()));
+            }
+        }
+        renamed = rows.get(1);
+    }
+
+    @Benchmark
+    public List<?> oneLetter() {
+        return index.suggest(pick(prefixes[0]), LIMIT);
+    }
+
+    @Benchmark
+    public List<?> twoLetters() {
+        return index.suggest(pick(prefixes[1]), LIMIT);
+    }
+
+    @Benchmark
+    public List<?> fourLetters() {
+        return index.suggest(pick(prefixes[2]), LIMIT);
+    }
+
+    @Benchmark
+    @Warmup(iterations = 2, time = 2)
+    @Measurement(iterations = 3, time = 2)
+    public int renameTitle() {
+        String from = isRenamed ? "Renamed title" : renamed;
+        String to = isRenamed ? renamed : "Renamed title";
+        index.update(Collections.singletonMap(1, from), Collections.singletonMap(1, to));
+        isRenamed = !isRenamed;
+        return index.size();
+    }
+
+    private static String pick(String[] queries) {
+        return queries[ThreadLocalRandom.current().nextInt(QUERIES)];
+    }
+}
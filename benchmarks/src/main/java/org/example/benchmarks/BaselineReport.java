@@ -0,0 +1,94 @@
+package org.example.benchmarks;
+
+import org.example.benchmarks.JmhResults.Result;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Map;
+
+
+/**
+ * Compares the JSON results of a benchmark run with those of a baseline run and reports, for every
+ * benchmark and parameter combination, the change of its score:
+ *
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar org.example.benchmarks.BaselineReport baseline.json current.json [threshold%]
+ * </pre>
+ *
+ * <p>A change counts as a regression when the score got worse by more than the threshold (default
+ * {@value #DEFAULT_THRESHOLD_PERCENT}%) and by more than the error margins of both runs together,
+ * so noise alone is not reported. Whether a lower or a higher score is better follows from the
+ * benchmark mode. The report exits with status 1 if there is a regression, so a build can fail on it.</p>
+ */
+public final class BaselineReport {
+
+    static final double DEFAULT_THRESHOLD_PERCENT = 10;
+
+    private BaselineReport() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2 && args.length != 3) {
+            System.err.println("Usage: BaselineReport <baseline.json> <current.json> [threshold%]");
+            System.exit(2);
+        }
+        Map<String, Result> baseline = JmhResults.read(Paths.get(args[0]));
+        Map<String, Result> current = JmhResults.read(Paths.get(args[1]));
+        double threshold = args.length == 3 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD_PERCENT;
+
+        int width = "Benchmark".length();
+        for (String key : current.keySet()) {
+            width = Math.max(width, key.length());
+        }
+        for (String key : baseline.keySet()) {
+            width = Math.max(width, key.length());
+        }
+        String row = "%-" + width + "s  %20s  %20s  %8s  %s%n";
+        System.out.printf(Locale.ROOT, row, "Benchmark", "Baseline", "Current", "Change", "");
+
+        int regressions = 0;
+        for (Result now : current.values()) {
+            Result before = baseline.get(now.key);
+            if (before == null) {
+                System.out.printf(Locale.ROOT, row, now.key, "-", score(now), "", "new");
+                continue;
+            }
+            double change = (now.score - before.score) / before.score * 100;
+            String verdict = "";
+            if (significant(before, now)) {
+                boolean worse = now.lowerIsBetter() ? now.score > before.score : now.score < before.score;
+                if (worse && Math.abs(change) > threshold) {
+                    verdict = "REGRESSION";
+                    regressions++;
+                } else if (!worse) {
+                    verdict = "improved";
+                }
+            }
+            System.out.printf(Locale.ROOT, row, now.key, score(before), score(now),
+                    String.format(Locale.ROOT, "%+.1f%%", change), verdict);
+        }
+        for (Result before : baseline.values()) {
+            if (!current.containsKey(before.key)) {
+                System.out.printf(Locale.ROOT, row, before.key, score(before), "-", "", "missing");
+            }
+        }
+        System.out.printf(Locale.ROOT, "%d regression(s) beyond %.0f%%%n", regressions, threshold);
+        if (regressions > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Whether the scores differ by more than their error margins together. A run of a single
+     * iteration has no error margin, its scores always differ.
+     */
+    private static boolean significant(Result before, Result now) {
+        double margin = (Double.isNaN(before.error) ? 0 : before.error) + (Double.isNaN(now.error) ? 0 : now.error);
+        return Math.abs(now.score - before.score) > margin;
+    }
+
+    private static String score(Result result) {
+        return String.format(Locale.ROOT, "%.3f %s", result.score, result.unit);
+    }
+}
@@ -0,0 +1,51 @@
+package org.example.benchmarks;
+
+import org.example.persistence.PersistenceUnitRegistry;
+import org.h2.tools.Server;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * Settings shared by the benchmarks.
+ *
+ * <p>Every benchmark runs against the in memory {@code testPU} persistence unit, with SQL logging
+ * turned off so that printing statements does not end up in the measurements. Benchmarks of
+ * round trips can run the database in a TCP server instead, see {@link #serveOverTcp}.</p>
+ */
+final class Benchmarks {
+
+    static final String UNIT = "testPU";
+
+    private Benchmarks() {
+    }
+
+    static void configureUnit() {
+        configureUnit(new HashMap<String, Object>());
+    }
+
+    /**
+     * Configures the unit like {@link #configureUnit()}, with additional properties of the benchmark.
+     */
+    static void configureUnit(Map<String, ?> extra) {
+        Map<String, Object> properties = new HashMap<>(extra);
+        properties.put("hibernate.show_sql", "false");
+        properties.put("hibernate.format_sql", "false");
+        properties.put("hibernate.session.events.log", "false");
+        PersistenceUnitRegistry.configure(UNIT, properties);
+    }
+
+    /**
+     * Starts a TCP server on a free port and points the unit at an in memory database of that server,
+     * so every statement and batch pays a round trip over the loopback interface like it would against
+     * a database server. The caller stops the server at the end of the trial.
+     */
+    static Server serveOverTcp(Map<String, Object> properties, String database) throws SQLException {
+        Server server = Server.createTcpServer("-tcpPort", "0", "-ifNotExists").start();
+        properties.put("javax.persistence.jdbc.url",
+                "jdbc:h2:tcp://localhost:" + server.getPort() + "/mem:" + database + ";DB_CLOSE_DELAY=-1");
+        return server;
+    }
+}
@@ -0,0 +1,79 @@
+package org.example.benchmarks;
+
+import org.example.model.Book;
+import org.example.persistence.DatasetGenerator;
+import org.example.service.BookService;
+import org.example.service.Page;
+import org.openjdk.jmh.annotations.Benchmark;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Measures the methods of {@link BookService} on a seeded library.
+ *
+ * <p>{@link #getBooksWithAvailableCopies()} returns every book with an available copy, which is
+ * most books of the seeded library, so it shows how the full catalog list grows with the scale. The
+ * searches are for the first words of generated titles.</p>
+ */
+public class BookServiceBenchmark extends SeededLibrary {
+
+    private final AtomicLong created = new AtomicLong(9790000000000L);
+    private BookService bookService;
+    private Book[] books;
+    private String[] titleWords;
+
+    @Override
+    protected void createServices() {
+        bookService = new BookService(emf);
+        books = sample("SELECT b FROM Book b", Book.class, 1000).toArray(new Book[0]);
+        titleWords = Arrays.stream(books).map(book -> book.getTitle().split(" ")[0]).toArray(String[]::new);
+    }
+
+    @Benchmark
+    public Book getBookById() {
+        return bookService.getBookById(random(1, dataset.getBooks()));
+    }
+
+    @Benchmark
+    public Book getBookByIsbn() {
+        return bookService.getBookByIsbn(DatasetGenerator.isbn(random(1, dataset.getBooks())));
+    }
+
+    @Benchmark
+    public Page<Book> getBooksPage() {
+        return bookService.getBooksPage("title", null, 50);
+    }
+
+    @Benchmark
+    public List<Book> searchBooks() {
+        return bookService.searchBooks(random(titleWords), 20);
+    }
+
+    @Benchmark
+    public List<Book> getBooksWithAvailableCopies() {
+        return bookService.getBooksWithAvailableCopies();
+    }
+
+    /**
+     * Writes the values a book already has.
+     */
+    @Benchmark
+    public void updateBook() {
+        Book book = random(books);
+        bookService.updateBook(book.getId(), book.getTitle(), book.getAuthor(), book.getPublisher(),
+                book.getPublicationYear(), book.getIsbn());
+    }
+
+    /**
+     * Creates a book and deletes it again.
+     */
+    @Benchmark
+    public void createBook() {
+        String isbn = String.valueOf(created.incrementAndGet());
+        bookService.createBook("New Title", "New Author", "Publisher", 2024, isbn);
+        bookService.deleteBook(bookService.getBookByIsbn(isbn).getId());
+    }
+}
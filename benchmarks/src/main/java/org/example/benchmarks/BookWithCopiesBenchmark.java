@@ -0,0 +1,81 @@
+package org.example.benchmarks;
+
+import org.example.model.CopyStatus;
+import org.example.persistence.PersistenceUnitRegistry;
+import org.example.service.BookService;
+import org.example.service.CopyService;
+import org.openjdk.jmh.annotations.*;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures adding a book with a number of copies the way the book dialog used to, one transaction
+ * per copy ({@code perCopy}), and with {@link BookService#createBookWithCopies} ({@code batched}).
+ *
+ * <p>Every iteration starts from empty tables, so the inserts of the earlier iterations do not slow
+ * down the later ones.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookWithCopiesBenchmark {
+
+    @Param({"1", "100", "10000"})
+    public int copies;
+
+    @Param({"perCopy", "batched"})
+    public String mode;
+
+    private EntityManagerFactory emf;
+    private BookService bookService;
+    private CopyService copyService;
+    private long nextIsbn;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Benchmarks.configureUnit();
+        emf = PersistenceUnitRegistry.getEntityManagerFactory(Benchmarks.UNIT);
+        bookService = new BookService(emf);
+        copyService = new CopyService(emf);
+        nextIsbn = 9780000000000L;
+    }
+
+    @TearDown(Level.Iteration)
+    public void clearTables() {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.createQuery("DELETE FROM Copy").executeUpdate();
+            em.createQuery("DELETE FROM BookAvailability").executeUpdate();
+            em.createQuery("DELETE FROM Book").executeUpdate();
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        PersistenceUnitRegistry.closeAll();
+    }
+
+    @Benchmark
+    public int addBook() {
+        String isbn = String.valueOf(nextIsbn++);
+        if ("batched".equals(mode)) {
+            return bookService.createBookWithCopies("Title", "Author", "Publisher", 2000, isbn, copies);
+        }
+        bookService.createBook("Title", "Author", "Publisher", 2000, isbn);
+        int bookId = bookService.getBookByIsbn(isbn).getId();
+        for (int i = 1; i <= copies; i++) {
+            copyService.createCopy(bookId, i, CopyStatus.AVAILABLE);
+        }
+        return bookId;
+    }
+}
@@ -0,0 +1,80 @@
+package org.example.benchmarks;
+
+import org.example.dto.BorrowingHistoryRow;
+import org.example.dto.BorrowingRow;
+import org.example.model.Borrowing;
+import org.example.service.BorrowingService;
+import org.example.service.Page;
+import org.openjdk.jmh.annotations.Benchmark;
+
+import java.util.Date;
+import java.util.List;
+
+
+/**
+ * Measures the methods of {@link BorrowingService} on a seeded library.
+ *
+ * <p>The checkouts are done by users without an active borrowing on the available copies, and are
+ * deleted again in the same invocation, which also makes the copy available again.</p>
+ */
+public class BorrowingServiceBenchmark extends SeededLibrary {
+
+    private static final String ACTIVE_BORROWING_OF_COPY =
+            "SELECT b.id FROM Borrowing b WHERE b.copy.id = :copyId AND b.returnDate IS NULL";
+
+    private BorrowingService borrowingService;
+
+    @Override
+    protected void createServices() {
+        borrowingService = new BorrowingService(emf);
+    }
+
+    /**
+     * Checks out a given copy, then deletes the borrowing.
+     */
+    @Benchmark
+    public void createBorrowing() {
+        int copyId = random(availableCopies);
+        borrowingService.createBorrowing(random(idleUsers), copyId, new Date(), null);
+        borrowingService.deleteBorrowing(findId(ACTIVE_BORROWING_OF_COPY, "copyId", copyId));
+    }
+
+    /**
+     * Checks out any available copy of a title, then deletes the borrowing.
+     */
+    @Benchmark
+    public void borrowAnyAvailableCopy() {
+        int copyId = borrowingService.borrowAnyAvailableCopy(random(idleUsers), random(availableBooks), new Date(), null);
+        borrowingService.deleteBorrowing(findId(ACTIVE_BORROWING_OF_COPY, "copyId", copyId));
+    }
+
+    @Benchmark
+    public Borrowing getBorrowingById() {
+        return borrowingService.getBorrowingById(random(1, (int) dataset.getBorrowings()));
+    }
+
+    @Benchmark
+    public List<BorrowingHistoryRow> getBorrowingHistory() {
+        return borrowingService.getBorrowingHistory(random(1, dataset.getUsers()));
+    }
+
+    @Benchmark
+    public List<Borrowing> getBorrowingsByUserId() {
+        return borrowingService.getBorrowingsByUserId(random(1, dataset.getUsers()));
+    }
+
+    @Benchmark
+    public Page<BorrowingRow> getBorrowingRowsPage() {
+        return borrowingService.getBorrowingRowsPage(null, 50);
+    }
+
+    /**
+     * Moves the dates of a returned borrowing.
+     */
+    @Benchmark
+    public void updateBorrowing() {
+        long day = 24L * 60 * 60 * 1000;
+        long returned = System.currentTimeMillis() - random(20, 300) * day;
+        borrowingService.updateBorrowing(random(returnedBorrowings), new Date(returned - 14 * day), new Date(returned));
+    }
+}
@@ -0,0 +1,114 @@
+package org.example.benchmarks;
+
+import org.example.persistence.PersistenceUnitRegistry;
+import org.example.service.BookService;
+import org.example.service.CatalogImporter;
+import org.h2.tools.Server;
+import org.openjdk.jmh.annotations.*;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+
+/**
+ * Measures how many catalog rows per second reach the database: {@value #ROWS} books with
+ * {@value #COPIES} copies each, added one at a time with {@link BookService#createBookWithCopies}
+ * ({@code perBook}), or imported from a CSV file with the {@link CatalogImporter} ({@code importer}).
+ *
+ * <p>With {@code transport=tcp} the unit connects to the database through a TCP server, so every
+ * statement and batch pays a round trip. The file is written once per trial, and every invocation starts from empty tables, which is
+ * fine for invocations that take a second or more.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(CatalogImportBenchmark.ROWS)
+@Warmup(iterations = 5, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CatalogImportBenchmark {
+
+    static final int ROWS = 10_000;
+    private static final int COPIES = 2;
+
+    @Param({"perBook", "importer"})
+    public String mode;
+
+    @Param({"embedded", "tcp"})
+    public String transport;
+
+    private Server server;
+    private EntityManagerFactory emf;
+    private Path directory;
+    private Path catalog;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        Map<String, Object> properties = new HashMap<>();
+        if ("tcp".equals(transport)) {
+            server = Benchmarks.serveOverTcp(properties, "catalog");
+        }
+        Benchmarks.configureUnit(properties);
+        emf = PersistenceUnitRegistry.getEntityManagerFactory(Benchmarks.UNIT);
+        directory = Files.createTempDirectory("catalog-import");
+        catalog = directory.resolve("catalog.csv");
+        try (BufferedWriter out = Files.newBufferedWriter(catalog, StandardCharsets.UTF_8)) {
+            out.write("title,author,publisher,publicationYear,isbn,copies\n");
+            for (int i = 0; i < ROWS; i++) {
+                out.write("Title " + i + ",Author " + (i % 500) + ",Publisher," + (1900 + i % 120) + ","
+                        + (9780000000000L + i) + "," + COPIES + "\n");
+            }
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void clearTables() {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.createQuery("DELETE FROM Copy").executeUpdate();
+            em.createQuery("DELETE FROM BookAvailability").executeUpdate();
+            em.createQuery("DELETE FROM Book").executeUpdate();
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        PersistenceUnitRegistry.closeAll();
+        if (server != null) {
+            server.stop();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public long load() throws IOException {
+        if ("importer".equals(mode)) {
+            return new CatalogImporter(emf).importFile(catalog).getBooks();
+        }
+        BookService bookService = new BookService(emf);
+        for (int i = 0; i < ROWS; i++) {
+            bookService.createBookWithCopies("Title " + i, "Author " + (i % 500), "Publisher", 1900 + i % 120,
+                    String.valueOf(9780000000000L + i), COPIES);
+        }
+        return ROWS;
+    }
+}
@@ -0,0 +1,93 @@
+package org.example.benchmarks;
+
+import org.example.search.CatalogIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures ranked top 10 queries against a {@link CatalogIndex} of {@code titles} synthetic books.
+ *
+ * <p>Titles, authors and publishers are drawn from generated vocabularies with a Zipf like skew, so a
+ * few words occur in a large share of the books as in a real catalog. {@link #commonWord()} queries
+ * one of the most frequent words, {@link #prefix()} the first three letters of a word, which expand to
+ * many terms, and {@link #twoWords()} a word of a title together with its author.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class CatalogSearchBenchmark {
+
+    private static final int WORDS = 50_000;
+    private static final int AUTHORS = 20_000;
+    private static final int PUBLISHERS = 500;
+    private static final int LIMIT = 10;
+    private static final int QUERIES = 1024;
+
+    @Param({"100000", "1000000"})
+    public int titles;
+
+    private CatalogIndex index;
+    private String[] commonWords;
+    private String[] prefixes;
+    private String[] twoWords;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        String[] words = SyntheticTexts.vocabulary(WORDS, random);
+        String[] authors = SyntheticTexts.names(AUTHORS, words, random);
+
+        index = new CatalogIndex();
+        String[] titleWords = new String[QUERIES];
+        String[] titleAuthors = new String[QUERIES];
+        for (int id = 1; id <= titles; id++) {
+            String title = SyntheticTexts.title(words, random);
+            String author = authors[SyntheticTexts.zipf(random, AUTHORS)];
+            index.put(id, title, author, "Publisher " + words[SyntheticTexts.zipf(random, PUBLISHERS)]);
+            if (id % (titles / QUERIES) == 0 && id / (titles / QUERIES) <= QUERIES) {
+                int q = id / (titles / QUERIES) - 1;
+                titleWords[q] = title.substring(0, title.indexOf(" "));
+                titleAuthors[q] = author;
+            }
+        }
+
+        commonWords = new String[QUERIES];
+        prefixes = new String[QUERIES];
+        twoWords = new String[QUERIES];
+        for (int q = 0; q < QUERIES; q++) {
+            commonWords[q] = words[random.nextInt(20)];
+            String word = words[SyntheticTexts.zipf(random, WORDS)];
+            prefixes[q] = word.substring(0, Math.min(3, word.length()));
+            twoWords[q] = titleWords[q] + " " + titleAuthors[q].substring(0, titleAuthors[q].indexOf(' '));
+        }
+        System.out.println("Indexed " + index.size() + " titles, sample query '" + twoWords[0] + "' -> "
+                + index.search(twoWords[0], LIMIT));
+    }
+
+    @Benchmark
+    public List<?> commonWord() {
+        return index.search(pick(commonWords), LIMIT);
+    }
+
+    @Benchmark
+    public List<?> prefix() {
+        return index.search(pick(prefixes), LIMIT);
+    }
+
+    @Benchmark
+    public List<?> twoWords() {
+        return index.search(pick(twoWords), LIMIT);
+    }
+
+    private static String pick(String[] queries) {
+        return queries[ThreadLocalRandom.current().nextInt(QUERIES)];
+    }
+}
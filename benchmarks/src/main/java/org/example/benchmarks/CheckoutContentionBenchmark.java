@@ -0,0 +1,115 @@
+package org.example.benchmarks;
+
+import org.example.model.Book;
+import org.example.model.Borrowing;
+import org.example.model.Copy;
+import org.example.persistence.PersistenceUnitRegistry;
+import org.example.service.BookService;
+import org.example.service.BorrowingService;
+import org.example.service.CheckoutLockMode;
+import org.example.service.CopyService;
+import org.example.service.UserService;
+import org.openjdk.jmh.annotations.*;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Measures checkouts of a popular title by many kiosks at once with the copy locked for the whole
+ * checkout ({@code PESSIMISTIC}) compared with the copy claimed by a conditional update
+ * ({@code OPTIMISTIC}).
+ *
+ * <p>Every thread is a kiosk with its own user that keeps borrowing a random copy of the title and
+ * returning it. Besides the attempts per second, the benchmark reports how many of them got a copy,
+ * how many found it taken and how many failed on a lock.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(1)
+public class CheckoutContentionBenchmark {
+
+    private static final int KIOSKS = 16;
+    private static final int HOT_COPIES = 4;
+
+    @Param({"PESSIMISTIC", "OPTIMISTIC"})
+    public CheckoutLockMode lockMode;
+
+    private BorrowingService borrowingService;
+    private final List<Integer> userIds = new ArrayList<>();
+    private final List<Integer> copyIds = new ArrayList<>();
+    private final AtomicInteger nextKiosk = new AtomicInteger();
+
+    @State(Scope.Thread)
+    public static class Kiosk {
+        private int userId;
+
+        @Setup(Level.Trial)
+        public void setUp(CheckoutContentionBenchmark benchmark) {
+            userId = benchmark.userIds.get(benchmark.nextKiosk.getAndIncrement() % KIOSKS);
+        }
+    }
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Outcomes {
+        public long borrowed;
+        public long taken;
+        public long lockFailures;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Benchmarks.configureUnit();
+        EntityManagerFactory emf = PersistenceUnitRegistry.getEntityManagerFactory(Benchmarks.UNIT);
+        borrowingService = new BorrowingService(emf, lockMode);
+
+        UserService userService = new UserService(emf);
+        for (int i = 0; i < KIOSKS; i++) {
+            userService.createUser("Kiosk " + i, "kiosk" + i + "@example.com", "555", "Street", "pwd", "USER");
+            userIds.add(userService.getUserByEmail("kiosk" + i + "@example.com").getId());
+        }
+        BookService bookService = new BookService(emf);
+        CopyService copyService = new CopyService(emf);
+        bookService.createBook("Popular Title", "Author", "Publisher", 2024, "9788888800001");
+        Book book = bookService.getBookByIsbn("9788888800001");
+        for (int c = 1; c <= HOT_COPIES; c++) {
+            copyService.createCopy(book.getId(), c, "Available");
+        }
+        for (Copy copy : copyService.getAvailableCopies()) {
+            copyIds.add(copy.getId());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        PersistenceUnitRegistry.closeAll();
+    }
+
+    @Benchmark
+    public void checkout(Kiosk kiosk, Outcomes outcomes) {
+        int copyId = copyIds.get(ThreadLocalRandom.current().nextInt(copyIds.size()));
+        try {
+            borrowingService.createBorrowing(kiosk.userId, copyId, new Date(), null);
+        } catch (IllegalStateException e) {
+            outcomes.taken++;
+            return;
+        } catch (RuntimeException e) {
+            outcomes.lockFailures++;
+            return;
+        }
+        outcomes.borrowed++;
+        for (Borrowing borrowing : borrowingService.getBorrowingsByUserId(kiosk.userId)) {
+            borrowingService.deleteBorrowing(borrowing.getId());
+        }
+    }
+}
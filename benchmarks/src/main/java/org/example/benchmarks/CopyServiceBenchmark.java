@@ -0,0 +1,74 @@
+package org.example.benchmarks;
+
+import org.example.dto.TitleAvailabilityRow;
+import org.example.model.Copy;
+import org.example.model.CopyStatus;
+import org.example.service.CopyService;
+import org.example.service.Page;
+import org.openjdk.jmh.annotations.Benchmark;
+
+import java.util.List;
+
+
+/**
+ * Measures the methods of {@link CopyService} on a seeded library, in which most copies are
+ * available.
+ */
+public class CopyServiceBenchmark extends SeededLibrary {
+
+    /**
+     * Higher than the number of copies the generator gives a book.
+     */
+    private static final int NEW_COPY_NUMBER = 100;
+
+    private CopyService copyService;
+    private Copy[] available;
+
+    @Override
+    protected void createServices() {
+        copyService = new CopyService(emf);
+        available = sample("SELECT c FROM Copy c WHERE c.status = ?1", Copy.class, 1000, CopyStatus.AVAILABLE)
+                .toArray(new Copy[0]);
+    }
+
+    @Benchmark
+    public Copy getCopyById() {
+        return copyService.getCopyById(random(1, dataset.getCopies()));
+    }
+
+    @Benchmark
+    public List<Copy> getAvailableCopies() {
+        return copyService.getAvailableCopies();
+    }
+
+    @Benchmark
+    public Page<Copy> getCopiesPage() {
+        return copyService.getCopiesPage(null, 50);
+    }
+
+    @Benchmark
+    public Page<TitleAvailabilityRow> getTitleAvailabilityPage() {
+        return copyService.getTitleAvailabilityPage(null, 50);
+    }
+
+    /**
+     * Sends an available copy to repair and makes it available again, two updates.
+     */
+    @Benchmark
+    public void updateCopy() {
+        Copy copy = random(available);
+        copyService.updateCopy(copy.getId(), copy.getCopyNumber(), CopyStatus.IN_REPAIR);
+        copyService.updateCopy(copy.getId(), copy.getCopyNumber(), CopyStatus.AVAILABLE);
+    }
+
+    /**
+     * Adds a copy to a book and deletes it again.
+     */
+    @Benchmark
+    public void createCopy() {
+        int book = random(1, dataset.getBooks());
+        copyService.createCopy(book, NEW_COPY_NUMBER, CopyStatus.AVAILABLE);
+        copyService.deleteCopy(findId("SELECT c.id FROM Copy c WHERE c.book.id = :bookId AND c.copyNumber = "
+                + NEW_COPY_NUMBER, "bookId", book));
+    }
+}
@@ -0,0 +1,122 @@
+package org.example.benchmarks;
+
+import org.example.persistence.IdSequences;
+import org.example.persistence.PersistenceUnitRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures the availability lookups on the status of the copies stored as one character codes
+ * ({@code code}) and as the free-form names stored before ({@code name}).
+ *
+ * <p>The {@code name} setup turns the status column back into a VARCHAR holding "Available" and
+ * "Borrowed", which the entities can no longer read, so the lookups are plain SQL with the status as
+ * a parameter. One copy in {@value #AVAILABLE_EVERY} is available, as in a busy library.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CopyStatusBenchmark {
+
+    private static final int BOOKS = 50_000;
+    private static final int COPIES_PER_BOOK = 4;
+    private static final int AVAILABLE_EVERY = 100;
+
+    @Param({"code", "name"})
+    public String storage;
+
+    private EntityManagerFactory emf;
+    private String available;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Benchmarks.configureUnit();
+        emf = PersistenceUnitRegistry.getEntityManagerFactory(Benchmarks.UNIT);
+        execute("INSERT INTO Books (id, title, author, publisher, publicationYear, isbn) " +
+                "SELECT X, 'Book ' || X, 'Author', 'Publisher', 2000, 'isbn-' || X FROM SYSTEM_RANGE(1, " + BOOKS + ")");
+        execute("INSERT INTO Copies (id, bookId, copyNumber, status) " +
+                "SELECT (b.id - 1) * " + COPIES_PER_BOOK + " + r.X, b.id, r.X, " +
+                "CASE WHEN MOD(b.id * " + COPIES_PER_BOOK + " + r.X, " + AVAILABLE_EVERY + ") = 0 " +
+                "THEN 'A' ELSE 'B' END " +
+                "FROM Books b CROSS JOIN SYSTEM_RANGE(1, " + COPIES_PER_BOOK + ") r");
+        available = "A";
+        if ("name".equals(storage)) {
+            execute("ALTER TABLE Copies ALTER COLUMN status SET DATA TYPE VARCHAR(255)");
+            execute("UPDATE Copies SET status = CASE status WHEN 'A' THEN 'Available' ELSE 'Borrowed' END");
+            available = "Available";
+        }
+        execute("ANALYZE");
+        IdSequences.align(emf);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        PersistenceUnitRegistry.closeAll();
+    }
+
+    /**
+     * Counts the available copies through the status index.
+     */
+    @Benchmark
+    public Object countAvailable() {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return em.createNativeQuery("SELECT COUNT(*) FROM Copies WHERE status = ?1")
+                    .setParameter(1, available)
+                    .getSingleResult();
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Reads the ids of all available copies, what {@code getAvailableCopies} starts with.
+     */
+    @Benchmark
+    public List<?> availableIds() {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return em.createNativeQuery("SELECT id FROM Copies WHERE status = ?1")
+                    .setParameter(1, available)
+                    .getResultList();
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Finds the available copies of one title, what {@code borrowAnyAvailableCopy} starts with.
+     */
+    @Benchmark
+    public List<?> availableCopiesOfBook() {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return em.createNativeQuery("SELECT id FROM Copies WHERE bookId = ?1 AND status = ?2")
+                    .setParameter(1, 1 + ThreadLocalRandom.current().nextInt(BOOKS))
+                    .setParameter(2, available)
+                    .getResultList();
+        } finally {
+            em.close();
+        }
+    }
+
+    private void execute(String sql) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.createNativeQuery(sql).executeUpdate();
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+}
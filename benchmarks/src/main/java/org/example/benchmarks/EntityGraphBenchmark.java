@@ -0,0 +1,205 @@
+package org.example.benchmarks;
+
+import org.example.model.Book;
+import org.example.model.Borrowing;
+import org.example.model.Copy;
+import org.example.model.User;
+import org.example.persistence.PersistenceUnitRegistry;
+import org.example.service.BookService;
+import org.example.service.BorrowingService;
+import org.example.service.CopyService;
+import org.example.service.UserService;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.*;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures what reading borrowings fetches per call with the old default eager associations
+ * ({@code eager}) compared with lazy associations and the named entity graphs ({@code graph}).
+ *
+ * <p>{@code eager} reproduces what the eager mappings did: a query followed by one select for every
+ * user, copy and book not loaded yet, and finds that join the whole graph. Besides the time per call,
+ * every benchmark prints the SQL statements and entities loaded per call after each iteration. Run
+ * with {@code -prof gc} to also get the bytes allocated per call ({@code gc.alloc.rate.norm}).</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EntityGraphBenchmark {
+
+    private static final int USERS = 50;
+    private static final int BOOKS = 100;
+    private static final int COPIES_PER_BOOK = 2;
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"eager", "graph"})
+    public String fetch;
+
+    private EntityManagerFactory emf;
+    private BorrowingService borrowingService;
+    private Statistics statistics;
+    private int[] borrowingIds;
+    private int next;
+
+    /**
+     * Counts statements and loaded entities over an iteration and prints them per call when it ends.
+     */
+    @State(Scope.Thread)
+    public static class FetchCounters {
+        private long calls;
+        private long queries;
+        private long entities;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            calls = 0;
+            queries = 0;
+            entities = 0;
+        }
+
+        @TearDown(Level.Iteration)
+        public void report() {
+            System.out.printf("%n  statements/call %.1f, entities/call %.1f%n",
+                    (double) queries / calls, (double) entities / calls);
+        }
+
+        void record(long queryCount, long entityCount) {
+            calls++;
+            queries += queryCount;
+            entities += entityCount;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Benchmarks.configureUnit();
+        emf = PersistenceUnitRegistry.getEntityManagerFactory(Benchmarks.UNIT);
+        statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        borrowingService = new BorrowingService(emf);
+        seed();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        PersistenceUnitRegistry.closeAll();
+    }
+
+    /**
+     * The first page of the borrowings table with the user and copy of every row.
+     */
+    @Benchmark
+    public Object listPage(FetchCounters counters) {
+        long queries = statistics.getPrepareStatementCount();
+        long entities = statistics.getEntityLoadCount();
+        Object result;
+        if ("graph".equals(fetch)) {
+            result = borrowingService.getBorrowingsPage(null, PAGE_SIZE);
+        } else {
+            EntityManager em = emf.createEntityManager();
+            try {
+                List<Borrowing> rows = em.createQuery("SELECT b FROM Borrowing b ORDER BY b.id", Borrowing.class)
+                        .setMaxResults(PAGE_SIZE + 1)
+                        .getResultList();
+                for (Borrowing borrowing : rows) {
+                    initializeAll(borrowing);
+                }
+                result = rows;
+            } finally {
+                em.close();
+            }
+        }
+        counters.record(statistics.getPrepareStatementCount() - queries, statistics.getEntityLoadCount() - entities);
+        return result;
+    }
+
+    /**
+     * One borrowing with its user, copy and book, as the edit dialog shows it.
+     */
+    @Benchmark
+    public Object detail(FetchCounters counters) {
+        long queries = statistics.getPrepareStatementCount();
+        long entities = statistics.getEntityLoadCount();
+        Object result = "graph".equals(fetch)
+                ? borrowingService.getBorrowingById(nextId())
+                : find(Borrowing.DETAIL_GRAPH);
+        counters.record(statistics.getPrepareStatementCount() - queries, statistics.getEntityLoadCount() - entities);
+        return result;
+    }
+
+    /**
+     * One borrowing as returning its copy reads it, which only needs the copy.
+     */
+    @Benchmark
+    public Object checkout(FetchCounters counters) {
+        long queries = statistics.getPrepareStatementCount();
+        long entities = statistics.getEntityLoadCount();
+        Object result = find("graph".equals(fetch) ? Borrowing.CHECKOUT_GRAPH : Borrowing.DETAIL_GRAPH);
+        counters.record(statistics.getPrepareStatementCount() - queries, statistics.getEntityLoadCount() - entities);
+        return result;
+    }
+
+    /**
+     * Finds the next borrowing with the associations of the graph, the detail graph being what an
+     * eager find used to join.
+     */
+    private Borrowing find(String graphName) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return em.find(Borrowing.class, nextId(),
+                    Collections.singletonMap("javax.persistence.fetchgraph", em.getEntityGraph(graphName)));
+        } finally {
+            em.close();
+        }
+    }
+
+    private static void initializeAll(Borrowing borrowing) {
+        Hibernate.initialize(borrowing.getUser());
+        Hibernate.initialize(borrowing.getCopy());
+        Hibernate.initialize(borrowing.getCopy().getBook());
+    }
+
+    private int nextId() {
+        int id = borrowingIds[next];
+        next = (next + 1) % borrowingIds.length;
+        return id;
+    }
+
+    private void seed() {
+        UserService userService = new UserService(emf);
+        BookService bookService = new BookService(emf);
+        CopyService copyService = new CopyService(emf);
+
+        for (int i = 0; i < USERS; i++) {
+            userService.createUser("Graph User " + i, "graph" + i + "@example.com", "555", "Street", "pwd", "USER");
+        }
+        for (int i = 0; i < BOOKS; i++) {
+            String isbn = String.format("97844444%05d", i);
+            bookService.createBook("Graph Book " + i, "Author " + i, "Publisher", 2000, isbn);
+            Book book = bookService.getBookByIsbn(isbn);
+            for (int c = 1; c <= COPIES_PER_BOOK; c++) {
+                copyService.createCopy(book.getId(), c, "Available");
+            }
+        }
+
+        List<User> users = userService.getAllUsers();
+        List<Copy> copies = copyService.getAvailableCopies();
+        Date today = new Date();
+        for (int i = 0; i < copies.size(); i++) {
+            borrowingService.createBorrowing(users.get(i % users.size()).getId(), copies.get(i).getId(), today, today);
+        }
+        borrowingIds = borrowingService.getAllBorrowings().stream().mapToInt(Borrowing::getId).toArray();
+    }
+}
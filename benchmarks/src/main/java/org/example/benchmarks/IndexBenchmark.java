@@ -0,0 +1,132 @@
+package org.example.benchmarks;
+
+import org.example.persistence.IdSequences;
+import org.example.persistence.PersistenceUnitRegistry;
+import org.example.service.CopyService;
+import org.example.service.UserService;
+import org.openjdk.jmh.annotations.*;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures the lookups that run on every checkout and dialog save with the indexes declared on the
+ * entities ({@code indexed}) and with those indexes dropped ({@code unindexed}).
+ *
+ * <p>The setup prints the H2 plan of every lookup, which names the index it uses or shows a scan
+ * of the table. {@link #availableCopies()} finds the few available copies among mostly borrowed
+ * ones, as in a busy library.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndexBenchmark {
+
+    private static final int USERS = 20_000;
+    private static final int BOOKS = 5_000;
+    private static final int COPIES_PER_BOOK = 4;
+    private static final int BORROWINGS_PER_USER = 5;
+    private static final int AVAILABLE_EVERY = 100;
+
+    private static final String[] INDEXES = {"idx_borrowings_user_return", "idx_copies_status", "idx_users_name"};
+
+    @Param({"indexed", "unindexed"})
+    public String indexes;
+
+    private EntityManagerFactory emf;
+    private UserService userService;
+    private CopyService copyService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Benchmarks.configureUnit();
+        emf = PersistenceUnitRegistry.getEntityManagerFactory(Benchmarks.UNIT);
+        userService = new UserService(emf);
+        copyService = new CopyService(emf);
+        seed();
+        if ("unindexed".equals(indexes)) {
+            for (String index : INDEXES) {
+                execute("DROP INDEX " + index);
+            }
+        }
+        printPlan("SELECT COUNT(*) FROM Borrowings WHERE userId = 1 AND returnDate IS NULL");
+        printPlan("SELECT * FROM Copies WHERE status = 'A'");
+        printPlan("SELECT * FROM Users WHERE name = 'User 1'");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        PersistenceUnitRegistry.closeAll();
+    }
+
+    /**
+     * The count of active borrowings done by {@code createBorrowing}.
+     */
+    @Benchmark
+    public Long activeBorrowingCount() {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return em.createQuery(
+                            "SELECT COUNT(b) FROM Borrowing b WHERE b.user.id = :uId AND b.returnDate IS NULL", Long.class)
+                    .setParameter("uId", 1 + ThreadLocalRandom.current().nextInt(USERS))
+                    .getSingleResult();
+        } finally {
+            em.close();
+        }
+    }
+
+    @Benchmark
+    public Object availableCopies() {
+        return copyService.getAvailableCopies();
+    }
+
+    @Benchmark
+    public Object userByName() {
+        return userService.getUserByName("User " + ThreadLocalRandom.current().nextInt(USERS));
+    }
+
+    private void seed() {
+        execute("INSERT INTO Users (id, name, email, phoneNumber, address, password, role) " +
+                "SELECT X, 'User ' || (X - 1), 'user' || X || '@example.com', '555', 'Street', 'pwd', 'USER' " +
+                "FROM SYSTEM_RANGE(1, " + USERS + ")");
+        execute("INSERT INTO Books (id, title, author, publisher, publicationYear, isbn) " +
+                "SELECT X, 'Book ' || X, 'Author', 'Publisher', 2000, 'isbn-' || X FROM SYSTEM_RANGE(1, " + BOOKS + ")");
+        execute("INSERT INTO Copies (id, bookId, copyNumber, status) " +
+                "SELECT (b.id - 1) * " + COPIES_PER_BOOK + " + r.X, b.id, r.X, " +
+                "CASE WHEN MOD(b.id * " + COPIES_PER_BOOK + " + r.X, " + AVAILABLE_EVERY + ") = 0 " +
+                "THEN 'A' ELSE 'B' END " +
+                "FROM Books b CROSS JOIN SYSTEM_RANGE(1, " + COPIES_PER_BOOK + ") r");
+        execute("INSERT INTO Borrowings (id, userId, copyId, borrowDate, returnDate) " +
+                "SELECT (u.id - 1) * " + BORROWINGS_PER_USER + " + r.X, u.id, MOD(u.id * " + BORROWINGS_PER_USER + " + r.X, " + BOOKS * COPIES_PER_BOOK + ") + 1, " +
+                "CURRENT_DATE, CASE WHEN r.X = 1 THEN NULL ELSE CURRENT_DATE END " +
+                "FROM Users u CROSS JOIN SYSTEM_RANGE(1, " + BORROWINGS_PER_USER + ") r");
+        execute("ANALYZE");
+        IdSequences.align(emf);
+    }
+
+    private void execute(String sql) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.createNativeQuery(sql).executeUpdate();
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+
+    private void printPlan(String sql) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            System.out.println(em.createNativeQuery("EXPLAIN " + sql).getSingleResult());
+        } finally {
+            em.close();
+        }
+    }
+}
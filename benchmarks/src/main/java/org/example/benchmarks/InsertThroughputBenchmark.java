@@ -0,0 +1,126 @@
+package org.example.benchmarks;
+
+import org.example.model.Book;
+import org.example.model.Borrowing;
+import org.example.model.Copy;
+import org.example.model.User;
+import org.example.persistence.PersistenceUnitRegistry;
+import org.example.service.BookService;
+import org.example.service.CopyService;
+import org.example.service.UserService;
+import org.h2.tools.Server;
+import org.openjdk.jmh.annotations.*;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures how many rows per second a bulk load inserts: {@value #ROWS} books of a catalog load, or
+ * {@value #ROWS} returned borrowings of a checkout log, persisted in one transaction and flushed every
+ * {@value #FLUSH_EVERY} rows.
+ *
+ * <p>{@code allocationSize} sets {@code library.ids.allocationSize}, the number of ids taken from the
+ * sequence of an entity at a time. With {@code transport=tcp} the unit connects to the database through
+ * a TCP server, so every statement and batch pays a round trip. Every iteration starts from empty
+ * tables.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(InsertThroughputBenchmark.ROWS)
+@Warmup(iterations = 8, time = 2)
+@Measurement(iterations = 6, time = 2)
+@Fork(1)
+public class InsertThroughputBenchmark {
+
+    static final int ROWS = 1000;
+    private static final int FLUSH_EVERY = 50;
+
+    @Param({"book", "borrowing"})
+    public String entity;
+
+    @Param({"1", "50"})
+    public int allocationSize;
+
+    @Param({"embedded", "tcp"})
+    public String transport;
+
+    private Server server;
+    private EntityManagerFactory emf;
+    private User user;
+    private Copy copy;
+    private long nextIsbn = 9780000000000L;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("library.ids.allocationSize", String.valueOf(allocationSize));
+        if ("tcp".equals(transport)) {
+            server = Benchmarks.serveOverTcp(properties, "inserts");
+        }
+        Benchmarks.configureUnit(properties);
+        emf = PersistenceUnitRegistry.getEntityManagerFactory(Benchmarks.UNIT);
+        new UserService(emf).createUser("Reader", "reader@example.com", "555", "Street", "pwd", "USER");
+        user = new UserService(emf).getUserByEmail("reader@example.com");
+        BookService bookService = new BookService(emf);
+        bookService.createBook("Title", "Author", "Publisher", 2000, "9789999999999");
+        new CopyService(emf).createCopy(bookService.getBookByIsbn("9789999999999").getId(), 1, "Available");
+        copy = new CopyService(emf).getAllCopies().get(0);
+    }
+
+    @TearDown(Level.Iteration)
+    public void clearTables() {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.createQuery("DELETE FROM Borrowing").executeUpdate();
+            em.createQuery("DELETE FROM Book b WHERE b.id <> :bookId")
+                    .setParameter("bookId", copy.getBook().getId())
+                    .executeUpdate();
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        PersistenceUnitRegistry.closeAll();
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Benchmark
+    public void insert() {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            User borrower = em.getReference(User.class, user.getId());
+            Copy borrowed = em.getReference(Copy.class, copy.getId());
+            Date today = new Date();
+            for (int i = 1; i <= ROWS; i++) {
+                if ("book".equals(entity)) {
+                    em.persist(new Book("Title " + i, "Author", "Publisher", 2000, String.valueOf(nextIsbn++)));
+                } else {
+                    em.persist(new Borrowing(borrower, borrowed, today, today));
+                }
+                if (i % FLUSH_EVERY == 0) {
+                    em.flush();
+                    em.clear();
+                    borrower = em.getReference(User.class, user.getId());
+                    borrowed = em.getReference(Copy.class, copy.getId());
+                }
+            }
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package org.example.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+/**
+ * Reads the results a JMH run wrote with {@code -rf json}: the primary score of every benchmark and
+ * parameter combination, keyed by the benchmark name followed by its parameters.
+ *
+ * <p>The JSON is read by a small parser of its own, so the benchmarks need no JSON library.</p>
+ */
+final class JmhResults {
+
+    private JmhResults() {
+    }
+
+    /**
+     * The primary score of one benchmark with one combination of parameters.
+     */
+    static final class Result {
+        final String key;
+        final String mode;
+        final double score;
+        final double error;
+        final String unit;
+
+        Result(String key, String mode, double score, double error, String unit) {
+            this.key = key;
+            this.mode = mode;
+            this.score = score;
+            this.error = error;
+            this.unit = unit;
+        }
+
+        /**
+         * Whether a lower score is better, true for the time modes and false for throughput.
+         */
+        boolean lowerIsBetter() {
+            return !"thrpt".equals(mode);
+        }
+    }
+
+    static Map<String, Result> read(Path file) throws IOException {
+        Object json = new Parser(new String(Files.readAllBytes(file), StandardCharsets.UTF_8)).parse();
+        if (!(json instanceof List)) {
+            throw new IllegalArgumentException(file + " is not a JSON result file of JMH.");
+        }
+        Map<String, Result> results = new LinkedHashMap<>();
+        for (Object entry : (List<?>) json) {
+            Map<?, ?> run = (Map<?, ?>) entry;
+            String benchmark = (String) run.get("benchmark");
+            StringBuilder key = new StringBuilder(benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1));
+            Object params = run.get("params");
+            if (params instanceof Map) {
+                for (Map.Entry<?, ?> param : new TreeMap<>((Map<?, ?>) params).entrySet()) {
+                    key.append(' ').append(param.getKey()).append('=').append(param.getValue());
+                }
+            }
+            Map<?, ?> metric = (Map<?, ?>) run.get("primaryMetric");
+            results.put(key.toString(), new Result(key.toString(), (String) run.get("mode"),
+                    number(metric.get("score")), number(metric.get("scoreError")), (String) metric.get("scoreUnit")));
+        }
+        return results;
+    }
+
+    /**
+     * JMH writes scores it could not compute, such as the error of a single iteration, as "NaN".
+     */
+    private static double number(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        return value == null ? Double.NaN : Double.parseDouble(value.toString());
+    }
+
+    private static final class Parser {
+        private final String text;
+        private int position;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        Object parse() {
+            Object value = value();
+            skipWhitespace();
+            if (position != text.length()) {
+                throw error("end of input");
+            }
+            return value;
+        }
+
+        private Object value() {
+            skipWhitespace();
+            if (position >= text.length()) {
+                throw error("a value");
+            }
+            char c = text.charAt(position);
+            if (c == '{') {
+                return object();
+            }
+            if (c == '[') {
+                return array();
+            }
+            if (c == '"') {
+                return string();
+            }
+            if (text.startsWith("true", position)) {
+                position += 4;
+                return Boolean.TRUE;
+            }
+            if (text.startsWith("false", position)) {
+                position += 5;
+                return Boolean.FALSE;
+            }
+            if (text.startsWith("null", position)) {
+                position += 4;
+                return null;
+            }
+            return number();
+        }
+
+        private Map<String, Object> object() {
+            Map<String, Object> object = new LinkedHashMap<>();
+            position++;
+            skipWhitespace();
+            if (peek() == '}') {
+                position++;
+                return object;
+            }
+            while (true) {
+                skipWhitespace();
+                String name = string();
+                skipWhitespace();
+                expect(':');
+                object.put(name, value());
+                skipWhitespace();
+                if (peek() == ',') {
+                    position++;
+                } else {
+                    expect('}');
+                    return object;
+                }
+            }
+        }
+
+        private List<Object> array() {
+            List<Object> array = new ArrayList<>();
+            position++;
+            skipWhitespace();
+            if (peek() == ']') {
+                position++;
+                return array;
+            }
+            while (true) {
+                array.add(value());
+                skipWhitespace();
+                if (peek() == ',') {
+                    position++;
+                } else {
+                    expect(']');
+                    return array;
+                }
+            }
+        }
+
+        private String string() {
+            expect('"');
+            StringBuilder string = new StringBuilder();
+            while (true) {
+                if (position >= text.length()) {
+                    throw error("the end of the string");
+                }
+                char c = text.charAt(position++);
+                if (c == '"') {
+                    return string.toString();
+                }
+                if (c != '\\') {
+                    string.append(c);
+                    continue;
+                }
+                char escaped = text.charAt(position++);
+                switch (escaped) {
+                    case 'n':
+                        string.append('\n');
+                        break;
+                    case 't':
+                        string.append('\t');
+                        break;
+                    case 'r':
+                        string.append('\r');
+                        break;
+                    case 'b':
+                        string.append('\b');
+                        break;
+                    case 'f':
+                        string.append('\f');
+                        break;
+                    case 'u':
+                        string.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        position += 4;
+                        break;
+                    default:
+                        string.append(escaped);
+                }
+            }
+        }
+
+        private Double number() {
+            int start = position;
+            while (position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) {
+                position++;
+            }
+            if (start == position) {
+                throw error("a value");
+            }
+            return Double.valueOf(text.substring(start, position));
+        }
+
+        private char peek() {
+            if (position >= text.length()) {
+                throw error("more input");
+            }
+            return text.charAt(position);
+        }
+
+        private void expect(char c) {
+            if (peek() != c) {
+                throw error("'" + c + "'");
+            }
+            position++;
+        }
+
+        private void skipWhitespace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+
+        private IllegalArgumentException error(String expected) {
+            return new IllegalArgumentException("Expected " + expected + " at offset " + position + " of the JSON results.");
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package org.example.benchmarks;
+
+import org.example.model.Librarian;
+import org.example.service.LibrarianService;
+import org.example.service.Page;
+import org.openjdk.jmh.annotations.Benchmark;
+
+import java.util.Date;
+
+
+/**
+ * Measures the methods of {@link LibrarianService} on a seeded library.
+ */
+public class LibrarianServiceBenchmark extends SeededLibrary {
+
+    private LibrarianService librarianService;
+
+    @Override
+    protected void createServices() {
+        librarianService = new LibrarianService(emf);
+    }
+
+    @Benchmark
+    public Librarian getLibrarianById() {
+        return librarianService.getLibrarianById(random(1, dataset.getLibrarians()));
+    }
+
+    @Benchmark
+    public Page<Librarian> getLibrariansPage() {
+        return librarianService.getLibrariansPage(null, 50);
+    }
+
+    @Benchmark
+    public void updateLibrarian() {
+        librarianService.updateLibrarian(random(1, dataset.getLibrarians()), "Clerk", new Date());
+    }
+
+    /**
+     * Makes a user a librarian and deletes the librarian again.
+     */
+    @Benchmark
+    public void createLibrarian() {
+        int userId = random(dataset.getLibrarians() + 1, dataset.getUsers());
+        librarianService.createLibrarian(userId, "Assistant", new Date());
+        librarianService.deleteLibrarian(findId("SELECT l.id FROM Librarian l WHERE l.user.id = :userId", "userId", userId));
+    }
+}
@@ -0,0 +1,425 @@
+package org.example.benchmarks;
+
+import org.example.metrics.LatencyHistogram;
+import org.example.metrics.ServiceMetrics;
+import org.example.metrics.SlowQueryLog;
+import org.example.model.CopyStatus;
+import org.example.persistence.DatasetGenerator;
+import org.example.persistence.PersistenceUnitRegistry;
+import org.example.service.BookService;
+import org.example.service.BorrowingService;
+import org.example.service.UserService;
+import org.h2.tools.Server;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.LockTimeoutException;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.PessimisticLockException;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Simulates the traffic of the front desks on a generated library, to find how many desks one
+ * instance sustains:
+ *
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar org.example.benchmarks.LoadDriver threads=16 users=100000 duration=120
+ * </pre>
+ *
+ * <p>Every worker thread is a desk that runs one operation after the other, closed loop, with an
+ * optional think time between them: logins with {@link UserService#authenticateUser}, catalog searches,
+ * checkouts with {@link BorrowingService#createBorrowing}, returns of the copies the desk lent and
+ * views of the borrowing history of a user. The operations are drawn by the weights of the mix. A
+ * checkout picks a copy that was available when the library was generated and any reader, so some
+ * are refused because another desk lent the copy or the reader has too many books. These count as
+ * conflicts, like lock timeouts, while any other exception counts as an error.</p>
+ *
+ * <p>After the warmup the driver measures for the duration and reports, for every operation, the
+ * throughput, the rates of conflicts and errors and the percentiles of the latency of the
+ * successful calls. The options, with their defaults:</p>
+ * <ul>
+ *   <li>{@code threads=8} the number of desks, each with its own connection of the pool</li>
+ *   <li>{@code users=10000} the size of the library written by {@link DatasetGenerator}</li>
+ *   <li>{@code warmup=10} and {@code duration=60} in seconds</li>
+ *   <li>{@code think=0} the mean think time in milliseconds, drawn from an exponential distribution</li>
+ *   <li>{@code mix=login:30,search:35,checkout:10,return:10,history:15}</li>
+ *   <li>{@code transport=embedded}, or {@code tcp} to reach the database through a TCP server</li>
+ *   <li>{@code seed=1} the seed of the library</li>
+ *   <li>{@code metrics=} a file to write the {@link ServiceMetrics} of the services to every 10 seconds,
+ *   none by default</li>
+ *   <li>{@code slowQueries=} a file for the {@link SlowQueryLog} of the statements slower than 10 ms, none
+ *   by default</li>
+ * </ul>
+ */
+public final class LoadDriver {
+
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put("threads", "8");
+        DEFAULTS.put("users", "10000");
+        DEFAULTS.put("warmup", "10");
+        DEFAULTS.put("duration", "60");
+        DEFAULTS.put("think", "0");
+        DEFAULTS.put("mix", "login:30,search:35,checkout:10,return:10,history:15");
+        DEFAULTS.put("transport", "embedded");
+        DEFAULTS.put("seed", "1");
+        DEFAULTS.put("metrics", "");
+        DEFAULTS.put("slowQueries", "");
+    }
+
+    enum Operation {
+        LOGIN, SEARCH, CHECKOUT, RETURN, HISTORY
+    }
+
+    private final Map<String, String> options;
+    private final EnumMap<Operation, Integer> mix;
+    private final Map<Operation, Counters> counters = new EnumMap<>(Operation.class);
+    private final AtomicBoolean measuring = new AtomicBoolean();
+    private final AtomicBoolean running = new AtomicBoolean(true);
+
+    private DatasetGenerator.Summary library;
+    private UserService userService;
+    private BookService bookService;
+    private BorrowingService borrowingService;
+    private EntityManagerFactory emf;
+    private int[] availableCopies;
+    private String[] searchWords;
+
+    LoadDriver(Map<String, String> options) {
+        this.options = options;
+        this.mix = parseMix(options.get("mix"));
+        for (Operation operation : Operation.values()) {
+            counters.put(operation, new Counters());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (equals < 0 || !DEFAULTS.containsKey(arg.substring(0, equals))) {
+                System.err.println("Usage: LoadDriver [name=value ...] with the options " + DEFAULTS);
+                System.exit(2);
+            }
+            options.put(arg.substring(0, equals), arg.substring(equals + 1));
+        }
+        new LoadDriver(options).run();
+    }
+
+    void run() throws Exception {
+        int threads = intOption("threads");
+        Map<String, Object> properties = new HashMap<>();
+        // a connection per desk, as a deployment would size its pool
+        properties.put("hibernate.connection.provider_class", "org.hibernate.hikaricp.internal.HikariCPConnectionProvider");
+        properties.put("hibernate.hikari.maximumPoolSize", String.valueOf(threads));
+        properties.put("hibernate.hikari.poolName", "loadDriver");
+        if (!options.get("metrics").isEmpty()) {
+            properties.put(ServiceMetrics.ENABLED_PROPERTY, "true");
+            properties.put(ServiceMetrics.FILE_PROPERTY, options.get("metrics"));
+            properties.put(ServiceMetrics.INTERVAL_PROPERTY, "10");
+        }
+        if (!options.get("slowQueries").isEmpty()) {
+            properties.put(SlowQueryLog.ENABLED_PROPERTY, "true");
+            properties.put(SlowQueryLog.FILE_PROPERTY, options.get("slowQueries"));
+            properties.put(SlowQueryLog.THRESHOLD_PROPERTY, "10");
+        }
+        Server server = null;
+        if ("tcp".equals(options.get("transport"))) {
+            server = Benchmarks.serveOverTcp(properties, "loadDriver");
+        } else if (!"embedded".equals(options.get("transport"))) {
+            throw new IllegalArgumentException("The transport is embedded or tcp, not " + options.get("transport") + ".");
+        }
+        try {
+            Benchmarks.configureUnit(properties);
+            emf = PersistenceUnitRegistry.getEntityManagerFactory(Benchmarks.UNIT);
+            System.out.println("Generating the library...");
+            library = new DatasetGenerator(Long.parseLong(options.get("seed")), intOption("users")).generate(emf);
+            System.out.println(library);
+            prepare();
+
+            List<Thread> desks = new ArrayList<>();
+            List<ArrayDeque<Integer>> loans = activeLoans(threads);
+            for (int i = 0; i < threads; i++) {
+                Thread desk = new Thread(new Desk(loans.get(i)), "desk-" + (i + 1));
+                desks.add(desk);
+                desk.start();
+            }
+            System.out.printf(Locale.ROOT, "Warming up %d desks for %s s...%n", threads, options.get("warmup"));
+            TimeUnit.SECONDS.sleep(intOption("warmup"));
+            for (Counters c : counters.values()) {
+                c.reset();
+            }
+            ServiceMetrics.reset();
+            measuring.set(true);
+            long start = System.nanoTime();
+            TimeUnit.SECONDS.sleep(intOption("duration"));
+            measuring.set(false);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            running.set(false);
+            for (Thread desk : desks) {
+                desk.join();
+            }
+            report(threads, seconds);
+        } finally {
+            PersistenceUnitRegistry.closeAll();
+            if (server != null) {
+                server.stop();
+            }
+        }
+    }
+
+    /**
+     * Lists what the desks draw from: the available copies and words of the titles.
+     */
+    private void prepare() {
+        EntityManager em = emf.createEntityManager();
+        try {
+            availableCopies = em.createQuery("SELECT c.id FROM Copy c WHERE c.status = :status", Integer.class)
+                    .setParameter("status", CopyStatus.AVAILABLE)
+                    .getResultList().stream().mapToInt(Integer::intValue).toArray();
+            searchWords = em.createQuery("SELECT b.title FROM Book b", String.class)
+                    .setMaxResults(1000)
+                    .getResultList().stream().map(title -> title.split(" ")[0]).toArray(String[]::new);
+        } finally {
+            em.close();
+        }
+        userService = ServiceMetrics.create(UserService.class, emf);
+        bookService = ServiceMetrics.create(BookService.class, emf);
+        borrowingService = ServiceMetrics.create(BorrowingService.class, emf);
+    }
+
+    /**
+     * Hands the active borrowings of the generated library round robin to the desks, which return
+     * them and then the copies they lent themselves.
+     */
+    private List<ArrayDeque<Integer>> activeLoans(int desks) {
+        List<ArrayDeque<Integer>> loans = new ArrayList<>();
+        for (int i = 0; i < desks; i++) {
+            loans.add(new ArrayDeque<>());
+        }
+        EntityManager em = emf.createEntityManager();
+        try {
+            List<Integer> ids = em.createQuery("SELECT b.id FROM Borrowing b WHERE b.returnDate IS NULL ORDER BY b.id",
+                    Integer.class).getResultList();
+            for (int i = 0; i < ids.size(); i++) {
+                loans.get(i % desks).add(ids.get(i));
+            }
+        } finally {
+            em.close();
+        }
+        return loans;
+    }
+
+    private final class Desk implements Runnable {
+        private final ArrayDeque<Integer> loans;
+        private final int[] weights;
+        private final int totalWeight;
+
+        Desk(ArrayDeque<Integer> loans) {
+            this.loans = loans;
+            this.weights = new int[Operation.values().length];
+            int total = 0;
+            for (Operation operation : Operation.values()) {
+                total += mix.getOrDefault(operation, 0);
+                weights[operation.ordinal()] = total;
+            }
+            this.totalWeight = total;
+        }
+
+        @Override
+        public void run() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            double think = Double.parseDouble(options.get("think"));
+            while (running.get()) {
+                Operation operation = draw(random);
+                if (operation == Operation.RETURN && loans.isEmpty()) {
+                    continue;
+                }
+                Counters c = counters.get(operation);
+                long start = System.nanoTime();
+                try {
+                    Integer loan = perform(operation, random);
+                    if (measuring.get()) {
+                        c.latency.recordSince(start);
+                        c.succeeded.increment();
+                    }
+                    if (loan != null) {
+                        loans.add(loan);
+                    }
+                } catch (RuntimeException e) {
+                    if (measuring.get()) {
+                        (isConflict(e) ? c.conflicts : c.errors).increment();
+                    }
+                    if (!isConflict(e) && c.firstError == null) {
+                        c.firstError = e.toString();
+                    }
+                }
+                if (think > 0) {
+                    try {
+                        TimeUnit.MICROSECONDS.sleep((long) (-Math.log(1 - random.nextDouble()) * think * 1000));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+
+        private Operation draw(ThreadLocalRandom random) {
+            int value = random.nextInt(totalWeight);
+            for (Operation operation : Operation.values()) {
+                if (value < weights[operation.ordinal()]) {
+                    return operation;
+                }
+            }
+            throw new IllegalStateException("The weights of the mix do not add up.");
+        }
+
+        /**
+         * Performs the operation and returns the id of the borrowing a checkout created.
+         */
+        private Integer perform(Operation operation, ThreadLocalRandom random) {
+            int user = 1 + random.nextInt(library.getUsers());
+            switch (operation) {
+                case LOGIN:
+                    if (userService.authenticateUser(DatasetGenerator.email(user), DatasetGenerator.password(user)) == null) {
+                        throw new IllegalArgumentException("User " + user + " could not log in.");
+                    }
+                    return null;
+                case SEARCH:
+                    bookService.searchBooks(searchWords[random.nextInt(searchWords.length)], 20);
+                    return null;
+                case CHECKOUT:
+                    int copy = availableCopies[random.nextInt(availableCopies.length)];
+                    borrowingService.createBorrowing(user, copy, new Date(), null);
+                    return activeBorrowingOf(copy);
+                case RETURN:
+                    borrowingService.returnBorrowing(loans.poll(), new Date());
+                    return null;
+                case HISTORY:
+                    borrowingService.getBorrowingHistory(user);
+                    return null;
+                default:
+                    throw new IllegalArgumentException(operation.name());
+            }
+        }
+    }
+
+    private int activeBorrowingOf(int copyId) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return em.createQuery("SELECT b.id FROM Borrowing b WHERE b.copy.id = :copyId AND b.returnDate IS NULL",
+                            Integer.class)
+                    .setParameter("copyId", copyId)
+                    .getSingleResult();
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * A refusal because of what other desks did: the services refuse a checkout of a copy that is
+     * on loan or for a reader at the limit with an IllegalStateException.
+     */
+    private static boolean isConflict(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof IllegalStateException || t instanceof PessimisticLockException
+                    || t instanceof LockTimeoutException || t instanceof OptimisticLockException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void report(int threads, double seconds) {
+        System.out.printf(Locale.ROOT, "%n%d desks, %.0f s measured, mix %s, think %s ms, %s%n", threads, seconds,
+                options.get("mix"), options.get("think"), options.get("transport"));
+        String row = "%-9s %10s %10s %9s %9s %10s %10s %10s %10s%n";
+        System.out.printf(Locale.ROOT, row, "Operation", "ops/s", "calls", "conflict", "error",
+                "p50 ms", "p99 ms", "p999 ms", "max ms");
+        long calls = 0;
+        for (Operation operation : Operation.values()) {
+            Counters c = counters.get(operation);
+            LatencyHistogram.Snapshot latency = c.latency.snapshot();
+            long succeeded = c.succeeded.sum();
+            long total = succeeded + c.conflicts.sum() + c.errors.sum();
+            calls += total;
+            System.out.printf(Locale.ROOT, row, operation.name().toLowerCase(Locale.ROOT),
+                    String.format(Locale.ROOT, "%.1f", total / seconds), total,
+                    percent(c.conflicts.sum(), total), percent(c.errors.sum(), total),
+                    millis(latency.getPercentileNanos(50)), millis(latency.getPercentileNanos(99)),
+                    millis(latency.getPercentileNanos(99.9)), millis(latency.getMaxNanos()));
+        }
+        System.out.printf(Locale.ROOT, "%-9s %10.1f %10d%n", "total", calls / seconds, calls);
+        for (Operation operation : Operation.values()) {
+            String error = counters.get(operation).firstError;
+            if (error != null) {
+                System.out.println("First error of " + operation.name().toLowerCase(Locale.ROOT) + ": " + error);
+            }
+        }
+    }
+
+    private static String percent(long part, long total) {
+        return total == 0 ? "-" : String.format(Locale.ROOT, "%.2f%%", part * 100.0 / total);
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.2f", nanos / 1e6);
+    }
+
+    private int intOption(String name) {
+        return Integer.parseInt(options.get(name));
+    }
+
+    static EnumMap<Operation, Integer> parseMix(String mix) {
+        EnumMap<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : mix.split(",")) {
+            String[] pair = part.trim().split(":");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("The mix is a list of operation:weight, not " + mix + ".");
+            }
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("The weight of " + pair[0] + " is negative.");
+            }
+            weights.put(Operation.valueOf(pair[0].trim().toUpperCase(Locale.ROOT)), weight);
+        }
+        if (weights.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+            throw new IllegalArgumentException("The mix has no operation with a weight.");
+        }
+        return weights;
+    }
+
+    /**
+     * What the desks counted for one operation.
+     */
+    private static final class Counters {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder succeeded = new LongAdder();
+        final LongAdder conflicts = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        volatile String firstError;
+
+        void reset() {
+            latency.reset();
+            succeeded.reset();
+            conflicts.reset();
+            errors.reset();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package org.example.benchmarks;
+
+import org.example.model.Publisher;
+import org.example.service.Page;
+import org.example.service.PublisherService;
+import org.openjdk.jmh.annotations.Benchmark;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Measures the methods of {@link PublisherService} on a seeded library.
+ */
+public class PublisherServiceBenchmark extends SeededLibrary {
+
+    private final AtomicInteger created = new AtomicInteger();
+    private PublisherService publisherService;
+    private Publisher[] publishers;
+
+    @Override
+    protected void createServices() {
+        publisherService = new PublisherService(emf);
+        publishers = sample("SELECT p FROM Publisher p", Publisher.class, 1000).toArray(new Publisher[0]);
+    }
+
+    @Benchmark
+    public Publisher getPublisherById() {
+        return publisherService.getPublisherById(random(1, dataset.getPublishers()));
+    }
+
+    @Benchmark
+    public Page<Publisher> getPublishersPage() {
+        return publisherService.getPublishersPage("name", null, 50);
+    }
+
+    /**
+     * Writes the name a publisher already has, with a new address.
+     */
+    @Benchmark
+    public void updatePublisher() {
+        Publisher publisher = random(publishers);
+        publisherService.updatePublisher(publisher.getId(), publisher.getName(), random(1, 9999) + " Main Street",
+                publisher.getPhoneNumber());
+    }
+
+    /**
+     * Creates a publisher and deletes it again.
+     */
+    @Benchmark
+    public void createPublisher() {
+        String name = "New Publisher " + created.incrementAndGet();
+        publisherService.createPublisher(name, "Street", "555");
+        publisherService.deletePublisher(findId("SELECT p.id FROM Publisher p WHERE p.name = :name", "name", name));
+    }
+}
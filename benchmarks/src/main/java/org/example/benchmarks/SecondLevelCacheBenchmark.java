@@ -0,0 +1,160 @@
+package org.example.benchmarks;
+
+import org.example.model.Book;
+import org.example.model.Librarian;
+import org.example.model.Publisher;
+import org.example.model.User;
+import org.example.persistence.CacheMetrics;
+import org.example.persistence.PersistenceUnitRegistry;
+import org.example.service.BookService;
+import org.example.service.LibrarianService;
+import org.example.service.PublisherService;
+import org.openjdk.jmh.annotations.*;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures repeated lookups of books, publishers and librarians with the second-level and query
+ * caches enabled ({@code on}) and disabled ({@code off}).
+ *
+ * <p>Books are drawn from a Zipf distribution over the catalog, so a few titles are looked up far
+ * more often than the rest, as in a real catalog. With {@code books=100000} the catalog is ten times
+ * the size bound of the {@code book} region, which shows how the hit ratio holds when the cache
+ * evicts. The statistics of every region are printed at the end of a trial.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SecondLevelCacheBenchmark {
+
+    private static final int PUBLISHERS = 200;
+    private static final int LIBRARIANS = 50;
+    private static final int BATCH = 1000;
+
+    @Param({"on", "off"})
+    public String cache;
+
+    @Param({"1000", "100000"})
+    public int books;
+
+    private EntityManagerFactory emf;
+    private BookService bookService;
+    private PublisherService publisherService;
+    private LibrarianService librarianService;
+    private int[] bookIds;
+    private String[] isbns;
+    private int[] publisherIds;
+    private int[] librarianIds;
+
+    @State(Scope.Thread)
+    public static class Draws {
+        private final Random random = new Random(42);
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Map<String, Object> properties = new HashMap<>();
+        if ("off".equals(cache)) {
+            properties.put("javax.persistence.sharedCache.mode", "NONE");
+            properties.put("hibernate.cache.use_second_level_cache", "false");
+            properties.put("hibernate.cache.use_query_cache", "false");
+        }
+        Benchmarks.configureUnit(properties);
+        emf = PersistenceUnitRegistry.getEntityManagerFactory(Benchmarks.UNIT);
+        bookService = new BookService(emf);
+        publisherService = new PublisherService(emf);
+        librarianService = new LibrarianService(emf);
+        seed();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (CacheMetrics.RegionMetrics metrics : CacheMetrics.forFactory(emf)) {
+            System.out.printf("%n  %s", metrics);
+        }
+        System.out.println();
+        PersistenceUnitRegistry.closeAll();
+    }
+
+    @Benchmark
+    public Book bookById(Draws draws) {
+        return bookService.getBookById(bookIds[SyntheticTexts.zipf(draws.random, bookIds.length)]);
+    }
+
+    /**
+     * Lookup by ISBN, which goes through the query cache before the book region.
+     */
+    @Benchmark
+    public Book bookByIsbn(Draws draws) {
+        return bookService.getBookByIsbn(isbns[SyntheticTexts.zipf(draws.random, isbns.length)]);
+    }
+
+    @Benchmark
+    public Publisher publisherById(Draws draws) {
+        return publisherService.getPublisherById(publisherIds[draws.random.nextInt(publisherIds.length)]);
+    }
+
+    /**
+     * Lookup of a librarian with its user, the user is not cached and is always read by id.
+     */
+    @Benchmark
+    public Librarian librarianById(Draws draws) {
+        return librarianService.getLibrarianById(librarianIds[draws.random.nextInt(librarianIds.length)]);
+    }
+
+    private void seed() {
+        Random random = new Random(7);
+        String[] words = SyntheticTexts.vocabulary(5000, random);
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            for (int i = 0; i < books; i++) {
+                em.persist(new Book(SyntheticTexts.title(words, random), "Author " + (i % 997), "Publisher " + (i % PUBLISHERS),
+                        1950 + i % 70, String.format("978%010d", i)));
+                if ((i + 1) % BATCH == 0) {
+                    em.flush();
+                    em.clear();
+                }
+            }
+            for (int i = 0; i < PUBLISHERS; i++) {
+                em.persist(new Publisher("Publisher " + i, "Street " + i, "555-" + i));
+            }
+            for (int i = 0; i < LIBRARIANS; i++) {
+                User user = new User("Librarian " + i, "librarian" + i + "@example.com", "555", "Street", "pwd", "LIBRARIAN");
+                em.persist(user);
+                em.persist(new Librarian(user, new Date(), "Position " + i % 5));
+            }
+            em.getTransaction().commit();
+            em.clear();
+
+            List<Object[]> rows = em.createQuery("SELECT b.id, b.isbn FROM Book b ORDER BY b.id", Object[].class).getResultList();
+            Collections.shuffle(rows, random);
+            bookIds = new int[rows.size()];
+            isbns = new String[rows.size()];
+            for (int i = 0; i < rows.size(); i++) {
+                bookIds[i] = (Integer) rows.get(i)[0];
+                isbns[i] = (String) rows.get(i)[1];
+            }
+            publisherIds = ids(em, "SELECT p.id FROM Publisher p");
+            librarianIds = ids(em, "SELECT l.id FROM Librarian l");
+        } finally {
+            em.close();
+        }
+    }
+
+    private static int[] ids(EntityManager em, String query) {
+        return em.createQuery(query, Integer.class).getResultList().stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -0,0 +1,147 @@
+package org.example.benchmarks;
+
+import org.example.model.CopyStatus;
+import org.example.persistence.DatasetGenerator;
+import org.example.persistence.PersistenceUnitRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.TypedQuery;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * State shared by the benchmarks of the services: a library written by {@link DatasetGenerator} with
+ * the seed {@value #SEED} and as many users as the {@code rows} parameter, 10K, 100K or 1M. Run a
+ * single scale with {@code -p rows=10000}.
+ *
+ * <p>The ids of every table are dense from 1, so a benchmark picks an existing row by drawing an id.
+ * The rows a benchmark needs in a given state, such as the available copies or the users without a
+ * loan, are listed once after seeding. A benchmark that writes undoes its write in the same
+ * invocation, a created row is deleted and a checkout is deleted again, so the tables keep their
+ * size however long it runs. The forks
+ * get a larger heap for the in memory database of the largest scale.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public abstract class SeededLibrary {
+
+    static final long SEED = 20240601L;
+
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    protected EntityManagerFactory emf;
+    protected DatasetGenerator.Summary dataset;
+    /**
+     * The ids of some returned borrowings.
+     */
+    protected int[] returnedBorrowings;
+    /**
+     * The ids of the users who are not librarians and have no active borrowing.
+     */
+    protected int[] idleUsers;
+    /**
+     * The ids of the available copies.
+     */
+    protected int[] availableCopies;
+    /**
+     * The ids of the books with an available copy.
+     */
+    protected int[] availableBooks;
+
+    @Setup(Level.Trial)
+    public void seed() {
+        Benchmarks.configureUnit();
+        emf = PersistenceUnitRegistry.getEntityManagerFactory(Benchmarks.UNIT);
+        dataset = new DatasetGenerator(SEED, rows).generate(emf);
+        returnedBorrowings = sample("SELECT b.id FROM Borrowing b WHERE b.returnDate IS NOT NULL", Integer.class, 10_000)
+                .stream().mapToInt(Integer::intValue).toArray();
+        idleUsers = ids("SELECT u.id FROM User u WHERE u.activeBorrowings = 0 AND u.id > " + dataset.getLibrarians());
+        availableCopies = ids("SELECT c.id FROM Copy c WHERE c.status = ?1", CopyStatus.AVAILABLE);
+        availableBooks = ids("SELECT a.bookId FROM BookAvailability a WHERE a.availableCopies > 0");
+        createServices();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        PersistenceUnitRegistry.closeAll();
+    }
+
+    /**
+     * Creates the services under test, once the library is seeded.
+     */
+    protected abstract void createServices();
+
+    /**
+     * Draws a number in [from, to].
+     */
+    protected static int random(int from, int to) {
+        return from + ThreadLocalRandom.current().nextInt(to - from + 1);
+    }
+
+    /**
+     * Draws an element of the array.
+     */
+    protected static <T> T random(T[] values) {
+        return values[ThreadLocalRandom.current().nextInt(values.length)];
+    }
+
+    protected static int random(int[] values) {
+        return values[ThreadLocalRandom.current().nextInt(values.length)];
+    }
+
+    /**
+     * Runs a JPQL query for ids, sorted, with the parameters bound to ?1, ?2 and so on.
+     */
+    protected int[] ids(String query, Object... parameters) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            TypedQuery<Integer> ids = em.createQuery(query, Integer.class);
+            for (int i = 0; i < parameters.length; i++) {
+                ids.setParameter(i + 1, parameters[i]);
+            }
+            return ids.getResultList().stream().mapToInt(Integer::intValue).sorted().toArray();
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Runs a JPQL query for at most {@code limit} values, for the benchmarks that look rows up by a
+     * value, with the parameters bound to ?1, ?2 and so on.
+     */
+    protected <T> List<T> sample(String query, Class<T> type, int limit, Object... parameters) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            TypedQuery<T> sample = em.createQuery(query, type).setMaxResults(limit);
+            for (int i = 0; i < parameters.length; i++) {
+                sample.setParameter(i + 1, parameters[i]);
+            }
+            return sample.getResultList();
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Runs a JPQL query for a single id, for the benchmarks that need the id of a row they just created.
+     */
+    protected int findId(String query, String parameter, Object value) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return em.createQuery(query, Integer.class)
+                    .setParameter(parameter, value)
+                    .getSingleResult();
+        } finally {
+            em.close();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package org.example.benchmarks;
+
+import org.example.persistence.PersistenceUnitRegistry;
+import org.example.service.BookService;
+import org.example.service.BorrowingService;
+import org.example.service.CopyService;
+import org.example.service.LibrarianService;
+import org.example.service.PublisherService;
+import org.example.service.UserService;
+import org.openjdk.jmh.annotations.*;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures what a panel switch in the GUI costs when every service builds its own
+ * {@link EntityManagerFactory} ({@code perService}, the old behaviour) compared with services
+ * sharing the factory of {@link PersistenceUnitRegistry} ({@code registry}).
+ *
+ * <p>{@link #switchPanels()} reports the time of three panel switches, {@link #retainedHeap(HeapCounters)}
+ * reports how much heap is still reachable after them.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ServiceBootstrapBenchmark {
+
+    private static final int PANEL_SWITCHES = 3;
+
+    @Param({"perService", "registry"})
+    public String bootstrap;
+
+    private final List<EntityManagerFactory> built = new ArrayList<>();
+    private final List<Object> services = new ArrayList<>();
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class HeapCounters {
+        public long retainedHeapBytes;
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        Benchmarks.configureUnit();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        services.clear();
+        for (EntityManagerFactory emf : built) {
+            emf.close();
+        }
+        built.clear();
+        PersistenceUnitRegistry.closeAll();
+    }
+
+    @Benchmark
+    public List<Object> switchPanels() {
+        for (int i = 0; i < PANEL_SWITCHES; i++) {
+            openPanel();
+        }
+        return services;
+    }
+
+    @Benchmark
+    public List<Object> retainedHeap(HeapCounters counters) {
+        long before = usedHeapAfterGc();
+        for (int i = 0; i < PANEL_SWITCHES; i++) {
+            openPanel();
+        }
+        counters.retainedHeapBytes = usedHeapAfterGc() - before;
+        return services;
+    }
+
+    /**
+     * Creates the services a panel creates when it is shown and runs its first query.
+     */
+    private void openPanel() {
+        BookService bookService = new BookService(factory());
+        services.add(bookService);
+        services.add(new CopyService(factory()));
+        services.add(new BorrowingService(factory()));
+        services.add(new UserService(factory()));
+        services.add(new LibrarianService(factory()));
+        services.add(new PublisherService(factory()));
+        bookService.getAllBooks();
+    }
+
+    private EntityManagerFactory factory() {
+        if ("registry".equals(bootstrap)) {
+            return PersistenceUnitRegistry.getEntityManagerFactory(Benchmarks.UNIT);
+        }
+        EntityManagerFactory emf = Persistence.createEntityManagerFactory(
+                Benchmarks.UNIT, PersistenceUnitRegistry.getOverrides(Benchmarks.UNIT));
+        built.add(emf);
+        return emf;
+    }
+
+    private static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
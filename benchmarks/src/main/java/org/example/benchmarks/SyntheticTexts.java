@@ -0,0 +1,69 @@
+package org.example.benchmarks;
+
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+
+
+/**
+ * Generates the words, titles and names of synthetic catalogs for the benchmarks, deterministically
+ * from the given {@link Random}.
+ */
+final class SyntheticTexts {
+
+    private static final String[] SYLLABLES = {
+            "ka", "lo", "mi", "ne", "ru", "sa", "te", "vi", "do", "ba", "zo", "pe", "qui", "gra", "tho", "el"};
+
+    private SyntheticTexts() {
+    }
+
+    /**
+     * Returns {@code size} distinct made up words of two to four syllables.
+     */
+    static String[] vocabulary(int size, Random random) {
+        Set<String> words = new LinkedHashSet<>();
+        while (words.size() < size) {
+            StringBuilder word = new StringBuilder();
+            int syllables = 2 + random.nextInt(3);
+            for (int s = 0; s < syllables; s++) {
+                word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            words.add(word.toString());
+        }
+        return words.toArray(new String[0]);
+    }
+
+    /**
+     * Returns a title of two to five words, the frequent words of the vocabulary being the most likely.
+     */
+    static String title(String[] words, Random random) {
+        StringBuilder title = new StringBuilder();
+        int length = 2 + random.nextInt(4);
+        for (int w = 0; w < length; w++) {
+            title.append(w == 0 ? "" : " ").append(words[zipf(random, words.length)]);
+        }
+        return title.toString();
+    }
+
+    /**
+     * Returns {@code size} first name and last name pairs.
+     */
+    static String[] names(int size, String[] words, Random random) {
+        String[] names = new String[size];
+        for (int i = 0; i < size; i++) {
+            names[i] = capitalize(words[random.nextInt(words.length)]) + " " + capitalize(words[random.nextInt(words.length)]);
+        }
+        return names;
+    }
+
+    /**
+     * Draws an index in [0, n) where index k is about twice as likely as index 2k.
+     */
+    static int zipf(Random random, int n) {
+        return (int) Math.min(n - 1, Math.floor(Math.pow(n + 1, random.nextDouble())) - 1);
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+}
@@ -0,0 +1,122 @@
+package org.example.benchmarks;
+
+import org.example.model.Book;
+import org.example.model.Borrowing;
+import org.example.model.Copy;
+import org.example.persistence.PersistenceUnitRegistry;
+import org.example.service.BookService;
+import org.example.service.BorrowingService;
+import org.example.service.CopyService;
+import org.example.service.UserService;
+import org.openjdk.jmh.annotations.*;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Measures 50 librarians checking out a title with 20 copies at once, either choosing a copy from
+ * the list of available copies ({@code chosenCopy}, the old dialog) or letting
+ * {@link BorrowingService#borrowAnyAvailableCopy} allocate one ({@code anyCopy}).
+ *
+ * <p>Every thread has its own user and returns what it borrowed right away. Besides the attempts per
+ * second, the benchmark reports how many got a copy, how many were refused because the copy or the
+ * title was taken and how many failed on a lock.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(TitleCheckoutBenchmark.THREADS)
+@Fork(1)
+public class TitleCheckoutBenchmark {
+
+    static final int THREADS = 50;
+    private static final int COPIES = 20;
+
+    @Param({"chosenCopy", "anyCopy"})
+    public String allocation;
+
+    private BorrowingService borrowingService;
+    private CopyService copyService;
+    private int bookId;
+    private final List<Integer> userIds = new ArrayList<>();
+    private final AtomicInteger nextUser = new AtomicInteger();
+
+    @State(Scope.Thread)
+    public static class Librarian {
+        private int userId;
+
+        @Setup(Level.Trial)
+        public void setUp(TitleCheckoutBenchmark benchmark) {
+            userId = benchmark.userIds.get(benchmark.nextUser.getAndIncrement() % THREADS);
+        }
+    }
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Outcomes {
+        public long borrowed;
+        public long refused;
+        public long lockFailures;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Benchmarks.configureUnit();
+        EntityManagerFactory emf = PersistenceUnitRegistry.getEntityManagerFactory(Benchmarks.UNIT);
+        borrowingService = new BorrowingService(emf);
+        copyService = new CopyService(emf);
+
+        UserService userService = new UserService(emf);
+        for (int i = 0; i < THREADS; i++) {
+            userService.createUser("Librarian " + i, "librarian" + i + "@example.com", "555", "Street", "pwd", "USER");
+            userIds.add(userService.getUserByEmail("librarian" + i + "@example.com").getId());
+        }
+        BookService bookService = new BookService(emf);
+        bookService.createBook("Popular Title", "Author", "Publisher", 2024, "9788888800002");
+        Book book = bookService.getBookByIsbn("9788888800002");
+        bookId = book.getId();
+        for (int c = 1; c <= COPIES; c++) {
+            copyService.createCopy(bookId, c, "Available");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        PersistenceUnitRegistry.closeAll();
+    }
+
+    @Benchmark
+    public void checkout(Librarian librarian, Outcomes outcomes) {
+        try {
+            if ("anyCopy".equals(allocation)) {
+                borrowingService.borrowAnyAvailableCopy(librarian.userId, bookId, new Date(), null);
+            } else {
+                List<Copy> available = copyService.getAvailableCopies();
+                if (available.isEmpty()) {
+                    outcomes.refused++;
+                    return;
+                }
+                Copy chosen = available.get(ThreadLocalRandom.current().nextInt(available.size()));
+                borrowingService.createBorrowing(librarian.userId, chosen.getId(), new Date(), null);
+            }
+        } catch (IllegalStateException e) {
+            outcomes.refused++;
+            return;
+        } catch (RuntimeException e) {
+            outcomes.lockFailures++;
+            return;
+        }
+        outcomes.borrowed++;
+        for (Borrowing borrowing : borrowingService.getBorrowingsByUserId(librarian.userId)) {
+            borrowingService.deleteBorrowing(borrowing.getId());
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package org.example.benchmarks;
+
+import org.example.model.User;
+import org.example.persistence.DatasetGenerator;
+import org.example.service.Page;
+import org.example.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Measures the methods of {@link UserService} on a seeded library, the login of every session first.
+ */
+public class UserServiceBenchmark extends SeededLibrary {
+
+    private final AtomicInteger created = new AtomicInteger();
+    private UserService userService;
+    private String[] uniqueNames;
+    private User[] readers;
+
+    @Override
+    protected void createServices() {
+        userService = new UserService(emf);
+        // generated names repeat, the lookup by name expects a single user
+        uniqueNames = sample("SELECT u.name FROM User u GROUP BY u.name HAVING COUNT(u) = 1", String.class, 1000)
+                .toArray(new String[0]);
+        readers = sample("SELECT u FROM User u WHERE u.id > " + dataset.getLibrarians(), User.class, 1000)
+                .toArray(new User[0]);
+    }
+
+    @Benchmark
+    public User authenticateUser() {
+        int id = random(1, dataset.getUsers());
+        return userService.authenticateUser(DatasetGenerator.email(id), DatasetGenerator.password(id));
+    }
+
+    @Benchmark
+    public User getUserById() {
+        return userService.getUserById(random(1, dataset.getUsers()));
+    }
+
+    @Benchmark
+    public User getUserByEmail() {
+        return userService.getUserByEmail(DatasetGenerator.email(random(1, dataset.getUsers())));
+    }
+
+    @Benchmark
+    public User getUserByName() {
+        return userService.getUserByName(random(uniqueNames));
+    }
+
+    @Benchmark
+    public Page<User> getUsersPage() {
+        return userService.getUsersPage("name", null, 50);
+    }
+
+    /**
+     * Writes the values a user already has, with a new phone number.
+     */
+    @Benchmark
+    public void updateUser() {
+        User user = random(readers);
+        userService.updateUser(user.getId(), user.getName(), user.getEmail(), "555-" + random(1, 9999),
+                user.getAddress(), DatasetGenerator.password(user.getId()), "USER");
+    }
+
+    /**
+     * Creates a user and deletes it again.
+     */
+    @Benchmark
+    public void createUser() {
+        String email = "new" + created.incrementAndGet() + "@example.com";
+        userService.createUser("New User", email, "555", "Street", "pwd", "USER");
+        userService.deleteUser(userService.getUserByEmail(email).getId());
+    }
+}
@@ -0,0 +1,52 @@
+package org.example.dto;
+
+import java.util.Date;
+
+
+/**
+ * A row of the borrowing history of a user, holding exactly the columns shown by the history panel.
+ *
+ * <p>Instances are created by a JPQL constructor expression, so the title of the borrowed book
+ * is read in the same SQL statement as the borrowing instead of loading the user, copy and book
+ * entities of every borrowing.</p>
+ */
+public class BorrowingHistoryRow {
+
+    private final int borrowingId;
+    private final String title;
+    private final Date borrowDate;
+    private final Date returnDate;
+
+    public BorrowingHistoryRow(int borrowingId, String title, Date borrowDate, Date returnDate) {
+        this.borrowingId = borrowingId;
+        this.title = title;
+        this.borrowDate = borrowDate;
+        this.returnDate = returnDate;
+    }
+
+    public int getBorrowingId() {
+        return borrowingId;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public Date getBorrowDate() {
+        return borrowDate;
+    }
+
+    public Date getReturnDate() {
+        return returnDate;
+    }
+
+    @Override
+    public String toString() {
+        return "BorrowingHistoryRow{" +
+                "borrowingId=" + borrowingId +
+                ", title='" + title + '\'' +
+                ", borrowDate=" + borrowDate +
+                ", returnDate=" + returnDate +
+                '}';
+    }
+}
@@ -0,0 +1,58 @@
+package org.example.dto;
+
+import java.util.Date;
+
+
+/**
+ * A row of the borrowings table, holding exactly the columns shown by the borrowing panel.
+ *
+ * <p>Instances are created by a JPQL constructor expression that joins the user, so a page of
+ * borrowings is read in a single SQL statement.</p>
+ */
+public class BorrowingRow {
+
+    private final int borrowingId;
+    private final String userName;
+    private final int copyId;
+    private final Date borrowDate;
+    private final Date returnDate;
+
+    public BorrowingRow(int borrowingId, String userName, int copyId, Date borrowDate, Date returnDate) {
+        this.borrowingId = borrowingId;
+        this.userName = userName;
+        this.copyId = copyId;
+        this.borrowDate = borrowDate;
+        this.returnDate = returnDate;
+    }
+
+    public int getBorrowingId() {
+        return borrowingId;
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    public int getCopyId() {
+        return copyId;
+    }
+
+    public Date getBorrowDate() {
+        return borrowDate;
+    }
+
+    public Date getReturnDate() {
+        return returnDate;
+    }
+
+    @Override
+    public String toString() {
+        return "BorrowingRow{" +
+                "borrowingId=" + borrowingId +
+                ", userName='" + userName + '\'' +
+                ", copyId=" + copyId +
+                ", borrowDate=" + borrowDate +
+                ", returnDate=" + returnDate +
+                '}';
+    }
+}
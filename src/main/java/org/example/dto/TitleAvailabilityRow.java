@@ -0,0 +1,77 @@
+package org.example.dto;
+
+import org.example.model.BookAvailability;
+
+import java.util.Calendar;
+import java.util.Date;
+
+
+/**
+ * A row of the available titles table: a book with how many of its copies are available.
+ *
+ * <p>Instances are created by a JPQL constructor expression that joins the book to its
+ * {@link BookAvailability} summary, so a page of titles is read in a single SQL statement whatever
+ * the number of copies.</p>
+ */
+public class TitleAvailabilityRow {
+
+    private final int bookId;
+    private final String title;
+    private final String author;
+    private final int totalCopies;
+    private final int availableCopies;
+    private final Date earliestBorrowDate;
+
+    public TitleAvailabilityRow(int bookId, String title, String author, int totalCopies, int availableCopies,
+                                Date earliestBorrowDate) {
+        this.bookId = bookId;
+        this.title = title;
+        this.author = author;
+        this.totalCopies = totalCopies;
+        this.availableCopies = availableCopies;
+        this.earliestBorrowDate = earliestBorrowDate;
+    }
+
+    public int getBookId() {
+        return bookId;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getAuthor() {
+        return author;
+    }
+
+    public int getTotalCopies() {
+        return totalCopies;
+    }
+
+    public int getAvailableCopies() {
+        return availableCopies;
+    }
+
+    /**
+     * Date the first borrowed copy is due back, null when no copy is borrowed.
+     */
+    public Date getEarliestDueDate() {
+        if (earliestBorrowDate == null) {
+            return null;
+        }
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(earliestBorrowDate);
+        calendar.add(Calendar.DAY_OF_MONTH, BookAvailability.LOAN_PERIOD_DAYS);
+        return calendar.getTime();
+    }
+
+    @Override
+    public String toString() {
+        return "TitleAvailabilityRow{" +
+                "bookId=" + bookId +
+                ", title='" + title + '\'' +
+                ", available=" + availableCopies + " of " + totalCopies +
+                ", earliestDueDate=" + getEarliestDueDate() +
+                '}';
+    }
+}
@@ -2,7 +2,6 @@ package org.example.gui;
 
 import org.example.model.Book;
 import org.example.service.BookService;
-import org.example.service.CopyService;
 
 import javax.swing.*;
 import java.awt.*;
@@ -14,8 +13,7 @@ import java.awt.*;
  * <p>This dialog provides fields for entering a book's title, author, publisher,
  * publication year, ISBN, and number of copies. Depending on whether a new
  * book is being created or an existing one is being edited, it interacts with
- * {@link BookService} to persist the book and with {@link CopyService} to create
- * copies when adding a new book.</p>
+ * {@link BookService} to persist the book, together with its copies when adding a new book.</p>
  *
  * <p>The dialog just uses a grid layout and swing components such as text fields
  * and buttons to collect user input and perform actions such as  saving or canceling.</p>
@@ -24,13 +22,11 @@ public class AddEditBookDialog extends JDialog {
 
     private JTextField titleField, authorField, publisherField, yearField, isbnField, copiesField;
     private BookService bookService;
-    private CopyService copyService;
     private int bookId = -1;
 
-    public AddEditBookDialog(Frame parent, BookService bookService, CopyService copyService) {
+    public AddEditBookDialog(Frame parent, BookService bookService) {
         super(parent, "Add/Edit Book", true);
         this.bookService = bookService;
-        this.copyService = copyService;
 
         setLayout(new GridLayout(7, 2));
 
@@ -94,11 +90,7 @@ public class AddEditBookDialog extends JDialog {
         }
 
         if (bookId == -1) {
-            bookService.createBook(title, author, publisher, year, isbn);
-            int createdBookId = bookService.getBookByIsbn(isbn).getId();
-            for (int i = 1; i <= copies; i++) {
-                copyService.createCopy(createdBookId, i, "Available");
-            }
+            bookService.createBookWithCopies(title, author, publisher, year, isbn, copies);
             JOptionPane.showMessageDialog(this, "Book and copies added successfully.");
         } else {
             bookService.updateBook(bookId, title, author, publisher, year, isbn);
@@ -1,67 +1,74 @@
 package org.example.gui;
 
+import org.example.model.Book;
 import org.example.model.Borrowing;
-import org.example.model.Copy;
 import org.example.model.User;
+import org.example.search.Suggestion;
 import org.example.service.BorrowingService;
-import org.example.service.CopyService;
+import org.example.service.SuggestionService;
 import org.example.service.UserService;
 
 import javax.swing.*;
 import java.awt.*;
 import java.util.Date;
-import java.util.List;
 
 
 /**
  * A dialog for adding or editing a borrowing transaction in the library system.
  *
- * <p>This dialog allows the user to select a user and a copy of a book, then
- * specify borrow and return dates, and then create or update a {@link Borrowing}
- * record using the provided services. It uses swing components to create a user interface for input.</p>
+ * <p>This dialog allows the user to pick a user and a title by typing the first letters of any of
+ * their words and choosing among the suggestions, then
+ * specify the borrow date and, only for a borrowing that was returned, the return date, and then
+ * create or update a {@link Borrowing} record using the provided services. It uses swing components
+ * to create a user interface for input.
+ * When a borrowing is added, any available copy of the title is checked out.</p>
  *
- * <p>The dialog interacts with {@link UserService} to populate the list of users,
- * {@link CopyService} to populate the list of available copies, and {@link BorrowingService}
- * to persist borrowing transactions. It updates the copy dropdown and user dropdown
- * based on current data from the database.</p>
+ * <p>The dialog interacts with {@link SuggestionService} to complete user names and titles as they
+ * are typed, {@link UserService} to find a user whose name was typed in full, and
+ * {@link BorrowingService} to persist borrowing transactions. Nothing is loaded up front, so the
+ * dialog opens quickly however many users and titles there are.</p>
  */
 public class AddEditBorrowingDialog extends JDialog {
 
-    private JComboBox<String> userDropdown;
-    private JComboBox<String> copyDropdown;
+    private SuggestionField userField;
+    private SuggestionField titleField;
     private JSpinner borrowDateSpinner;
+    private JCheckBox returnedCheckBox;
     private JSpinner returnDateSpinner;
     private BorrowingService borrowingService;
     private UserService userService;
-    private CopyService copyService;
+    private SuggestionService suggestionService;
     private int borrowingId = -1;
 
-    public AddEditBorrowingDialog(Frame parent, BorrowingService borrowingService, UserService userService, CopyService copyService) {
+    public AddEditBorrowingDialog(Frame parent, BorrowingService borrowingService, UserService userService,
+                                  SuggestionService suggestionService) {
         super(parent, "Add/Edit Borrowing", true);
         this.borrowingService = borrowingService;
         this.userService = userService;
-        this.copyService = copyService;
+        this.suggestionService = suggestionService;
 
         setLayout(new GridLayout(5, 2));
 
         add(new JLabel("User:"));
-        userDropdown = new JComboBox<>();
-        populateUserDropdown();
-        add(userDropdown);
+        userField = new SuggestionField(25, suggestionService::suggestUsers);
+        add(userField);
 
-        add(new JLabel("Copy:"));
-        copyDropdown = new JComboBox<>();
-        populateCopyDropdown();
-        add(copyDropdown);
+        add(new JLabel("Title:"));
+        titleField = new SuggestionField(25, suggestionService::suggestTitles);
+        add(titleField);
 
         add(new JLabel("Borrow Date:"));
         borrowDateSpinner = new JSpinner(new SpinnerDateModel());
         borrowDateSpinner.setEditor(new JSpinner.DateEditor(borrowDateSpinner, "yyyy-MM-dd"));
         add(borrowDateSpinner);
 
-        add(new JLabel("Return Date:"));
+        // a date spinner always holds a date, the box tells whether the borrowing was returned
+        returnedCheckBox = new JCheckBox("Returned on:");
+        add(returnedCheckBox);
         returnDateSpinner = new JSpinner(new SpinnerDateModel());
         returnDateSpinner.setEditor(new JSpinner.DateEditor(returnDateSpinner, "yyyy-MM-dd"));
+        returnDateSpinner.setEnabled(false);
+        returnedCheckBox.addActionListener(e -> returnDateSpinner.setEnabled(returnedCheckBox.isSelected()));
         add(returnDateSpinner);
 
         JButton saveButton = new JButton("Save");
@@ -78,43 +85,43 @@ public class AddEditBorrowingDialog extends JDialog {
 
     public void setBorrowing(Borrowing borrowing) {
         this.borrowingId = borrowing.getId();
-        userDropdown.setSelectedItem(borrowing.getUser().getName());
-        copyDropdown.setSelectedItem(String.valueOf(borrowing.getCopy().getId()));
+        userField.setText(borrowing.getUser().getName());
+        Book book = borrowing.getCopy().getBook();
+        titleField.setText(book.getTitle());
+        titleField.setEnabled(false); // the copy of an existing borrowing cannot be changed
         borrowDateSpinner.setValue(borrowing.getBorrowDate());
-        returnDateSpinner.setValue(borrowing.getReturnDate());
-    }
-
-    private void populateUserDropdown() {
-        List<User> users = userService.getAllUsers();
-        for (User user : users) {
-            userDropdown.addItem(user.getName());
-        }
-    }
-
-    private void populateCopyDropdown() {
-        List<Copy> copies = copyService.getAvailableCopies();
-        for (Copy copy : copies) {
-            copyDropdown.addItem(String.valueOf(copy.getId()));
+        boolean returned = borrowing.getReturnDate() != null;
+        returnedCheckBox.setSelected(returned);
+        returnDateSpinner.setEnabled(returned);
+        if (returned) {
+            returnDateSpinner.setValue(borrowing.getReturnDate());
         }
     }
 
     private void saveBorrowing() {
-        String userName = (String) userDropdown.getSelectedItem();
-        String copyIdStr = (String) copyDropdown.getSelectedItem();
+        Suggestion title = titleField.getSelectedSuggestion();
         Date borrowDate = (Date) borrowDateSpinner.getValue();
-        Date returnDate = (Date) returnDateSpinner.getValue();
+        Date returnDate = returnedCheckBox.isSelected() ? (Date) returnDateSpinner.getValue() : null;
 
-        if (userName == null || copyIdStr == null) {
-            JOptionPane.showMessageDialog(this, "Please select a user and a copy.");
+        if (userField.getText().trim().isEmpty() || (borrowingId == -1 && title == null)) {
+            JOptionPane.showMessageDialog(this, "Please select a user and a title.");
             return;
         }
 
-        int copyId = Integer.parseInt(copyIdStr);
-        int userId = userService.getUserByName(userName).getId();
-
         if (borrowingId == -1) {
-            borrowingService.createBorrowing(userId, copyId, borrowDate, returnDate);
-            JOptionPane.showMessageDialog(this, "Borrowing added successfully.");
+            Integer userId = selectedUserId();
+            if (userId == null) {
+                JOptionPane.showMessageDialog(this, "No user is named " + userField.getText().trim() + ".");
+                return;
+            }
+            int copyId;
+            try {
+                copyId = borrowingService.borrowAnyAvailableCopy(userId, title.getId(), borrowDate, returnDate);
+            } catch (IllegalStateException e) {
+                JOptionPane.showMessageDialog(this, e.getMessage());
+                return;
+            }
+            JOptionPane.showMessageDialog(this, "Borrowing added successfully, copy " + copyId + ".");
         } else {
             borrowingService.updateBorrowing(borrowingId, borrowDate, returnDate);
             JOptionPane.showMessageDialog(this, "Borrowing updated successfully.");
@@ -122,4 +129,16 @@ public class AddEditBorrowingDialog extends JDialog {
 
         dispose();
     }
+
+    /**
+     * Returns the id of the picked user, or of the user whose name was typed in full.
+     */
+    private Integer selectedUserId() {
+        Suggestion user = userField.getSelectedSuggestion();
+        if (user != null) {
+            return user.getId();
+        }
+        User typed = userService.getUserByName(userField.getText().trim());
+        return typed == null ? null : typed.getId();
+    }
 }
@@ -1,13 +1,13 @@
 package org.example.gui;
 
+import org.example.metrics.ServiceMetrics;
 import org.example.model.Book;
 import org.example.service.BookService;
-import org.example.service.CopyService;
+import org.example.service.Page;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
-import java.util.List;
 
 
 /**
@@ -15,20 +15,23 @@ import java.util.List;
  *
  * <p>This panel uses a JTable to show book details like ID, title, author, publisher, year,
  * and isbn. It interacts with {@link BookService} to retrieve and manipulate book data
- * from the database, and uses {@link CopyService} when adding a new book to handle
- * the creation of copies.</p>
+ * from the database.</p>
  *
  * <p>The panel provides buttons for adding, editing, and deleting books, and updates
  * the table view accordingly when changes are made.</p>
  */
 public class BookPanel extends JPanel {
 
+    private static final int PAGE_SIZE = 100;
+
     private BookService bookService;
     private JTable bookTable;
     private DefaultTableModel tableModel;
+    private JButton loadMoreButton;
+    private String nextToken;
 
     public BookPanel() {
-        bookService = new BookService();
+        bookService = ServiceMetrics.create(BookService.class);
         setLayout(new BorderLayout());
 
 
@@ -43,10 +46,12 @@ public class BookPanel extends JPanel {
         JButton addButton = new JButton("Add Book");
         JButton editButton = new JButton("Edit Book");
         JButton deleteButton = new JButton("Delete Book");
+        loadMoreButton = new JButton("Load More");
 
         buttonPanel.add(addButton);
         buttonPanel.add(editButton);
         buttonPanel.add(deleteButton);
+        buttonPanel.add(loadMoreButton);
         add(buttonPanel, BorderLayout.SOUTH);
 
 
@@ -55,12 +60,18 @@ public class BookPanel extends JPanel {
         addButton.addActionListener(e -> openAddDialog());
         editButton.addActionListener(e -> openEditDialog());
         deleteButton.addActionListener(e -> deleteBook());
+        loadMoreButton.addActionListener(e -> loadMoreBooks());
     }
 
     private void loadBooks() {
         tableModel.setRowCount(0);
-        List<Book> books = bookService.getAllBooks();
-        for (Book book : books) {
+        nextToken = null;
+        loadMoreBooks();
+    }
+
+    private void loadMoreBooks() {
+        Page<Book> page = bookService.getBooksPage(nextToken, PAGE_SIZE);
+        for (Book book : page.getItems()) {
             tableModel.addRow(new Object[]{
                     book.getId(),
                     book.getTitle(),
@@ -70,13 +81,14 @@ public class BookPanel extends JPanel {
                     book.getIsbn()
             });
         }
+        nextToken = page.getNextToken();
+        loadMoreButton.setEnabled(page.hasNext());
     }
 
     private void openAddDialog() {
         AddEditBookDialog dialog = new AddEditBookDialog(
                 (Frame) SwingUtilities.getWindowAncestor(this),
-                bookService,
-                new CopyService()
+                bookService
         );
         dialog.setVisible(true);
         loadBooks();
@@ -94,8 +106,7 @@ public class BookPanel extends JPanel {
 
         AddEditBookDialog dialog = new AddEditBookDialog(
                 (Frame) SwingUtilities.getWindowAncestor(this),
-                bookService,
-                new CopyService()
+                bookService
         );
         dialog.setBook(book);
         dialog.setVisible(true);
@@ -1,6 +1,7 @@
 package org.example.gui;
 
-import org.example.model.Borrowing;
+import org.example.dto.BorrowingHistoryRow;
+import org.example.metrics.ServiceMetrics;
 import org.example.model.User;
 import org.example.service.BorrowingService;
 import org.example.session.SessionManager;
@@ -29,7 +30,7 @@ public class BorrowingHistoryPanel extends JPanel {
     private DefaultTableModel tableModel;
 
     public BorrowingHistoryPanel() {
-        borrowingService = new BorrowingService();
+        borrowingService = ServiceMetrics.create(BorrowingService.class);
         setLayout(new BorderLayout());
 
         if (!SessionManager.isLoggedIn()) {
@@ -54,15 +55,15 @@ public class BorrowingHistoryPanel extends JPanel {
             return;
         }
 
-        List<Borrowing> borrowings = borrowingService.getBorrowingsByUserId(user.getId());
+        List<BorrowingHistoryRow> history = borrowingService.getBorrowingHistory(user.getId());
         tableModel.setRowCount(0);
 
-        for (Borrowing borrowing : borrowings) {
+        for (BorrowingHistoryRow row : history) {
             tableModel.addRow(new Object[]{
-                    borrowing.getId(),
-                    borrowing.getCopy().getBook().getTitle(),
-                    borrowing.getBorrowDate(),
-                    borrowing.getReturnDate()
+                    row.getBorrowingId(),
+                    row.getTitle(),
+                    row.getBorrowDate(),
+                    row.getReturnDate()
             });
         }
     }
@@ -1,14 +1,16 @@
 package org.example.gui;
 
+import org.example.dto.BorrowingRow;
+import org.example.metrics.ServiceMetrics;
 import org.example.model.Borrowing;
 import org.example.service.BorrowingService;
-import org.example.service.CopyService;
+import org.example.service.Page;
+import org.example.service.SuggestionService;
 import org.example.service.UserService;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
-import java.util.List;
 
 
 /**
@@ -17,23 +19,28 @@ import java.util.List;
  * <p>This panel uses a table to display all borrowings with details
  * such as Borrowing ID, User name, Copy ID, Borrow Date, and Return Date.
  * It interacts with {@link BorrowingService}, {@link UserService}, and
- * {@link CopyService} to load and manage borrowing records.</p>
+ * {@link SuggestionService} to load and manage borrowing records.</p>
  *
  * <p>Users can add, edit, or delete borrowings using the provided buttons.
  * The panel updates the table data accordingly after each operation.</p>
  */
 public class BorrowingPanel extends JPanel {
 
+    private static final int PAGE_SIZE = 100;
+
     private BorrowingService borrowingService;
     private UserService userService;
-    private CopyService copyService;
+    private SuggestionService suggestionService;
     private JTable borrowingTable;
     private DefaultTableModel tableModel;
+    private JButton loadMoreButton;
+    private String nextToken;
 
     public BorrowingPanel() {
-        borrowingService = new BorrowingService();
-        userService = new UserService();
-        copyService = new CopyService();
+        borrowingService = ServiceMetrics.create(BorrowingService.class);
+        userService = ServiceMetrics.create(UserService.class);
+        suggestionService = ServiceMetrics.create(SuggestionService.class);
+        suggestionService.prepare();
 
         setLayout(new BorderLayout());
 
@@ -49,10 +56,12 @@ public class BorrowingPanel extends JPanel {
         JButton addButton = new JButton("Add Borrowing");
         JButton editButton = new JButton("Edit Borrowing");
         JButton deleteButton = new JButton("Delete Borrowing");
+        loadMoreButton = new JButton("Load More");
 
         buttonPanel.add(addButton);
         buttonPanel.add(editButton);
         buttonPanel.add(deleteButton);
+        buttonPanel.add(loadMoreButton);
         add(buttonPanel, BorderLayout.SOUTH);
 
         loadBorrowings();
@@ -60,20 +69,28 @@ public class BorrowingPanel extends JPanel {
         addButton.addActionListener(e -> openAddDialog());
         editButton.addActionListener(e -> openEditDialog());
         deleteButton.addActionListener(e -> deleteBorrowing());
+        loadMoreButton.addActionListener(e -> loadMoreBorrowings());
     }
 
     private void loadBorrowings() {
         tableModel.setRowCount(0);
-        List<Borrowing> borrowings = borrowingService.getAllBorrowings();
-        for (Borrowing borrowing : borrowings) {
+        nextToken = null;
+        loadMoreBorrowings();
+    }
+
+    private void loadMoreBorrowings() {
+        Page<BorrowingRow> page = borrowingService.getBorrowingRowsPage(nextToken, PAGE_SIZE);
+        for (BorrowingRow row : page.getItems()) {
             tableModel.addRow(new Object[]{
-                    borrowing.getId(),
-                    borrowing.getUser().getName(),
-                    borrowing.getCopy().getId(),
-                    borrowing.getBorrowDate(),
-                    borrowing.getReturnDate()
+                    row.getBorrowingId(),
+                    row.getUserName(),
+                    row.getCopyId(),
+                    row.getBorrowDate(),
+                    row.getReturnDate()
             });
         }
+        nextToken = page.getNextToken();
+        loadMoreButton.setEnabled(page.hasNext());
     }
 
     private void openAddDialog() {
@@ -81,7 +98,7 @@ public class BorrowingPanel extends JPanel {
                 (Frame) SwingUtilities.getWindowAncestor(this),
                 borrowingService,
                 userService,
-                copyService
+                suggestionService
         );
         dialog.setVisible(true);
         loadBorrowings();
@@ -101,7 +118,7 @@ public class BorrowingPanel extends JPanel {
                 (Frame) SwingUtilities.getWindowAncestor(this),
                 borrowingService,
                 userService,
-                copyService
+                suggestionService
         );
         dialog.setBorrowing(borrowing);
         dialog.setVisible(true);
@@ -1,14 +1,15 @@
 package org.example.gui;
 
+import org.example.metrics.ServiceMetrics;
 import org.example.model.Librarian;
 import org.example.model.User;
 import org.example.service.LibrarianService;
+import org.example.service.Page;
 import org.example.service.UserService;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
-import java.util.List;
 
 /**
  * For displaying and managing librarians.
@@ -24,14 +25,18 @@ import java.util.List;
 
 public class LibrarianPanel extends JPanel {
 
+    private static final int PAGE_SIZE = 100;
+
     private LibrarianService librarianService;
     private JTable librarianTable;
     private UserService userService;
     private DefaultTableModel tableModel;
+    private JButton loadMoreButton;
+    private String nextToken;
 
     public LibrarianPanel() {
-        librarianService = new LibrarianService();
-        userService = new UserService();
+        librarianService = ServiceMetrics.create(LibrarianService.class);
+        userService = ServiceMetrics.create(UserService.class);
         setLayout(new BorderLayout());
 
         String[] columnNames = {"ID", "User Name", "Position", "Employment Date"};
@@ -52,6 +57,10 @@ public class LibrarianPanel extends JPanel {
         JButton editButton = new JButton("Edit Librarian");
         buttonPanel.add(editButton);
 
+        loadMoreButton = new JButton("Load More");
+        buttonPanel.add(loadMoreButton);
+        loadMoreButton.addActionListener(e -> loadMoreData());
+
 
         deleteButton.addActionListener(e -> deleteSelectedLibrarian());
 
@@ -63,10 +72,14 @@ public class LibrarianPanel extends JPanel {
     }
 
     private void loadData() {
-        List<Librarian> librarians = librarianService.getAllLibrarians();
         tableModel.setRowCount(0);
+        nextToken = null;
+        loadMoreData();
+    }
 
-        for (Librarian librarian : librarians) {
+    private void loadMoreData() {
+        Page<Librarian> page = librarianService.getLibrariansPage(nextToken, PAGE_SIZE);
+        for (Librarian librarian : page.getItems()) {
             tableModel.addRow(new Object[]{
                     librarian.getId(),
                     librarian.getUser().getName(),
@@ -74,6 +87,8 @@ public class LibrarianPanel extends JPanel {
                     librarian.getEmploymentDate()
             });
         }
+        nextToken = page.getNextToken();
+        loadMoreButton.setEnabled(page.hasNext());
     }
 
 
@@ -81,8 +96,8 @@ public class LibrarianPanel extends JPanel {
     private void showAddLibrarianDialog() {
         AddEditLibrarianDialog dialog = new AddEditLibrarianDialog(
                 (Frame) SwingUtilities.getWindowAncestor(this),
-                new LibrarianService(),
-                new UserService()
+                librarianService,
+                userService
         );
         dialog.setVisible(true);
         loadData();
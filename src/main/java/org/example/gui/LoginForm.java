@@ -1,5 +1,6 @@
 package org.example.gui;
 
+import org.example.metrics.ServiceMetrics;
 import org.example.model.User;
 import org.example.service.UserService;
 import org.example.session.SessionManager;
@@ -24,7 +25,7 @@ public class LoginForm extends JFrame {
     private UserService userService;
 
     public LoginForm() {
-        userService = new UserService();
+        userService = ServiceMetrics.create(UserService.class);
         setTitle("Library Login");
         setSize(400, 200);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -67,7 +68,7 @@ public class LoginForm extends JFrame {
     public static void main(String[] args) {
         SwingUtilities.invokeLater(() -> {
 
-            UserService userService = new UserService();
+            UserService userService = ServiceMetrics.create(UserService.class);
             if (userService.getUserByEmail("admin@library.com") == null) {
                 userService.createUser(
                         "Admin",
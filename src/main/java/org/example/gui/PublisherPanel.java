@@ -1,12 +1,13 @@
 package org.example.gui;
 
+import org.example.metrics.ServiceMetrics;
 import org.example.model.Publisher;
+import org.example.service.Page;
 import org.example.service.PublisherService;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
-import java.util.List;
 
 /**
  * Panel for managing publisher records.
@@ -21,12 +22,16 @@ import java.util.List;
 
 public class PublisherPanel extends JPanel {
 
+    private static final int PAGE_SIZE = 100;
+
     private JTable publisherTable;
     private DefaultTableModel tableModel;
     private PublisherService publisherService;
+    private JButton loadMoreButton;
+    private String nextToken;
 
     public PublisherPanel() {
-        publisherService = new PublisherService();
+        publisherService = ServiceMetrics.create(PublisherService.class);
         setLayout(new BorderLayout());
 
 
@@ -41,25 +46,32 @@ public class PublisherPanel extends JPanel {
         JButton addButton = new JButton("Add Publisher");
         JButton editButton = new JButton("Edit Publisher");
         JButton deleteButton = new JButton("Delete Publisher");
+        loadMoreButton = new JButton("Load More");
 
         buttonPanel.add(addButton);
         buttonPanel.add(editButton);
         buttonPanel.add(deleteButton);
+        buttonPanel.add(loadMoreButton);
         add(buttonPanel, BorderLayout.SOUTH);
 
 
         addButton.addActionListener(e -> showAddPublisherDialog());
         editButton.addActionListener(e -> showEditPublisherDialog());
         deleteButton.addActionListener(e -> deleteSelectedPublisher());
+        loadMoreButton.addActionListener(e -> loadMoreData());
 
         loadData();
     }
 
     private void loadData() {
-        List<Publisher> publishers = publisherService.getAllPublishers();
         tableModel.setRowCount(0);
+        nextToken = null;
+        loadMoreData();
+    }
 
-        for (Publisher publisher : publishers) {
+    private void loadMoreData() {
+        Page<Publisher> page = publisherService.getPublishersPage(nextToken, PAGE_SIZE);
+        for (Publisher publisher : page.getItems()) {
             tableModel.addRow(new Object[]{
                     publisher.getId(),
                     publisher.getName(),
@@ -67,6 +79,8 @@ public class PublisherPanel extends JPanel {
                     publisher.getPhoneNumber()
             });
         }
+        nextToken = page.getNextToken();
+        loadMoreButton.setEnabled(page.hasNext());
     }
 
     private void showAddPublisherDialog() {
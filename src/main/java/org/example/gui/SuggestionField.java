@@ -0,0 +1,204 @@
+package org.example.gui;
+
+import org.example.search.Suggestion;
+import org.jboss.logging.Logger;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+
+/**
+ * A text field that shows type ahead suggestions in a popup under it while the user types.
+ *
+ * <p>On every change of the text the suggestions are asked again from the given source, usually a
+ * method of {@link org.example.service.SuggestionService}. The source is called off the event thread,
+ * since the first completions wait for the indexes to be built, and suggestions for a text that was
+ * changed in the meantime are dropped. Up and Down move through the suggestions,
+ * Enter or a click picks one, Escape closes the popup. The picked suggestion, with the id of the row
+ * it comes from, stays available through {@link #getSelectedSuggestion()} until the text is edited.</p>
+ */
+public class SuggestionField extends JTextField {
+
+    private static final Logger log = Logger.getLogger(SuggestionField.class);
+
+    private final Function<String, List<Suggestion>> source;
+    private final JPopupMenu popup = new JPopupMenu();
+    private final DefaultListModel<String> listModel = new DefaultListModel<>();
+    private final JList<String> list = new JList<>(listModel);
+    private List<Suggestion> suggestions = Collections.emptyList();
+    private Suggestion selectedSuggestion;
+    private Consumer<Suggestion> selectionListener = suggestion -> { };
+    private boolean settingText;
+    // counts the changes of the text, so that suggestions arriving after a later change are dropped
+    private int requests;
+
+    public SuggestionField(int columns, Function<String, List<Suggestion>> source) {
+        super(columns);
+        this.source = source;
+
+        list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        list.setFocusable(false);
+        list.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int index = list.locationToIndex(e.getPoint());
+                if (index >= 0) {
+                    select(suggestions.get(index));
+                }
+            }
+        });
+        popup.setFocusable(false);
+        popup.add(new JScrollPane(list));
+
+        getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                textChanged();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                textChanged();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                textChanged();
+            }
+        });
+        addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                if (!popup.isVisible()) {
+                    return;
+                }
+                int index = list.getSelectedIndex();
+                switch (e.getKeyCode()) {
+                    case KeyEvent.VK_DOWN:
+                        list.setSelectedIndex(Math.min(index + 1, listModel.size() - 1));
+                        e.consume();
+                        break;
+                    case KeyEvent.VK_UP:
+                        list.setSelectedIndex(Math.max(index - 1, 0));
+                        e.consume();
+                        break;
+                    case KeyEvent.VK_ENTER:
+                        if (index >= 0) {
+                            select(suggestions.get(index));
+                            e.consume();
+                        }
+                        break;
+                    case KeyEvent.VK_ESCAPE:
+                        popup.setVisible(false);
+                        e.consume();
+                        break;
+                    default:
+                        break;
+                }
+            }
+        });
+    }
+
+    /**
+     * Sets what to do when the user picks a suggestion.
+     */
+    public void setSelectionListener(Consumer<Suggestion> selectionListener) {
+        this.selectionListener = selectionListener;
+    }
+
+    /**
+     * Returns the suggestion the user picked, or null if the text was typed or edited since.
+     */
+    public Suggestion getSelectedSuggestion() {
+        return selectedSuggestion;
+    }
+
+    /**
+     * Shows the text of a suggestion as if the user had picked it, without notifying the listener.
+     */
+    public void setSelectedSuggestion(Suggestion suggestion) {
+        setTextQuietly(suggestion.getText());
+        selectedSuggestion = suggestion;
+    }
+
+    private void select(Suggestion suggestion) {
+        setSelectedSuggestion(suggestion);
+        popup.setVisible(false);
+        selectionListener.accept(suggestion);
+    }
+
+    private void setTextQuietly(String text) {
+        settingText = true;
+        try {
+            setText(text);
+        } finally {
+            settingText = false;
+        }
+    }
+
+    private void textChanged() {
+        if (settingText) {
+            return;
+        }
+        selectedSuggestion = null;
+        String text = getText();
+        int request = ++requests;
+        if (text.trim().isEmpty()) {
+            // the popup cannot be changed while the document is notifying its listeners
+            SwingUtilities.invokeLater(() -> showSuggestions(request, Collections.emptyList()));
+            return;
+        }
+        new SwingWorker<List<Suggestion>, Void>() {
+            @Override
+            protected List<Suggestion> doInBackground() {
+                return new ArrayList<>(source.apply(text));
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    showSuggestions(request, get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    log.warn("Could not complete " + text, e.getCause());
+                    showSuggestions(request, Collections.emptyList());
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Shows the suggestions asked by the given request, unless the text changed again since.
+     */
+    private void showSuggestions(int request, List<Suggestion> found) {
+        if (request != requests) {
+            return;
+        }
+        suggestions = found;
+        listModel.clear();
+        for (Suggestion suggestion : suggestions) {
+            listModel.addElement(suggestion.getText());
+        }
+        if (suggestions.isEmpty() || !isShowing()) {
+            popup.setVisible(false);
+            return;
+        }
+        list.setVisibleRowCount(Math.min(suggestions.size(), 10));
+        list.setSelectedIndex(0);
+        popup.pack();
+        popup.show(this, 0, getHeight());
+        requestFocusInWindow();
+    }
+}
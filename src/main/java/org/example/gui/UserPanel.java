@@ -1,13 +1,14 @@
 package org.example.gui;
 
+import org.example.metrics.ServiceMetrics;
 import org.example.model.User;
 import org.example.service.LibrarianService;
+import org.example.service.Page;
 import org.example.service.UserService;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
-import java.util.List;
 
 /**
  * Panel for displaying and managing user accounts.
@@ -17,20 +18,24 @@ import java.util.List;
  * users, interacting with {@link UserService} for user operations and
  * {@link LibrarianService} to handle related librarian data when needed.</p>
  *
- * <p>This panel loads all the user data into a table on initialization and after any
+ * <p>This panel loads the users into the table page by page on initialization and after any
  * add, edit, or delete action, allowing librarians to manage user information
  * through the GUI.</p>
  */
 public class UserPanel extends JPanel {
 
+    private static final int PAGE_SIZE = 100;
+
     private UserService userService;
     private JTable userTable;
     private LibrarianService librarianService;
     private DefaultTableModel tableModel;
+    private JButton loadMoreButton;
+    private String nextToken;
 
     public UserPanel() {
-        userService = new UserService();
-        librarianService = new LibrarianService();
+        userService = ServiceMetrics.create(UserService.class);
+        librarianService = ServiceMetrics.create(LibrarianService.class);
         setLayout(new BorderLayout());
 
 
@@ -44,9 +49,11 @@ public class UserPanel extends JPanel {
         JButton addButton = new JButton("Add User");
         JButton editButton = new JButton("Edit User");
         JButton deleteButton = new JButton("Delete User");
+        loadMoreButton = new JButton("Load More");
         buttonPanel.add(addButton);
         buttonPanel.add(editButton);
         buttonPanel.add(deleteButton);
+        buttonPanel.add(loadMoreButton);
 
         add(scrollPane, BorderLayout.CENTER);
         add(buttonPanel, BorderLayout.SOUTH);
@@ -57,12 +64,18 @@ public class UserPanel extends JPanel {
         addButton.addActionListener(e -> showAddUserDialog());
         editButton.addActionListener(e -> showEditUserDialog());
         deleteButton.addActionListener(e -> deleteSelectedUser());
+        loadMoreButton.addActionListener(e -> loadMoreData());
     }
 
     private void loadData() {
-        List<User> users = userService.getAllUsers();
         tableModel.setRowCount(0);
-        for (User user : users) {
+        nextToken = null;
+        loadMoreData();
+    }
+
+    private void loadMoreData() {
+        Page<User> page = userService.getUsersPage(nextToken, PAGE_SIZE);
+        for (User user : page.getItems()) {
             tableModel.addRow(new Object[]{
                     user.getId(),
                     user.getName(),
@@ -72,6 +85,8 @@ public class UserPanel extends JPanel {
                     user.getRole()
             });
         }
+        nextToken = page.getNextToken();
+        loadMoreButton.setEnabled(page.hasNext());
     }
 
 
@@ -1,11 +1,16 @@
 package org.example.gui;
 
+import org.example.metrics.ServiceMetrics;
 import org.example.model.Book;
+import org.example.search.Suggestion;
 import org.example.service.BookService;
+import org.example.service.Page;
+import org.example.service.SuggestionService;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.util.ArrayList;
 import java.util.List;
 
 
@@ -13,33 +18,99 @@ import java.util.List;
  * Panel for viewing all book titles in the library system.
  *
  * <p>This panel displays a table of all books available in the library,
- * including their ID, title, author, publisher, publication year, and Isbn.</p>
+ * including their ID, title, author, publisher, publication year, and Isbn, sorted by title.</p>
  *
- * <p>It retrieves the list of all books from {@link BookService} and populates
- * a JTable with this data, allowing the users to easily view all the titles.</p>
+ * <p>It retrieves the books page by page from {@link BookService} and populates
+ * a JTable with this data, allowing the users to easily view all the titles.
+ * The next page is appended when Load More is pressed.</p>
+ *
+ * <p>Typing words in the search field and pressing Search or Enter shows the best matches of
+ * {@link BookService#searchBooks(String, int)} instead, Clear goes back to the full listing. While
+ * typing, the field suggests authors and titles from {@link SuggestionService}, picking one searches
+ * for it.</p>
  */
 
 public class ViewAllTitlesPanel extends JPanel {
 
+    private static final int PAGE_SIZE = 100;
+    private static final int SEARCH_LIMIT = 100;
+    private static final int AUTHOR_SUGGESTIONS = 3;
+
     private BookService bookService;
+    private SuggestionService suggestionService;
+    private DefaultTableModel tableModel;
+    private JButton loadMoreButton;
+    private SuggestionField searchField;
+    private String nextToken;
 
     public ViewAllTitlesPanel() {
-        bookService = new BookService();
+        bookService = ServiceMetrics.create(BookService.class);
+        suggestionService = ServiceMetrics.create(SuggestionService.class);
+        suggestionService.prepare();
         setLayout(new BorderLayout());
 
         String[] columnNames = {"ID", "Title", "Author", "Publisher", "Year", "ISBN"};
-        DefaultTableModel tableModel = new DefaultTableModel(columnNames, 0);
+        tableModel = new DefaultTableModel(columnNames, 0);
         JTable allTitlesTable = new JTable(tableModel);
         JScrollPane scrollPane = new JScrollPane(allTitlesTable);
 
+        searchField = new SuggestionField(30, this::suggest);
+        searchField.addActionListener(e -> search());
+        searchField.setSelectionListener(suggestion -> search());
+        JButton searchButton = new JButton("Search");
+        searchButton.addActionListener(e -> search());
+        JButton clearButton = new JButton("Clear");
+        clearButton.addActionListener(e -> {
+            searchField.setText("");
+            search();
+        });
+        JPanel searchPanel = new JPanel();
+        searchPanel.add(new JLabel("Search:"));
+        searchPanel.add(searchField);
+        searchPanel.add(searchButton);
+        searchPanel.add(clearButton);
+
+        loadMoreButton = new JButton("Load More");
+        loadMoreButton.addActionListener(e -> populateTable());
+        JPanel buttonPanel = new JPanel();
+        buttonPanel.add(loadMoreButton);
 
-        populateTable(tableModel);
+        populateTable();
 
+        add(searchPanel, BorderLayout.NORTH);
         add(scrollPane, BorderLayout.CENTER);
+        add(buttonPanel, BorderLayout.SOUTH);
+    }
+
+    private void populateTable() {
+        Page<Book> page = bookService.getBooksPage("title", nextToken, PAGE_SIZE);
+        addRows(page.getItems());
+        nextToken = page.getNextToken();
+        loadMoreButton.setEnabled(page.hasNext());
+    }
+
+    private void search() {
+        tableModel.setRowCount(0);
+        nextToken = null;
+        String query = searchField.getText().trim();
+        if (query.isEmpty()) {
+            populateTable();
+            return;
+        }
+        addRows(bookService.searchBooks(query, SEARCH_LIMIT));
+        loadMoreButton.setEnabled(false);
+    }
+
+    /**
+     * Suggests a few authors first, as they match many books, then titles.
+     */
+    private List<Suggestion> suggest(String prefix) {
+        List<Suggestion> suggestions = new ArrayList<>(suggestionService.suggestAuthors(prefix, AUTHOR_SUGGESTIONS));
+        suggestions.addAll(suggestionService.suggestTitles(prefix, SuggestionService.DEFAULT_LIMIT - suggestions.size()));
+        return suggestions;
     }
 
-    private void populateTable(DefaultTableModel tableModel) {
-        List<Book> books = bookService.getAllBooks();
+    private void addRows(List<Book> books) {
         for (Book book : books) {
             Object[] rowData = {
                     book.getId(),
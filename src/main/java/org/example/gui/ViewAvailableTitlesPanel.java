@@ -1,54 +1,68 @@
 package org.example.gui;
 
-import org.example.model.Copy;
+import org.example.dto.TitleAvailabilityRow;
+import org.example.metrics.ServiceMetrics;
 import org.example.service.CopyService;
+import org.example.service.Page;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
-import java.util.List;
+import java.text.SimpleDateFormat;
 
 /**
- * Panel for viewing available book copies in the library system.
+ * Panel for viewing the availability of the titles in the library system.
  *
- * <p>This panel displays a table of available book copies, including details
- * such as ID, title, author, copy number, and status. It uses the {@link CopyService}
- * to retrieve all the copies that are currently available for borrowing, and then
- * populates a JTable with this data.</p>
+ * <p>This panel displays a table of titles with how many of their copies are available, for example
+ * "3 of 5", and when the first borrowed copy is due back. It uses the {@link CopyService} to read the
+ * maintained availability of the titles page by page, so showing a page costs the same however many
+ * copies the library holds.</p>
  *
  * <p>Users can use this panel in order to see which titles are available in the library
- * along with their copy numbers and status.</p>
+ * and when a title that is out will be back.</p>
  */
 public class ViewAvailableTitlesPanel extends JPanel {
 
+    private static final int PAGE_SIZE = 100;
+
     private CopyService copyService;
+    private DefaultTableModel tableModel;
+    private JButton loadMoreButton;
+    private String nextToken;
 
     public ViewAvailableTitlesPanel() {
-        copyService = new CopyService();
+        copyService = ServiceMetrics.create(CopyService.class);
         setLayout(new BorderLayout());
 
-        String[] columnNames = {"ID", "Title", "Author", "Copy Number", "Status"};
-        DefaultTableModel tableModel = new DefaultTableModel(columnNames, 0);
+        String[] columnNames = {"ID", "Title", "Author", "Available", "First Due"};
+        tableModel = new DefaultTableModel(columnNames, 0);
         JTable availableTitlesTable = new JTable(tableModel);
         JScrollPane scrollPane = new JScrollPane(availableTitlesTable);
 
+        JPanel buttonPanel = new JPanel();
+        loadMoreButton = new JButton("Load More");
+        buttonPanel.add(loadMoreButton);
+        loadMoreButton.addActionListener(e -> loadMoreData());
 
-        populateTable(tableModel);
+        loadMoreData();
 
         add(scrollPane, BorderLayout.CENTER);
+        add(buttonPanel, BorderLayout.SOUTH);
     }
 
-    private void populateTable(DefaultTableModel tableModel) {
-        List<Copy> copies = copyService.getAvailableCopies();
-        for (Copy copy : copies) {
-            Object[] rowData = {
-                    copy.getId(),
-                    copy.getBook().getTitle(),
-                    copy.getBook().getAuthor(),
-                    copy.getCopyNumber(),
-                    copy.getStatus()
-            };
-            tableModel.addRow(rowData);
+    private void loadMoreData() {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+        Page<TitleAvailabilityRow> page = copyService.getTitleAvailabilityPage(nextToken, PAGE_SIZE);
+        for (TitleAvailabilityRow row : page.getItems()) {
+            tableModel.addRow(new Object[]{
+                    row.getBookId(),
+                    row.getTitle(),
+                    row.getAuthor(),
+                    row.getAvailableCopies() + " of " + row.getTotalCopies(),
+                    row.getEarliestDueDate() != null ? dateFormat.format(row.getEarliestDueDate()) : ""
+            });
         }
+        nextToken = page.getNextToken();
+        loadMoreButton.setEnabled(page.hasNext());
     }
 }
@@ -0,0 +1,50 @@
+package org.example.metrics;
+
+import org.hibernate.BaseSessionEventListener;
+
+
+/**
+ * Follows the JDBC work of a session for the {@link ServiceMetrics} and the {@link SlowQueryLog}.
+ *
+ * <p>Hibernate creates one for every session when a persistence unit lists it in
+ * {@code hibernate.session.events.auto}. It counts the statements and transactions of the session for
+ * the service call in progress on its thread: the global {@link org.hibernate.stat.Statistics} of the
+ * factory cannot tell which of the concurrent calls prepared a statement, while the events of a session
+ * arrive on the thread that uses it. It also times the execution of every statement and batch for the
+ * slow query log. Outside of a call of an instrumented service and without a slow query log it only
+ * reads a thread local.</p>
+ */
+public class JdbcEventListener extends BaseSessionEventListener {
+
+    private long executionStart;
+
+    @Override
+    public void jdbcPrepareStatementStart() {
+        ServiceMetrics.statementPrepared();
+    }
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        executionStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        SlowQueryInspector.executed(executionStart);
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        executionStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        SlowQueryInspector.executed(executionStart);
+    }
+
+    @Override
+    public void transactionCompletion(boolean successful) {
+        ServiceMetrics.transactionCompleted(successful);
+    }
+}
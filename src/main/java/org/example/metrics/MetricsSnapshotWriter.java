@@ -0,0 +1,134 @@
+package org.example.metrics;
+
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Writes the {@link ServiceMetrics} of all methods to a file at a fixed interval and once more when the
+ * JVM exits.
+ *
+ * <p>The snapshot is written to a temporary file next to the target and then moved over it, so a reader
+ * never sees half a snapshot. The {@code json} format is an object with the time of the snapshot and an
+ * array of methods, the {@code text} format a table with a row per method. Latencies are in milliseconds.</p>
+ */
+public final class MetricsSnapshotWriter {
+
+    public static final long DEFAULT_INTERVAL_SECONDS = 60;
+
+    private static final Logger log = Logger.getLogger(MetricsSnapshotWriter.class);
+
+    private final Path file;
+    private final boolean json;
+    private final long intervalSeconds;
+    private final LongAdder failures = new LongAdder();
+    private ScheduledExecutorService scheduler;
+
+    public MetricsSnapshotWriter(Path file, String format, long intervalSeconds) {
+        if (!"json".equals(format) && !"text".equals(format)) {
+            throw new IllegalArgumentException("The metrics format is json or text, not " + format + ".");
+        }
+        if (intervalSeconds <= 0) {
+            throw new IllegalArgumentException("The metrics interval must be positive.");
+        }
+        this.file = file;
+        this.json = "json".equals(format);
+        this.intervalSeconds = intervalSeconds;
+    }
+
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "service-metrics-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::writeQuietly, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::writeQuietly, "service-metrics-shutdown"));
+    }
+
+    /**
+     * Writes the current snapshot now.
+     */
+    public void write() throws IOException {
+        String snapshot = json ? toJson(ServiceMetrics.getAll()) : toText(ServiceMetrics.getAll());
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temporary = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temporary, snapshot.getBytes(StandardCharsets.UTF_8));
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private void writeQuietly() {
+        try {
+            write();
+        } catch (IOException | RuntimeException e) {
+            // a failed snapshot must not stop the next ones
+            failures.increment();
+            log.warnf(e, "Could not write the metrics snapshot to %s", file);
+        }
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    static String toJson(List<ServiceMetrics.MethodMetrics> methods) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n  \"time\": \"").append(Instant.now()).append("\",\n  \"methods\": [");
+        for (int i = 0; i < methods.size(); i++) {
+            ServiceMetrics.MethodMetrics method = methods.get(i);
+            LatencyHistogram.Snapshot latency = method.getLatency();
+            LatencyHistogram.Snapshot lockWait = method.getLockWait();
+            json.append(i == 0 ? "\n" : ",\n").append(String.format(Locale.ROOT,
+                    "    {\"method\": \"%s\", \"calls\": %d, \"errors\": %d, \"commits\": %d, \"rollbacks\": %d, "
+                            + "\"statements\": %d, \"meanMs\": %.3f, \"p50Ms\": %.3f, \"p99Ms\": %.3f, \"p999Ms\": %.3f, "
+                            + "\"maxMs\": %.3f, \"lockWaits\": %d, \"lockWaitP99Ms\": %.3f, \"lockWaitMaxMs\": %.3f}",
+                    method.getName(), latency.getCount(), method.getErrors(), method.getCommits(), method.getRollbacks(),
+                    method.getStatements(), latency.getMeanNanos() / 1e6, latency.getPercentileMillis(50),
+                    latency.getPercentileMillis(99), latency.getPercentileMillis(99.9), latency.getMaxNanos() / 1e6,
+                    method.getLockWaits(), lockWait.getPercentileMillis(99), lockWait.getMaxNanos() / 1e6));
+        }
+        return json.append(methods.isEmpty() ? "]\n}\n" : "\n  ]\n}\n").toString();
+    }
+
+    static String toText(List<ServiceMetrics.MethodMetrics> methods) {
+        StringBuilder text = new StringBuilder("Service metrics at ").append(Instant.now()).append('\n');
+        String row = "%-42s %9s %7s %8s %9s %8s %9s %9s %9s %10s %10s%n";
+        text.append(String.format(Locale.ROOT, row, "Method", "calls", "errors", "commits", "rollbacks",
+                "sql/call", "p50 ms", "p99 ms", "max ms", "lock waits", "lock p99"));
+        for (ServiceMetrics.MethodMetrics method : methods) {
+            LatencyHistogram.Snapshot latency = method.getLatency();
+            long calls = latency.getCount();
+            text.append(String.format(Locale.ROOT, row, method.getName(), calls, method.getErrors(),
+                    method.getCommits(), method.getRollbacks(),
+                    format(calls == 0 ? 0 : method.getStatements() / (double) calls),
+                    format(latency.getPercentileMillis(50)), format(latency.getPercentileMillis(99)),
+                    format(latency.getMaxNanos() / 1e6), method.getLockWaits(),
+                    format(method.getLockWait().getPercentileMillis(99))));
+        }
+        return text.toString();
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+}
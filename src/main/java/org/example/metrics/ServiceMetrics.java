@@ -0,0 +1,322 @@
+package org.example.metrics;
+
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.dynamic.loading.ClassLoadingStrategy;
+import net.bytebuddy.implementation.MethodDelegation;
+import net.bytebuddy.implementation.bind.annotation.Origin;
+import net.bytebuddy.implementation.bind.annotation.RuntimeType;
+import net.bytebuddy.implementation.bind.annotation.SuperCall;
+import org.example.persistence.PersistenceUnitRegistry;
+
+import javax.persistence.EntityManagerFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static net.bytebuddy.matcher.ElementMatchers.isDeclaredBy;
+import static net.bytebuddy.matcher.ElementMatchers.isPublic;
+import static net.bytebuddy.matcher.ElementMatchers.isStatic;
+import static net.bytebuddy.matcher.ElementMatchers.not;
+
+
+/**
+ * Measures the calls of the public methods of the services: how many there were and how many threw,
+ * how long they took, how many transactions they committed and rolled back, how many SQL statements
+ * they prepared and how long they waited for the lock of a copy.
+ *
+ * <p>A persistence unit enables it with {@code library.metrics.enabled=true}. The services are then
+ * created with {@link #create(Class, EntityManagerFactory)}, which then returns a subclass of the service
+ * that times every public method declared by it. The statements and transactions are counted by
+ * {@link JdbcEventListener}, which the persistence unit registers as
+ * {@code hibernate.session.events.auto}, and the lock waits by the services themselves with
+ * {@link #lockWaited(long)}. When a method calls another public method of a service, the whole work
+ * is counted for the method that was called first.</p>
+ *
+ * <p>With {@code library.metrics.file} set, a {@link MetricsSnapshotWriter} writes the metrics of all
+ * methods to that file every {@code library.metrics.intervalSeconds} (default
+ * {@value MetricsSnapshotWriter#DEFAULT_INTERVAL_SECONDS}), as {@code json} or {@code text} depending on
+ * {@code library.metrics.format}. Counters are cumulative since the start of the process or the last
+ * {@link #reset()}.</p>
+ */
+public final class ServiceMetrics {
+
+    public static final String ENABLED_PROPERTY = "library.metrics.enabled";
+    public static final String FILE_PROPERTY = "library.metrics.file";
+    public static final String FORMAT_PROPERTY = "library.metrics.format";
+    public static final String INTERVAL_PROPERTY = "library.metrics.intervalSeconds";
+
+    private static final Map<String, MethodMetrics> methods = new ConcurrentHashMap<>();
+    private static final Map<Method, MethodMetrics> byMethod = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, Class<?>> instrumentedTypes = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Call> currentCall = ThreadLocal.withInitial(Call::new);
+    private static volatile MetricsSnapshotWriter writer;
+
+    private ServiceMetrics() {
+    }
+
+    /**
+     * Creates a service of the given type for the "libraryPU" persistence unit, instrumented if the
+     * unit enables the metrics.
+     */
+    public static <T> T create(Class<T> serviceType) {
+        return create(serviceType, PersistenceUnitRegistry.getEntityManagerFactory("libraryPU"));
+    }
+
+    /**
+     * Creates a service of the given type with its {@code (EntityManagerFactory)} constructor, instrumented
+     * if the factory enables the metrics and a plain instance otherwise.
+     */
+    public static <T> T create(Class<T> serviceType, EntityManagerFactory emf) {
+        Map<String, Object> properties = emf.getProperties();
+        if (!Boolean.parseBoolean(String.valueOf(properties.getOrDefault(ENABLED_PROPERTY, "false")))) {
+            return newInstance(serviceType, emf);
+        }
+        if (properties.get(FILE_PROPERTY) != null) {
+            startWriter(properties);
+        }
+        return instrument(serviceType, emf);
+    }
+
+    /**
+     * Creates a service of the given type that measures every public method declared by the type,
+     * whatever the properties of the factory.
+     */
+    public static <T> T instrument(Class<T> serviceType, EntityManagerFactory emf) {
+        return newInstance(instrumentedType(serviceType), emf);
+    }
+
+    private static <T> T newInstance(Class<T> type, EntityManagerFactory emf) {
+        try {
+            return type.getConstructor(EntityManagerFactory.class).newInstance(emf);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Could not create " + type.getName() + ".", e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException(type.getName() + " has no public (EntityManagerFactory) constructor.", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Class<? extends T> instrumentedType(Class<T> serviceType) {
+        return (Class<? extends T>) instrumentedTypes.computeIfAbsent(serviceType, type -> new ByteBuddy()
+                .subclass(type)
+                .method(isPublic().and(not(isStatic())).and(isDeclaredBy(type)))
+                .intercept(MethodDelegation.to(Interceptor.class))
+                .make()
+                .load(type.getClassLoader(), ClassLoadingStrategy.Default.WRAPPER)
+                .getLoaded());
+    }
+
+    private static synchronized void startWriter(Map<String, Object> properties) {
+        if (writer != null) {
+            return;
+        }
+        Object interval = properties.get(INTERVAL_PROPERTY);
+        writer = new MetricsSnapshotWriter(
+                Paths.get(String.valueOf(properties.get(FILE_PROPERTY))),
+                String.valueOf(properties.getOrDefault(FORMAT_PROPERTY, "json")),
+                interval == null ? MetricsSnapshotWriter.DEFAULT_INTERVAL_SECONDS : Long.parseLong(String.valueOf(interval)));
+        writer.start();
+    }
+
+    /**
+     * Returns the metrics of the method with the given name, such as {@code BorrowingService.createBorrowing},
+     * or null if it was never called. Overloads of a method share their metrics.
+     */
+    public static MethodMetrics forMethod(String name) {
+        return methods.get(name);
+    }
+
+    /**
+     * Returns the metrics of every method that was called, sorted by name.
+     */
+    public static List<MethodMetrics> getAll() {
+        List<MethodMetrics> all = new ArrayList<>(methods.values());
+        all.sort(Comparator.comparing(MethodMetrics::getName));
+        return all;
+    }
+
+    public static void reset() {
+        methods.clear();
+        byMethod.clear();
+    }
+
+    /**
+     * Counts the time since {@code startNanos} as time the current call waited for a row lock. Does
+     * nothing outside of an instrumented call.
+     */
+    public static void lockWaited(long startNanos) {
+        Call call = currentCall.get();
+        if (call.active) {
+            call.lockWaits++;
+            call.lockWaitNanos += System.nanoTime() - startNanos;
+        }
+    }
+
+    static void statementPrepared() {
+        Call call = currentCall.get();
+        if (call.active) {
+            call.statements++;
+        }
+    }
+
+    static void transactionCompleted(boolean committed) {
+        Call call = currentCall.get();
+        if (call.active) {
+            if (committed) {
+                call.commits++;
+            } else {
+                call.rollbacks++;
+            }
+        }
+    }
+
+    private static MethodMetrics metricsOf(Method method) {
+        MethodMetrics metrics = byMethod.get(method);
+        if (metrics == null) {
+            String name = method.getDeclaringClass().getSimpleName() + "." + method.getName();
+            metrics = methods.computeIfAbsent(name, MethodMetrics::new);
+            byMethod.put(method, metrics);
+        }
+        return metrics;
+    }
+
+    /**
+     * Times the methods of the instrumented services, public so that the generated subclasses can call it.
+     */
+    public static final class Interceptor {
+
+        private Interceptor() {
+        }
+
+        @RuntimeType
+        public static Object intercept(@Origin Method method, @SuperCall Callable<?> body) throws Exception {
+            Call call = currentCall.get();
+            if (call.active) {
+                return body.call();
+            }
+            MethodMetrics metrics = metricsOf(method);
+            call.begin();
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                Object result = body.call();
+                failed = false;
+                return result;
+            } finally {
+                metrics.record(System.nanoTime() - start, failed, call);
+                call.active = false;
+            }
+        }
+    }
+
+    /**
+     * What the current thread did in the call it is in, reused for every call of the thread.
+     */
+    private static final class Call {
+        boolean active;
+        long statements;
+        long commits;
+        long rollbacks;
+        long lockWaits;
+        long lockWaitNanos;
+
+        void begin() {
+            active = true;
+            statements = 0;
+            commits = 0;
+            rollbacks = 0;
+            lockWaits = 0;
+            lockWaitNanos = 0;
+        }
+    }
+
+    /**
+     * The metrics of one method of a service.
+     */
+    public static final class MethodMetrics {
+        private final String name;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LatencyHistogram lockWait = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder commits = new LongAdder();
+        private final LongAdder rollbacks = new LongAdder();
+        private final LongAdder statements = new LongAdder();
+        private final LongAdder lockWaits = new LongAdder();
+
+        private MethodMetrics(String name) {
+            this.name = name;
+        }
+
+        private void record(long nanos, boolean failed, Call call) {
+            latency.record(nanos);
+            if (failed) {
+                errors.increment();
+            }
+            commits.add(call.commits);
+            rollbacks.add(call.rollbacks);
+            statements.add(call.statements);
+            if (call.lockWaits > 0) {
+                lockWaits.add(call.lockWaits);
+                lockWait.record(call.lockWaitNanos);
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the latencies of all calls, including those that threw.
+         */
+        public LatencyHistogram.Snapshot getLatency() {
+            return latency.snapshot();
+        }
+
+        /**
+         * Returns the time each call that took row locks waited for them in total.
+         */
+        public LatencyHistogram.Snapshot getLockWait() {
+            return lockWait.snapshot();
+        }
+
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        public long getCommits() {
+            return commits.sum();
+        }
+
+        public long getRollbacks() {
+            return rollbacks.sum();
+        }
+
+        public long getStatements() {
+            return statements.sum();
+        }
+
+        public long getLockWaits() {
+            return lockWaits.sum();
+        }
+
+        @Override
+        public String toString() {
+            LatencyHistogram.Snapshot calls = getLatency();
+            return String.format(Locale.ROOT,
+                    "MethodMetrics{%s, calls=%d, errors=%d, p99=%.2fms, commits=%d, rollbacks=%d, statements=%d, lockWaits=%d}",
+                    name, calls.getCount(), getErrors(), calls.getPercentileMillis(99), getCommits(), getRollbacks(),
+                    getStatements(), getLockWaits());
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package org.example.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+
+/**
+ * Remembers the SQL of the statement a thread prepares last, so that {@link JdbcEventListener} can hand
+ * it to the {@link SlowQueryLog} with the time it took to execute.
+ *
+ * <p>A persistence unit registers it as {@code hibernate.session_factory.statement_inspector}. Hibernate
+ * creates one per factory and {@link SlowQueryLogIntegrator} attaches the log of the factory to it when
+ * the log is enabled. The statement is never changed.</p>
+ */
+public class SlowQueryInspector implements StatementInspector {
+
+    private static final ThreadLocal<Statement> lastPrepared = ThreadLocal.withInitial(Statement::new);
+
+    private volatile SlowQueryLog log;
+
+    @Override
+    public String inspect(String sql) {
+        // also cleared without a log, so that a statement is never charged to the log of another factory
+        Statement statement = lastPrepared.get();
+        statement.log = log;
+        statement.sql = sql;
+        return sql;
+    }
+
+    void attach(SlowQueryLog log) {
+        this.log = log;
+    }
+
+    static void executed(long startNanos) {
+        Statement statement = lastPrepared.get();
+        if (statement.log != null) {
+            statement.log.executed(statement.sql, System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * The statement a thread prepared last and the log it belongs to.
+     */
+    private static final class Statement {
+        SlowQueryLog log;
+        String sql;
+    }
+}
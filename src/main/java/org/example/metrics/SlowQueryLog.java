@@ -0,0 +1,383 @@
+package org.example.metrics;
+
+import org.hibernate.SessionFactory;
+import org.jboss.logging.Logger;
+
+import javax.persistence.EntityManagerFactory;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+
+/**
+ * Logs the SQL statements of a persistence unit that run longer than a threshold, without slowing
+ * down the thread that ran them.
+ *
+ * <p>A persistence unit enables it with {@code library.queryLog.enabled=true}, with {@link SlowQueryInspector}
+ * and {@link JdbcEventListener} registered, see {@link SlowQueryLogIntegrator}. Every statement that takes at least
+ * {@code library.queryLog.thresholdMillis} (default {@value #DEFAULT_THRESHOLD_MILLIS}) to execute is
+ * handed to a queue of {@code library.queryLog.queueCapacity} entries. A statement that finds the queue
+ * full is dropped and counted, so the request thread never waits for the log.</p>
+ *
+ * <p>A writer thread reduces each statement to its fingerprint: comments, string and number literals and
+ * lists of parameters are replaced, so the statement never shows a value and all executions of the same
+ * query share one fingerprint. Values bound to parameters are never read at all. The writer aggregates
+ * the count and time of every fingerprint and appends a line for a sample of
+ * {@code library.queryLog.sampleRate} (default all) of the slow statements to {@code library.queryLog.file}. Every
+ * {@code library.queryLog.summaryIntervalSeconds} and when the log is closed it appends the
+ * {@value #SUMMARY_SIZE} fingerprints that took the most time in total.</p>
+ */
+public class SlowQueryLog {
+
+    public static final String ENABLED_PROPERTY = "library.queryLog.enabled";
+    public static final String FILE_PROPERTY = "library.queryLog.file";
+    public static final String THRESHOLD_PROPERTY = "library.queryLog.thresholdMillis";
+    public static final String SAMPLE_RATE_PROPERTY = "library.queryLog.sampleRate";
+    public static final String QUEUE_CAPACITY_PROPERTY = "library.queryLog.queueCapacity";
+    public static final String SUMMARY_INTERVAL_PROPERTY = "library.queryLog.summaryIntervalSeconds";
+    public static final String DEFAULT_FILE = "./data/slow-queries.log";
+    public static final long DEFAULT_THRESHOLD_MILLIS = 100;
+    public static final double DEFAULT_SAMPLE_RATE = 1.0;
+    public static final int DEFAULT_CAPACITY = 10_000;
+    public static final long DEFAULT_SUMMARY_INTERVAL_SECONDS = 300;
+    static final int SUMMARY_SIZE = 20;
+
+    private static final int MAX_CACHED_FINGERPRINTS = 10_000;
+    private static final Pattern BLOCK_COMMENT = Pattern.compile("/\\*.*?\\*/", Pattern.DOTALL);
+    private static final Pattern LINE_COMMENT = Pattern.compile("--[^\\n]*");
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w.])-?\\d+(?:\\.\\d+)?(?:e[+-]?\\d+)?(?![\\w.])");
+    private static final Pattern PARAMETER_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static final Logger logger = Logger.getLogger(SlowQueryLog.class);
+    private static final Map<SessionFactory, SlowQueryLog> logs = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final Path file;
+    private final long thresholdNanos;
+    private final double sampleRate;
+    private final long summaryIntervalNanos;
+    private final BlockingQueue<Entry> queue;
+    private final Thread writerThread;
+    private final Object writtenLock = new Object();
+    private volatile boolean closed;
+
+    private final Map<String, Fingerprint> fingerprints = new ConcurrentHashMap<>();
+    private final Map<String, String> fingerprintCache = new HashMap<>();
+    private final AtomicLong accepted = new AtomicLong();
+    private volatile long written;
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder sampled = new LongAdder();
+    private final LongAdder writeFailures = new LongAdder();
+
+    public SlowQueryLog(String name, Path file, long thresholdMillis, double sampleRate, int capacity,
+                        long summaryIntervalSeconds) {
+        if (thresholdMillis < 0 || sampleRate < 0 || sampleRate > 1 || capacity <= 0 || summaryIntervalSeconds <= 0) {
+            throw new IllegalArgumentException("Invalid slow query log settings: threshold " + thresholdMillis
+                    + " ms, sample rate " + sampleRate + ", capacity " + capacity
+                    + ", summary interval " + summaryIntervalSeconds + " s.");
+        }
+        this.name = name;
+        this.file = file;
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.sampleRate = sampleRate;
+        this.summaryIntervalNanos = TimeUnit.SECONDS.toNanos(summaryIntervalSeconds);
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writerThread = new Thread(this::write, "slow-query-log-" + name);
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Returns the log of the given factory, or null if the factory does not enable it.
+     */
+    public static SlowQueryLog forFactory(EntityManagerFactory emf) {
+        return logs.get(emf.unwrap(SessionFactory.class));
+    }
+
+    static void register(SessionFactory sessionFactory, SlowQueryLog log) {
+        logs.put(sessionFactory, log);
+    }
+
+    static SlowQueryLog unregister(SessionFactory sessionFactory) {
+        return logs.remove(sessionFactory);
+    }
+
+    /**
+     * Hands a statement that took the given time to the writer if it is slow. Never waits: when the
+     * queue is full the statement is dropped.
+     */
+    public void executed(String sql, long nanos) {
+        if (nanos < thresholdNanos || closed) {
+            return;
+        }
+        if (queue.offer(new Entry(sql, nanos, System.currentTimeMillis(), Thread.currentThread().getName()))) {
+            accepted.incrementAndGet();
+        } else {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Waits until every statement accepted before this call has been aggregated and written.
+     */
+    public void awaitWritten() {
+        long target = accepted.get();
+        synchronized (writtenLock) {
+            while (written < target && !closed) {
+                try {
+                    writtenLock.wait(1000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the slow query log.", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the statements still queued and a last summary, and stops the writer thread.
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        writerThread.interrupt();
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (writtenLock) {
+            writtenLock.notifyAll();
+        }
+    }
+
+    private void write() {
+        long nextSummary = System.nanoTime() + summaryIntervalNanos;
+        List<Entry> batch = new ArrayList<>();
+        while (!(closed && queue.isEmpty())) {
+            try {
+                Entry first = queue.poll(Math.max(0, nextSummary - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (first != null) {
+                    batch.add(first);
+                }
+            } catch (InterruptedException e) {
+                // interrupted by close, write whatever is left before stopping
+            }
+            queue.drainTo(batch);
+            boolean summary = System.nanoTime() - nextSummary >= 0;
+            if (batch.isEmpty() && !summary) {
+                continue;
+            }
+            appendToFile(batch, summary && !fingerprints.isEmpty());
+            if (summary) {
+                nextSummary = System.nanoTime() + summaryIntervalNanos;
+            }
+            synchronized (writtenLock) {
+                written += batch.size();
+                writtenLock.notifyAll();
+            }
+            batch.clear();
+        }
+        if (!fingerprints.isEmpty()) {
+            appendToFile(batch, true);
+        }
+    }
+
+    private void appendToFile(List<Entry> batch, boolean summary) {
+        StringBuilder lines = new StringBuilder();
+        for (Entry entry : batch) {
+            String normalized = fingerprintCache.get(entry.sql);
+            if (normalized == null) {
+                if (fingerprintCache.size() >= MAX_CACHED_FINGERPRINTS) {
+                    fingerprintCache.clear();
+                }
+                normalized = fingerprint(entry.sql);
+                fingerprintCache.put(entry.sql, normalized);
+            }
+            fingerprints.computeIfAbsent(normalized, Fingerprint::new).add(entry.nanos);
+            if (sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate) {
+                sampled.increment();
+                lines.append(String.format(Locale.ROOT, "%s slow %.1f ms fingerprint=%s thread=%s sql=%s%n",
+                        Instant.ofEpochMilli(entry.timeMillis), entry.nanos / 1e6, id(normalized), entry.thread,
+                        normalized));
+            }
+        }
+        if (summary) {
+            List<Fingerprint> top = getFingerprints();
+            String now = Instant.now().toString();
+            for (Fingerprint fingerprint : top.subList(0, Math.min(SUMMARY_SIZE, top.size()))) {
+                lines.append(String.format(Locale.ROOT,
+                        "%s summary fingerprint=%s count=%d totalMs=%.1f meanMs=%.1f maxMs=%.1f sql=%s%n",
+                        now, fingerprint.getId(), fingerprint.getCount(), fingerprint.getTotalMillis(),
+                        fingerprint.getTotalMillis() / fingerprint.getCount(), fingerprint.getMaxMillis(),
+                        fingerprint.getSql()));
+            }
+        }
+        if (lines.length() == 0) {
+            return;
+        }
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                writer.append(lines);
+            }
+        } catch (IOException | RuntimeException e) {
+            // the statements stay aggregated, only their lines are lost
+            writeFailures.increment();
+            logger.warnf(e, "Could not append to the slow query log of %s at %s", name, file);
+        }
+    }
+
+    /**
+     * Reduces a statement to the text shared by all its executions: without comments, with every
+     * literal and every list of parameters replaced by a placeholder, in lower case and on one line.
+     */
+    public static String fingerprint(String sql) {
+        String text = BLOCK_COMMENT.matcher(sql).replaceAll(" ");
+        text = LINE_COMMENT.matcher(text).replaceAll(" ");
+        text = STRING_LITERAL.matcher(text).replaceAll("?");
+        text = NUMBER_LITERAL.matcher(text).replaceAll("?");
+        text = PARAMETER_LIST.matcher(text).replaceAll("(?+)");
+        return WHITESPACE.matcher(text).replaceAll(" ").trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns a short id of a fingerprint, the FNV-1a hash of its text.
+     */
+    static String id(String fingerprint) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < fingerprint.length(); i++) {
+            hash ^= fingerprint.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return String.format("%016x", hash);
+    }
+
+    /**
+     * Returns the fingerprints of the slow statements so far, the one that took the most time first.
+     */
+    public List<Fingerprint> getFingerprints() {
+        List<Fingerprint> all = new ArrayList<>(fingerprints.values());
+        all.sort(Comparator.comparingLong(Fingerprint::getTotalNanos).reversed());
+        return all;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public long getThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(thresholdNanos);
+    }
+
+    public long getAccepted() {
+        return accepted.get();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public long getSampled() {
+        return sampled.sum();
+    }
+
+    public long getWriteFailures() {
+        return writeFailures.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "SlowQueryLog{" + name + ", threshold=" + getThresholdMillis() + "ms, accepted=" + getAccepted()
+                + ", dropped=" + getDropped() + ", sampled=" + getSampled() + ", fingerprints="
+                + fingerprints.size() + ", writeFailures=" + getWriteFailures() + "}";
+    }
+
+    private static final class Entry {
+        final String sql;
+        final long nanos;
+        final long timeMillis;
+        final String thread;
+
+        Entry(String sql, long nanos, long timeMillis, String thread) {
+            this.sql = sql;
+            this.nanos = nanos;
+            this.timeMillis = timeMillis;
+            this.thread = thread;
+        }
+    }
+
+    /**
+     * The slow executions of the statements that share a fingerprint.
+     */
+    public static final class Fingerprint {
+        private final String sql;
+        private final String id;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private Fingerprint(String sql) {
+            this.sql = sql;
+            this.id = SlowQueryLog.id(sql);
+        }
+
+        private void add(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        public double getTotalMillis() {
+            return totalNanos.sum() / 1e6;
+        }
+
+        public double getMaxMillis() {
+            return maxNanos.get() / 1e6;
+        }
+    }
+}
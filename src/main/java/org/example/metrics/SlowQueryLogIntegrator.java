@@ -0,0 +1,78 @@
+package org.example.metrics;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+import java.nio.file.Paths;
+import java.util.Map;
+
+
+/**
+ * Gives every session factory that sets {@code library.queryLog.enabled=true} a {@link SlowQueryLog}.
+ *
+ * <p>Hibernate finds the integrator through {@code META-INF/services/org.hibernate.integrator.spi.Integrator}
+ * when a factory is built and calls {@link #disintegrate} when it is closed, which writes the last summary
+ * and closes the log. The factory must also register {@link SlowQueryInspector} and {@link JdbcEventListener},
+ * which see the statements.</p>
+ */
+public class SlowQueryLogIntegrator implements Integrator {
+
+    @Override
+    public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory,
+                          SessionFactoryServiceRegistry serviceRegistry) {
+        Map<String, Object> properties = sessionFactory.getProperties();
+        if (!Boolean.parseBoolean(String.valueOf(properties.getOrDefault(SlowQueryLog.ENABLED_PROPERTY, "false")).trim())) {
+            return;
+        }
+        StatementInspector inspector = sessionFactory.getSessionFactoryOptions().getStatementInspector();
+        if (!(inspector instanceof SlowQueryInspector)) {
+            throw new IllegalStateException(SlowQueryLog.ENABLED_PROPERTY + " needs "
+                    + "hibernate.session_factory.statement_inspector=" + SlowQueryInspector.class.getName() + ".");
+        }
+        SlowQueryLog log = new SlowQueryLog(
+                String.valueOf(properties.getOrDefault("hibernate.ejb.persistenceUnitName", sessionFactory.getName())),
+                Paths.get(String.valueOf(properties.getOrDefault(SlowQueryLog.FILE_PROPERTY, SlowQueryLog.DEFAULT_FILE))),
+                longProperty(properties, SlowQueryLog.THRESHOLD_PROPERTY, SlowQueryLog.DEFAULT_THRESHOLD_MILLIS),
+                doubleProperty(properties, SlowQueryLog.SAMPLE_RATE_PROPERTY, SlowQueryLog.DEFAULT_SAMPLE_RATE),
+                (int) longProperty(properties, SlowQueryLog.QUEUE_CAPACITY_PROPERTY, SlowQueryLog.DEFAULT_CAPACITY),
+                longProperty(properties, SlowQueryLog.SUMMARY_INTERVAL_PROPERTY, SlowQueryLog.DEFAULT_SUMMARY_INTERVAL_SECONDS));
+        SlowQueryLog.register(sessionFactory, log);
+        ((SlowQueryInspector) inspector).attach(log);
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        SlowQueryLog log = SlowQueryLog.unregister(sessionFactory);
+        if (log != null) {
+            ((SlowQueryInspector) sessionFactory.getSessionFactoryOptions().getStatementInspector()).attach(null);
+            log.close();
+        }
+    }
+
+    private static long longProperty(Map<String, Object> properties, String name, long defaultValue) {
+        Object value = properties.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.toString().trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for " + name + ": " + value, e);
+        }
+    }
+
+    private static double doubleProperty(Map<String, Object> properties, String name, double defaultValue) {
+        Object value = properties.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value.toString().trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for " + name + ": " + value, e);
+        }
+    }
+}
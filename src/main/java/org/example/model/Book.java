@@ -1,6 +1,13 @@
 package org.example.model;
 
+import org.example.persistence.PooledSequenceGenerator;
 import org.example.validation.ValidIsbn;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 
@@ -10,16 +17,23 @@ import javax.persistence.*;
  * Each Book has a title, author, publisher information, publication year, and a unique ISBN.
  * The ISBN field is validated using a custom {@link @ValidIsbn} annotation to ensure correct format.
  *
- * <p>This entity is mapped to the "Books" table in the database.</p>
+ * <p>This entity is mapped to the "Books" table in the database. Books are kept in the "book" region
+ * of the second-level cache, and the id of the book of every ISBN looked up in the "book-isbn"
+ * region, see {@code application.conf}.</p>
  */
 
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "book")
+@NaturalIdCache(region = "book-isbn")
 @Table(name = "Books")
 public class Book {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "books_seq")
+    @GenericGenerator(name = "books_seq", strategy = PooledSequenceGenerator.STRATEGY,
+            parameters = @Parameter(name = "sequence_name", value = "books_seq"))
     private int id;
 
     @Column(nullable = false)
@@ -32,6 +46,7 @@ public class Book {
 
     private int publicationYear;
 
+    @NaturalId(mutable = true)
     @Column(unique = true, nullable = false)
     @ValidIsbn
     private String isbn;
@@ -0,0 +1,80 @@
+package org.example.model;
+
+import org.hibernate.annotations.ColumnDefault;
+
+import javax.persistence.*;
+import java.util.Date;
+
+
+/**
+ * Availability summary of one book: how many copies it has, how many of them are available and when
+ * the oldest of its active borrowings was made.
+ *
+ * <p>This entity is mapped to the "BookAvailability" table, one row per book keyed by the id of the
+ * book. The row is created with the book and maintained by the copy and borrowing services with
+ * atomic updates in the same transaction as every change of a copy or a borrowing, so reading the
+ * availability of a page of titles never has to count copies. Like the active borrowings counter of
+ * {@link User}, the columns are never written from the fields of the entity.</p>
+ *
+ * <p>Borrowings record no due date, a loan is due {@value #LOAN_PERIOD_DAYS} days after it was made.</p>
+ */
+@Entity
+@Table(name = "BookAvailability")
+public class BookAvailability {
+
+    public static final int LOAN_PERIOD_DAYS = 14;
+
+    @Id
+    private int bookId;
+
+    @ColumnDefault("0")
+    @Column(nullable = false, updatable = false)
+    private int totalCopies;
+
+    @ColumnDefault("0")
+    @Column(nullable = false, updatable = false)
+    private int availableCopies;
+
+    @Temporal(TemporalType.DATE)
+    @Column(updatable = false)
+    private Date earliestBorrowDate;
+
+    public BookAvailability() {
+    }
+
+    public BookAvailability(int bookId, int totalCopies, int availableCopies, Date earliestBorrowDate) {
+        this.bookId = bookId;
+        this.totalCopies = totalCopies;
+        this.availableCopies = availableCopies;
+        this.earliestBorrowDate = earliestBorrowDate;
+    }
+
+    public int getBookId() {
+        return bookId;
+    }
+
+    public int getTotalCopies() {
+        return totalCopies;
+    }
+
+    public int getAvailableCopies() {
+        return availableCopies;
+    }
+
+    /**
+     * Borrow date of the oldest active borrowing of a copy of the book, null when none is borrowed.
+     */
+    public Date getEarliestBorrowDate() {
+        return earliestBorrowDate;
+    }
+
+    @Override
+    public String toString() {
+        return "BookAvailability{" +
+                "bookId=" + bookId +
+                ", totalCopies=" + totalCopies +
+                ", availableCopies=" + availableCopies +
+                ", earliestBorrowDate=" + earliestBorrowDate +
+                '}';
+    }
+}
@@ -1,5 +1,9 @@
 package org.example.model;
 
+import org.example.persistence.PooledSequenceGenerator;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
 import javax.persistence.*;
 import java.util.Date;
 
@@ -13,20 +17,42 @@ import java.util.Date;
  * <p>This entity is mapped to the Borrowings table in the database.
  * It enforces that each borrowing must have an associated user and copy,
  * and a borrow date must always be provided.</p>
+ *
+ * <p>The user and the copy are loaded lazily. Service methods choose what they need through the
+ * named entity graphs: {@value #LIST_GRAPH} for tables, {@value #DETAIL_GRAPH} for a single
+ * borrowing shown in full, {@value #CHECKOUT_GRAPH} for returning a copy.</p>
+ *
+ * <p>The (userId, returnDate) index serves the borrowings and the history of a user, and the count of
+ * their active borrowings that fills the counter kept on {@link User}.</p>
  */
 @Entity
-@Table(name = "Borrowings")
+@Table(name = "Borrowings", indexes = @Index(name = "idx_borrowings_user_return", columnList = "userId, returnDate"))
+@NamedEntityGraph(name = Borrowing.LIST_GRAPH, attributeNodes = {
+        @NamedAttributeNode("user"),
+        @NamedAttributeNode("copy")
+})
+@NamedEntityGraph(name = Borrowing.DETAIL_GRAPH, attributeNodes = {
+        @NamedAttributeNode("user"),
+        @NamedAttributeNode(value = "copy", subgraph = "copy")
+}, subgraphs = @NamedSubgraph(name = "copy", attributeNodes = @NamedAttributeNode("book")))
+@NamedEntityGraph(name = Borrowing.CHECKOUT_GRAPH, attributeNodes = @NamedAttributeNode("copy"))
 public class Borrowing {
 
+    public static final String LIST_GRAPH = "Borrowing.list";
+    public static final String DETAIL_GRAPH = "Borrowing.detail";
+    public static final String CHECKOUT_GRAPH = "Borrowing.checkout";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "borrowings_seq")
+    @GenericGenerator(name = "borrowings_seq", strategy = PooledSequenceGenerator.STRATEGY,
+            parameters = @Parameter(name = "sequence_name", value = "borrowings_seq"))
     public int id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "userId", nullable = false)
     private User user;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "copyId", nullable = false)
     private Copy copy;
 
@@ -93,8 +119,8 @@ public class Borrowing {
     public String toString() {
         return "Borrowing{" +
                 "id=" + id +
-                ", user=" + user +
-                ", copy=" + copy +
+                ", userId=" + (user != null ? user.getId() : null) +
+                ", copyId=" + (copy != null ? copy.getId() : null) +
                 ", borrowDate=" + borrowDate +
                 ", returnDate=" + returnDate +
                 '}';
@@ -1,39 +1,62 @@
 package org.example.model;
 
+import org.example.persistence.PooledSequenceGenerator;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
 import javax.persistence.*;
 
 
 /**
  * Copy represents a physical copy of a book in the library system.
  * Each Copy is associated with a specific Book and has a unique copy number
- * and status Available or Borrowed
+ * and a {@link CopyStatus}.
  *
- * <p>This entity is mapped to the "Copies" table in the database.</p>
+ * <p>This entity is mapped to the "Copies" table in the database. The book is loaded lazily,
+ * service methods that show it fetch it through the {@value #WITH_BOOK_GRAPH} entity graph.
+ * The status is stored as its one character code and indexed for the lookup of available copies;
+ * {@link #setStatus(CopyStatus)} only accepts the changes {@link CopyStatus#canChangeTo(CopyStatus)}
+ * allows. The version is checked and bumped on every write, so a checkout that claims the copy
+ * optimistically detects a concurrent change. Ids are taken from the {@code copies_seq} sequence a
+ * block at a time by the {@link PooledSequenceGenerator}, so the copies of a new book are inserted in
+ * JDBC batches.</p>
  */
 @Entity
-@Table(name = "Copies")
+@Table(name = "Copies", indexes = @Index(name = "idx_copies_status", columnList = "status"))
+@NamedEntityGraph(name = Copy.WITH_BOOK_GRAPH, attributeNodes = @NamedAttributeNode("book"))
 public class Copy {
 
+    public static final String WITH_BOOK_GRAPH = "Copy.withBook";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "copies_seq")
+    @GenericGenerator(name = "copies_seq", strategy = PooledSequenceGenerator.STRATEGY,
+            parameters = @Parameter(name = "sequence_name", value = "copies_seq"))
     private int id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "bookId", nullable = false)
     private Book book;
 
     @Column(nullable = false)
     private int copyNumber;
 
+    @Convert(converter = CopyStatusConverter.class)
+    @Column(nullable = false, length = 1)
+    private CopyStatus status;
+
+    @Version
+    @ColumnDefault("0")
     @Column(nullable = false)
-    private String status;
+    private long version;
 
 
     public Copy() {
     }
 
 
-    public Copy(Book book, int copyNumber, String status) {
+    public Copy(Book book, int copyNumber, CopyStatus status) {
         this.book = book;
         this.copyNumber = copyNumber;
         this.status = status;
@@ -64,19 +87,29 @@ public class Copy {
         this.copyNumber = copyNumber;
     }
 
-    public String getStatus() {
+    public CopyStatus getStatus() {
         return status;
     }
 
-    public void setStatus(String status) {
+    /**
+     * @throws IllegalStateException if the copy cannot change from its current status to the given one
+     */
+    public void setStatus(CopyStatus status) {
+        if (this.status != null && !this.status.canChangeTo(status)) {
+            throw new IllegalStateException("A copy cannot change from " + this.status + " to " + status + ".");
+        }
         this.status = status;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
     @Override
     public String toString() {
         return "Copy{" +
                 "id=" + id +
-                ", book=" + book +
+                ", bookId=" + (book != null ? book.getId() : null) +
                 ", copyNumber=" + copyNumber +
                 ", status='" + status + '\'' +
                 '}';
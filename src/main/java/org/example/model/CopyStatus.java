@@ -0,0 +1,84 @@
+package org.example.model;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+
+/**
+ * Status of a {@link Copy}, stored as a one character code in the "Copies" table.
+ *
+ * <p>A copy only moves between the statuses that make sense for a physical copy, for example a
+ * borrowed copy is returned or lost but never reserved, see {@link #canChangeTo(CopyStatus)}.
+ * Keeping the same status is always allowed.</p>
+ */
+public enum CopyStatus {
+    AVAILABLE('A', "Available"),
+    BORROWED('B', "Borrowed"),
+    RESERVED('R', "Reserved"),
+    LOST('L', "Lost"),
+    IN_REPAIR('I', "In Repair");
+
+    static {
+        AVAILABLE.next = EnumSet.of(BORROWED, RESERVED, LOST, IN_REPAIR);
+        BORROWED.next = EnumSet.of(AVAILABLE, LOST, IN_REPAIR);
+        RESERVED.next = EnumSet.of(AVAILABLE, BORROWED, LOST);
+        LOST.next = EnumSet.of(AVAILABLE, IN_REPAIR);
+        IN_REPAIR.next = EnumSet.of(AVAILABLE, LOST);
+    }
+
+    private final char code;
+    private final String displayName;
+    private Set<CopyStatus> next;
+
+    CopyStatus(char code, String displayName) {
+        this.code = code;
+        this.displayName = displayName;
+    }
+
+    /**
+     * Code of the status in the database.
+     */
+    public char getCode() {
+        return code;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public boolean canChangeTo(CopyStatus status) {
+        return status == this || next.contains(status);
+    }
+
+    public static CopyStatus fromCode(char code) {
+        for (CopyStatus status : values()) {
+            if (status.code == code) {
+                return status;
+            }
+        }
+        throw new IllegalArgumentException("Unknown copy status code '" + code + "'");
+    }
+
+    /**
+     * Parses a status by its name or display name, ignoring case, spaces and underscores, so
+     * "Available", "in repair" and "IN_REPAIR" are all accepted.
+     *
+     * @throws IllegalArgumentException if the name is not a status
+     */
+    public static CopyStatus fromName(String name) {
+        if (name != null) {
+            String normalized = name.replace(" ", "").replace("_", "");
+            for (CopyStatus status : values()) {
+                if (status.name().replace("_", "").equalsIgnoreCase(normalized)) {
+                    return status;
+                }
+            }
+        }
+        throw new IllegalArgumentException("Unknown copy status '" + name + "'");
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
@@ -0,0 +1,22 @@
+package org.example.model;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+
+/**
+ * Stores a {@link CopyStatus} as its one character code.
+ */
+@Converter
+public class CopyStatusConverter implements AttributeConverter<CopyStatus, Character> {
+
+    @Override
+    public Character convertToDatabaseColumn(CopyStatus status) {
+        return status == null ? null : status.getCode();
+    }
+
+    @Override
+    public CopyStatus convertToEntityAttribute(Character code) {
+        return code == null ? null : CopyStatus.fromCode(code);
+    }
+}
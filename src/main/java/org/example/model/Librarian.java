@@ -1,5 +1,11 @@
 package org.example.model;
 
+import org.example.persistence.PooledSequenceGenerator;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
 import javax.persistence.*;
 import java.util.Date;
 
@@ -11,18 +17,27 @@ import java.util.Date;
  *
  * <p>This entity is mapped to the Librarians table in the database.
  * It enforces a one-to-one relationship with a User, meaning each librarian
- * corresponds to a single user account.</p>
+ * corresponds to a single user account. The user is loaded lazily, service methods
+ * fetch it through the {@value #WITH_USER_GRAPH} entity graph. Librarians are cached in the
+ * "librarian" region of the second-level cache, the user is not.</p>
  */
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "librarian")
 @Table(name = "Librarians")
+@NamedEntityGraph(name = Librarian.WITH_USER_GRAPH, attributeNodes = @NamedAttributeNode("user"))
 public class Librarian {
 
+    public static final String WITH_USER_GRAPH = "Librarian.withUser";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "librarians_seq")
+    @GenericGenerator(name = "librarians_seq", strategy = PooledSequenceGenerator.STRATEGY,
+            parameters = @Parameter(name = "sequence_name", value = "librarians_seq"))
     private int id;
 
-    @OneToOne
+    @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "userId", nullable = false, unique = true)
     private User user;
 
@@ -80,7 +95,7 @@ public class Librarian {
     public String toString() {
         return "Librarian{" +
                 "id=" + id +
-                ", user=" + user +
+                ", userId=" + (user != null ? user.getId() : null) +
                 ", employmentDate=" + employmentDate +
                 ", position='" + position + '\'' +
                 '}';
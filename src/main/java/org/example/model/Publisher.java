@@ -1,19 +1,30 @@
 package org.example.model;
 
+import org.example.persistence.PooledSequenceGenerator;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
 import javax.persistence.*;
 
 
 /**
  * Represents a publisher in the library management system.
  * A Publisher has a unique name along with optional address and phone number information.
- * This entity is mapped to the "Publishers" table in the database.
+ * This entity is mapped to the "Publishers" table in the database and cached in the "publisher"
+ * region of the second-level cache.
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "publisher")
 @Table(name = "Publishers")
 public class Publisher {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "publishers_seq")
+    @GenericGenerator(name = "publishers_seq", strategy = PooledSequenceGenerator.STRATEGY,
+            parameters = @Parameter(name = "sequence_name", value = "publishers_seq"))
     private int id;
 
     @Column(nullable = false, unique = true)
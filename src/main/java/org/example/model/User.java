@@ -1,6 +1,10 @@
 package org.example.model;
 
+import org.example.persistence.PooledSequenceGenerator;
 import org.example.validation.ValidEmail;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 
@@ -11,15 +15,22 @@ import javax.persistence.*;
  * The email field is validated using the {@link ValidEmail} annotation to ensure proper format.
  *
  * <p>This entity is mapped to the "Users" table in the database.
- * It enforces unique, non-null email addresses and non-null values for name, password, and role.</p>
+ * It enforces unique, non-null email addresses and non-null values for name, password, and role.
+ * The name is indexed for the lookups by name.</p>
+ *
+ * <p>{@code activeBorrowings} counts the borrowings of the user that are not returned yet. It is
+ * maintained by the borrowing service with atomic updates while it holds a lock on the user row, and is
+ * never written from the fields of the entity, so saving a user cannot overwrite it.</p>
  */
 
 @Entity
-@Table(name = "Users")
+@Table(name = "Users", indexes = @Index(name = "idx_users_name", columnList = "name"))
 public class User {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "users_seq")
+    @GenericGenerator(name = "users_seq", strategy = PooledSequenceGenerator.STRATEGY,
+            parameters = @Parameter(name = "sequence_name", value = "users_seq"))
     private int id;
 
     @Column(nullable = false)
@@ -38,6 +49,10 @@ public class User {
     @Column(nullable = false)
     private String role; // Add this field
 
+    @ColumnDefault("0")
+    @Column(nullable = false, insertable = false, updatable = false)
+    private int activeBorrowings;
+
     public User() {
     }
 
@@ -105,4 +120,8 @@ public class User {
     public void setRole(String role) {
         this.role = role;
     }
+
+    public int getActiveBorrowings() {
+        return activeBorrowings;
+    }
 }
@@ -0,0 +1,137 @@
+package org.example.persistence;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.hibernate.cache.jcache.internal.JCacheRegionFactory;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import javax.cache.CacheManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * Reads the statistics of the regions of the second-level cache of a persistence unit.
+ *
+ * <p>The regions are the Caffeine caches created by {@link LocalCacheRegionFactory}: one per cached
+ * entity ({@code book}, {@code publisher}, {@code librarian}), one for the results of cacheable queries
+ * and one for the timestamps that tell when a query result became stale. For every region it reports
+ * how many lookups were answered from the cache, how many had to go to the database, how many entries
+ * were evicted by the size bound or expired, and how many entries the region holds.</p>
+ */
+public final class CacheMetrics {
+
+    private CacheMetrics() {
+    }
+
+    /**
+     * Returns the statistics of every region of the given factory, sorted by region name. The list is
+     * empty when the persistence unit does not use {@link LocalCacheRegionFactory}.
+     */
+    public static List<RegionMetrics> forFactory(EntityManagerFactory emf) {
+        CacheManager cacheManager = cacheManager(emf);
+        if (cacheManager == null) {
+            return Collections.emptyList();
+        }
+        List<RegionMetrics> regions = new ArrayList<>();
+        for (String name : cacheManager.getCacheNames()) {
+            RegionMetrics metrics = read(cacheManager, name);
+            if (metrics != null) {
+                regions.add(metrics);
+            }
+        }
+        regions.sort((a, b) -> a.getRegionName().compareTo(b.getRegionName()));
+        return regions;
+    }
+
+    /**
+     * Returns the statistics of one region of the given factory, or null if there is no such region.
+     */
+    public static RegionMetrics forRegion(EntityManagerFactory emf, String regionName) {
+        CacheManager cacheManager = cacheManager(emf);
+        return cacheManager == null ? null : read(cacheManager, regionName);
+    }
+
+    private static CacheManager cacheManager(EntityManagerFactory emf) {
+        RegionFactory regionFactory = emf.unwrap(SessionFactoryImplementor.class).getCache().getRegionFactory();
+        if (!(regionFactory instanceof JCacheRegionFactory)) {
+            return null;
+        }
+        return ((JCacheRegionFactory) regionFactory).getCacheManager();
+    }
+
+    private static RegionMetrics read(CacheManager cacheManager, String regionName) {
+        javax.cache.Cache<Object, Object> region = cacheManager.getCache(regionName);
+        if (region == null) {
+            return null;
+        }
+        Cache<?, ?> cache = region.unwrap(Cache.class);
+        return new RegionMetrics(regionName, cache.stats(), cache.estimatedSize());
+    }
+
+    /**
+     * Statistics of a single region at the time they were read. Counters are cumulative since the
+     * persistence unit was started.
+     */
+    public static final class RegionMetrics {
+        private final String regionName;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long size;
+
+        private RegionMetrics(String regionName, CacheStats stats, long size) {
+            this.regionName = regionName;
+            this.hits = stats.hitCount();
+            this.misses = stats.missCount();
+            this.evictions = stats.evictionCount();
+            this.size = size;
+        }
+
+        public String getRegionName() {
+            return regionName;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public double getHitRatio() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : hits / (double) lookups;
+        }
+
+        /**
+         * Number of entries removed because the region was full or they expired.
+         */
+        public long getEvictions() {
+            return evictions;
+        }
+
+        /**
+         * Approximate number of entries in the region.
+         */
+        public long getSize() {
+            return size;
+        }
+
+        @Override
+        public String toString() {
+            return "RegionMetrics{" +
+                    "region='" + regionName + '\'' +
+                    ", hits=" + hits +
+                    ", misses=" + misses +
+                    ", hitRatio=" + String.format("%.3f", getHitRatio()) +
+                    ", evictions=" + evictions +
+                    ", size=" + size +
+                    '}';
+        }
+    }
+}
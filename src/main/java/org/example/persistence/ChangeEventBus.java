@@ -0,0 +1,304 @@
+package org.example.persistence;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.jboss.logging.Logger;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Delivers the committed changes of a factory to the structures derived from the database, such as
+ * the search and completion indexes, so they follow every write instead of being rebuilt.
+ *
+ * <p>Every factory gets a bus from {@link ChangeEventIntegrator}, whose listeners publish each
+ * insert, update and delete once its transaction has committed. Bulk updates bypass those listeners,
+ * the services that run them publish the change with {@link #publishAfterCommit}. Changes wait in a
+ * bounded queue and a single delivery thread hands them to the subscribers in batches of up to
+ * {@code library.events.batchSize} changes (default {@value #DEFAULT_BATCH_SIZE}), in the order they
+ * were published. A change is published after its transaction committed, so the changes of two
+ * transactions that commit at the same time may be published in the opposite order: a subscriber that
+ * keeps the latest state of a row reads the row again rather than trusting the state of the last
+ * change. A subscriber that throws is told so through {@link ChangeSubscriber#onFailure}, since it
+ * missed the changes of that batch.</p>
+ *
+ * <p>When the subscribers fall behind and the queue of {@code library.events.queueCapacity} changes
+ * (default {@value #DEFAULT_CAPACITY}) is full, committing threads wait for room rather than dropping
+ * changes. How often and how long they waited is counted together with the other metrics of the
+ * bus. Readers that must see their own writes call {@link #awaitDelivery()} first.</p>
+ */
+public class ChangeEventBus {
+
+    public static final String QUEUE_CAPACITY_PROPERTY = "library.events.queueCapacity";
+    public static final String BATCH_SIZE_PROPERTY = "library.events.batchSize";
+    public static final int DEFAULT_CAPACITY = 10_000;
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    private static final Logger log = Logger.getLogger(ChangeEventBus.class);
+
+    private static final Map<SessionFactory, ChangeEventBus> buses = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final int capacity;
+    private final int batchSize;
+    private final BlockingQueue<EntityChange> queue;
+    private final List<ChangeSubscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final Thread deliveryThread;
+    private final Object publishLock = new Object();
+    private final Object deliveryLock = new Object();
+    private volatile boolean closed;
+
+    private long published;
+    private volatile long delivered;
+    private final LongAdder batches = new LongAdder();
+    private final AtomicLong maxBatchSize = new AtomicLong();
+    private final AtomicLong maxQueueDepth = new AtomicLong();
+    private final LongAdder producerWaits = new LongAdder();
+    private final LongAdder producerWaitNanos = new LongAdder();
+    private final LongAdder subscriberFailures = new LongAdder();
+
+    public ChangeEventBus(String name, int capacity, int batchSize) {
+        if (capacity <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("Queue capacity and batch size must be positive.");
+        }
+        this.name = name;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.deliveryThread = new Thread(this::deliver, "change-events-" + name);
+        deliveryThread.setDaemon(true);
+        deliveryThread.start();
+    }
+
+    /**
+     * Returns the bus of the given factory.
+     *
+     * @throws IllegalStateException if the factory was built without {@link ChangeEventIntegrator}
+     */
+    public static ChangeEventBus forFactory(EntityManagerFactory emf) {
+        ChangeEventBus bus = buses.get(emf.unwrap(SessionFactory.class));
+        if (bus == null) {
+            throw new IllegalStateException("No change event bus is registered for this factory.");
+        }
+        return bus;
+    }
+
+    static void register(SessionFactory sessionFactory, ChangeEventBus bus) {
+        buses.put(sessionFactory, bus);
+    }
+
+    static ChangeEventBus unregister(SessionFactory sessionFactory) {
+        return buses.remove(sessionFactory);
+    }
+
+    public void subscribe(ChangeSubscriber subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    public void unsubscribe(ChangeSubscriber subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    /**
+     * Queues a committed change, waiting for room while the queue is full.
+     */
+    public void publish(EntityChange change) {
+        synchronized (publishLock) {
+            if (closed) {
+                return;
+            }
+            change.sequence = ++published;
+            if (!queue.offer(change)) {
+                producerWaits.increment();
+                long start = System.nanoTime();
+                try {
+                    queue.put(change);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting to publish a change.", e);
+                } finally {
+                    producerWaitNanos.add(System.nanoTime() - start);
+                }
+            }
+            maxQueueDepth.accumulateAndGet(queue.size(), Math::max);
+        }
+    }
+
+    /**
+     * Publishes the change once the current transaction of the entity manager has committed, and
+     * drops it if the transaction rolls back. Used by the services for bulk updates.
+     */
+    public static void publishAfterCommit(EntityManager em, EntityChange change) {
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        ChangeEventBus bus = forFactory(session.getFactory());
+        session.getActionQueue().registerProcess((success, s) -> {
+            if (success) {
+                bus.publish(change);
+            }
+        });
+    }
+
+    /**
+     * Waits until every change published before this call has been delivered to the subscribers.
+     * Returns at once when called from the delivery thread itself.
+     */
+    public void awaitDelivery() {
+        if (Thread.currentThread() == deliveryThread) {
+            return;
+        }
+        long target;
+        synchronized (publishLock) {
+            target = published;
+        }
+        synchronized (deliveryLock) {
+            while (delivered < target && !closed) {
+                try {
+                    deliveryLock.wait(1000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for change delivery.", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Delivers the changes still queued and stops the delivery thread.
+     */
+    public void close() {
+        synchronized (publishLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        deliveryThread.interrupt();
+        try {
+            deliveryThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (deliveryLock) {
+            deliveryLock.notifyAll();
+        }
+    }
+
+    private void deliver() {
+        List<EntityChange> batch = new ArrayList<>(batchSize);
+        while (!(closed && queue.isEmpty())) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                // interrupted by close, deliver whatever is left before stopping
+                continue;
+            }
+            queue.drainTo(batch, batchSize - batch.size());
+            List<EntityChange> changes = Collections.unmodifiableList(batch);
+            for (ChangeSubscriber subscriber : subscribers) {
+                try {
+                    subscriber.onChanges(changes);
+                } catch (RuntimeException e) {
+                    subscriberFailures.increment();
+                    log.errorf(e, "A subscriber of the change events of %s failed on %d changes", name, changes.size());
+                    failed(subscriber, e);
+                }
+            }
+            batches.increment();
+            maxBatchSize.accumulateAndGet(batch.size(), Math::max);
+            synchronized (deliveryLock) {
+                delivered = batch.get(batch.size() - 1).sequence;
+                deliveryLock.notifyAll();
+            }
+            batch.clear();
+        }
+    }
+
+    private void failed(ChangeSubscriber subscriber, RuntimeException failure) {
+        try {
+            subscriber.onFailure(failure);
+        } catch (RuntimeException e) {
+            log.errorf(e, "A subscriber of the change events of %s failed to handle its failure", name);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public long getPublished() {
+        synchronized (publishLock) {
+            return published;
+        }
+    }
+
+    public long getDelivered() {
+        return delivered;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    public long getMaxBatchSize() {
+        return maxBatchSize.get();
+    }
+
+    /**
+     * Number of times a committing thread found the queue full and had to wait.
+     */
+    public long getProducerWaits() {
+        return producerWaits.sum();
+    }
+
+    public double getProducerWaitMillis() {
+        return producerWaitNanos.sum() / 1_000_000.0;
+    }
+
+    public long getSubscriberFailures() {
+        return subscriberFailures.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeEventBus{" +
+                "name='" + name + '\'' +
+                ", published=" + getPublished() +
+                ", delivered=" + delivered +
+                ", queueDepth=" + getQueueDepth() + "/" + capacity +
+                ", maxQueueDepth=" + getMaxQueueDepth() +
+                ", batches=" + getBatches() +
+                ", maxBatchSize=" + getMaxBatchSize() +
+                ", producerWaits=" + getProducerWaits() +
+                String.format(", producerWaitMs=%.1f", getProducerWaitMillis()) +
+                ", subscriberFailures=" + getSubscriberFailures() +
+                '}';
+    }
+}
@@ -0,0 +1,150 @@
+package org.example.persistence;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.type.EntityType;
+import org.hibernate.type.Type;
+
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * Gives every session factory a {@link ChangeEventBus} and registers the post commit listeners
+ * that publish to it.
+ *
+ * <p>Hibernate finds the integrator through {@code META-INF/services/org.hibernate.integrator.spi.Integrator}
+ * when a factory is built and calls {@link #disintegrate} when it is closed, which closes the bus.
+ * The post commit listeners run after a transaction has committed, once per inserted, updated or
+ * deleted entity, so rolled back changes are never published.</p>
+ */
+public class ChangeEventIntegrator implements Integrator {
+
+    @Override
+    public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory,
+                          SessionFactoryServiceRegistry serviceRegistry) {
+        Map<String, Object> properties = sessionFactory.getProperties();
+        ChangeEventBus bus = new ChangeEventBus(
+                String.valueOf(properties.getOrDefault("hibernate.ejb.persistenceUnitName", sessionFactory.getName())),
+                intProperty(properties, ChangeEventBus.QUEUE_CAPACITY_PROPERTY, ChangeEventBus.DEFAULT_CAPACITY),
+                intProperty(properties, ChangeEventBus.BATCH_SIZE_PROPERTY, ChangeEventBus.DEFAULT_BATCH_SIZE));
+        ChangeEventBus.register(sessionFactory, bus);
+
+        Listener listener = new Listener(bus);
+        EventListenerRegistry listeners = serviceRegistry.getService(EventListenerRegistry.class);
+        listeners.appendListeners(EventType.POST_COMMIT_INSERT, listener);
+        listeners.appendListeners(EventType.POST_COMMIT_UPDATE, listener);
+        listeners.appendListeners(EventType.POST_COMMIT_DELETE, listener);
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        ChangeEventBus bus = ChangeEventBus.unregister(sessionFactory);
+        if (bus != null) {
+            bus.close();
+        }
+    }
+
+    private static int intProperty(Map<String, Object> properties, String name, int defaultValue) {
+        Object value = properties.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.toString().trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for " + name + ": " + value, e);
+        }
+    }
+
+    private static final class Listener implements PostCommitInsertEventListener, PostCommitUpdateEventListener,
+            PostCommitDeleteEventListener {
+
+        private final ChangeEventBus bus;
+
+        private Listener(ChangeEventBus bus) {
+            this.bus = bus;
+        }
+
+        @Override
+        public void onPostInsert(PostInsertEvent event) {
+            EntityPersister persister = event.getPersister();
+            bus.publish(new EntityChange(EntityChange.Type.INSERT, persister.getMappedClass(), event.getId(),
+                    state(persister, event.getState(), event.getSession()), null));
+        }
+
+        @Override
+        public void onPostUpdate(PostUpdateEvent event) {
+            EntityPersister persister = event.getPersister();
+            bus.publish(new EntityChange(EntityChange.Type.UPDATE, persister.getMappedClass(), event.getId(),
+                    state(persister, event.getState(), event.getSession()),
+                    state(persister, event.getOldState(), event.getSession())));
+        }
+
+        @Override
+        public void onPostDelete(PostDeleteEvent event) {
+            EntityPersister persister = event.getPersister();
+            bus.publish(new EntityChange(EntityChange.Type.DELETE, persister.getMappedClass(), event.getId(),
+                    null, state(persister, event.getDeletedState(), event.getSession())));
+        }
+
+        @Override
+        public void onPostInsertCommitFailed(PostInsertEvent event) {
+        }
+
+        @Override
+        public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+        }
+
+        @Override
+        public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+        }
+
+        // deprecated, but still abstract in Hibernate 5.6
+        @Override
+        @SuppressWarnings("deprecation")
+        public boolean requiresPostCommitHanding(EntityPersister persister) {
+            return true;
+        }
+
+        /**
+         * Copies the property values by name, replacing associated entities by their ids.
+         */
+        private static Map<String, Object> state(EntityPersister persister, Object[] values, EventSource session) {
+            if (values == null) {
+                return null;
+            }
+            String[] names = persister.getPropertyNames();
+            Type[] types = persister.getPropertyTypes();
+            Map<String, Object> state = new HashMap<>();
+            for (int i = 0; i < names.length; i++) {
+                Object value = values[i];
+                if (value != null && types[i] instanceof EntityType) {
+                    value = idOf(value, ((EntityType) types[i]).getAssociatedEntityName(), session);
+                }
+                state.put(names[i], value);
+            }
+            return state;
+        }
+
+        private static Object idOf(Object entity, String entityName, EventSource session) {
+            if (entity instanceof HibernateProxy) {
+                return ((HibernateProxy) entity).getHibernateLazyInitializer().getIdentifier();
+            }
+            return session.getFactory().getMetamodel().entityPersister(entityName).getIdentifier(entity, session);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package org.example.persistence;
+
+import java.util.List;
+
+
+/**
+ * Receives the committed entity changes of a {@link ChangeEventBus}, in batches.
+ */
+@FunctionalInterface
+public interface ChangeSubscriber {
+
+    /**
+     * Called on the delivery thread of the bus with the next changes in the order they were
+     * published. It should be quick, the bus does not deliver the next batch until every subscriber
+     * has returned.
+     */
+    void onChanges(List<EntityChange> changes);
+
+    /**
+     * Called on the delivery thread when {@link #onChanges} threw. The changes of that batch are not
+     * delivered again, so a subscriber that derives a structure from them should rebuild it.
+     */
+    default void onFailure(RuntimeException failure) {
+    }
+}
@@ -0,0 +1,170 @@
+package org.example.persistence;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Collects the metrics of the HikariCP connection pools used by the persistence units.
+ *
+ * <p>A persistence unit enables it with the property
+ * {@code hibernate.hikari.metricsTrackerFactory=org.example.persistence.ConnectionPoolMetrics}, and the pool
+ * is registered under its {@code hibernate.hikari.poolName}. The metrics of a pool can then be read with
+ * {@link #forPool(String)}: the number of active, idle and pending connections, how long callers waited
+ * to get a connection, how long connections were held and how many requests timed out.</p>
+ */
+public class ConnectionPoolMetrics implements MetricsTrackerFactory {
+
+    private static final Map<String, PoolMetrics> pools = new ConcurrentHashMap<>();
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        PoolMetrics metrics = new PoolMetrics(poolName, poolStats);
+        pools.put(poolName, metrics);
+        return metrics;
+    }
+
+    /**
+     * Returns the metrics of the pool with the given name, or null if no such pool is open.
+     */
+    public static PoolMetrics forPool(String poolName) {
+        return pools.get(poolName);
+    }
+
+    public static Collection<PoolMetrics> getAll() {
+        return new ArrayList<>(pools.values());
+    }
+
+    /**
+     * Metrics of a single pool. Counters are cumulative since the pool was started.
+     */
+    public static final class PoolMetrics implements IMetricsTracker {
+        private final String poolName;
+        private final PoolStats poolStats;
+
+        private final LongAdder acquisitions = new LongAdder();
+        private final LongAdder acquireNanos = new LongAdder();
+        private final AtomicLong maxAcquireNanos = new AtomicLong();
+        private final LongAdder usages = new LongAdder();
+        private final LongAdder usageMillis = new LongAdder();
+        private final AtomicLong maxUsageMillis = new AtomicLong();
+        private final LongAdder timeouts = new LongAdder();
+        private final LongAdder connectionsCreated = new LongAdder();
+
+        private PoolMetrics(String poolName, PoolStats poolStats) {
+            this.poolName = poolName;
+            this.poolStats = poolStats;
+        }
+
+        @Override
+        public void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+            connectionsCreated.increment();
+        }
+
+        @Override
+        public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+            acquisitions.increment();
+            acquireNanos.add(elapsedAcquiredNanos);
+            maxAcquireNanos.accumulateAndGet(elapsedAcquiredNanos, Math::max);
+        }
+
+        @Override
+        public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+            usages.increment();
+            usageMillis.add(elapsedBorrowedMillis);
+            maxUsageMillis.accumulateAndGet(elapsedBorrowedMillis, Math::max);
+        }
+
+        @Override
+        public void recordConnectionTimeout() {
+            timeouts.increment();
+        }
+
+        @Override
+        public void close() {
+            pools.remove(poolName, this);
+        }
+
+        public String getPoolName() {
+            return poolName;
+        }
+
+        public int getActiveConnections() {
+            return poolStats.getActiveConnections();
+        }
+
+        public int getIdleConnections() {
+            return poolStats.getIdleConnections();
+        }
+
+        public int getTotalConnections() {
+            return poolStats.getTotalConnections();
+        }
+
+        public int getMaxConnections() {
+            return poolStats.getMaxConnections();
+        }
+
+        /**
+         * Number of threads waiting for a connection.
+         */
+        public int getPendingThreads() {
+            return poolStats.getPendingThreads();
+        }
+
+        public long getAcquisitions() {
+            return acquisitions.sum();
+        }
+
+        public double getAverageWaitMillis() {
+            long count = acquisitions.sum();
+            return count == 0 ? 0 : acquireNanos.sum() / (double) count / TimeUnit.MILLISECONDS.toNanos(1);
+        }
+
+        public double getMaxWaitMillis() {
+            return maxAcquireNanos.get() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        }
+
+        public double getAverageUsageMillis() {
+            long count = usages.sum();
+            return count == 0 ? 0 : usageMillis.sum() / (double) count;
+        }
+
+        public long getMaxUsageMillis() {
+            return maxUsageMillis.get();
+        }
+
+        public long getTimeouts() {
+            return timeouts.sum();
+        }
+
+        public long getConnectionsCreated() {
+            return connectionsCreated.sum();
+        }
+
+        @Override
+        public String toString() {
+            return "PoolMetrics{" +
+                    "pool='" + poolName + '\'' +
+                    ", active=" + getActiveConnections() +
+                    ", idle=" + getIdleConnections() +
+                    ", total=" + getTotalConnections() +
+                    ", pending=" + getPendingThreads() +
+                    ", acquisitions=" + getAcquisitions() +
+                    ", avgWaitMs=" + String.format("%.3f", getAverageWaitMillis()) +
+                    ", maxWaitMs=" + String.format("%.3f", getMaxWaitMillis()) +
+                    ", avgUsageMs=" + String.format("%.3f", getAverageUsageMillis()) +
+                    ", timeouts=" + getTimeouts() +
+                    '}';
+        }
+    }
+}
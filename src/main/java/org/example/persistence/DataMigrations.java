@@ -0,0 +1,109 @@
+package org.example.persistence;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * Data migrations applied to a persistence unit after Hibernate has updated its schema.
+ *
+ * <p>The schema tooling adds new tables and columns but never fills them, so a migration brings the
+ * existing rows in line with a new mapping, for example by computing the value of a new column. Every
+ * migration runs once per database: the ids of the migrations applied are recorded in the
+ * {@code SchemaMigrations} table, and each migration runs in its own transaction together with that
+ * record. {@link PersistenceUnitRegistry} applies them every time it builds a factory.</p>
+ */
+public final class DataMigrations {
+
+    private static final List<Migration> MIGRATIONS = Arrays.asList(
+            new Migration("001-user-active-borrowings",
+                    "UPDATE Users u SET activeBorrowings = " +
+                            "(SELECT COUNT(*) FROM Borrowings b WHERE b.userId = u.id AND b.returnDate IS NULL)"),
+            // counts available copies both by their name, in any case, and by their code, see 003
+            new Migration("002-book-availability",
+                    "DELETE FROM BookAvailability",
+                    availabilitySummaries("UPPER(TRIM(c.status)) IN ('A', 'AVAILABLE')")),
+            // statuses were free-form names before they became codes, a name that is not a status marks a
+            // copy to be looked at, which is what In Repair means
+            new Migration("003-copy-status-codes",
+                    "UPDATE Copies SET status = CASE UPPER(TRIM(status)) " +
+                            "WHEN 'AVAILABLE' THEN 'A' WHEN 'BORROWED' THEN 'B' WHEN 'RESERVED' THEN 'R' " +
+                            "WHEN 'LOST' THEN 'L' ELSE 'I' END " +
+                            "WHERE LENGTH(status) > 1",
+                    "ALTER TABLE Copies ALTER COLUMN status SET DATA TYPE CHAR(1)"),
+            // 002 used to count only the exact names, databases where it ran before that was fixed count
+            // copies stored as AVAILABLE or available as unavailable; all statuses are codes since 003
+            new Migration("004-book-availability-recount",
+                    "DELETE FROM BookAvailability",
+                    availabilitySummaries("c.status = 'A'")),
+            // ISBNs used to be stored as typed; an ISBN whose digits another book already has is a duplicate
+            // the importer did not recognize and stays as it is, to be merged by hand
+            new Migration("005-isbn-without-hyphens",
+                    "UPDATE Books b SET isbn = REPLACE(isbn, '-', '') " +
+                            "WHERE b.isbn LIKE '%-%' AND NOT EXISTS (SELECT 1 FROM Books o " +
+                            "WHERE o.id <> b.id AND REPLACE(o.isbn, '-', '') = REPLACE(b.isbn, '-', ''))")
+    );
+
+    private DataMigrations() {
+    }
+
+    /**
+     * Applies the migrations that were not applied yet to the database of the given factory.
+     */
+    public static void apply(EntityManagerFactory emf) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.createNativeQuery("CREATE TABLE IF NOT EXISTS SchemaMigrations " +
+                    "(id VARCHAR(100) PRIMARY KEY, appliedAt TIMESTAMP NOT NULL)").executeUpdate();
+            em.getTransaction().commit();
+
+            for (Migration migration : MIGRATIONS) {
+                em.getTransaction().begin();
+                Number applied = (Number) em.createNativeQuery("SELECT COUNT(*) FROM SchemaMigrations WHERE id = ?1")
+                        .setParameter(1, migration.id)
+                        .getSingleResult();
+                if (applied.intValue() == 0) {
+                    for (String statement : migration.statements) {
+                        em.createNativeQuery(statement).executeUpdate();
+                    }
+                    em.createNativeQuery("INSERT INTO SchemaMigrations (id, appliedAt) VALUES (?1, CURRENT_TIMESTAMP)")
+                            .setParameter(1, migration.id)
+                            .executeUpdate();
+                }
+                em.getTransaction().commit();
+            }
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            em.close();
+        }
+    }
+
+    /**
+     * Builds the statement that computes the summary of every book, counting the copies matching the given
+     * condition on {@code c.status} as available.
+     */
+    private static String availabilitySummaries(String availableCondition) {
+        return "INSERT INTO BookAvailability (bookId, totalCopies, availableCopies, earliestBorrowDate) " +
+                "SELECT bk.id, " +
+                "(SELECT COUNT(*) FROM Copies c WHERE c.bookId = bk.id), " +
+                "(SELECT COUNT(*) FROM Copies c WHERE c.bookId = bk.id AND " + availableCondition + "), " +
+                "(SELECT MIN(b.borrowDate) FROM Borrowings b JOIN Copies c ON c.id = b.copyId " +
+                "WHERE c.bookId = bk.id AND b.returnDate IS NULL) " +
+                "FROM Books bk";
+    }
+
+    private static final class Migration {
+        private final String id;
+        private final List<String> statements;
+
+        private Migration(String id, String... statements) {
+            this.id = id;
+            this.statements = Arrays.asList(statements);
+        }
+    }
+}
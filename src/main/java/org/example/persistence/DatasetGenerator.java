@@ -0,0 +1,601 @@
+package org.example.persistence;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+
+
+/**
+ * Fills an empty library database with a synthetic library whose shape resembles a real one, for
+ * tests and benchmarks that need more than a handful of rows.
+ *
+ * <p>The library is generated from a seed and a number of users. For the same seed and size every
+ * run writes the same rows, only the dates move with the day of the run since they are relative to
+ * it. Titles are popular following a Zipf distribution: a few titles have several copies, are out
+ * most of the time and make up a large part of the history, while most titles have a single copy
+ * that is rarely borrowed. Borrowers are skewed the same way, with a few heavy readers and many
+ * occasional ones. Every user has on average {@code borrowingsPerUser} returned borrowings spread
+ * over {@value #HISTORY_DAYS} days, and the copies on loan have an active borrowing each, with at
+ * most {@value #MAX_ACTIVE_BORROWINGS} per user. The active borrowings counters of the users and
+ * the {@code BookAvailability} summaries agree with the borrowings.</p>
+ *
+ * <p>The rows are written with JDBC batches of prepared statements, in transactions of
+ * {@value #ROWS_PER_TRANSACTION} rows, and the ids of every table are dense from 1. The borrowings
+ * of a user have consecutive ids, oldest first. The generator
+ * then aligns the {@link IdSequences}, updates the statistics of the tables and clears the
+ * second-level cache. Bulk writes do not publish changes on the {@link ChangeEventBus}, so the
+ * database should be generated before the services of the factory are used.</p>
+ */
+public class DatasetGenerator {
+
+    public static final int DEFAULT_BORROWINGS_PER_USER = 5;
+    static final int HISTORY_DAYS = 5 * 365;
+    static final int MAX_ACTIVE_BORROWINGS = 2;
+    private static final int BATCH_SIZE = 1000;
+    private static final int ROWS_PER_TRANSACTION = 50_000;
+    private static final int USERS_PER_PUBLISHER = 200;
+    private static final int USERS_PER_LIBRARIAN = 1000;
+    private static final int BOOKS_PER_AUTHOR = 20;
+    private static final String[] TABLES = {
+            "Borrowings", "BookAvailability", "Copies", "Books", "Librarians", "Users", "Publishers"};
+    private static final String[] SYLLABLES = {
+            "ka", "lo", "mi", "ne", "ru", "sa", "te", "vi", "do", "ba", "zo", "pe", "qui", "gra", "tho", "el",
+            "an", "mor", "lin", "da", "ver", "sha", "tor", "wen"};
+    private static final String[] PUBLISHER_SUFFIXES = {"Press", "Books", "House", "Publishing"};
+    private static final String[] POSITIONS = {"Clerk", "Cataloguer", "Archivist", "Head Librarian"};
+
+    private final long seed;
+    private final int users;
+    private final int borrowingsPerUser;
+    private final int publishers;
+    private final int librarians;
+    private final int books;
+    private final int authors;
+
+    /**
+     * Creates a generator of a library of the given number of users, with
+     * {@value #DEFAULT_BORROWINGS_PER_USER} borrowings per user on average.
+     */
+    public DatasetGenerator(long seed, int users) {
+        this(seed, users, DEFAULT_BORROWINGS_PER_USER);
+    }
+
+    /**
+     * Creates a generator of a library of the given number of users, with half as many titles, a
+     * publisher for every {@value #USERS_PER_PUBLISHER} users and a librarian for every
+     * {@value #USERS_PER_LIBRARIAN} users.
+     *
+     * @throws IllegalArgumentException if there are no users or the number of borrowings is negative
+     */
+    public DatasetGenerator(long seed, int users, int borrowingsPerUser) {
+        if (users < 1 || borrowingsPerUser < 0) {
+            throw new IllegalArgumentException("A library needs at least one user and no negative number of borrowings.");
+        }
+        this.seed = seed;
+        this.users = users;
+        this.borrowingsPerUser = borrowingsPerUser;
+        this.publishers = Math.max(1, users / USERS_PER_PUBLISHER);
+        this.librarians = Math.max(1, users / USERS_PER_LIBRARIAN);
+        this.books = Math.max(1, users / 2);
+        this.authors = Math.max(1, books / BOOKS_PER_AUTHOR);
+    }
+
+    /**
+     * Returns the email of a generated user, the password is {@link #password}.
+     */
+    public static String email(int userId) {
+        return "reader" + userId + "@example.org";
+    }
+
+    public static String password(int userId) {
+        return "secret" + userId;
+    }
+
+    /**
+     * Returns the ISBN-13 of a generated book, 978 followed by the id and a check digit.
+     */
+    public static String isbn(int bookId) {
+        String digits = String.format("978%09d", bookId);
+        int sum = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            sum += (digits.charAt(i) - '0') * (i % 2 == 0 ? 1 : 3);
+        }
+        return digits + (10 - sum % 10) % 10;
+    }
+
+    /**
+     * Writes the library into the empty database of the factory.
+     *
+     * @throws IllegalStateException if a table of the library already has rows
+     */
+    public Summary generate(EntityManagerFactory emf) {
+        long start = System.nanoTime();
+        for (String table : TABLES) {
+            if (count(emf, table) > 0) {
+                throw new IllegalStateException("The table " + table + " is not empty, the dataset needs an empty database.");
+            }
+        }
+        Random random = new Random(seed);
+        LocalDate today = LocalDate.now();
+        String[] words = words(2000, random);
+        String[] firstNames = capitalized(words(300, random));
+        String[] lastNames = capitalized(words(1000, random));
+
+        // rank k of a popularity order is the k-th most popular title or the k-th heaviest reader
+        int[] titleByRank = permutation(books, random);
+        int[] userByRank = permutation(users, random);
+        Zipf titlePopularity = new Zipf(books, 0.9);
+        Zipf readerActivity = new Zipf(users, 0.6);
+
+        int[] firstCopy = new int[books + 2];
+        byte[] copyStatus = planCopies(titleByRank, firstCopy, random);
+        int copies = firstCopy[books + 1] - 1;
+        ActiveBorrowings active = planActiveBorrowings(copyStatus, readerActivity, userByRank, random);
+
+        String[] publisherNames = new String[publishers];
+        for (int i = 0; i < publishers; i++) {
+            publisherNames[i] = capitalize(words[i % words.length]) + " "
+                    + PUBLISHER_SUFFIXES[(i / words.length) % PUBLISHER_SUFFIXES.length]
+                    + (i >= words.length * PUBLISHER_SUFFIXES.length ? " " + (i + 1) : "");
+        }
+        insert(emf, "INSERT INTO Publishers (id, name, address, phoneNumber) VALUES (?, ?, ?, ?)", publishers,
+                (statement, id) -> {
+                    statement.setString(2, publisherNames[id - 1]);
+                    statement.setString(3, address(words, random));
+                    statement.setString(4, phone(random));
+                });
+        insert(emf, "INSERT INTO Users (id, name, email, phoneNumber, address, password, role, activeBorrowings) "
+                        + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)", users,
+                (statement, id) -> {
+                    statement.setString(2, firstNames[random.nextInt(firstNames.length)] + " "
+                            + lastNames[random.nextInt(lastNames.length)]);
+                    statement.setString(3, email(id));
+                    statement.setString(4, phone(random));
+                    statement.setString(5, address(words, random));
+                    statement.setString(6, password(id));
+                    statement.setString(7, id <= librarians ? "LIBRARIAN" : "USER");
+                    statement.setInt(8, active.perUser[id]);
+                });
+        insert(emf, "INSERT INTO Librarians (id, userId, employmentDate, position) VALUES (?, ?, ?, ?)", librarians,
+                (statement, id) -> {
+                    statement.setInt(2, id);
+                    statement.setDate(3, Date.valueOf(today.minusDays(30 + random.nextInt(20 * 365))));
+                    statement.setString(4, POSITIONS[Math.min(POSITIONS.length - 1, random.nextInt(POSITIONS.length + 2))]);
+                });
+
+        String[] authorNames = new String[authors];
+        for (int i = 0; i < authors; i++) {
+            authorNames[i] = firstNames[random.nextInt(firstNames.length)] + " " + lastNames[random.nextInt(lastNames.length)];
+        }
+        Zipf prolificAuthors = new Zipf(authors, 0.8);
+        Zipf bigPublishers = new Zipf(publishers, 1.0);
+        Zipf commonWords = new Zipf(words.length, 1.0);
+        insert(emf, "INSERT INTO Books (id, title, author, publisher, publicationYear, isbn) VALUES (?, ?, ?, ?, ?, ?)", books,
+                (statement, id) -> {
+                    statement.setString(2, title(words, commonWords, random));
+                    statement.setString(3, authorNames[prolificAuthors.sample(random)]);
+                    statement.setString(4, publisherNames[bigPublishers.sample(random)]);
+                    // publication years decay exponentially into the past
+                    statement.setInt(5, today.getYear() - (int) Math.min(120, -Math.log(1 - random.nextDouble()) * 15));
+                    statement.setString(6, isbn(id));
+                });
+        int[] bookOfCopy = new int[copies + 1];
+        for (int book = 1; book <= books; book++) {
+            for (int copy = firstCopy[book]; copy < firstCopy[book + 1]; copy++) {
+                bookOfCopy[copy] = book;
+            }
+        }
+        insert(emf, "INSERT INTO Copies (id, bookId, copyNumber, status, version) VALUES (?, ?, ?, ?, 0)", copies,
+                (statement, id) -> {
+                    statement.setInt(2, bookOfCopy[id]);
+                    statement.setInt(3, id - firstCopy[bookOfCopy[id]] + 1);
+                    statement.setString(4, String.valueOf((char) copyStatus[id]));
+                });
+
+        long history = (long) users * borrowingsPerUser;
+        if (history + active.count > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The library would have more borrowings than ids.");
+        }
+        int[] returnedOf = new int[users + 1];
+        for (long i = 0; i < history; i++) {
+            returnedOf[userByRank[readerActivity.sample(random)]]++;
+        }
+        insert(emf, "INSERT INTO Borrowings (id, userId, copyId, borrowDate, returnDate) VALUES (?, ?, ?, ?, ?)",
+                (int) history + active.count,
+                new BorrowingRows(returnedOf, active, titleByRank, titlePopularity, firstCopy, today, random));
+
+        int[] earliestLoan = new int[books + 1];
+        Arrays.fill(earliestLoan, -1);
+        for (int user = 1; user <= users; user++) {
+            for (int loan = 0; loan < active.perUser[user]; loan++) {
+                int book = bookOfCopy[active.copy(user, loan)];
+                earliestLoan[book] = Math.max(earliestLoan[book], active.daysAgo(user, loan));
+            }
+        }
+        insert(emf, "INSERT INTO BookAvailability (bookId, totalCopies, availableCopies, earliestBorrowDate) "
+                        + "VALUES (?, ?, ?, ?)", books,
+                (statement, id) -> {
+                    int available = 0;
+                    for (int copy = firstCopy[id]; copy < firstCopy[id + 1]; copy++) {
+                        available += copyStatus[copy] == 'A' ? 1 : 0;
+                    }
+                    statement.setInt(2, firstCopy[id + 1] - firstCopy[id]);
+                    statement.setInt(3, available);
+                    statement.setDate(4, earliestLoan[id] < 0 ? null : Date.valueOf(today.minusDays(earliestLoan[id])));
+                });
+
+        execute(emf, "ANALYZE");
+        IdSequences.align(emf);
+        emf.getCache().evictAll();
+        emf.unwrap(SessionFactory.class).getCache().evictQueryRegions();
+        return new Summary(users, librarians, publishers, books, copies, history + active.count,
+                active.count, System.nanoTime() - start);
+    }
+
+    /**
+     * Chooses how many copies every title has, more for the popular ones, and the status of each
+     * copy, 'B' for the copies later given an active borrowing. Fills the id of the first copy of
+     * every book, and returns the status codes by copy id.
+     */
+    private byte[] planCopies(int[] titleByRank, int[] firstCopy, Random random) {
+        int[] copiesOf = new int[books + 1];
+        for (int rank = 0; rank < books; rank++) {
+            int extra = rank < books / 100 ? 3 + random.nextInt(4) : rank < books / 10 ? 1 + random.nextInt(2) : random.nextInt(4) == 0 ? 1 : 0;
+            copiesOf[titleByRank[rank]] = 1 + extra;
+        }
+        firstCopy[1] = 1;
+        for (int book = 1; book <= books; book++) {
+            firstCopy[book + 1] = firstCopy[book] + copiesOf[book];
+        }
+        byte[] status = new byte[firstCopy[books + 1]];
+        for (int rank = 0; rank < books; rank++) {
+            int book = titleByRank[rank];
+            double onLoan = rank < books / 100 ? 0.8 : rank < books / 10 ? 0.4 : 0.05;
+            for (int copy = firstCopy[book]; copy < firstCopy[book + 1]; copy++) {
+                double draw = random.nextDouble();
+                status[copy] = (byte) (draw < 0.01 ? 'L' : draw < 0.02 ? 'I' : draw < 0.02 + onLoan ? 'B' : 'A');
+            }
+        }
+        return status;
+    }
+
+    /**
+     * Lends every copy marked 'B' to a reader, drawn by activity, moving on to the next user when the
+     * one drawn already has the maximum of active borrowings. A copy no reader can take any more is
+     * made available again.
+     */
+    private ActiveBorrowings planActiveBorrowings(byte[] status, Zipf readerActivity, int[] userByRank, Random random) {
+        ActiveBorrowings active = new ActiveBorrowings(users);
+        int capacity = users * MAX_ACTIVE_BORROWINGS;
+        for (int copy = 1; copy < status.length; copy++) {
+            if (status[copy] != 'B') {
+                continue;
+            }
+            if (active.count == capacity) {
+                status[copy] = 'A';
+                continue;
+            }
+            int user = userByRank[readerActivity.sample(random)];
+            while (active.perUser[user] == MAX_ACTIVE_BORROWINGS) {
+                user = user % users + 1;
+            }
+            active.add(user, copy, random.nextInt(28));
+        }
+        return active;
+    }
+
+    /**
+     * Inserts the rows with ids 1 to {@code rows}, filled in by the row writer in id order.
+     */
+    private static void insert(EntityManagerFactory emf, String sql, int rows, RowWriter writer) {
+        for (int first = 1; first <= rows; first += ROWS_PER_TRANSACTION) {
+            int from = first;
+            int to = Math.min(rows, first + ROWS_PER_TRANSACTION - 1);
+            EntityManager em = emf.createEntityManager();
+            try {
+                em.getTransaction().begin();
+                em.unwrap(Session.class).doWork(connection -> {
+                    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                        for (int id = from; id <= to; id++) {
+                            statement.setInt(1, id);
+                            writer.write(statement, id);
+                            statement.addBatch();
+                            if ((id - from + 1) % BATCH_SIZE == 0) {
+                                statement.executeBatch();
+                            }
+                        }
+                        statement.executeBatch();
+                    }
+                });
+                em.getTransaction().commit();
+            } finally {
+                if (em.getTransaction().isActive()) {
+                    em.getTransaction().rollback();
+                }
+                em.close();
+            }
+        }
+    }
+
+    private static long count(EntityManagerFactory emf, String table) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return ((Number) em.createNativeQuery("SELECT COUNT(*) FROM " + table).getSingleResult()).longValue();
+        } finally {
+            em.close();
+        }
+    }
+
+    private static void execute(EntityManagerFactory emf, String sql) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.createNativeQuery(sql).executeUpdate();
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+
+    private static String[] words(int size, Random random) {
+        Set<String> words = new LinkedHashSet<>();
+        while (words.size() < size) {
+            StringBuilder word = new StringBuilder();
+            int syllables = 2 + random.nextInt(3);
+            for (int s = 0; s < syllables; s++) {
+                word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            words.add(word.toString());
+        }
+        return words.toArray(new String[0]);
+    }
+
+    private static String title(String[] words, Zipf commonWords, Random random) {
+        StringBuilder title = new StringBuilder(capitalize(words[commonWords.sample(random)]));
+        int length = 1 + random.nextInt(4);
+        for (int w = 0; w < length; w++) {
+            title.append(' ').append(words[commonWords.sample(random)]);
+        }
+        return title.toString();
+    }
+
+    private static String address(String[] words, Random random) {
+        return (1 + random.nextInt(300)) + " " + capitalize(words[random.nextInt(words.length)]) + " Street";
+    }
+
+    private static String phone(Random random) {
+        return String.format("555-%07d", random.nextInt(10_000_000));
+    }
+
+    private static String[] capitalized(String[] words) {
+        String[] capitalized = new String[words.length];
+        for (int i = 0; i < words.length; i++) {
+            capitalized[i] = capitalize(words[i]);
+        }
+        return capitalized;
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+
+    /**
+     * Returns the ids 1 to n in an order shuffled by the random.
+     */
+    private static int[] permutation(int n, Random random) {
+        int[] ids = new int[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = i + 1;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = ids[i];
+            ids[i] = ids[j];
+            ids[j] = swap;
+        }
+        return ids;
+    }
+
+    private interface RowWriter {
+        /**
+         * Sets the parameters of the row with the given id, the id itself is already set.
+         */
+        void write(PreparedStatement statement, int id) throws SQLException;
+    }
+
+    /**
+     * Draws ranks in [0, n) where rank k has a probability proportional to 1 / (k + 1)^exponent.
+     */
+    private static final class Zipf {
+        private final double[] cumulative;
+
+        Zipf(int n, double exponent) {
+            cumulative = new double[n];
+            double sum = 0;
+            for (int k = 0; k < n; k++) {
+                sum += 1 / Math.pow(k + 1, exponent);
+                cumulative[k] = sum;
+            }
+            for (int k = 0; k < n; k++) {
+                cumulative[k] /= sum;
+            }
+        }
+
+        int sample(Random random) {
+            int rank = Arrays.binarySearch(cumulative, random.nextDouble());
+            return Math.min(cumulative.length - 1, rank >= 0 ? rank : -rank - 1);
+        }
+    }
+
+    /**
+     * Writes the borrowings user by user, first the returned ones from the oldest on and then the
+     * active ones. The rows arrive in the order of the indexes on the user, which keeps their
+     * maintenance cheap: with the rows in the order they were drawn, the inserts take twice as long.
+     */
+    private static final class BorrowingRows implements RowWriter {
+        private final int[] returnedOf;
+        private final ActiveBorrowings active;
+        private final int[] titleByRank;
+        private final Zipf titlePopularity;
+        private final int[] firstCopy;
+        private final LocalDate today;
+        private final Random random;
+        private int[] daysAgo = new int[64];
+        private int user;
+        private int returned;
+        private int loans;
+
+        BorrowingRows(int[] returnedOf, ActiveBorrowings active, int[] titleByRank, Zipf titlePopularity,
+                      int[] firstCopy, LocalDate today, Random random) {
+            this.returnedOf = returnedOf;
+            this.active = active;
+            this.titleByRank = titleByRank;
+            this.titlePopularity = titlePopularity;
+            this.firstCopy = firstCopy;
+            this.today = today;
+            this.random = random;
+        }
+
+        @Override
+        public void write(PreparedStatement statement, int id) throws SQLException {
+            while (returned == returnedOf[user] && loans == active.perUser[user]) {
+                nextUser();
+            }
+            statement.setInt(2, user);
+            if (returned < returnedOf[user]) {
+                int book = titleByRank[titlePopularity.sample(random)];
+                LocalDate borrowed = today.minusDays(daysAgo[returnedOf[user] - 1 - returned++]);
+                statement.setInt(3, firstCopy[book] + random.nextInt(firstCopy[book + 1] - firstCopy[book]));
+                statement.setDate(4, Date.valueOf(borrowed));
+                statement.setDate(5, Date.valueOf(borrowed.plusDays(1 + random.nextInt(30))));
+            } else {
+                statement.setInt(3, active.copy(user, loans));
+                statement.setDate(4, Date.valueOf(today.minusDays(active.daysAgo(user, loans++))));
+                statement.setDate(5, null);
+            }
+        }
+
+        private void nextUser() {
+            user++;
+            returned = 0;
+            loans = 0;
+            if (daysAgo.length < returnedOf[user]) {
+                daysAgo = new int[returnedOf[user] * 2];
+            }
+            for (int i = 0; i < returnedOf[user]; i++) {
+                daysAgo[i] = 31 + random.nextInt(HISTORY_DAYS - 31);
+            }
+            Arrays.sort(daysAgo, 0, returnedOf[user]);
+        }
+    }
+
+    /**
+     * The active borrowings of every user, in {@value #MAX_ACTIVE_BORROWINGS} slots per user.
+     */
+    private static final class ActiveBorrowings {
+        final byte[] perUser;
+        private final int[] copies;
+        private final int[] daysAgo;
+        int count;
+
+        ActiveBorrowings(int users) {
+            perUser = new byte[users + 1];
+            copies = new int[(users + 1) * MAX_ACTIVE_BORROWINGS];
+            daysAgo = new int[(users + 1) * MAX_ACTIVE_BORROWINGS];
+        }
+
+        void add(int user, int copy, int days) {
+            int slot = user * MAX_ACTIVE_BORROWINGS + perUser[user]++;
+            copies[slot] = copy;
+            daysAgo[slot] = days;
+            count++;
+        }
+
+        int copy(int user, int loan) {
+            return copies[user * MAX_ACTIVE_BORROWINGS + loan];
+        }
+
+        int daysAgo(int user, int loan) {
+            return daysAgo[user * MAX_ACTIVE_BORROWINGS + loan];
+        }
+    }
+
+    /**
+     * Sizes of a generated library and how long writing it took.
+     */
+    public static final class Summary {
+        private final int users;
+        private final int librarians;
+        private final int publishers;
+        private final int books;
+        private final int copies;
+        private final long borrowings;
+        private final int activeBorrowings;
+        private final long elapsedNanos;
+
+        Summary(int users, int librarians, int publishers, int books, int copies, long borrowings,
+                int activeBorrowings, long elapsedNanos) {
+            this.users = users;
+            this.librarians = librarians;
+            this.publishers = publishers;
+            this.books = books;
+            this.copies = copies;
+            this.borrowings = borrowings;
+            this.activeBorrowings = activeBorrowings;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public int getUsers() {
+            return users;
+        }
+
+        public int getLibrarians() {
+            return librarians;
+        }
+
+        public int getPublishers() {
+            return publishers;
+        }
+
+        public int getBooks() {
+            return books;
+        }
+
+        public int getCopies() {
+            return copies;
+        }
+
+        public long getBorrowings() {
+            return borrowings;
+        }
+
+        public int getActiveBorrowings() {
+            return activeBorrowings;
+        }
+
+        public long getRows() {
+            return (long) users + librarians + publishers + 2L * books + copies + borrowings;
+        }
+
+        public double getRowsPerSecond() {
+            return elapsedNanos == 0 ? 0 : getRows() * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d users, %d librarians, %d publishers, %d books, %d copies, %d borrowings "
+                            + "(%d active), %d rows in %.1f s (%.0f rows/s)", users, librarians, publishers, books,
+                    copies, borrowings, activeBorrowings, getRows(), elapsedNanos / 1e9, getRowsPerSecond());
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package org.example.persistence;
+
+import java.util.Collections;
+import java.util.Map;
+
+
+/**
+ * A committed insert, update or delete of an entity, delivered by the {@link ChangeEventBus}.
+ *
+ * <p>The state maps hold the persistent properties of the entity by name, with associated entities
+ * replaced by their ids. An insert has the new state only, a delete the old state only, and an
+ * update both when Hibernate knew the previous state. Changes published by bulk updates carry only
+ * the properties the update wrote.</p>
+ */
+public final class EntityChange {
+
+    public enum Type {
+        INSERT, UPDATE, DELETE
+    }
+
+    private final Type type;
+    private final Class<?> entityClass;
+    private final Object id;
+    private final Map<String, Object> state;
+    private final Map<String, Object> oldState;
+    long sequence;
+
+    public EntityChange(Type type, Class<?> entityClass, Object id, Map<String, Object> state, Map<String, Object> oldState) {
+        this.type = type;
+        this.entityClass = entityClass;
+        this.id = id;
+        this.state = state == null ? null : Collections.unmodifiableMap(state);
+        this.oldState = oldState == null ? null : Collections.unmodifiableMap(oldState);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Class<?> getEntityClass() {
+        return entityClass;
+    }
+
+    public boolean isOf(Class<?> entityClass) {
+        return this.entityClass == entityClass;
+    }
+
+    public Object getId() {
+        return id;
+    }
+
+    /**
+     * Returns the state after the change, null for a delete.
+     */
+    public Map<String, Object> getState() {
+        return state;
+    }
+
+    /**
+     * Returns the state before the change, null for an insert or when it is not known.
+     */
+    public Map<String, Object> getOldState() {
+        return oldState;
+    }
+
+    /**
+     * Returns the order in which the change was published, starting at 1.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    @Override
+    public String toString() {
+        return "EntityChange{" +
+                "sequence=" + sequence +
+                ", type=" + type +
+                ", entity=" + entityClass.getSimpleName() +
+                ", id=" + id +
+                ", state=" + state +
+                ", oldState=" + oldState +
+                '}';
+    }
+}
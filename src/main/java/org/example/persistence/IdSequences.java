@@ -0,0 +1,71 @@
+package org.example.persistence;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.id.enhanced.DatabaseStructure;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+
+/**
+ * Keeps the id sequences of the entities in line with their tables.
+ *
+ * <p>A sequence must never return an id that is already in its table, and it must be incremented by
+ * the allocation size of its {@link PooledSequenceGenerator}, since every value it returns starts a
+ * block of that many ids. Neither holds for a database whose ids were assigned by identity columns,
+ * nor after the allocation size was changed, nor after rows were loaded with SQL. For every sequence
+ * out of line, {@link #align} restarts it after the highest id of its table with the increment of
+ * the generator. {@link PersistenceUnitRegistry} aligns the sequences every time it builds a factory,
+ * which assumes a database is used by one application at a time. A block of ids a factory already
+ * holds is not affected, so rows loaded with SQL into a table the factory has written to take their
+ * ids from the sequence ({@code NEXT VALUE FOR}) rather than picking them.</p>
+ */
+public final class IdSequences {
+
+    private IdSequences() {
+    }
+
+    /**
+     * Restarts the sequences of the given factory that could return ids already in use or whose
+     * increment differs from the allocation size.
+     */
+    public static void align(EntityManagerFactory emf) {
+        SessionFactoryImplementor sessionFactory = emf.unwrap(SessionFactoryImplementor.class);
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            for (EntityPersister persister : sessionFactory.getMetamodel().entityPersisters().values()) {
+                if (persister.getIdentifierGenerator() instanceof SequenceStyleGenerator
+                        && persister instanceof AbstractEntityPersister) {
+                    DatabaseStructure sequence = ((SequenceStyleGenerator) persister.getIdentifierGenerator())
+                            .getDatabaseStructure();
+                    align(em, sequence, (AbstractEntityPersister) persister);
+                }
+            }
+            em.getTransaction().commit();
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            em.close();
+        }
+    }
+
+    private static void align(EntityManager em, DatabaseStructure sequence, AbstractEntityPersister entity) {
+        Object[] state = (Object[]) em.createNativeQuery(
+                        "SELECT BASE_VALUE, INCREMENT FROM INFORMATION_SCHEMA.SEQUENCES WHERE UPPER(SEQUENCE_NAME) = UPPER(?1)")
+                .setParameter(1, sequence.getPhysicalName().getObjectName().getText())
+                .getSingleResult();
+        long nextValue = ((Number) state[0]).longValue();
+        long increment = ((Number) state[1]).longValue();
+        long maxId = ((Number) em.createNativeQuery("SELECT COALESCE(MAX(" + entity.getIdentifierColumnNames()[0]
+                + "), 0) FROM " + entity.getTableName()).getSingleResult()).longValue();
+        if (nextValue <= maxId || increment != sequence.getIncrementSize()) {
+            em.createNativeQuery("ALTER SEQUENCE " + sequence.getPhysicalName().render() + " RESTART WITH " + (maxId + 1)
+                    + " INCREMENT BY " + sequence.getIncrementSize()).executeUpdate();
+        }
+    }
+}
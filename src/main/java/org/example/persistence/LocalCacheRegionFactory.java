@@ -0,0 +1,55 @@
+package org.example.persistence;
+
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.jcache.internal.JCacheRegionFactory;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+
+/**
+ * Second-level cache of the persistence units, kept in the heap of the application by Caffeine.
+ *
+ * <p>A persistence unit enables it with
+ * {@code hibernate.cache.region.factory_class=org.example.persistence.LocalCacheRegionFactory}. Every
+ * unit gets a cache manager of its own, named after the unit, so two units that map the same entities
+ * (the plain and the pooled test units for example) never see each other's cached rows. The size
+ * bound and expiration of every region are configured under {@code caffeine.jcache} in
+ * {@code application.conf}; a region that is not configured there fails the start of the unit
+ * instead of silently getting an unbounded cache. {@link CacheMetrics} reads the statistics of the
+ * regions.</p>
+ *
+ * <p>The regions run their maintenance (evictions and expirations) on the thread that reads or
+ * writes them, through {@link CallerRunsExecutor}. The default, handing every maintenance run to the
+ * common fork join pool, wakes a pool thread on nearly every write of a region that evicts all the
+ * time, which costs more than the maintenance itself.</p>
+ */
+public class LocalCacheRegionFactory extends JCacheRegionFactory {
+
+    static final String UNIT_NAME_PROPERTY = "hibernate.ejb.persistenceUnitName";
+
+    // the raw Map is the signature of JCacheRegionFactory
+    @Override
+    @SuppressWarnings("rawtypes")
+    protected CacheManager resolveCacheManager(SessionFactoryOptions settings, Map properties) {
+        CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        Object unitName = properties.get(UNIT_NAME_PROPERTY);
+        String name = unitName != null ? unitName.toString() : settings.getUuid();
+        return provider.getCacheManager(URI.create("library:" + name), getClassLoader(provider));
+    }
+
+    /**
+     * Executor of the maintenance of the regions, configured as {@code executor} in {@code application.conf}.
+     */
+    public static final class CallerRunsExecutor implements Executor {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    }
+}
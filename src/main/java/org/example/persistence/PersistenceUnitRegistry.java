@@ -0,0 +1,98 @@
+package org.example.persistence;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Process wide registry of the {@link EntityManagerFactory} instances used by the application.
+ *
+ * <p>Building an {@link EntityManagerFactory} bootstraps the whole Hibernate metamodel and opens
+ * its own set of JDBC connections, so it should happen once per persistence unit and not every
+ * time a service or a panel is created. This class builds the factory of a persistence unit lazily,
+ * the first time it is requested, applies the pending {@link DataMigrations} to its database, aligns
+ * its {@link IdSequences} and then hands the same instance to every caller.</p>
+ *
+ * <p>All the factories are closed by a JVM shutdown hook, they can also be closed explicitly with
+ * {@link #close(String)} or {@link #closeAll()}. A factory that was closed is rebuilt on the next request.</p>
+ */
+public final class PersistenceUnitRegistry {
+
+    private static final Map<String, EntityManagerFactory> factories = new ConcurrentHashMap<>();
+    private static final Map<String, Map<String, Object>> overrides = new ConcurrentHashMap<>();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(
+                new Thread(PersistenceUnitRegistry::closeAll, "persistence-unit-shutdown"));
+    }
+
+    private PersistenceUnitRegistry() {
+    }
+
+    /**
+     * Returns the shared factory of the given persistence unit, building it on the first call.
+     */
+    public static EntityManagerFactory getEntityManagerFactory(String persistenceUnitName) {
+        EntityManagerFactory emf = factories.get(persistenceUnitName);
+        if (emf != null && emf.isOpen()) {
+            return emf;
+        }
+        return factories.compute(persistenceUnitName, (name, existing) ->
+                existing != null && existing.isOpen() ? existing : build(name));
+    }
+
+    private static EntityManagerFactory build(String persistenceUnitName) {
+        EntityManagerFactory emf = Persistence.createEntityManagerFactory(persistenceUnitName, getOverrides(persistenceUnitName));
+        try {
+            DataMigrations.apply(emf);
+            IdSequences.align(emf);
+        } catch (RuntimeException e) {
+            emf.close();
+            throw e;
+        }
+        return emf;
+    }
+
+    /**
+     * Overrides properties of persistence.xml for the given persistence unit. The overrides are used
+     * the next time the factory is built, so they should be set before the first service is created.
+     */
+    public static void configure(String persistenceUnitName, Map<String, ?> properties) {
+        overrides.put(persistenceUnitName, Collections.unmodifiableMap(new HashMap<String, Object>(properties)));
+    }
+
+    public static Map<String, Object> getOverrides(String persistenceUnitName) {
+        return overrides.getOrDefault(persistenceUnitName, Collections.<String, Object>emptyMap());
+    }
+
+    public static boolean isOpen(String persistenceUnitName) {
+        EntityManagerFactory emf = factories.get(persistenceUnitName);
+        return emf != null && emf.isOpen();
+    }
+
+    /**
+     * Closes the factory of the given persistence unit, if it was built.
+     */
+    public static void close(String persistenceUnitName) {
+        EntityManagerFactory emf = factories.remove(persistenceUnitName);
+        if (emf != null && emf.isOpen()) {
+            emf.close();
+        }
+    }
+
+    /**
+     * Closes every factory built so far.
+     */
+    public static void closeAll() {
+        List<String> names = new ArrayList<>(factories.keySet());
+        for (String name : names) {
+            close(name);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package org.example.persistence;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.id.enhanced.StandardOptimizerDescriptor;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Properties;
+
+
+/**
+ * Id generator of the entities, which takes ids from a sequence of the entity a block at a time.
+ *
+ * <p>An entity names its sequence with the {@code sequence_name} parameter:</p>
+ * <pre>
+ * &#64;GeneratedValue(generator = "books_seq")
+ * &#64;GenericGenerator(name = "books_seq", strategy = PooledSequenceGenerator.STRATEGY,
+ *         parameters = &#64;Parameter(name = "sequence_name", value = "books_seq"))
+ * </pre>
+ *
+ * <p>Every value read from a sequence starts a block of {@code library.ids.allocationSize} ids
+ * (default {@value #DEFAULT_ALLOCATION_SIZE}) that the factory hands out without going back to the
+ * database, the pooled-lo optimizer of Hibernate, and the sequence is incremented by the same size.
+ * Because the id of an entity is known as soon as it is persisted, Hibernate can send its insert
+ * later together with others in a JDBC batch, which an identity column does not allow. An allocation
+ * size of 1 reads the sequence for every id. {@link IdSequences} keeps the sequences in line with the
+ * allocation size and the ids already in the tables.</p>
+ */
+public class PooledSequenceGenerator extends SequenceStyleGenerator {
+
+    public static final String STRATEGY = "org.example.persistence.PooledSequenceGenerator";
+    public static final String ALLOCATION_SIZE_PROPERTY = "library.ids.allocationSize";
+    public static final int DEFAULT_ALLOCATION_SIZE = 50;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        int allocationSize = allocationSize(
+                serviceRegistry.getService(ConfigurationService.class).getSettings().get(ALLOCATION_SIZE_PROPERTY));
+        Properties pooled = new Properties();
+        pooled.putAll(params);
+        pooled.setProperty(INCREMENT_PARAM, String.valueOf(allocationSize));
+        pooled.setProperty(OPT_PARAM, allocationSize > 1
+                ? StandardOptimizerDescriptor.POOLED_LO.getExternalName()
+                : StandardOptimizerDescriptor.NONE.getExternalName());
+        super.configure(type, pooled, serviceRegistry);
+    }
+
+    /**
+     * Reads the allocation size from a property value, null means the default.
+     */
+    static int allocationSize(Object value) {
+        if (value == null) {
+            return DEFAULT_ALLOCATION_SIZE;
+        }
+        int allocationSize = Integer.parseInt(value.toString().trim());
+        if (allocationSize < 1) {
+            throw new IllegalArgumentException(ALLOCATION_SIZE_PROPERTY + " must be at least 1, was " + allocationSize);
+        }
+        return allocationSize;
+    }
+}
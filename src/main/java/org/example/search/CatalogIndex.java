@@ -0,0 +1,394 @@
+package org.example.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+
+/**
+ * In memory inverted index over the title, author and publisher of the books of the catalog.
+ *
+ * <p>The text of the three fields is folded and split into terms by {@link Tokenizer}. Every term keeps
+ * the list of books it occurs in (its postings), and the terms are kept sorted so that a query term
+ * also matches every term it is a prefix of: {@code "tolk"} finds books by Tolkien.</p>
+ *
+ * <p>A query matches the books that contain every query term, as a whole word or as a prefix. Books are
+ * ranked by the sum, over the query terms, of the inverse document frequency of the query term times
+ * the weight of the fields the matching word occurs in (title over author over publisher), with a
+ * lower factor for prefix matches. The postings of the rarest query term drive the search, the other terms are
+ * checked against the terms of each candidate, and the best {@code limit} books are kept in a heap.
+ * Postings are grouped by the weight of the term in the book and read by decreasing best possible
+ * score, so the search stops as soon as no remaining book can enter the heap, which keeps queries
+ * on frequent words fast.</p>
+ *
+ * <p>Updating a book marks its old entry as deleted and adds a new one, deleted entries are dropped
+ * once they outnumber the live ones. The index is safe for concurrent use: queries share a read lock,
+ * changes take the write lock.</p>
+ */
+public class CatalogIndex {
+
+    static final int TITLE_WEIGHT = 4;
+    static final int AUTHOR_WEIGHT = 2;
+    static final int PUBLISHER_WEIGHT = 1;
+    private static final float PREFIX_FACTOR = 0.7f;
+
+    private static final int WEIGHT_BITS = 3;
+    private static final int WEIGHT_MASK = (1 << WEIGHT_BITS) - 1;
+    private static final int MIN_DELETED_TO_COMPACT = 1024;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<String, Term> terms = new TreeMap<>();
+    private final List<Term> termsById = new ArrayList<>();
+    private final IntIntMap ordinals = new IntIntMap();
+
+    // entries by ordinal: the book id and its terms packed as (termId << WEIGHT_BITS | weight)
+    private int[] bookIds = new int[1024];
+    private int[][] entryTerms = new int[1024][];
+    private final BitSet deleted = new BitSet();
+    private int entries;
+
+    /**
+     * Adds a book to the index, or replaces its fields if it is indexed already.
+     */
+    public void put(int bookId, String title, String author, String publisher) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        addWeights(weights, title, TITLE_WEIGHT);
+        addWeights(weights, author, AUTHOR_WEIGHT);
+        addWeights(weights, publisher, PUBLISHER_WEIGHT);
+
+        lock.writeLock().lock();
+        try {
+            markDeleted(bookId);
+            int ordinal = entries++;
+            if (ordinal == bookIds.length) {
+                bookIds = Arrays.copyOf(bookIds, ordinal * 2);
+                entryTerms = Arrays.copyOf(entryTerms, ordinal * 2);
+            }
+            int[] packed = new int[weights.size()];
+            int i = 0;
+            for (Map.Entry<String, Integer> weight : weights.entrySet()) {
+                Term term = terms.get(weight.getKey());
+                if (term == null) {
+                    term = new Term(termsById.size(), weight.getKey());
+                    terms.put(term.text, term);
+                    termsById.add(term);
+                }
+                term.add(ordinal, weight.getValue());
+                packed[i++] = term.id << WEIGHT_BITS | weight.getValue();
+            }
+            bookIds[ordinal] = bookId;
+            entryTerms[ordinal] = packed;
+            ordinals.put(bookId, ordinal);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a book from the index, does nothing if it is not indexed.
+     */
+    public void remove(int bookId) {
+        lock.writeLock().lock();
+        try {
+            markDeleted(bookId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of books in the index.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ordinals.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the best {@code limit} books matching every term of the query, best first. A query
+     * without any letter or digit matches nothing.
+     */
+    public List<SearchHit> search(String query, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive.");
+        }
+        List<String> tokens = distinct(Tokenizer.tokens(query));
+        if (tokens.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        lock.readLock().lock();
+        try {
+            int live = ordinals.size();
+            Collection<Term> driver = null;
+            int driverToken = -1;
+            long driverCost = Long.MAX_VALUE;
+            float[] idfs = new float[tokens.size()];
+            for (int t = 0; t < tokens.size(); t++) {
+                Collection<Term> expansion = expand(tokens.get(t)).values();
+                long cost = 0;
+                for (Term term : expansion) {
+                    cost += term.size;
+                }
+                if (cost == 0) {
+                    return Collections.emptyList();
+                }
+                idfs[t] = (float) Math.log(1 + (double) live / cost);
+                if (cost < driverCost) {
+                    driver = expansion;
+                    driverToken = t;
+                    driverCost = cost;
+                }
+            }
+
+            // visit the postings of the driving token by decreasing best possible score
+            List<Group> groups = new ArrayList<>();
+            for (Term term : driver) {
+                boolean exact = term.text.length() == tokens.get(driverToken).length();
+                for (int weight = WEIGHT_MASK; weight > 0; weight--) {
+                    if (term.sizes[weight] > 0) {
+                        groups.add(new Group(term, weight, bound(idfs, driverToken, weight, exact)));
+                    }
+                }
+            }
+            groups.sort(null);
+
+            PriorityQueue<Candidate> best = new PriorityQueue<>(limit + 1);
+            BitSet seen = driver.size() > 1 ? new BitSet(entries) : null;
+            for (Group group : groups) {
+                if (best.size() == limit && group.bound < best.peek().score) {
+                    break;
+                }
+                int[] postings = group.term.postings[group.weight];
+                for (int p = 0, size = group.term.sizes[group.weight]; p < size; p++) {
+                    int ordinal = postings[p];
+                    if (best.size() == limit && group.bound <= best.peek().score && ordinal > best.peek().ordinal) {
+                        // the rest of the group can at best tie, and ties go to the older entries
+                        break;
+                    }
+                    if (deleted.get(ordinal) || (seen != null && !mark(seen, ordinal))) {
+                        continue;
+                    }
+                    float score = score(entryTerms[ordinal], tokens, idfs);
+                    if (score == 0) {
+                        continue;
+                    }
+                    Candidate candidate = new Candidate(ordinal, score);
+                    if (best.size() < limit) {
+                        best.add(candidate);
+                    } else if (candidate.compareTo(best.peek()) > 0) {
+                        best.poll();
+                        best.add(candidate);
+                    }
+                }
+            }
+
+            SearchHit[] hits = new SearchHit[best.size()];
+            for (int i = hits.length - 1; i >= 0; i--) {
+                Candidate candidate = best.poll();
+                hits[i] = new SearchHit(bookIds[candidate.ordinal], candidate.score);
+            }
+            return Arrays.asList(hits);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the highest score an entry can get when the driving token matches it with the given
+     * weight. It adds the parts in the same order and the same way as {@link #score}, so no entry
+     * ever scores above it.
+     */
+    private static float bound(float[] idfs, int driverToken, int weight, boolean exact) {
+        float total = 0;
+        for (int t = 0; t < idfs.length; t++) {
+            float part;
+            if (t == driverToken) {
+                part = idfs[t] * weight;
+                if (!exact) {
+                    part *= PREFIX_FACTOR;
+                }
+            } else {
+                part = idfs[t] * WEIGHT_MASK;
+            }
+            total += part;
+        }
+        return total;
+    }
+
+    /**
+     * Scores an entry against the query, or returns 0 if one of the query terms does not match it.
+     */
+    private float score(int[] packedTerms, List<String> tokens, float[] idfs) {
+        float total = 0;
+        for (int t = 0; t < tokens.size(); t++) {
+            String token = tokens.get(t);
+            float bestForToken = 0;
+            for (int packed : packedTerms) {
+                Term term = termsById.get(packed >>> WEIGHT_BITS);
+                if (term.text.startsWith(token)) {
+                    float score = idfs[t] * (packed & WEIGHT_MASK);
+                    if (term.text.length() != token.length()) {
+                        score *= PREFIX_FACTOR;
+                    }
+                    bestForToken = Math.max(bestForToken, score);
+                }
+            }
+            if (bestForToken == 0) {
+                return 0;
+            }
+            total += bestForToken;
+        }
+        return total;
+    }
+
+    private NavigableMap<String, Term> expand(String token) {
+        return terms.subMap(token, true, token + Character.MAX_VALUE, false);
+    }
+
+    private void markDeleted(int bookId) {
+        int ordinal = ordinals.remove(bookId);
+        if (ordinal < 0) {
+            return;
+        }
+        deleted.set(ordinal);
+        entryTerms[ordinal] = null;
+        int deletedCount = entries - ordinals.size();
+        if (deletedCount >= MIN_DELETED_TO_COMPACT && deletedCount > ordinals.size()) {
+            compact();
+        }
+    }
+
+    /**
+     * Renumbers the live entries and rebuilds the postings without the deleted ones.
+     */
+    private void compact() {
+        for (Term term : termsById) {
+            term.clear();
+        }
+        int next = 0;
+        for (int ordinal = 0; ordinal < entries; ordinal++) {
+            if (deleted.get(ordinal)) {
+                continue;
+            }
+            int[] packedTerms = entryTerms[ordinal];
+            bookIds[next] = bookIds[ordinal];
+            entryTerms[next] = packedTerms;
+            ordinals.put(bookIds[next], next);
+            for (int packed : packedTerms) {
+                termsById.get(packed >>> WEIGHT_BITS).add(next, packed & WEIGHT_MASK);
+            }
+            next++;
+        }
+        for (int ordinal = next; ordinal < entries; ordinal++) {
+            entryTerms[ordinal] = null;
+        }
+        entries = next;
+        deleted.clear();
+        terms.values().removeIf(term -> term.size == 0);
+    }
+
+    private static void addWeights(Map<String, Integer> weights, String text, int weight) {
+        for (String token : Tokenizer.tokens(text)) {
+            weights.merge(token, weight, (a, b) -> a | b);
+        }
+    }
+
+    private static List<String> distinct(List<String> tokens) {
+        List<String> distinct = new ArrayList<>();
+        for (String token : tokens) {
+            if (!distinct.contains(token)) {
+                distinct.add(token);
+            }
+        }
+        return distinct;
+    }
+
+    private static boolean mark(BitSet seen, int ordinal) {
+        if (seen.get(ordinal)) {
+            return false;
+        }
+        seen.set(ordinal);
+        return true;
+    }
+
+    private static final class Term {
+        private final int id;
+        private final String text;
+        // ordinals of the entries containing the term, by the weight it has in them
+        private final int[][] postings = new int[WEIGHT_MASK + 1][];
+        private final int[] sizes = new int[WEIGHT_MASK + 1];
+        private int size;
+
+        private Term(int id, String text) {
+            this.id = id;
+            this.text = text;
+        }
+
+        private void add(int ordinal, int weight) {
+            int[] list = postings[weight];
+            if (list == null) {
+                list = postings[weight] = new int[2];
+            } else if (sizes[weight] == list.length) {
+                list = postings[weight] = Arrays.copyOf(list, list.length * 2);
+            }
+            list[sizes[weight]++] = ordinal;
+            size++;
+        }
+
+        private void clear() {
+            Arrays.fill(sizes, 0);
+            size = 0;
+        }
+    }
+
+    /**
+     * The postings of one term with one weight, with the highest score they can lead to.
+     */
+    private static final class Group implements Comparable<Group> {
+        private final Term term;
+        private final int weight;
+        private final float bound;
+
+        private Group(Term term, int weight, float bound) {
+            this.term = term;
+            this.weight = weight;
+            this.bound = bound;
+        }
+
+        @Override
+        public int compareTo(Group other) {
+            return Float.compare(other.bound, bound);
+        }
+    }
+
+    private static final class Candidate implements Comparable<Candidate> {
+        private final int ordinal;
+        private final float score;
+
+        private Candidate(int ordinal, float score) {
+            this.ordinal = ordinal;
+            this.score = score;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            int byScore = Float.compare(score, other.score);
+            // among equal scores the older entry ranks higher, so it must leave the heap last
+            return byScore != 0 ? byScore : Integer.compare(other.ordinal, ordinal);
+        }
+    }
+}
@@ -0,0 +1,427 @@
+package org.example.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+
+/**
+ * Completes the beginning of a word typed by the user to the best matching texts, for type ahead.
+ *
+ * <p>Every text is folded like {@link Tokenizer} does and is reachable from the start of each of its
+ * words, so {@code "hob"} completes to "The Hobbit". The keys are not copied: an entry is a reference to
+ * a suggestion and the offset of a word in its folded text, and the entries are kept sorted by the text
+ * from that offset on. The entries starting with the typed prefix are one contiguous range, found by
+ * binary search, and a tree of range maximums over the entry weights gives the best entries of that
+ * range one after the other, so a completion costs {@code O(limit * log n)} whatever the size of the
+ * range.</p>
+ *
+ * <p>The entries live in an immutable snapshot. Queries read the current snapshot without locking,
+ * {@link #update} builds the next one by merging the changes into the current one and swaps it in.
+ * Updates should therefore be applied in batches where possible.</p>
+ *
+ * <p>An index either keeps one suggestion per row ({@link #perRow()}), for titles or user names, or
+ * merges rows with the same text into one suggestion weighted by their number ({@link #perText()}),
+ * for authors. Matches from the start of the text rank above matches of a later word of the same
+ * weight, then entries are in alphabetical order.</p>
+ */
+public class CompletionIndex {
+
+    private static final Comparator<Entry> ENTRY_ORDER =
+            (a, b) -> compareEntries(a.suggestion, a.offset, b.suggestion, b.offset);
+
+    private final boolean mergeSameText;
+    private volatile Snapshot snapshot = new Snapshot(new Suggestion[0], new int[0]);
+
+    private CompletionIndex(boolean mergeSameText) {
+        this.mergeSameText = mergeSameText;
+    }
+
+    /**
+     * Returns an empty index that keeps one suggestion per row.
+     */
+    public static CompletionIndex perRow() {
+        return new CompletionIndex(false);
+    }
+
+    /**
+     * Returns an empty index that merges the rows with the same folded text into one suggestion.
+     */
+    public static CompletionIndex perText() {
+        return new CompletionIndex(true);
+    }
+
+    /**
+     * Returns the number of entries, one per word of every suggestion.
+     */
+    public int size() {
+        return snapshot.size();
+    }
+
+    /**
+     * Returns at most {@code limit} suggestions with a word starting with the prefix, best first. A
+     * prefix without letters or digits gives no suggestions.
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive.");
+        }
+        String folded = Tokenizer.fold(prefix);
+        int start = 0;
+        while (start < folded.length() && !Character.isLetterOrDigit(folded.charAt(start))) {
+            start++;
+        }
+        if (start == folded.length()) {
+            return Collections.emptyList();
+        }
+        return snapshot.best(folded.substring(start), limit);
+    }
+
+    /**
+     * Removes and adds rows, given as id to text, and swaps in the resulting snapshot. An updated row
+     * appears in both maps, with its old and its new text.
+     */
+    public synchronized void update(Map<Integer, String> removed, Map<Integer, String> added) {
+        Snapshot current = snapshot;
+        BitSet removedEntries = new BitSet(current.size());
+        List<Entry> addedEntries = new ArrayList<>();
+
+        if (mergeSameText) {
+            Map<String, Integer> deltas = new LinkedHashMap<>();
+            Map<String, String> texts = new HashMap<>();
+            Map<String, Integer> ids = new HashMap<>();
+            for (String text : removed.values()) {
+                deltas.merge(Tokenizer.fold(text), -1, Integer::sum);
+            }
+            for (Map.Entry<Integer, String> row : added.entrySet()) {
+                String folded = Tokenizer.fold(row.getValue());
+                deltas.merge(folded, 1, Integer::sum);
+                texts.putIfAbsent(folded, row.getValue());
+                ids.putIfAbsent(folded, row.getKey());
+            }
+            for (Map.Entry<String, Integer> delta : deltas.entrySet()) {
+                if (delta.getValue() == 0) {
+                    continue;
+                }
+                Suggestion existing = current.find(delta.getKey(), -1);
+                int weight = delta.getValue();
+                Integer id = ids.get(delta.getKey());
+                String text = texts.get(delta.getKey());
+                if (existing != null) {
+                    current.markEntries(existing, removedEntries);
+                    weight += existing.getWeight();
+                    id = existing.getId();
+                    text = existing.getText();
+                }
+                if (weight > 0 && text != null) {
+                    addEntries(new Suggestion(id, text, weight), addedEntries);
+                }
+            }
+        } else {
+            for (Map.Entry<Integer, String> row : removed.entrySet()) {
+                Suggestion existing = current.find(Tokenizer.fold(row.getValue()), row.getKey());
+                if (existing != null) {
+                    current.markEntries(existing, removedEntries);
+                }
+            }
+            for (Map.Entry<Integer, String> row : added.entrySet()) {
+                // adding a row that is already there replaces it
+                Suggestion existing = current.find(Tokenizer.fold(row.getValue()), row.getKey());
+                if (existing != null) {
+                    current.markEntries(existing, removedEntries);
+                }
+                addEntries(new Suggestion(row.getKey(), row.getValue(), 1), addedEntries);
+            }
+        }
+
+        if (removedEntries.isEmpty() && addedEntries.isEmpty()) {
+            return;
+        }
+        Entry[] sorted = addedEntries.toArray(new Entry[0]);
+        Arrays.parallelSort(sorted, ENTRY_ORDER);
+        snapshot = current.merge(removedEntries, sorted);
+    }
+
+    private static void addEntries(Suggestion suggestion, List<Entry> entries) {
+        String folded = suggestion.folded;
+        for (int i = 0; i < folded.length(); i++) {
+            if (Character.isLetterOrDigit(folded.charAt(i)) && (i == 0 || !Character.isLetterOrDigit(folded.charAt(i - 1)))) {
+                entries.add(new Entry(suggestion, i));
+            }
+        }
+    }
+
+    private static int compareEntries(Suggestion a, int offsetA, Suggestion b, int offsetB) {
+        int byKey = compareKeys(a, offsetA, b, offsetB);
+        if (byKey != 0) {
+            return byKey;
+        }
+        return a.getId() != b.getId() ? Integer.compare(a.getId(), b.getId()) : Integer.compare(offsetA, offsetB);
+    }
+
+    private static int compareKeys(Suggestion a, int offsetA, Suggestion b, int offsetB) {
+        String textA = a.folded;
+        String textB = b.folded;
+        int lengthA = textA.length() - offsetA;
+        int lengthB = textB.length() - offsetB;
+        for (int i = 0, n = Math.min(lengthA, lengthB); i < n; i++) {
+            char charA = textA.charAt(offsetA + i);
+            char charB = textB.charAt(offsetB + i);
+            if (charA != charB) {
+                return charA - charB;
+            }
+        }
+        return lengthA - lengthB;
+    }
+
+    /**
+     * Compares the key of an entry with a prefix: 0 if the key starts with it, otherwise the order of the
+     * key relative to every key that does.
+     */
+    private static int compareToPrefix(Suggestion suggestion, int offset, String prefix) {
+        String text = suggestion.folded;
+        int length = text.length() - offset;
+        for (int i = 0, n = Math.min(length, prefix.length()); i < n; i++) {
+            char c = text.charAt(offset + i);
+            if (c != prefix.charAt(i)) {
+                return c - prefix.charAt(i);
+            }
+        }
+        return length < prefix.length() ? -1 : 0;
+    }
+
+    private static final class Entry {
+        private final Suggestion suggestion;
+        private final int offset;
+
+        private Entry(Suggestion suggestion, int offset) {
+            this.suggestion = suggestion;
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * The sorted entries, as parallel arrays, and the tree of range maximums over their ranks.
+     */
+    private static final class Snapshot {
+        private final Suggestion[] suggestions;
+        private final int[] offsets;
+        // twice the weight of the suggestion, plus one for a match from the start of its text
+        private final int[] ranks;
+        // tree[n + i] is entry i, tree[p] is the best entry below p
+        private final int[] tree;
+
+        private Snapshot(Suggestion[] suggestions, int[] offsets) {
+            this(suggestions, offsets, ranks(suggestions, offsets));
+        }
+
+        private Snapshot(Suggestion[] suggestions, int[] offsets, int[] ranks) {
+            this.suggestions = suggestions;
+            this.offsets = offsets;
+            this.ranks = ranks;
+            int n = suggestions.length;
+            tree = new int[2 * n];
+            for (int i = 0; i < n; i++) {
+                tree[n + i] = i;
+            }
+            for (int p = n - 1; p > 0; p--) {
+                tree[p] = better(tree[2 * p], tree[2 * p + 1]);
+            }
+        }
+
+        private static int[] ranks(Suggestion[] suggestions, int[] offsets) {
+            int[] ranks = new int[suggestions.length];
+            for (int i = 0; i < ranks.length; i++) {
+                ranks[i] = rank(suggestions[i], offsets[i]);
+            }
+            return ranks;
+        }
+
+        private static int rank(Suggestion suggestion, int offset) {
+            return 2 * suggestion.getWeight() + (offset == 0 ? 1 : 0);
+        }
+
+        private int size() {
+            return suggestions.length;
+        }
+
+        private int better(int a, int b) {
+            return ranks[a] > ranks[b] || (ranks[a] == ranks[b] && a < b) ? a : b;
+        }
+
+        /**
+         * Returns the best entry in [from, to), which must not be empty.
+         */
+        private int best(int from, int to) {
+            int n = suggestions.length;
+            int best = from;
+            for (int l = from + n, r = to + n; l < r; l >>= 1, r >>= 1) {
+                if ((l & 1) == 1) {
+                    best = better(best, tree[l++]);
+                }
+                if ((r & 1) == 1) {
+                    best = better(best, tree[--r]);
+                }
+            }
+            return best;
+        }
+
+        private List<Suggestion> best(String prefix, int limit) {
+            int from = lowerBound(prefix, 0);
+            int to = lowerBound(prefix, 1);
+            if (from == to) {
+                return Collections.emptyList();
+            }
+
+            // ranges ordered by their best entry, split around it every time it is taken
+            PriorityQueue<int[]> ranges = new PriorityQueue<>((a, b) -> better(a[2], b[2]) == a[2] ? -1 : 1);
+            ranges.add(new int[]{from, to, best(from, to)});
+            List<Suggestion> result = new ArrayList<>(limit);
+            Map<Suggestion, Boolean> seen = new IdentityHashMap<>();
+            while (!ranges.isEmpty() && result.size() < limit) {
+                int[] range = ranges.poll();
+                int entry = range[2];
+                if (seen.put(suggestions[entry], Boolean.TRUE) == null) {
+                    result.add(suggestions[entry]);
+                }
+                if (range[0] < entry) {
+                    ranges.add(new int[]{range[0], entry, best(range[0], entry)});
+                }
+                if (entry + 1 < range[1]) {
+                    ranges.add(new int[]{entry + 1, range[1], best(entry + 1, range[1])});
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Returns the first entry whose key is not below the prefix ({@code past == 0}) or is past every
+         * key starting with the prefix ({@code past == 1}).
+         */
+        private int lowerBound(String prefix, int past) {
+            int low = 0;
+            int high = suggestions.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (compareToPrefix(suggestions[mid], offsets[mid], prefix) < past) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Returns the first entry that sorts after the given one.
+         */
+        private int upperBound(Entry entry) {
+            int low = 0;
+            int high = suggestions.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (compareEntries(suggestions[mid], offsets[mid], entry.suggestion, entry.offset) <= 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Returns the suggestion with exactly this folded text and id, any id when {@code id} is -1.
+         */
+        private Suggestion find(String folded, int id) {
+            for (int i = lowerBound(folded, 0), to = lowerBound(folded, 1); i < to; i++) {
+                Suggestion suggestion = suggestions[i];
+                if (offsets[i] == 0 && suggestion.folded.equals(folded) && (id == -1 || suggestion.getId() == id)) {
+                    return suggestion;
+                }
+            }
+            return null;
+        }
+
+        private void markEntries(Suggestion suggestion, BitSet marked) {
+            String folded = suggestion.folded;
+            List<Entry> keys = new ArrayList<>();
+            addEntries(suggestion, keys);
+            for (Entry key : keys) {
+                String word = folded.substring(key.offset);
+                for (int i = lowerBound(word, 0), to = lowerBound(word, 1); i < to; i++) {
+                    if (suggestions[i] == suggestion && offsets[i] == key.offset) {
+                        marked.set(i);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Builds the next snapshot without the removed entries and with the added ones, which must be
+         * sorted. The kept entries are copied in blocks between the places of the added ones, found by
+         * binary search, so only the added entries are compared.
+         */
+        private Snapshot merge(BitSet removed, Entry[] added) {
+            int n = suggestions.length - removed.cardinality() + added.length;
+            Merged merged = new Merged(n);
+            int from = 0;
+            for (Entry entry : added) {
+                int to = upperBound(entry);
+                copy(from, to, removed, merged);
+                merged.add(entry.suggestion, entry.offset, rank(entry.suggestion, entry.offset));
+                from = to;
+            }
+            copy(from, suggestions.length, removed, merged);
+            return new Snapshot(merged.suggestions, merged.offsets, merged.ranks);
+        }
+
+        /**
+         * Copies the entries in [from, to) that are not removed.
+         */
+        private void copy(int from, int to, BitSet removed, Merged merged) {
+            for (int start = from; start < to; ) {
+                int end = removed.nextSetBit(start);
+                if (end < 0 || end > to) {
+                    end = to;
+                }
+                merged.copy(this, start, end);
+                start = end + 1;
+            }
+        }
+    }
+
+    private static final class Merged {
+        private final Suggestion[] suggestions;
+        private final int[] offsets;
+        private final int[] ranks;
+        private int size;
+
+        private Merged(int n) {
+            suggestions = new Suggestion[n];
+            offsets = new int[n];
+            ranks = new int[n];
+        }
+
+        private void add(Suggestion suggestion, int offset, int rank) {
+            suggestions[size] = suggestion;
+            offsets[size] = offset;
+            ranks[size++] = rank;
+        }
+
+        private void copy(Snapshot source, int from, int to) {
+            int length = to - from;
+            System.arraycopy(source.suggestions, from, suggestions, size, length);
+            System.arraycopy(source.offsets, from, offsets, size, length);
+            System.arraycopy(source.ranks, from, ranks, size, length);
+            size += length;
+        }
+    }
+}
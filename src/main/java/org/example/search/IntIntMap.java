@@ -0,0 +1,105 @@
+package org.example.search;
+
+import java.util.Arrays;
+
+
+/**
+ * Open addressing map from int keys to non negative int values, used to find the ordinal of a book
+ * without boxing a million keys.
+ */
+final class IntIntMap {
+
+    private static final int FREE = Integer.MIN_VALUE;
+
+    private int[] keys;
+    private int[] values;
+    private int size;
+
+    IntIntMap() {
+        keys = new int[16];
+        values = new int[16];
+        Arrays.fill(keys, FREE);
+    }
+
+    /**
+     * Returns the value of the key, or -1 when the key is absent.
+     */
+    int get(int key) {
+        int slot = find(keys, key);
+        return keys[slot] == FREE ? -1 : values[slot];
+    }
+
+    void put(int key, int value) {
+        if (key == FREE) {
+            throw new IllegalArgumentException("Unsupported key " + key);
+        }
+        int slot = find(keys, key);
+        if (keys[slot] == FREE) {
+            if ((size + 1) * 2 > keys.length) {
+                grow();
+                slot = find(keys, key);
+            }
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value;
+    }
+
+    /**
+     * Removes the key and returns its value, or -1 when the key is absent.
+     */
+    int remove(int key) {
+        int slot = find(keys, key);
+        if (keys[slot] == FREE) {
+            return -1;
+        }
+        int value = values[slot];
+        keys[slot] = FREE;
+        size--;
+        // re-insert the rest of the cluster so that lookups do not stop at the freed slot
+        int mask = keys.length - 1;
+        for (int next = (slot + 1) & mask; keys[next] != FREE; next = (next + 1) & mask) {
+            int movedKey = keys[next];
+            int movedValue = values[next];
+            keys[next] = FREE;
+            int target = find(keys, movedKey);
+            keys[target] = movedKey;
+            values[target] = movedValue;
+        }
+        return value;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        Arrays.fill(keys, FREE);
+        size = 0;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        Arrays.fill(keys, FREE);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                int slot = find(keys, oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static int find(int[] keys, int key) {
+        int mask = keys.length - 1;
+        int hash = key * 0x9E3779B9;
+        int slot = (hash ^ hash >>> 16) & mask;
+        while (keys[slot] != FREE && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+}
@@ -0,0 +1,32 @@
+package org.example.search;
+
+
+/**
+ * A book found by a {@link CatalogIndex} query, with the score it was ranked by.
+ */
+public final class SearchHit {
+
+    private final int bookId;
+    private final float score;
+
+    SearchHit(int bookId, float score) {
+        this.bookId = bookId;
+        this.score = score;
+    }
+
+    public int getBookId() {
+        return bookId;
+    }
+
+    public float getScore() {
+        return score;
+    }
+
+    @Override
+    public String toString() {
+        return "SearchHit{" +
+                "bookId=" + bookId +
+                ", score=" + score +
+                '}';
+    }
+}
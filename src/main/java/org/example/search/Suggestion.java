@@ -0,0 +1,46 @@
+package org.example.search;
+
+
+/**
+ * A completion returned by a {@link CompletionIndex}: the text to show, the id of the row it comes
+ * from and the weight it was ranked by.
+ */
+public final class Suggestion {
+
+    private final int id;
+    private final String text;
+    private final int weight;
+    final String folded;
+
+    Suggestion(int id, String text, int weight) {
+        this.id = id;
+        this.text = text;
+        this.weight = weight;
+        this.folded = Tokenizer.fold(text);
+    }
+
+    /**
+     * Returns the id of the row the text comes from. When rows with the same text are merged into one
+     * suggestion, it is the id of one of them.
+     */
+    public int getId() {
+        return id;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    @Override
+    public String toString() {
+        return "Suggestion{" +
+                "id=" + id +
+                ", text='" + text + '\'' +
+                ", weight=" + weight +
+                '}';
+    }
+}
@@ -0,0 +1,130 @@
+package org.example.service;
+
+import org.example.model.BookAvailability;
+import org.example.model.CopyStatus;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.Query;
+import java.util.Date;
+
+
+/**
+ * Maintains the {@link BookAvailability} summaries, shared by the services that change books, copies
+ * and borrowings.
+ *
+ * <p>Every change is a single UPDATE of the row of the book that adds to the counters, run in the
+ * transaction of the change itself, so the summary commits or rolls back together with it and
+ * concurrent changes of copies of the same book never lose an update. The summary row is always
+ * updated after the copy and borrowing rows, so it never takes part in a lock cycle. A book written
+ * before the summaries existed, or loaded in bulk without them, has no row yet: its summary is then
+ * computed from its copies the first time one of them changes, under a lock on the row of the book so
+ * that two transactions never both create it.</p>
+ */
+final class BookAvailabilities {
+
+    private BookAvailabilities() {
+    }
+
+    /**
+     * Creates the summary of a new book with the given number of copies, all of them available.
+     */
+    static void create(EntityManager em, int bookId, int copies) {
+        em.persist(new BookAvailability(bookId, copies, copies, null));
+    }
+
+    static void delete(EntityManager em, int bookId) {
+        em.createQuery("DELETE FROM BookAvailability a WHERE a.bookId = :bookId")
+                .setParameter("bookId", bookId)
+                .executeUpdate();
+    }
+
+    /**
+     * Adds copies to the totals of a book, negative deltas remove them. Called after the copy was written.
+     */
+    static void adjust(EntityManager em, int bookId, int totalDelta, int availableDelta) {
+        update(em, bookId, em.createQuery(
+                        "UPDATE BookAvailability a SET a.totalCopies = a.totalCopies + :total, " +
+                                "a.availableCopies = a.availableCopies + :available WHERE a.bookId = :bookId")
+                .setParameter("total", totalDelta)
+                .setParameter("available", availableDelta)
+                .setParameter("bookId", bookId));
+    }
+
+    /**
+     * Records the checkout of a copy of a book. Called after the copy was claimed and the borrowing
+     * persisted.
+     */
+    static void checkedOut(EntityManager em, int bookId, Date borrowDate, boolean active) {
+        if (!active || borrowDate == null) {
+            adjust(em, bookId, 0, -1);
+            return;
+        }
+        update(em, bookId, em.createQuery(
+                        "UPDATE BookAvailability a SET a.availableCopies = a.availableCopies - 1, " +
+                                "a.earliestBorrowDate = CASE WHEN a.earliestBorrowDate IS NULL OR a.earliestBorrowDate > :borrowDate " +
+                                "THEN :borrowDate ELSE a.earliestBorrowDate END WHERE a.bookId = :bookId")
+                .setParameter("borrowDate", borrowDate)
+                .setParameter("bookId", bookId));
+    }
+
+    /**
+     * Recomputes the earliest borrow date of a book after one of its active borrowings was returned,
+     * deleted or moved to another date. Reads only the borrowings of that book.
+     */
+    static void refreshEarliestBorrowDate(EntityManager em, int bookId) {
+        em.flush();
+        update(em, bookId, em.createQuery(
+                        "UPDATE BookAvailability a SET a.earliestBorrowDate = " +
+                                "(SELECT MIN(b.borrowDate) FROM Borrowing b JOIN b.copy c " +
+                                "WHERE c.book.id = :bookId AND b.returnDate IS NULL) " +
+                                "WHERE a.bookId = :bookId")
+                .setParameter("bookId", bookId));
+    }
+
+    /**
+     * Runs an update of the summary of a book, or creates the summary when the book has none. When a
+     * concurrent transaction created it while this one waited for the lock of the book, the update is
+     * run again: computing the summary again would overwrite changes that are not committed yet.
+     */
+    private static void update(EntityManager em, int bookId, Query update) {
+        if (update.executeUpdate() == 0 && !rebuild(em, bookId)) {
+            update.executeUpdate();
+        }
+    }
+
+    /**
+     * Computes the missing summary of a book from its copies and borrowings, holding the lock of the book
+     * until the end of the transaction. Returns false, without writing anything, if the summary exists
+     * once the lock is held.
+     */
+    private static boolean rebuild(EntityManager em, int bookId) {
+        em.flush();
+        em.createQuery("SELECT b.id FROM Book b WHERE b.id = :bookId")
+                .setParameter("bookId", bookId)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList();
+        long existing = em.createQuery(
+                        "SELECT COUNT(a) FROM BookAvailability a WHERE a.bookId = :bookId", Long.class)
+                .setParameter("bookId", bookId)
+                .getSingleResult();
+        if (existing > 0) {
+            return false;
+        }
+        Object[] counts = em.createQuery(
+                        "SELECT COUNT(c), SUM(CASE WHEN c.status = :available THEN 1 ELSE 0 END) " +
+                                "FROM Copy c WHERE c.book.id = :bookId", Object[].class)
+                .setParameter("available", CopyStatus.AVAILABLE)
+                .setParameter("bookId", bookId)
+                .getSingleResult();
+        Date earliest = em.createQuery(
+                        "SELECT MIN(b.borrowDate) FROM Borrowing b JOIN b.copy c " +
+                                "WHERE c.book.id = :bookId AND b.returnDate IS NULL", Date.class)
+                .setParameter("bookId", bookId)
+                .getSingleResult();
+        int total = ((Number) counts[0]).intValue();
+        int available = counts[1] == null ? 0 : ((Number) counts[1]).intValue();
+        em.persist(new BookAvailability(bookId, total, available, earliest));
+        return true;
+    }
+}
@@ -1,9 +1,19 @@
 package org.example.service;
 
 import org.example.model.Book;
+import org.example.model.Copy;
+import org.example.model.CopyStatus;
+import org.example.persistence.PersistenceUnitRegistry;
+import org.example.search.SearchHit;
+import org.hibernate.Session;
 
 import javax.persistence.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Service class for handling operations related to books in the library system.
@@ -12,10 +22,20 @@ import java.util.List;
  * <p>This class interacts with the database using JPA. It uses an {@link EntityManagerFactory}
  * to create {@link EntityManager} instances for managing transactions and performing CRUD
  * operations on Book entities.</p>
+ *
+ * <p>Books are also found by words of their title, author or publisher through an in memory
+ * {@link org.example.search.CatalogIndex}, which follows the committed changes of books.</p>
+ *
+ * <p>ISBNs are stored without hyphens, so an ISBN typed with or without them names the same book.</p>
  */
 
 public class BookService {
-    private EntityManagerFactory emf;
+    private static final List<String> SORT_KEYS = Arrays.asList("id", "title", "author", "isbn", "publicationYear");
+    private static final String BATCH_SIZE_PROPERTY = "hibernate.jdbc.batch_size";
+    private static final int DEFAULT_BATCH_SIZE = 50;
+
+    private final EntityManagerFactory emf;
+    private final int batchSize;
 
     /**
      * Constructs a BookService using the given persistence unit name.
@@ -23,7 +43,16 @@ public class BookService {
      * persistenceUnitName is the name of the persistence unit to use
      */
     public BookService(String persistenceUnitName) {
-        emf = Persistence.createEntityManagerFactory(persistenceUnitName);
+        this(PersistenceUnitRegistry.getEntityManagerFactory(persistenceUnitName));
+    }
+
+    /**
+     * Constructs a BookService on top of an already built factory.
+     */
+    public BookService(EntityManagerFactory emf) {
+        this.emf = emf;
+        Object batchSize = emf.getProperties().get(BATCH_SIZE_PROPERTY);
+        this.batchSize = batchSize != null ? Integer.parseInt(batchSize.toString()) : DEFAULT_BATCH_SIZE;
     }
 
     /**
@@ -43,14 +72,60 @@ public class BookService {
         EntityManager em = emf.createEntityManager();
         try {
             em.getTransaction().begin();
-            Book book = new Book(title, author, publisher, publicationYear, isbn);
+            Book book = new Book(title, author, publisher, publicationYear, normalizeIsbn(isbn));
+            em.persist(book);
+            BookAvailabilities.create(em, book.getId(), 0);
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Creates a book together with its copies, numbered from 1 and all available, in a single
+     * transaction, and returns the id of the book.
+     *
+     * <p>The copies are inserted in JDBC batches of {@code hibernate.jdbc.batch_size} rows, and the
+     * persistence context is flushed and cleared after every batch, so adding thousands of copies
+     * neither sends one statement per copy nor keeps every copy in memory.</p>
+     *
+     * @throws IllegalArgumentException if the number of copies is negative
+     */
+    public int createBookWithCopies(String title, String author, String publisher, int publicationYear, String isbn,
+                                    int copies) {
+        if (copies < 0) {
+            throw new IllegalArgumentException("The number of copies cannot be negative.");
+        }
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            Book book = new Book(title, author, publisher, publicationYear, normalizeIsbn(isbn));
             em.persist(book);
+            BookAvailabilities.create(em, book.getId(), copies);
+            for (int i = 1; i <= copies; i++) {
+                em.persist(new Copy(book, i, CopyStatus.AVAILABLE));
+                if (i % batchSize == 0) {
+                    em.flush();
+                    em.clear();
+                }
+            }
             em.getTransaction().commit();
+            return book.getId();
         } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
             em.close();
         }
     }
 
+    /**
+     * Returns the ISBN without its hyphens, the form in which ISBNs are stored.
+     */
+    static String normalizeIsbn(String isbn) {
+        return isbn != null ? isbn.replace("-", "") : null;
+    }
+
     public void createBook(String role,
                            String title,
                            String author,
@@ -76,9 +151,62 @@ public class BookService {
         }
     }
 
+    /**
+     * Reads one page of books sorted by id, title, author, isbn or publicationYear. Pass null as the token to read the
+     * first page, and the token of the returned page to read the next one.
+     */
+    public Page<Book> getBooksPage(String sortBy, String continuationToken, int limit) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return KeysetPager.fetch(em, Book.class, sortBy, SORT_KEYS, continuationToken, limit);
+        } finally {
+            em.close();
+        }
+    }
+
+    public Page<Book> getBooksPage(String continuationToken, int limit) {
+        return getBooksPage("id", continuationToken, limit);
+    }
+
 
     /**
-     *Retrieves book by its unique identifier.
+     * Finds the books whose title, author or publisher contain every word of the query, ignoring case
+     * and accents. Every word also matches the longer words it starts, so "tolk hob" finds The Hobbit
+     * by Tolkien. Returns at most {@code limit} books, best match first.
+     */
+    public List<Book> searchBooks(String query, int limit) {
+        List<SearchHit> hits = CatalogIndexes.get(emf).search(query, limit);
+        if (hits.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Integer> ids = new ArrayList<>(hits.size());
+        for (SearchHit hit : hits) {
+            ids.add(hit.getBookId());
+        }
+
+        EntityManager em = emf.createEntityManager();
+        try {
+            Map<Integer, Book> byId = new HashMap<>();
+            for (Book book : em.createQuery("SELECT b FROM Book b WHERE b.id IN :ids", Book.class)
+                    .setParameter("ids", ids)
+                    .getResultList()) {
+                byId.put(book.getId(), book);
+            }
+            List<Book> books = new ArrayList<>(ids.size());
+            for (Integer id : ids) {
+                Book book = byId.get(id);
+                if (book != null) {
+                    books.add(book);
+                }
+            }
+            return books;
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     *Retrieves book by its unique identifier, from the second-level cache when it holds the book.
      */
     public Book getBookById(int id) {
         EntityManager em = emf.createEntityManager();
@@ -102,7 +230,7 @@ public class BookService {
                 book.setAuthor(author);
                 book.setPublisher(publisher);
                 book.setPublicationYear(publicationYear);
-                book.setIsbn(isbn);
+                book.setIsbn(normalizeIsbn(isbn));
                 em.merge(book);
             }
             em.getTransaction().commit();
@@ -117,6 +245,7 @@ public class BookService {
             em.getTransaction().begin();
             Book book = em.find(Book.class, id);
             if (book != null) {
+                BookAvailabilities.delete(em, id);
                 em.remove(book);
             }
             em.getTransaction().commit();
@@ -126,18 +255,39 @@ public class BookService {
     }
 
     /**
-     *Retrieve book by its ISBN.
+     *Retrieve book by its ISBN. The ISBN is the natural id of a book, so the id found for an ISBN
+     * is kept in the second-level cache next to the book until that book changes.
+     *
+     * @throws NoResultException if no book has the ISBN
      */
 
     public Book getBookByIsbn(String isbn) {
         EntityManager em = emf.createEntityManager();
         try {
-            return em.createQuery("SELECT b FROM Book b WHERE b.isbn = :isbn", Book.class)
-                    .setParameter("isbn", isbn)
-                    .getSingleResult();
+            Book book = em.unwrap(Session.class).bySimpleNaturalId(Book.class).load(normalizeIsbn(isbn));
+            if (book == null) {
+                throw new NoResultException("No book with ISBN " + isbn);
+            }
+            return book;
         } finally {
             em.close();
         }
     }
 
+    /**
+     * Returns the books that have at least one available copy, sorted by title.
+     */
+    public List<Book> getBooksWithAvailableCopies() {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return em.createQuery(
+                            "SELECT b FROM Book b WHERE EXISTS " +
+                                    "(SELECT c FROM Copy c WHERE c.book = b AND c.status = :available) ORDER BY b.title, b.id",
+                            Book.class)
+                    .setParameter("available", CopyStatus.AVAILABLE)
+                    .getResultList();
+        } finally {
+            em.close();
+        }
+    }
 }
@@ -1,12 +1,25 @@
 package org.example.service;
 
+import org.example.dto.BorrowingHistoryRow;
+import org.example.dto.BorrowingRow;
+import org.example.metrics.ServiceMetrics;
 import org.example.model.Borrowing;
 import org.example.model.Copy;
+import org.example.model.CopyStatus;
 import org.example.model.User;
+import org.example.persistence.ChangeEventBus;
+import org.example.persistence.EntityChange;
+import org.example.persistence.PersistenceUnitRegistry;
 
 import javax.persistence.*;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
 
 /**
  * Service class for managing borrowing transactions in the library system.
@@ -14,20 +27,42 @@ import java.util.List;
  * <p>This class also provides the CRUD functionalities.
  * It enforces business rules such as:
  * <ul>
- *   <li>A user can have at most 2 active borrowings at a time (then properly tested in BorrowingBusinessLogicTests.java).</li>
+ *   <li>A user can have at most 2 active borrowings at a time (then properly tested in BorrowingBusinessLogicTests.java).
+ *       Every checkout is refused once the user has 2 of them, even one recorded with a return date. The number of active borrowings is kept on the user and read while holding a pessimistic
+ *       lock on the user row, so concurrent checkouts of the same user cannot both pass the limit.
+ *       Checkouts of different users lock different rows and run in parallel.</li>
  *   <li>When creating a borrowing, it uses a pessimistic lock to ensure that
- *       a copy cannot be borrowed by multiple users concurrently.</li>
- *   <li>when borrowing a book, the status of the copy is updated to "Borrowed".
- *       When a borrowing is deleted, the copy status reverts to "Available".</li>
+ *       a copy cannot be borrowed by multiple users concurrently, or, in the
+ *       {@link CheckoutLockMode#OPTIMISTIC} mode, claims the copy with a conditional update.</li>
+ *   <li>when borrowing a book, the status of the copy is updated to {@link CopyStatus#BORROWED}.
+ *       When an active borrowing is returned or deleted, the copy status reverts to {@link CopyStatus#AVAILABLE},
+ *       and a returned borrowing made active again borrows its copy again. All of them update the
+ *       availability summary of the book in the same transaction.</li>
  * </ul>
+ * Methods that lock both rows always lock the user before the copy, so two transactions can never
+ * wait for each other's locks.
  * This service interacts with {@link User}, {@link Copy}, and {@link Borrowing} entities,
  * using JPA to persist and retrieve data from the database.</p>
  */
 public class BorrowingService {
-    private EntityManagerFactory emf;
+    private static final List<String> SORT_KEYS = Arrays.asList("id", "borrowDate");
+    private static final int MAX_ACTIVE_BORROWINGS = 2;
+    private static final int MAX_CHECKOUT_ATTEMPTS = 3;
+
+    private final EntityManagerFactory emf;
+    private final CheckoutLockMode lockMode;
 
     public BorrowingService(String persistenceUnitName) {
-        emf = Persistence.createEntityManagerFactory(persistenceUnitName);
+        this(PersistenceUnitRegistry.getEntityManagerFactory(persistenceUnitName));
+    }
+
+    public BorrowingService(EntityManagerFactory emf) {
+        this(emf, CheckoutLockMode.fromProperty(emf.getProperties().get(CheckoutLockMode.PROPERTY)));
+    }
+
+    public BorrowingService(EntityManagerFactory emf, CheckoutLockMode lockMode) {
+        this.emf = emf;
+        this.lockMode = lockMode;
     }
 
     public BorrowingService() {
@@ -36,61 +71,263 @@ public class BorrowingService {
 
     // CREATE
     public void createBorrowing(int userId, int copyId, Date borrowDate, Date returnDate) {
+        if (lockMode == CheckoutLockMode.OPTIMISTIC) {
+            createBorrowingOptimistically(userId, copyId, borrowDate, returnDate);
+            return;
+        }
         EntityManager em = emf.createEntityManager();
         try {
             em.getTransaction().begin();
 
-            Long activeCount = em.createQuery(
-                            "SELECT COUNT(b) FROM Borrowing b WHERE b.user.id = :uId AND b.returnDate IS NULL",
-                            Long.class
-                    )
-                    .setParameter("uId", userId)
-                    .getSingleResult();
-
-            if (activeCount >= 2) {
+            User user = em.find(User.class, userId, LockModeType.PESSIMISTIC_WRITE);
+            if (user != null && user.getActiveBorrowings() >= MAX_ACTIVE_BORROWINGS) {
                 throw new IllegalStateException("User already has 2 active borrowings.");
             }
 
 
+            long lockStart = System.nanoTime();
             Copy copy = em.find(Copy.class, copyId, LockModeType.PESSIMISTIC_WRITE);
+            ServiceMetrics.lockWaited(lockStart);
 
-            if (copy != null && "Available".equalsIgnoreCase(copy.getStatus())) {
+            if (copy != null && copy.getStatus() == CopyStatus.AVAILABLE) {
                 Borrowing borrowing = new Borrowing(
-                        em.find(User.class, userId),
+                        user,
                         copy,
                         borrowDate,
                         returnDate
                 );
-                copy.setStatus("Borrowed");
+                copy.setStatus(CopyStatus.BORROWED);
                 em.persist(borrowing);
                 em.merge(copy);
+                if (user != null && returnDate == null) {
+                    addActiveBorrowings(em, userId, 1);
+                }
+                BookAvailabilities.checkedOut(em, copy.getBook().getId(), borrowDate, returnDate == null);
             } else {
                 throw new IllegalStateException("Copy is not available.");
             }
 
             em.getTransaction().commit();
         } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
             em.close();
         }
     }
 
+    /**
+     * Checks out a copy without locking it up front: the copy is claimed by an UPDATE that only
+     * matches while it is available. When the claim conflicts with a concurrent write the whole
+     * checkout is retried, up to {@value #MAX_CHECKOUT_ATTEMPTS} attempts.
+     */
+    private void createBorrowingOptimistically(int userId, int copyId, Date borrowDate, Date returnDate) {
+        for (int attempt = 1; ; attempt++) {
+            EntityManager em = emf.createEntityManager();
+            try {
+                em.getTransaction().begin();
+
+                User user = em.find(User.class, userId, LockModeType.PESSIMISTIC_WRITE);
+                if (user != null && user.getActiveBorrowings() >= MAX_ACTIVE_BORROWINGS) {
+                    throw new IllegalStateException("User already has 2 active borrowings.");
+                }
+
+                int claimed = em.createQuery(
+                                "UPDATE Copy c SET c.status = :borrowed, c.version = c.version + 1 " +
+                                        "WHERE c.id = :copyId AND c.status = :available")
+                        .setParameter("borrowed", CopyStatus.BORROWED)
+                        .setParameter("available", CopyStatus.AVAILABLE)
+                        .setParameter("copyId", copyId)
+                        .executeUpdate();
+                if (claimed == 0) {
+                    throw new IllegalStateException("Copy is not available.");
+                }
+                int bookId = em.createQuery("SELECT c.book.id FROM Copy c WHERE c.id = :copyId", Integer.class)
+                        .setParameter("copyId", copyId)
+                        .getSingleResult();
+                publishClaimed(em, copyId, bookId);
+                em.persist(new Borrowing(user, em.getReference(Copy.class, copyId), borrowDate, returnDate));
+                if (user != null && returnDate == null) {
+                    addActiveBorrowings(em, userId, 1);
+                }
+                BookAvailabilities.checkedOut(em, bookId, borrowDate, returnDate == null);
+
+                em.getTransaction().commit();
+                return;
+            } catch (PersistenceException e) {
+                if (attempt >= MAX_CHECKOUT_ATTEMPTS || !isWriteConflict(e)) {
+                    throw e;
+                }
+            } finally {
+                if (em.getTransaction().isActive()) {
+                    em.getTransaction().rollback();
+                }
+                em.close();
+            }
+            backOff(attempt);
+        }
+    }
+
+    /**
+     * Checks out any available copy of a book and returns the id of that copy.
+     *
+     * <p>The available copies are read without locks and then claimed one by one with a conditional
+     * update, starting at a random copy, until a claim matches. Concurrent checkouts of the same title
+     * therefore start on different copies instead of all queuing on the lock of the first one. H2 has
+     * no SKIP LOCKED, so a claim that reaches a copy claimed by a checkout that has not committed yet
+     * waits for that transaction to end; the claim then matches nothing and the next copy is tried.</p>
+     *
+     * @throws IllegalStateException if the user already has 2 active borrowings or no copy is available
+     */
+    public int borrowAnyAvailableCopy(int userId, int bookId, Date borrowDate, Date returnDate) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+
+            User user = em.find(User.class, userId, LockModeType.PESSIMISTIC_WRITE);
+            if (user == null) {
+                throw new IllegalArgumentException("User " + userId + " does not exist.");
+            }
+            if (user.getActiveBorrowings() >= MAX_ACTIVE_BORROWINGS) {
+                throw new IllegalStateException("User already has 2 active borrowings.");
+            }
+
+            List<Integer> candidates = em.createQuery(
+                            "SELECT c.id FROM Copy c WHERE c.book.id = :bookId AND c.status = :available ORDER BY c.id",
+                            Integer.class)
+                    .setParameter("bookId", bookId)
+                    .setParameter("available", CopyStatus.AVAILABLE)
+                    .getResultList();
+            int start = candidates.isEmpty() ? 0 : ThreadLocalRandom.current().nextInt(candidates.size());
+            for (int i = 0; i < candidates.size(); i++) {
+                int copyId = candidates.get((start + i) % candidates.size());
+                int claimed = em.createQuery(
+                                "UPDATE Copy c SET c.status = :borrowed, c.version = c.version + 1 " +
+                                        "WHERE c.id = :copyId AND c.status = :available")
+                        .setParameter("borrowed", CopyStatus.BORROWED)
+                        .setParameter("available", CopyStatus.AVAILABLE)
+                        .setParameter("copyId", copyId)
+                        .executeUpdate();
+                if (claimed == 1) {
+                    publishClaimed(em, copyId, bookId);
+                    em.persist(new Borrowing(user, em.getReference(Copy.class, copyId), borrowDate, returnDate));
+                    if (returnDate == null) {
+                        addActiveBorrowings(em, userId, 1);
+                    }
+                    BookAvailabilities.checkedOut(em, bookId, borrowDate, returnDate == null);
+                    em.getTransaction().commit();
+                    return copyId;
+                }
+            }
+            throw new IllegalStateException("No copy of the book is available.");
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            em.close();
+        }
+    }
+
+    private static boolean isWriteConflict(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OptimisticLockException
+                    || cause instanceof PessimisticLockException
+                    || cause instanceof LockTimeoutException
+                    || cause instanceof org.hibernate.StaleStateException
+                    || cause instanceof org.hibernate.PessimisticLockException
+                    || cause instanceof org.hibernate.exception.LockAcquisitionException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Publishes the status change of a copy claimed by a bulk update, which the entity listeners do
+     * not see, once the checkout commits.
+     */
+    private static void publishClaimed(EntityManager em, int copyId, int bookId) {
+        Map<String, Object> state = new HashMap<>();
+        state.put("status", CopyStatus.BORROWED);
+        state.put("book", bookId);
+        ChangeEventBus.publishAfterCommit(em, new EntityChange(EntityChange.Type.UPDATE, Copy.class, copyId,
+                state, Collections.<String, Object>singletonMap("status", CopyStatus.AVAILABLE)));
+    }
+
+    private static void backOff(int attempt) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextInt(1, 5 * attempt + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while retrying a checkout.", e);
+        }
+    }
+
 
 
     // READ ALL
     public List<Borrowing> getAllBorrowings() {
         EntityManager em = emf.createEntityManager();
         try {
-            return em.createQuery("SELECT b FROM Borrowing b", Borrowing.class).getResultList();
+            return EntityGraphs.fetch(em, em.createQuery("SELECT b FROM Borrowing b", Borrowing.class),
+                    Borrowing.LIST_GRAPH).getResultList();
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Reads one page of borrowings sorted by id or borrowDate. Pass null as the token to read the
+     * first page, and the token of the returned page to read the next one.
+     */
+    public Page<Borrowing> getBorrowingsPage(String sortBy, String continuationToken, int limit) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return KeysetPager.fetch(em, Borrowing.class, Borrowing.LIST_GRAPH, sortBy, SORT_KEYS, continuationToken, limit);
+        } finally {
+            em.close();
+        }
+    }
+
+    public Page<Borrowing> getBorrowingsPage(String continuationToken, int limit) {
+        return getBorrowingsPage("id", continuationToken, limit);
+    }
+
+    /**
+     * Reads one page of the borrowings table in id order, with the user name joined in,
+     * using a single SQL statement per page.
+     */
+    public Page<BorrowingRow> getBorrowingRowsPage(String continuationToken, int limit) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return KeysetPager.fetchById(em,
+                    "SELECT new org.example.dto.BorrowingRow(b.id, u.name, b.copy.id, b.borrowDate, b.returnDate) " +
+                            "FROM Borrowing b JOIN b.user u",
+                    "b.id", BorrowingRow.class, BorrowingRow::getBorrowingId, continuationToken, limit);
         } finally {
             em.close();
         }
     }
 
+    /**
+     * Streams every borrowing together with its user, copy and book, reading {@code fetchSize}
+     * rows at a time without keeping the rows already read in memory. The stream must be closed.
+     */
+    public Stream<Borrowing> streamAllBorrowings(int fetchSize) {
+        return ScrollingStreams.stream(emf,
+                "SELECT b FROM Borrowing b JOIN FETCH b.user JOIN FETCH b.copy c JOIN FETCH c.book ORDER BY b.id",
+                Borrowing.class, fetchSize);
+    }
+
+    public Stream<Borrowing> streamAllBorrowings() {
+        return streamAllBorrowings(ScrollingStreams.DEFAULT_FETCH_SIZE);
+    }
+
     // READ BY ID
     public Borrowing getBorrowingById(int id) {
         EntityManager em = emf.createEntityManager();
         try {
-            return em.find(Borrowing.class, id);
+            return em.find(Borrowing.class, id, EntityGraphs.fetch(em, Borrowing.DETAIL_GRAPH));
         } finally {
             em.close();
         }
@@ -102,13 +339,89 @@ public class BorrowingService {
         try {
             em.getTransaction().begin();
             Borrowing borrowing = em.find(Borrowing.class, id);
+            User user = null;
             if (borrowing != null) {
+                // the borrowing is read again under the lock of its user, a concurrent return or delete
+                // must not be counted twice
+                user = em.find(User.class, borrowing.getUser().getId(), LockModeType.PESSIMISTIC_WRITE);
+                borrowing = refreshed(em, borrowing);
+            }
+            if (borrowing != null) {
+                boolean wasActive = borrowing.getReturnDate() == null;
+                boolean active = returnDate == null;
+                Copy copy = borrowing.getCopy();
+                int bookId = copy.getBook().getId();
+                if (wasActive != active) {
+                    if (active && user.getActiveBorrowings() >= MAX_ACTIVE_BORROWINGS) {
+                        throw new IllegalStateException("User already has 2 active borrowings.");
+                    }
+                    addActiveBorrowings(em, user.getId(), active ? 1 : -1);
+                    lockCopy(em, copy);
+                    if (active) {
+                        if (copy.getStatus() != CopyStatus.AVAILABLE) {
+                            throw new IllegalStateException("Copy is not available.");
+                        }
+                        copy.setStatus(CopyStatus.BORROWED);
+                        em.merge(copy);
+                        BookAvailabilities.adjust(em, bookId, 0, -1);
+                    } else if (copy.getStatus() == CopyStatus.BORROWED) {
+                        copy.setStatus(CopyStatus.AVAILABLE);
+                        em.merge(copy);
+                        BookAvailabilities.adjust(em, bookId, 0, 1);
+                    }
+                }
                 borrowing.setBorrowDate(borrowDate);
                 borrowing.setReturnDate(returnDate);
                 em.merge(borrowing);
+                if (wasActive || active) {
+                    BookAvailabilities.refreshEarliestBorrowDate(em, bookId);
+                }
             }
             em.getTransaction().commit();
         } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            em.close();
+        }
+    }
+
+    /**
+     * Returns the copy of an active borrowing: sets the return date and makes the copy available
+     * again, with the counter of the user and the availability of the book. The borrowing is read
+     * again once the user is locked, so of two concurrent returns of it only one succeeds.
+     *
+     * @throws IllegalStateException if the borrowing does not exist or was already returned
+     */
+    public void returnBorrowing(int id, Date returnDate) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            Borrowing borrowing = em.find(Borrowing.class, id, EntityGraphs.fetch(em, Borrowing.CHECKOUT_GRAPH));
+            if (borrowing != null) {
+                em.find(User.class, borrowing.getUser().getId(), LockModeType.PESSIMISTIC_WRITE);
+                borrowing = refreshed(em, borrowing);
+            }
+            if (borrowing == null || borrowing.getReturnDate() != null) {
+                throw new IllegalStateException("Borrowing " + id + " is not active.");
+            }
+            addActiveBorrowings(em, borrowing.getUser().getId(), -1);
+            borrowing.setReturnDate(returnDate);
+            Copy copy = borrowing.getCopy();
+            lockCopy(em, copy);
+            int bookId = copy.getBook().getId();
+            if (copy.getStatus() == CopyStatus.BORROWED) {
+                copy.setStatus(CopyStatus.AVAILABLE);
+                em.merge(copy);
+                BookAvailabilities.adjust(em, bookId, 0, 1);
+            }
+            em.merge(borrowing);
+            BookAvailabilities.refreshEarliestBorrowDate(em, bookId);
+            em.getTransaction().commit();
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
             em.close();
         }
     }
@@ -118,30 +431,115 @@ public class BorrowingService {
         EntityManager em = emf.createEntityManager();
         try {
             em.getTransaction().begin();
-            Borrowing borrowing = em.find(Borrowing.class, id);
+            Borrowing borrowing = em.find(Borrowing.class, id, EntityGraphs.fetch(em, Borrowing.CHECKOUT_GRAPH));
             if (borrowing != null) {
+                // as in returnBorrowing, decide whether it is active only once its user is locked
+                int userId = borrowing.getUser().getId();
+                em.find(User.class, userId, LockModeType.PESSIMISTIC_WRITE);
+                borrowing = refreshed(em, borrowing);
+            }
+            if (borrowing != null) {
+                boolean active = borrowing.getReturnDate() == null;
+                if (active) {
+                    addActiveBorrowings(em, borrowing.getUser().getId(), -1);
+                }
                 Copy copy = borrowing.getCopy();
-                if (copy != null) {
-                    copy.setStatus("Available"); // Update the copy status
+                lockCopy(em, copy);
+                int bookId = copy.getBook().getId();
+                // a borrowed copy is freed unless another active borrowing holds it by now; a borrowing
+                // recorded with a return date may still be the one that took the copy
+                if (copy.getStatus() == CopyStatus.BORROWED && !heldByOtherBorrowing(em, copy.getId(), id)) {
+                    copy.setStatus(CopyStatus.AVAILABLE); // Update the copy status
                     em.merge(copy);
+                    BookAvailabilities.adjust(em, bookId, 0, 1);
                 }
                 em.remove(borrowing);
+                if (active) {
+                    BookAvailabilities.refreshEarliestBorrowDate(em, bookId);
+                }
             }
             em.getTransaction().commit();
         } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
             em.close();
         }
     }
 
+    /**
+     * Reads a borrowing again once its user is locked, or returns null if a concurrent transaction
+     * deleted it in the meantime.
+     */
+    private static Borrowing refreshed(EntityManager em, Borrowing borrowing) {
+        try {
+            em.refresh(borrowing);
+            return borrowing;
+        } catch (EntityNotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Tells whether an active borrowing other than the given one holds the copy, the caller must hold
+     * the lock on the copy.
+     */
+    private static boolean heldByOtherBorrowing(EntityManager em, int copyId, int borrowingId) {
+        return em.createQuery("SELECT COUNT(b) FROM Borrowing b " +
+                        "WHERE b.copy.id = :copyId AND b.returnDate IS NULL AND b.id <> :id", Long.class)
+                .setParameter("copyId", copyId)
+                .setParameter("id", borrowingId)
+                .getSingleResult() > 0;
+    }
+
+    /**
+     * Locks the copy of a borrowing and reads its current status, once the user of the borrowing is locked.
+     */
+    private static void lockCopy(EntityManager em, Copy copy) {
+        long lockStart = System.nanoTime();
+        em.refresh(copy, LockModeType.PESSIMISTIC_WRITE);
+        ServiceMetrics.lockWaited(lockStart);
+    }
+
     public List<Borrowing> getBorrowingsByUserId(int userId) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return EntityGraphs.fetch(em, em.createQuery(
+                            "SELECT b FROM Borrowing b WHERE b.user.id = :userId", Borrowing.class), Borrowing.LIST_GRAPH)
+                    .setParameter("userId", userId)
+                    .getResultList();
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Returns the borrowing history of a user, newest first, with the title of each borrowed book.
+     * Reads the history in a single SQL statement however many borrowings the user has.
+     */
+    public List<BorrowingHistoryRow> getBorrowingHistory(int userId) {
         EntityManager em = emf.createEntityManager();
         try {
             return em.createQuery(
-                            "SELECT b FROM Borrowing b WHERE b.user.id = :userId", Borrowing.class)
+                            "SELECT new org.example.dto.BorrowingHistoryRow(b.id, bk.title, b.borrowDate, b.returnDate) " +
+                                    "FROM Borrowing b JOIN b.copy c JOIN c.book bk " +
+                                    "WHERE b.user.id = :userId ORDER BY b.borrowDate DESC, b.id DESC",
+                            BorrowingHistoryRow.class)
                     .setParameter("userId", userId)
                     .getResultList();
         } finally {
             em.close();
         }
     }
+
+    /**
+     * Changes the active borrowings counter of a user with a single UPDATE, the caller must hold the
+     * pessimistic lock on the user row.
+     */
+    private static void addActiveBorrowings(EntityManager em, int userId, int delta) {
+        em.createQuery("UPDATE User u SET u.activeBorrowings = u.activeBorrowings + :delta WHERE u.id = :id")
+                .setParameter("delta", delta)
+                .setParameter("id", userId)
+                .executeUpdate();
+    }
 }
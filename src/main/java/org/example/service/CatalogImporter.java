@@ -0,0 +1,557 @@
+package org.example.service;
+
+import org.example.model.Book;
+import org.example.model.Copy;
+import org.example.model.CopyStatus;
+import org.example.persistence.PersistenceUnitRegistry;
+import org.example.service.CatalogRecordReader.RawRecord;
+import org.example.validation.IsbnValidator;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Imports a catalog dump, one book per row with its number of copies, into the books and copies of
+ * the library.
+ *
+ * <p>The input is a comma or tab separated UTF-8 file whose header names the columns {@code title},
+ * {@code author} and {@code isbn}, and optionally {@code publisher}, {@code publicationYear} (or
+ * {@code year}) and {@code copies}, in any order. Fields may be quoted with double quotes.</p>
+ *
+ * <p>The import runs in three stages. One thread streams the records of the file with a
+ * {@link CatalogRecordReader} and hands them on in batches of {@code library.import.batchSize} rows
+ * (default {@value #DEFAULT_BATCH_SIZE}), {@code library.import.threads} threads parse and validate
+ * the batches in parallel, and the calling thread writes them in order, one transaction per batch
+ * with the inserts sent in JDBC batches. Only a few batches are in flight at any time, so memory
+ * does not grow with the size of the file.</p>
+ *
+ * <p>A row is rejected when it misses a title, author or ISBN, when its ISBN is not valid for
+ * {@link IsbnValidator}, or when a number or a text does not fit the catalog. A row whose ISBN is
+ * already in the catalog, or earlier in the file, is skipped as a duplicate. ISBNs are stored
+ * without hyphens, like those of {@link BookService}, so they are compared without them. Rejected and duplicate rows are written with their line and the reason to the
+ * rejects file.</p>
+ *
+ * <p>After every batch the position in the file is saved to a checkpoint. If the import stops, for
+ * example because the database became unreachable, importing the same file again resumes after the
+ * last committed batch. The checkpoint is deleted once the whole file was imported. A batch that
+ * committed just before a crash, without its checkpoint, is read again and its rows are then
+ * skipped as duplicates.</p>
+ */
+public class CatalogImporter {
+
+    public static final String BATCH_SIZE_PROPERTY = "library.import.batchSize";
+    public static final String THREADS_PROPERTY = "library.import.threads";
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    private static final String JDBC_BATCH_SIZE_PROPERTY = "hibernate.jdbc.batch_size";
+    private static final int DEFAULT_JDBC_BATCH_SIZE = 50;
+    private static final int MAX_TEXT_LENGTH = 255;
+    private static final int BATCHES_PER_THREAD = 2;
+
+    private final EntityManagerFactory emf;
+    private final int batchSize;
+    private final int threads;
+    private final int jdbcBatchSize;
+    private final IsbnValidator isbnValidator = new IsbnValidator();
+
+    /**
+     * Constructs a CatalogImporter using the given persistence unit name.
+     */
+    public CatalogImporter(String persistenceUnitName) {
+        this(PersistenceUnitRegistry.getEntityManagerFactory(persistenceUnitName));
+    }
+
+    /**
+     * Constructs a CatalogImporter on top of an already built factory.
+     */
+    public CatalogImporter(EntityManagerFactory emf) {
+        this.emf = emf;
+        this.batchSize = setting(emf, BATCH_SIZE_PROPERTY, DEFAULT_BATCH_SIZE);
+        this.threads = setting(emf, THREADS_PROPERTY, Math.max(1, Runtime.getRuntime().availableProcessors() - 2));
+        this.jdbcBatchSize = setting(emf, JDBC_BATCH_SIZE_PROPERTY, DEFAULT_JDBC_BATCH_SIZE);
+    }
+
+    /**
+     * Default constructor that uses "libraryPU" as the persistence unit.
+     */
+    public CatalogImporter() {
+        this("libraryPU");
+    }
+
+    /**
+     * Imports a catalog file, with the rejects written next to it to {@code <input>.rejects.csv} and
+     * the checkpoint kept in {@code <input>.checkpoint}.
+     */
+    public ImportReport importFile(Path input) throws IOException {
+        return importFile(input, sibling(input, ".rejects.csv"), sibling(input, ".checkpoint"));
+    }
+
+    /**
+     * Imports a catalog file, resuming from the checkpoint if there is one.
+     *
+     * @throws IllegalArgumentException if the header of the file lacks a required column
+     * @throws IllegalStateException    if the file changed since the checkpoint was written
+     */
+    public ImportReport importFile(Path input, Path rejects, Path checkpoint) throws IOException {
+        long start = System.nanoTime();
+        ImportCheckpoint resumed = ImportCheckpoint.load(checkpoint, input);
+        try (CatalogRecordReader reader = new CatalogRecordReader(input);
+             FileChannel rejectsChannel = FileChannel.open(rejects, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            RawRecord headerRecord = reader.next();
+            if (headerRecord == null) {
+                throw new IllegalArgumentException(input + " has no header.");
+            }
+            Header header = Header.parse(headerRecord.text());
+            rejectsChannel.truncate(resumed != null ? resumed.rejectsLength : 0);
+            rejectsChannel.position(rejectsChannel.size());
+            Writer rejectsWriter = Channels.newWriter(rejectsChannel, StandardCharsets.UTF_8.newEncoder(), -1);
+            if (resumed != null) {
+                reader.seek(resumed.offset, resumed.line);
+            } else {
+                rejectsWriter.write("line,reason,record\n");
+            }
+
+            ExecutorService validators = Executors.newFixedThreadPool(threads, daemonThreads("catalog-import-validate-"));
+            BlockingQueue<Future<Batch>> batches = new ArrayBlockingQueue<>(BATCHES_PER_THREAD * threads);
+            Thread readerThread = new Thread(() -> read(reader, header, validators, batches), "catalog-import-read");
+            readerThread.setDaemon(true);
+            readerThread.start();
+
+            long rows = 0;
+            long books = 0;
+            long copies = 0;
+            long rejected = 0;
+            long duplicates = 0;
+            try {
+                Batch batch;
+                while ((batch = await(batches)) != null) {
+                    List<Rejection> skipped = write(batch);
+                    List<Rejection> rejections = new ArrayList<>(batch.rejections);
+                    rejections.addAll(skipped);
+                    rejections.sort(Comparator.comparingLong(rejection -> rejection.line));
+                    for (Rejection rejection : rejections) {
+                        rejectsWriter.write(rejection.line + "," + quote(rejection.reason) + "," + quote(rejection.text) + "\n");
+                    }
+                    rejectsWriter.flush();
+                    ImportCheckpoint.of(input, batch.nextOffset, batch.nextLine, rejectsChannel.position()).save(checkpoint);
+
+                    rows += batch.records;
+                    rejected += batch.rejections.size();
+                    duplicates += skipped.size();
+                    books += batch.rows.size() - skipped.size();
+                    copies += batch.copies - copiesOf(skipped);
+                }
+            } finally {
+                readerThread.interrupt();
+                validators.shutdownNow();
+                join(readerThread);
+            }
+            Files.deleteIfExists(checkpoint);
+            return new ImportReport(resumed != null ? resumed.line : 0, rows, books, copies, rejected, duplicates,
+                    System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Streams the records after the header, hands every batch to the validators and queues its result
+     * in file order, followed by a null result at the end of the file.
+     */
+    private void read(CatalogRecordReader reader, Header header, ExecutorService validators,
+                      BlockingQueue<Future<Batch>> batches) {
+        try {
+            List<RawRecord> records = new ArrayList<>(batchSize);
+            RawRecord record;
+            while ((record = reader.next()) != null) {
+                records.add(record);
+                if (records.size() == batchSize) {
+                    List<RawRecord> full = records;
+                    batches.put(CompletableFuture.supplyAsync(() -> validate(header, full), validators));
+                    records = new ArrayList<>(batchSize);
+                }
+            }
+            if (!records.isEmpty()) {
+                List<RawRecord> last = records;
+                batches.put(CompletableFuture.supplyAsync(() -> validate(header, last), validators));
+            }
+            batches.put(CompletableFuture.completedFuture(null));
+        } catch (InterruptedException e) {
+            // the writer stopped, nobody waits for more batches
+        } catch (IOException | RuntimeException e) {
+            CompletableFuture<Batch> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            try {
+                batches.put(failed);
+            } catch (InterruptedException stopped) {
+                // the writer stopped, nobody waits for more batches
+            }
+        }
+    }
+
+    private Batch validate(Header header, List<RawRecord> records) {
+        RawRecord last = records.get(records.size() - 1);
+        Batch batch = new Batch(records.size(), last.nextOffset, last.nextLine);
+        for (RawRecord record : records) {
+            try {
+                Row row = parse(header, record);
+                batch.rows.add(row);
+                batch.copies += row.copies;
+            } catch (IllegalArgumentException e) {
+                batch.rejections.add(new Rejection(record.line, e.getMessage(), record.text(), 0));
+            }
+        }
+        return batch;
+    }
+
+    private Row parse(Header header, RawRecord record) {
+        if (record.truncated) {
+            throw new IllegalArgumentException("record longer than " + CatalogRecordReader.MAX_RECORD_LENGTH + " bytes");
+        }
+        String text = record.text();
+        List<String> values = fields(text, header.delimiter);
+        if (values.size() != header.fields) {
+            throw new IllegalArgumentException("expected " + header.fields + " fields, found " + values.size());
+        }
+        String title = text(values, header.title, "title", true);
+        String author = text(values, header.author, "author", true);
+        String publisher = text(values, header.publisher, "publisher", false);
+        String isbn = text(values, header.isbn, "ISBN", true);
+        if (!isbnValidator.isValid(isbn, null)) {
+            throw new IllegalArgumentException("invalid ISBN " + isbn);
+        }
+        int publicationYear = number(values, header.publicationYear, "publication year");
+        int copies = number(values, header.copies, "number of copies");
+        return new Row(record.line, text, title, author, publisher, publicationYear, BookService.normalizeIsbn(isbn), copies);
+    }
+
+    /**
+     * Writes the rows of a batch that are not in the catalog yet in one transaction, and returns the
+     * duplicates it skipped.
+     */
+    private List<Rejection> write(Batch batch) {
+        List<Rejection> duplicates = new ArrayList<>();
+        if (batch.rows.isEmpty()) {
+            return duplicates;
+        }
+        List<String> isbns = new ArrayList<>(batch.rows.size());
+        for (Row row : batch.rows) {
+            isbns.add(row.isbn);
+        }
+        EntityManager em = emf.createEntityManager();
+        try {
+            // the imported books would only push the books in use out of the second-level cache
+            em.unwrap(Session.class).setCacheMode(CacheMode.IGNORE);
+            em.getTransaction().begin();
+            Set<String> taken = new HashSet<>(em.createQuery(
+                            "SELECT b.isbn FROM Book b WHERE b.isbn IN :isbns", String.class)
+                    .setParameter("isbns", isbns)
+                    .getResultList());
+            int unflushed = 0;
+            for (Row row : batch.rows) {
+                if (!taken.add(row.isbn)) {
+                    duplicates.add(new Rejection(row.line, "duplicate ISBN " + row.isbn, row.text, row.copies));
+                    continue;
+                }
+                Book book = new Book(row.title, row.author, row.publisher, row.publicationYear, row.isbn);
+                em.persist(book);
+                BookAvailabilities.create(em, book.getId(), row.copies);
+                unflushed += 2;
+                for (int i = 1; i <= row.copies; i++) {
+                    em.persist(new Copy(book, i, CopyStatus.AVAILABLE));
+                    if (++unflushed >= jdbcBatchSize) {
+                        em.flush();
+                        em.clear();
+                        unflushed = 0;
+                    }
+                }
+                if (unflushed >= jdbcBatchSize) {
+                    em.flush();
+                    em.clear();
+                    unflushed = 0;
+                }
+            }
+            em.getTransaction().commit();
+            return duplicates;
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            em.close();
+        }
+    }
+
+    /**
+     * Splits a record into its fields. A field in double quotes may contain the delimiter, line
+     * breaks and doubled quotes.
+     */
+    static List<String> fields(String record, char delimiter) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < record.length(); i++) {
+            char c = record.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < record.length() && record.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == delimiter) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("unterminated quote");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static String text(List<String> values, int column, String name, boolean required) {
+        String value = column < 0 ? "" : values.get(column).trim();
+        if (value.isEmpty()) {
+            if (required) {
+                throw new IllegalArgumentException("missing " + name);
+            }
+            return null;
+        }
+        if (value.length() > MAX_TEXT_LENGTH) {
+            throw new IllegalArgumentException(name + " longer than " + MAX_TEXT_LENGTH + " characters");
+        }
+        return value;
+    }
+
+    private static int number(List<String> values, int column, String name) {
+        String value = column < 0 ? "" : values.get(column).trim();
+        if (value.isEmpty()) {
+            return 0;
+        }
+        try {
+            int number = Integer.parseInt(value);
+            if (number < 0) {
+                throw new IllegalArgumentException("negative " + name + " " + value);
+            }
+            return number;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid " + name + " " + value);
+        }
+    }
+
+    private static String quote(String value) {
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static long copiesOf(List<Rejection> duplicates) {
+        long copies = 0;
+        for (Rejection duplicate : duplicates) {
+            copies += duplicate.copies;
+        }
+        return copies;
+    }
+
+    private static Batch await(BlockingQueue<Future<Batch>> batches) throws IOException {
+        try {
+            return batches.take().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The import was interrupted.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private static void join(Thread thread) {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static Path sibling(Path file, String suffix) {
+        return file.resolveSibling(file.getFileName() + suffix);
+    }
+
+    private static int setting(EntityManagerFactory emf, String name, int defaultValue) {
+        Object value = emf.getProperties().get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        int setting = Integer.parseInt(value.toString().trim());
+        if (setting < 1) {
+            throw new IllegalArgumentException(name + " must be at least 1, was " + setting);
+        }
+        return setting;
+    }
+
+    /**
+     * Imports the catalog file given as the first argument into the library database, optionally with
+     * the rejects file and the checkpoint as second and third argument, and prints the report.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1 && args.length != 3) {
+            System.err.println("Usage: CatalogImporter <input> [<rejects> <checkpoint>]");
+            System.exit(2);
+        }
+        try {
+            CatalogImporter importer = new CatalogImporter();
+            ImportReport report = args.length == 1
+                    ? importer.importFile(Paths.get(args[0]))
+                    : importer.importFile(Paths.get(args[0]), Paths.get(args[1]), Paths.get(args[2]));
+            System.out.println(report);
+        } finally {
+            PersistenceUnitRegistry.closeAll();
+        }
+    }
+
+    /**
+     * Positions of the columns of a catalog file, -1 for an optional column it does not have.
+     */
+    private static final class Header {
+        final char delimiter;
+        final int fields;
+        final int title;
+        final int author;
+        final int publisher;
+        final int publicationYear;
+        final int isbn;
+        final int copies;
+
+        private Header(char delimiter, Map<String, Integer> columns) {
+            this.delimiter = delimiter;
+            this.fields = columns.size();
+            this.title = required(columns, "title");
+            this.author = required(columns, "author");
+            this.isbn = required(columns, "isbn");
+            this.publisher = columns.getOrDefault("publisher", -1);
+            this.publicationYear = columns.getOrDefault("publicationyear", columns.getOrDefault("year", -1));
+            this.copies = columns.getOrDefault("copies", -1);
+        }
+
+        static Header parse(String text) {
+            if (text.startsWith("\uFEFF")) {
+                text = text.substring(1);
+            }
+            char delimiter = text.indexOf('\t') >= 0 && text.indexOf(',') < 0 ? '\t' : ',';
+            Map<String, Integer> columns = new HashMap<>();
+            List<String> names = fields(text, delimiter);
+            for (int i = 0; i < names.size(); i++) {
+                if (columns.put(names.get(i).trim().toLowerCase(Locale.ROOT), i) != null) {
+                    throw new IllegalArgumentException("The header names the column " + names.get(i).trim() + " twice.");
+                }
+            }
+            return new Header(delimiter, columns);
+        }
+
+        private static int required(Map<String, Integer> columns, String name) {
+            Integer column = columns.get(name);
+            if (column == null) {
+                throw new IllegalArgumentException("The header has no " + name + " column.");
+            }
+            return column;
+        }
+    }
+
+    private static final class Batch {
+        final int records;
+        final long nextOffset;
+        final long nextLine;
+        final List<Row> rows = new ArrayList<>();
+        final List<Rejection> rejections = new ArrayList<>();
+        long copies;
+
+        Batch(int records, long nextOffset, long nextLine) {
+            this.records = records;
+            this.nextOffset = nextOffset;
+            this.nextLine = nextLine;
+        }
+    }
+
+    private static final class Row {
+        final long line;
+        final String text;
+        final String title;
+        final String author;
+        final String publisher;
+        final int publicationYear;
+        final String isbn;
+        final int copies;
+
+        Row(long line, String text, String title, String author, String publisher, int publicationYear,
+            String isbn, int copies) {
+            this.line = line;
+            this.text = text;
+            this.title = title;
+            this.author = author;
+            this.publisher = publisher;
+            this.publicationYear = publicationYear;
+            this.isbn = isbn;
+            this.copies = copies;
+        }
+    }
+
+    private static final class Rejection {
+        final long line;
+        final String reason;
+        final String text;
+        final int copies;
+
+        Rejection(long line, String reason, String text, int copies) {
+            this.line = line;
+            this.reason = reason;
+            this.text = text;
+            this.copies = copies;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package org.example.service;
+
+import org.example.model.Book;
+import org.example.persistence.ChangeEventBus;
+import org.example.persistence.ChangeSubscriber;
+import org.example.persistence.EntityChange;
+import org.example.search.CatalogIndex;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.stream.Stream;
+
+
+/**
+ * Holds the {@link CatalogIndex} of every factory, shared by the services that search books.
+ *
+ * <p>The index of a factory is built on the first search by streaming every book. It then follows
+ * the committed inserts, updates and deletes of books through the {@link ChangeEventBus} of the
+ * factory. For the books of every batch of changes the current rows are read again, in one query, since
+ * changes of the same book committed at the same time may arrive in either order. Changes delivered
+ * while the index is being built wait for the build to finish and are applied after it, replacing
+ * whatever the build read. If applying a batch fails the index is dropped and built again on the next
+ * search. Books changed by bulk statements that do not publish their changes are not seen by the index
+ * until the factory is rebuilt.</p>
+ */
+final class CatalogIndexes {
+
+    private static final Map<EntityManagerFactory, CatalogIndex> INDEXES = new WeakHashMap<>();
+
+    private CatalogIndexes() {
+    }
+
+    /**
+     * Returns the index of the factory, once the changes committed so far have been applied to it.
+     */
+    static CatalogIndex get(EntityManagerFactory emf) {
+        ChangeEventBus bus = ChangeEventBus.forFactory(emf);
+        bus.awaitDelivery();
+        synchronized (INDEXES) {
+            CatalogIndex index = INDEXES.get(emf);
+            if (index == null) {
+                CatalogIndex built = new CatalogIndex();
+                bus.subscribe(new ChangeSubscriber() {
+                    @Override
+                    public void onChanges(List<EntityChange> changes) {
+                        apply(emf, built, changes);
+                    }
+
+                    @Override
+                    public void onFailure(RuntimeException failure) {
+                        bus.unsubscribe(this);
+                        discard(emf, built);
+                    }
+                });
+                build(emf, built);
+                INDEXES.put(emf, built);
+                index = built;
+            }
+            return index;
+        }
+    }
+
+    private static void apply(EntityManagerFactory emf, CatalogIndex index, List<EntityChange> changes) {
+        Set<Integer> ids = new LinkedHashSet<>();
+        for (EntityChange change : changes) {
+            if (change.isOf(Book.class)) {
+                ids.add((Integer) change.getId());
+            }
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+        Map<Integer, Object[]> rows = new HashMap<>();
+        EntityManager em = emf.createEntityManager();
+        try {
+            for (Object[] row : em.createQuery(
+                            "SELECT b.id, b.title, b.author, b.publisher FROM Book b WHERE b.id IN :ids", Object[].class)
+                    .setParameter("ids", ids)
+                    .getResultList()) {
+                rows.put((Integer) row[0], row);
+            }
+        } finally {
+            em.close();
+        }
+        synchronized (INDEXES) {
+            for (int id : ids) {
+                Object[] row = rows.get(id);
+                if (row == null) {
+                    index.remove(id);
+                } else {
+                    index.put(id, (String) row[1], (String) row[2], (String) row[3]);
+                }
+            }
+        }
+    }
+
+    private static void discard(EntityManagerFactory emf, CatalogIndex index) {
+        synchronized (INDEXES) {
+            if (INDEXES.get(emf) == index) {
+                INDEXES.remove(emf);
+            }
+        }
+    }
+
+    private static void build(EntityManagerFactory emf, CatalogIndex index) {
+        try (Stream<Book> books = ScrollingStreams.stream(emf, "SELECT b FROM Book b", Book.class,
+                ScrollingStreams.DEFAULT_FETCH_SIZE)) {
+            books.forEach(book -> index.put(book.getId(), book.getTitle(), book.getAuthor(), book.getPublisher()));
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package org.example.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+
+/**
+ * Reads the records of a delimited text file one at a time through a {@link FileChannel}, for the
+ * {@link CatalogImporter}.
+ *
+ * <p>The file is read through a fixed buffer and a record is at most {@value #MAX_RECORD_LENGTH}
+ * bytes, so memory does not grow with the size of the file. A record ends at a line break outside
+ * double quotes, so quoted fields may span lines. The reader works on bytes, which is safe for UTF-8
+ * since neither a line break nor a quote can be part of a multi byte character, and it knows the
+ * byte offset of every record, so it can later continue from a record with {@link #seek}.</p>
+ */
+final class CatalogRecordReader implements Closeable {
+
+    static final int MAX_RECORD_LENGTH = 64 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final byte[] record = new byte[MAX_RECORD_LENGTH];
+    private long offset;
+    private long line = 1;
+
+    CatalogRecordReader(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        buffer.limit(0);
+    }
+
+    /**
+     * Continues reading at the given byte offset, which must be the start of a record on the given line.
+     */
+    void seek(long offset, long line) throws IOException {
+        channel.position(offset);
+        buffer.clear();
+        buffer.limit(0);
+        this.offset = offset;
+        this.line = line;
+    }
+
+    /**
+     * Reads the next record that is not blank, or returns null at the end of the file.
+     */
+    RawRecord next() throws IOException {
+        while (true) {
+            long startLine = line;
+            int length = 0;
+            boolean truncated = false;
+            boolean quoted = false;
+            while (true) {
+                if (!buffer.hasRemaining()) {
+                    buffer.clear();
+                    int read = channel.read(buffer);
+                    buffer.flip();
+                    if (read < 0) {
+                        if (length == 0 && !truncated) {
+                            return null;
+                        }
+                        break;
+                    }
+                }
+                byte b = buffer.get();
+                offset++;
+                if (b == '\n') {
+                    line++;
+                    if (!quoted) {
+                        break;
+                    }
+                } else if (b == '"') {
+                    quoted = !quoted;
+                }
+                if (length < MAX_RECORD_LENGTH) {
+                    record[length++] = b;
+                } else {
+                    truncated = true;
+                }
+            }
+            if (length > 0 && record[length - 1] == '\r') {
+                length--;
+            }
+            if (length > 0 || truncated) {
+                return new RawRecord(startLine, Arrays.copyOf(record, length), truncated, offset, line);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * A record as read from the file, with the offset and line number of the record that follows it.
+     */
+    static final class RawRecord {
+        final long line;
+        final byte[] bytes;
+        final boolean truncated;
+        final long nextOffset;
+        final long nextLine;
+
+        RawRecord(long line, byte[] bytes, boolean truncated, long nextOffset, long nextLine) {
+            this.line = line;
+            this.bytes = bytes;
+            this.truncated = truncated;
+            this.nextOffset = nextOffset;
+            this.nextLine = nextLine;
+        }
+
+        String text() {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package org.example.service;
+
+import java.util.Locale;
+
+
+/**
+ * How {@link BorrowingService#createBorrowing} keeps two checkouts from taking the same copy.
+ *
+ * <p>The mode of a persistence unit is set with the property {@value #PROPERTY}, the default is
+ * {@link #PESSIMISTIC}.</p>
+ */
+public enum CheckoutLockMode {
+
+    /**
+     * Reads the copy with {@code SELECT ... FOR UPDATE} and holds the row lock until the checkout commits.
+     */
+    PESSIMISTIC,
+
+    /**
+     * Claims the copy with a single conditional {@code UPDATE ... WHERE status = 'Available'}, which
+     * also bumps its version, and retries a few times when the write conflicts with another transaction.
+     */
+    OPTIMISTIC;
+
+    public static final String PROPERTY = "library.checkout.lockMode";
+
+    /**
+     * Reads the mode from a property value, null means the default.
+     */
+    public static CheckoutLockMode fromProperty(Object value) {
+        if (value == null) {
+            return PESSIMISTIC;
+        }
+        try {
+            return valueOf(value.toString().trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown " + PROPERTY + ": " + value, e);
+        }
+    }
+}
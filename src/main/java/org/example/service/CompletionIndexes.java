@@ -0,0 +1,205 @@
+package org.example.service;
+
+import org.example.model.Book;
+import org.example.model.User;
+import org.example.persistence.ChangeEventBus;
+import org.example.persistence.ChangeSubscriber;
+import org.example.persistence.EntityChange;
+import org.example.search.CompletionIndex;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.stream.Stream;
+
+
+/**
+ * Holds the {@link CompletionIndex completion indexes} of every factory, shared by
+ * {@link SuggestionService}.
+ *
+ * <p>Like {@link CatalogIndexes}, the indexes of a factory are built on the first completion and then
+ * follow the committed changes of books and users through the {@link ChangeEventBus}. Since changes
+ * committed at the same time may arrive in either order, the current rows of every batch are read
+ * again and compared with the texts the indexes hold for them, which are kept next to the indexes.
+ * Changes delivered while the indexes are being built wait for the build and are compared with what
+ * it read. Every batch of changes is merged into each index at once, so a burst of writes costs one
+ * new snapshot per batch rather than one per row. If merging a batch fails, the indexes are dropped and built again on
+ * the next completion. Building the indexes reads every book and user, which takes
+ * seconds on a large catalog, so screens that complete text start it in the background with
+ * {@link #prepare} when they open.</p>
+ */
+final class CompletionIndexes {
+
+    private static final Map<EntityManagerFactory, CompletionIndexes> INDEXES = new WeakHashMap<>();
+
+    final CompletionIndex titles = CompletionIndex.perRow();
+    final CompletionIndex authors = CompletionIndex.perText();
+    final CompletionIndex users = CompletionIndex.perRow();
+
+    // the text of every row in the indexes, guarded by INDEXES
+    private final Map<Integer, String> bookTitles = new HashMap<>();
+    private final Map<Integer, String> bookAuthors = new HashMap<>();
+    private final Map<Integer, String> userNames = new HashMap<>();
+
+    private CompletionIndexes() {
+    }
+
+    /**
+     * Returns the indexes of the factory, once the changes committed so far have been applied to them.
+     */
+    static CompletionIndexes get(EntityManagerFactory emf) {
+        ChangeEventBus bus = ChangeEventBus.forFactory(emf);
+        bus.awaitDelivery();
+        synchronized (INDEXES) {
+            CompletionIndexes indexes = INDEXES.get(emf);
+            if (indexes == null) {
+                CompletionIndexes built = new CompletionIndexes();
+                bus.subscribe(new ChangeSubscriber() {
+                    @Override
+                    public void onChanges(List<EntityChange> changes) {
+                        built.apply(emf, changes);
+                    }
+
+                    @Override
+                    public void onFailure(RuntimeException failure) {
+                        bus.unsubscribe(this);
+                        synchronized (INDEXES) {
+                            if (INDEXES.get(emf) == built) {
+                                INDEXES.remove(emf);
+                            }
+                        }
+                    }
+                });
+                built.build(emf);
+                INDEXES.put(emf, built);
+                indexes = built;
+            }
+            return indexes;
+        }
+    }
+
+    /**
+     * Starts building the indexes of the factory in a background thread, if they are not built yet.
+     */
+    static void prepare(EntityManagerFactory emf) {
+        Thread builder = new Thread(() -> get(emf), "completion-index-builder");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    private void apply(EntityManagerFactory emf, List<EntityChange> changes) {
+        Set<Integer> bookIds = new LinkedHashSet<>();
+        Set<Integer> userIds = new LinkedHashSet<>();
+        for (EntityChange change : changes) {
+            if (change.isOf(Book.class)) {
+                bookIds.add((Integer) change.getId());
+            } else if (change.isOf(User.class)) {
+                userIds.add((Integer) change.getId());
+            }
+        }
+        if (bookIds.isEmpty() && userIds.isEmpty()) {
+            return;
+        }
+        Map<Integer, Object[]> bookRows = new HashMap<>();
+        Map<Integer, Object[]> userRows = new HashMap<>();
+        EntityManager em = emf.createEntityManager();
+        try {
+            if (!bookIds.isEmpty()) {
+                for (Object[] row : em.createQuery(
+                                "SELECT b.id, b.title, b.author FROM Book b WHERE b.id IN :ids", Object[].class)
+                        .setParameter("ids", bookIds)
+                        .getResultList()) {
+                    bookRows.put((Integer) row[0], row);
+                }
+            }
+            if (!userIds.isEmpty()) {
+                for (Object[] row : em.createQuery(
+                                "SELECT u.id, u.name FROM User u WHERE u.id IN :ids", Object[].class)
+                        .setParameter("ids", userIds)
+                        .getResultList()) {
+                    userRows.put((Integer) row[0], row);
+                }
+            }
+        } finally {
+            em.close();
+        }
+        synchronized (INDEXES) {
+            Changes titleChanges = new Changes(bookTitles);
+            Changes authorChanges = new Changes(bookAuthors);
+            Changes userChanges = new Changes(userNames);
+            for (int id : bookIds) {
+                Object[] row = bookRows.get(id);
+                titleChanges.set(id, row == null ? null : (String) row[1]);
+                authorChanges.set(id, row == null ? null : (String) row[2]);
+            }
+            for (int id : userIds) {
+                Object[] row = userRows.get(id);
+                userChanges.set(id, row == null ? null : (String) row[1]);
+            }
+            titleChanges.applyTo(titles);
+            authorChanges.applyTo(authors);
+            userChanges.applyTo(users);
+        }
+    }
+
+    private void build(EntityManagerFactory emf) {
+        try (Stream<Book> books = ScrollingStreams.stream(emf, "SELECT b FROM Book b", Book.class,
+                ScrollingStreams.DEFAULT_FETCH_SIZE)) {
+            books.forEach(book -> {
+                bookTitles.put(book.getId(), book.getTitle());
+                bookAuthors.put(book.getId(), book.getAuthor());
+            });
+        }
+        titles.update(Collections.emptyMap(), bookTitles);
+        authors.update(Collections.emptyMap(), bookAuthors);
+
+        try (Stream<User> rows = ScrollingStreams.stream(emf, "SELECT u FROM User u", User.class,
+                ScrollingStreams.DEFAULT_FETCH_SIZE)) {
+            rows.forEach(user -> userNames.put(user.getId(), user.getName()));
+        }
+        users.update(Collections.emptyMap(), userNames);
+    }
+
+    /**
+     * The rows removed from and added to one index by a batch of changes, found by comparing the current
+     * text of every changed row with the text the index holds for it.
+     */
+    private static final class Changes {
+        private final Map<Integer, String> held;
+        private final Map<Integer, String> removed = new HashMap<>();
+        private final Map<Integer, String> added = new HashMap<>();
+
+        private Changes(Map<Integer, String> held) {
+            this.held = held;
+        }
+
+        /**
+         * Records the current text of a row, null if the row is gone.
+         */
+        private void set(int id, String text) {
+            String oldText = text == null ? held.remove(id) : held.put(id, text);
+            if (Objects.equals(oldText, text)) {
+                return;
+            }
+            if (oldText != null) {
+                removed.put(id, oldText);
+            }
+            if (text != null) {
+                added.put(id, text);
+            }
+        }
+
+        private void applyTo(CompletionIndex index) {
+            if (!removed.isEmpty() || !added.isEmpty()) {
+                index.update(removed, added);
+            }
+        }
+    }
+}
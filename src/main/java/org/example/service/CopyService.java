@@ -1,10 +1,15 @@
 package org.example.service;
 
+import org.example.dto.TitleAvailabilityRow;
 import org.example.model.Copy;
 import org.example.model.Book;
+import org.example.model.CopyStatus;
+import org.example.persistence.PersistenceUnitRegistry;
 
 import javax.persistence.*;
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Stream;
 
 
 /**
@@ -14,19 +19,35 @@ import java.util.List;
  * {@link Copy} entities. It interacts with the database using JPA,
  * leveraging an {@code EntityManagerFactory} to perform operations on
  * copies of books, such as checking availability and managing their status.</p>
+ *
+ * <p>Every change of a copy also updates the availability summary of its book in the same
+ * transaction, see {@link org.example.model.BookAvailability}.</p>
  */
 public class CopyService {
-    private EntityManagerFactory emf;
+    private static final List<String> SORT_KEYS = Arrays.asList("id", "copyNumber", "status");
+
+    private final EntityManagerFactory emf;
 
     public CopyService(String persistenceUnitName) {
-        emf = Persistence.createEntityManagerFactory(persistenceUnitName);
+        this(PersistenceUnitRegistry.getEntityManagerFactory(persistenceUnitName));
+    }
+
+    public CopyService(EntityManagerFactory emf) {
+        this.emf = emf;
     }
 
     public CopyService() {
         this("libraryPU");
     }
 
+    /**
+     * @throws IllegalArgumentException if the status is not a {@link CopyStatus} name
+     */
     public void createCopy(int bookId, int copyNumber, String status) {
+        createCopy(bookId, copyNumber, CopyStatus.fromName(status));
+    }
+
+    public void createCopy(int bookId, int copyNumber, CopyStatus status) {
         EntityManager em = emf.createEntityManager();
         try {
             em.getTransaction().begin();
@@ -34,6 +55,7 @@ public class CopyService {
             if (book != null) {
                 Copy copy = new Copy(book, copyNumber, status);
                 em.persist(copy);
+                BookAvailabilities.adjust(em, bookId, 1, status == CopyStatus.AVAILABLE ? 1 : 0);
             }
             em.getTransaction().commit();
         } finally {
@@ -44,33 +66,85 @@ public class CopyService {
     public List<Copy> getAllCopies() {
         EntityManager em = emf.createEntityManager();
         try {
-            return em.createQuery("SELECT c FROM Copy c", Copy.class).getResultList();
+            return EntityGraphs.fetch(em, em.createQuery("SELECT c FROM Copy c", Copy.class), Copy.WITH_BOOK_GRAPH)
+                    .getResultList();
         } finally {
             em.close();
         }
     }
 
+    /**
+     * Reads one page of copies sorted by id, copyNumber or status. Pass null as the token to read the
+     * first page, and the token of the returned page to read the next one.
+     */
+    public Page<Copy> getCopiesPage(String sortBy, String continuationToken, int limit) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return KeysetPager.fetch(em, Copy.class, Copy.WITH_BOOK_GRAPH, sortBy, SORT_KEYS, continuationToken, limit);
+        } finally {
+            em.close();
+        }
+    }
+
+    public Page<Copy> getCopiesPage(String continuationToken, int limit) {
+        return getCopiesPage("id", continuationToken, limit);
+    }
+
+    /**
+     * Streams every copy together with its book, reading {@code fetchSize} rows at a time
+     * without keeping the rows already read in memory. The stream must be closed.
+     */
+    public Stream<Copy> streamAllCopies(int fetchSize) {
+        return ScrollingStreams.stream(emf,
+                "SELECT c FROM Copy c JOIN FETCH c.book ORDER BY c.id", Copy.class, fetchSize);
+    }
+
+    public Stream<Copy> streamAllCopies() {
+        return streamAllCopies(ScrollingStreams.DEFAULT_FETCH_SIZE);
+    }
+
     public Copy getCopyById(int id) {
         EntityManager em = emf.createEntityManager();
         try {
-            return em.find(Copy.class, id);
+            return em.find(Copy.class, id, EntityGraphs.fetch(em, Copy.WITH_BOOK_GRAPH));
         } finally {
             em.close();
         }
     }
 
+    /**
+     * @throws IllegalArgumentException if the status is not a {@link CopyStatus} name
+     * @throws IllegalStateException if the copy cannot change to the status
+     */
     public void updateCopy(int id, int copyNumber, String status) {
+        updateCopy(id, copyNumber, CopyStatus.fromName(status));
+    }
+
+    /**
+     * Updates the copy number and status of a copy.
+     *
+     * @throws IllegalStateException if the copy cannot change to the status, see
+     *                               {@link CopyStatus#canChangeTo(CopyStatus)}
+     */
+    public void updateCopy(int id, int copyNumber, CopyStatus status) {
         EntityManager em = emf.createEntityManager();
         try {
             em.getTransaction().begin();
             Copy copy = em.find(Copy.class, id);
             if (copy != null) {
+                boolean wasAvailable = copy.getStatus() == CopyStatus.AVAILABLE;
                 copy.setCopyNumber(copyNumber);
                 copy.setStatus(status);
                 em.merge(copy);
+                if (wasAvailable != (status == CopyStatus.AVAILABLE)) {
+                    BookAvailabilities.adjust(em, copy.getBook().getId(), 0, wasAvailable ? -1 : 1);
+                }
             }
             em.getTransaction().commit();
         } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
             em.close();
         }
     }
@@ -82,6 +156,7 @@ public class CopyService {
             Copy copy = em.find(Copy.class, id);
             if (copy != null) {
                 em.remove(copy);
+                BookAvailabilities.adjust(em, copy.getBook().getId(), -1, copy.getStatus() == CopyStatus.AVAILABLE ? -1 : 0);
             }
             em.getTransaction().commit();
         } finally {
@@ -89,10 +164,31 @@ public class CopyService {
         }
     }
 
+    /**
+     * Reads one page of titles in book id order with how many of their copies are available, read
+     * from the maintained {@link org.example.model.BookAvailability} summaries in a single SQL statement
+     * per page. Books without copies are left out.
+     */
+    public Page<TitleAvailabilityRow> getTitleAvailabilityPage(String continuationToken, int limit) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return KeysetPager.fetchById(em,
+                    "SELECT new org.example.dto.TitleAvailabilityRow(b.id, b.title, b.author, " +
+                            "a.totalCopies, a.availableCopies, a.earliestBorrowDate) " +
+                            "FROM BookAvailability a JOIN Book b ON b.id = a.bookId",
+                    "a.totalCopies > 0", "a.bookId", TitleAvailabilityRow.class, TitleAvailabilityRow::getBookId,
+                    continuationToken, limit);
+        } finally {
+            em.close();
+        }
+    }
+
     public List<Copy> getAvailableCopies() {
         EntityManager em = emf.createEntityManager();
         try {
-            return em.createQuery("SELECT c FROM Copy c WHERE c.status = 'Available'", Copy.class)
+            return EntityGraphs.fetch(em, em.createQuery("SELECT c FROM Copy c WHERE c.status = :status", Copy.class),
+                    Copy.WITH_BOOK_GRAPH)
+                    .setParameter("status", CopyStatus.AVAILABLE)
                     .getResultList();
         } finally {
             em.close();
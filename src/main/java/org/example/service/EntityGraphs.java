@@ -0,0 +1,33 @@
+package org.example.service;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import java.util.Collections;
+import java.util.Map;
+
+
+/**
+ * Applies the named entity graphs declared on the entities to finds and queries, shared by the
+ * services.
+ *
+ * <p>Associations are mapped lazily, so a graph used as a fetch graph makes a read load exactly the
+ * associations of its attribute nodes in the same statement and nothing else.</p>
+ */
+final class EntityGraphs {
+
+    static final String FETCH_GRAPH = "javax.persistence.fetchgraph";
+
+    private EntityGraphs() {
+    }
+
+    /**
+     * Hints for {@link EntityManager#find(Class, Object, Map)} that load the named graph.
+     */
+    static Map<String, Object> fetch(EntityManager em, String graphName) {
+        return Collections.singletonMap(FETCH_GRAPH, em.getEntityGraph(graphName));
+    }
+
+    static <T> TypedQuery<T> fetch(EntityManager em, TypedQuery<T> query, String graphName) {
+        return query.setHint(FETCH_GRAPH, em.getEntityGraph(graphName));
+    }
+}
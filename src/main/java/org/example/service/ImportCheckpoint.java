@@ -0,0 +1,82 @@
+package org.example.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+
+/**
+ * Where an import of the {@link CatalogImporter} stands after its last committed batch: the offset and
+ * line of the first record of the input not imported yet, and the length of the rejects file at that
+ * point.
+ *
+ * <p>The checkpoint is a properties file, replaced atomically after every batch so that a crash leaves
+ * either the old or the new one. It also records the size and modification time of the input, and
+ * an import refuses to resume from the checkpoint of a file that changed since.</p>
+ */
+final class ImportCheckpoint {
+
+    final long offset;
+    final long line;
+    final long rejectsLength;
+    private final long inputSize;
+    private final long inputModified;
+
+    private ImportCheckpoint(long offset, long line, long rejectsLength, long inputSize, long inputModified) {
+        this.offset = offset;
+        this.line = line;
+        this.rejectsLength = rejectsLength;
+        this.inputSize = inputSize;
+        this.inputModified = inputModified;
+    }
+
+    static ImportCheckpoint of(Path input, long offset, long line, long rejectsLength) throws IOException {
+        return new ImportCheckpoint(offset, line, rejectsLength, Files.size(input),
+                Files.getLastModifiedTime(input).toMillis());
+    }
+
+    /**
+     * Reads the checkpoint of the given input, or returns null if there is none.
+     *
+     * @throws IllegalStateException if the input changed since the checkpoint was written
+     */
+    static ImportCheckpoint load(Path checkpoint, Path input) throws IOException {
+        if (!Files.exists(checkpoint)) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(checkpoint)) {
+            properties.load(in);
+        }
+        ImportCheckpoint loaded = new ImportCheckpoint(
+                Long.parseLong(properties.getProperty("offset")),
+                Long.parseLong(properties.getProperty("line")),
+                Long.parseLong(properties.getProperty("rejectsLength")),
+                Long.parseLong(properties.getProperty("inputSize")),
+                Long.parseLong(properties.getProperty("inputModified")));
+        if (loaded.inputSize != Files.size(input)
+                || loaded.inputModified != Files.getLastModifiedTime(input).toMillis()) {
+            throw new IllegalStateException("The checkpoint " + checkpoint + " was written for another version of "
+                    + input + ", delete it to import the file from the start.");
+        }
+        return loaded;
+    }
+
+    void save(Path checkpoint) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("offset", String.valueOf(offset));
+        properties.setProperty("line", String.valueOf(line));
+        properties.setProperty("rejectsLength", String.valueOf(rejectsLength));
+        properties.setProperty("inputSize", String.valueOf(inputSize));
+        properties.setProperty("inputModified", String.valueOf(inputModified));
+        Path temporary = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temporary)) {
+            properties.store(out, "catalog import checkpoint");
+        }
+        Files.move(temporary, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
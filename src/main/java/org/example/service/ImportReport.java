@@ -0,0 +1,80 @@
+package org.example.service;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Outcome of one run of the {@link CatalogImporter}. The counts cover the rows read by this run,
+ * which starts after the checkpoint when the run resumed an earlier import.
+ */
+public class ImportReport {
+
+    private final long resumedAtLine;
+    private final long rows;
+    private final long books;
+    private final long copies;
+    private final long rejected;
+    private final long duplicates;
+    private final long elapsedNanos;
+
+    ImportReport(long resumedAtLine, long rows, long books, long copies, long rejected, long duplicates,
+                 long elapsedNanos) {
+        this.resumedAtLine = resumedAtLine;
+        this.rows = rows;
+        this.books = books;
+        this.copies = copies;
+        this.rejected = rejected;
+        this.duplicates = duplicates;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Returns the line of the input the run resumed at, or 0 if it started from the beginning.
+     */
+    public long getResumedAtLine() {
+        return resumedAtLine;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getBooks() {
+        return books;
+    }
+
+    public long getCopies() {
+        return copies;
+    }
+
+    /**
+     * Returns the number of rows that failed validation.
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * Returns the number of rows skipped because a book with their ISBN was already in the catalog
+     * or earlier in the file.
+     */
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0 : rows * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Imported %d books with %d copies from %d rows in %.1f s (%.0f rows/s), "
+                        + "%d rejected, %d duplicates%s",
+                books, copies, rows, elapsedNanos / 1e9, getRowsPerSecond(), rejected, duplicates,
+                resumedAtLine > 0 ? ", resumed at line " + resumedAtLine : "");
+    }
+}
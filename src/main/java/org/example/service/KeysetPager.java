@@ -0,0 +1,212 @@
+package org.example.service;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.SingularAttribute;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+
+/**
+ * Reads entities page by page using keyset pagination, shared by the paged methods of the services.
+ *
+ * <p>Instead of an offset, every page continues after the sort value and id of the last row of the
+ * previous page ({@code WHERE sort > :value OR (sort = :value AND id > :id) ORDER BY sort, id}), so
+ * reading a page costs the same no matter how deep into the table it is. The position is handed to
+ * the caller as an opaque continuation token that also records the sort attribute.</p>
+ */
+final class KeysetPager {
+
+    static final int MAX_PAGE_SIZE = 1000;
+
+    private static final String ID = "id";
+
+    private KeysetPager() {
+    }
+
+    /**
+     * Reads the page that follows the continuation token, or the first page when the token is null.
+     *
+     * @param sortBy   attribute to sort by, must be one of {@code sortable}
+     * @param sortable attributes the caller allows sorting by, they must not be nullable
+     */
+    static <T> Page<T> fetch(EntityManager em, Class<T> entityClass, String sortBy, Collection<String> sortable,
+                             String continuationToken, int limit) {
+        return fetch(em, entityClass, null, sortBy, sortable, continuationToken, limit);
+    }
+
+    /**
+     * Reads a page like {@link #fetch(EntityManager, Class, String, Collection, String, int)}, loading
+     * the associations of the named entity graph with every row.
+     */
+    static <T> Page<T> fetch(EntityManager em, Class<T> entityClass, String graphName, String sortBy,
+                             Collection<String> sortable, String continuationToken, int limit) {
+        if (!sortable.contains(sortBy)) {
+            throw new IllegalArgumentException("Cannot sort " + entityClass.getSimpleName() + " by " + sortBy);
+        }
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Page size must be positive.");
+        }
+        int pageSize = Math.min(limit, MAX_PAGE_SIZE);
+
+        EntityType<T> entityType = em.getMetamodel().entity(entityClass);
+        SingularAttribute<? super T, ?> sortAttribute = entityType.getSingularAttribute(sortBy);
+        SingularAttribute<? super T, ?> idAttribute = entityType.getSingularAttribute(ID);
+        boolean sortById = ID.equals(sortBy);
+
+        StringBuilder jpql = new StringBuilder("SELECT e FROM ").append(entityType.getName()).append(" e");
+        Cursor cursor = continuationToken == null ? null : Cursor.decode(continuationToken, sortBy, sortAttribute.getJavaType());
+        if (cursor != null) {
+            if (sortById) {
+                jpql.append(" WHERE e.id > :lastId");
+            } else {
+                jpql.append(" WHERE e.").append(sortBy).append(" > :lastValue OR (e.")
+                        .append(sortBy).append(" = :lastValue AND e.id > :lastId)");
+            }
+        }
+        jpql.append(sortById ? " ORDER BY e.id" : " ORDER BY e." + sortBy + ", e.id");
+
+        TypedQuery<T> query = em.createQuery(jpql.toString(), entityClass);
+        if (graphName != null) {
+            EntityGraphs.fetch(em, query, graphName);
+        }
+        if (cursor != null) {
+            query.setParameter("lastId", cursor.lastId);
+            if (!sortById) {
+                query.setParameter("lastValue", cursor.lastValue);
+            }
+        }
+        List<T> rows = query.setMaxResults(pageSize + 1).getResultList();
+
+        if (rows.size() <= pageSize) {
+            return new Page<>(rows, null);
+        }
+        List<T> items = new ArrayList<>(rows.subList(0, pageSize));
+        T last = items.get(pageSize - 1);
+        String nextToken = new Cursor(((Number) read(idAttribute, last)).intValue(), read(sortAttribute, last)).encode(sortBy);
+        return new Page<>(items, nextToken);
+    }
+
+    /**
+     * Reads a page of projected rows in id order. {@code select} is a JPQL query without WHERE or
+     * ORDER BY clauses, {@code idPath} is the id it pages by (for example {@code b.id}).
+     */
+    static <R> Page<R> fetchById(EntityManager em, String select, String idPath, Class<R> rowClass,
+                                 ToIntFunction<R> idOf, String continuationToken, int limit) {
+        return fetchById(em, select, null, idPath, rowClass, idOf, continuationToken, limit);
+    }
+
+    /**
+     * Reads a page like {@link #fetchById(EntityManager, String, String, Class, ToIntFunction, String, int)},
+     * keeping only the rows that match {@code condition}, a JPQL condition on the aliases of {@code select}.
+     */
+    static <R> Page<R> fetchById(EntityManager em, String select, String condition, String idPath, Class<R> rowClass,
+                                 ToIntFunction<R> idOf, String continuationToken, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Page size must be positive.");
+        }
+        int pageSize = Math.min(limit, MAX_PAGE_SIZE);
+
+        Cursor cursor = continuationToken == null ? null : Cursor.decode(continuationToken, ID, int.class);
+        List<String> conditions = new ArrayList<>();
+        if (condition != null) {
+            conditions.add("(" + condition + ")");
+        }
+        if (cursor != null) {
+            conditions.add(idPath + " > :lastId");
+        }
+        String jpql = select + (conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions))
+                + " ORDER BY " + idPath;
+        TypedQuery<R> query = em.createQuery(jpql, rowClass);
+        if (cursor != null) {
+            query.setParameter("lastId", cursor.lastId);
+        }
+        List<R> rows = query.setMaxResults(pageSize + 1).getResultList();
+
+        if (rows.size() <= pageSize) {
+            return new Page<>(rows, null);
+        }
+        List<R> items = new ArrayList<>(rows.subList(0, pageSize));
+        int lastId = idOf.applyAsInt(items.get(pageSize - 1));
+        return new Page<>(items, new Cursor(lastId, lastId).encode(ID));
+    }
+
+    private static Object read(SingularAttribute<?, ?> attribute, Object entity) {
+        Member member = attribute.getJavaMember();
+        try {
+            Field field = (Field) member;
+            field.setAccessible(true);
+            return field.get(entity);
+        } catch (ClassCastException | IllegalAccessException e) {
+            throw new IllegalStateException("Cannot read " + attribute.getName() + " for paging.", e);
+        }
+    }
+
+    /**
+     * Position of the last row of a page: its id and its value of the sort attribute.
+     */
+    private static final class Cursor {
+        private final int lastId;
+        private final Object lastValue;
+
+        private Cursor(int lastId, Object lastValue) {
+            this.lastId = lastId;
+            this.lastValue = lastValue;
+        }
+
+        private String encode(String sortBy) {
+            String value;
+            if (lastValue instanceof Date) {
+                value = String.valueOf(((Date) lastValue).getTime());
+            } else if (lastValue instanceof Enum) {
+                value = ((Enum<?>) lastValue).name();
+            } else {
+                value = String.valueOf(lastValue);
+            }
+            String raw = sortBy + ":" + lastId + ":" + value;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private static Cursor decode(String token, String sortBy, Class<?> valueType) {
+            String[] parts;
+            try {
+                parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(":", 3);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid continuation token.", e);
+            }
+            if (parts.length != 3 || !parts[0].equals(sortBy)) {
+                throw new IllegalArgumentException("Continuation token does not belong to a page sorted by " + sortBy + ".");
+            }
+            try {
+                int lastId = Integer.parseInt(parts[1]);
+                String value = parts[2];
+                Object lastValue;
+                if (valueType == String.class) {
+                    lastValue = value;
+                } else if (valueType == int.class || valueType == Integer.class) {
+                    lastValue = Integer.valueOf(value);
+                } else if (valueType == long.class || valueType == Long.class) {
+                    lastValue = Long.valueOf(value);
+                } else if (Date.class.isAssignableFrom(valueType)) {
+                    lastValue = new Date(Long.parseLong(value));
+                } else if (valueType.isEnum()) {
+                    lastValue = Enum.valueOf((Class<Enum>) valueType, value);
+                } else {
+                    throw new IllegalArgumentException("Cannot page by values of type " + valueType.getSimpleName());
+                }
+                return new Cursor(lastId, lastValue);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid continuation token.", e);
+            }
+        }
+    }
+}
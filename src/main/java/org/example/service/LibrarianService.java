@@ -2,8 +2,11 @@ package org.example.service;
 
 import org.example.model.Librarian;
 import org.example.model.User;
+import org.example.persistence.PersistenceUnitRegistry;
+import org.hibernate.Hibernate;
 
 import javax.persistence.*;
+import java.util.Arrays;
 import java.util.List;
 
 
@@ -20,10 +23,16 @@ import java.util.List;
 
 
 public class LibrarianService {
-    private EntityManagerFactory emf;
+    private static final List<String> SORT_KEYS = Arrays.asList("id", "position", "employmentDate");
+
+    private final EntityManagerFactory emf;
 
     public LibrarianService(String persistenceUnitName) {
-        emf = Persistence.createEntityManagerFactory(persistenceUnitName);
+        this(PersistenceUnitRegistry.getEntityManagerFactory(persistenceUnitName));
+    }
+
+    public LibrarianService(EntityManagerFactory emf) {
+        this.emf = emf;
     }
 
     public LibrarianService() {
@@ -50,17 +59,43 @@ public class LibrarianService {
     public List<Librarian> getAllLibrarians() {
         EntityManager em = emf.createEntityManager();
         try {
-            return em.createQuery("SELECT l FROM Librarian l", Librarian.class).getResultList();
+            return EntityGraphs.fetch(em, em.createQuery("SELECT l FROM Librarian l", Librarian.class),
+                    Librarian.WITH_USER_GRAPH).getResultList();
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Reads one page of librarians sorted by id, position or employmentDate. Pass null as the token to read the
+     * first page, and the token of the returned page to read the next one.
+     */
+    public Page<Librarian> getLibrariansPage(String sortBy, String continuationToken, int limit) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return KeysetPager.fetch(em, Librarian.class, Librarian.WITH_USER_GRAPH, sortBy, SORT_KEYS, continuationToken, limit);
         } finally {
             em.close();
         }
     }
 
+    public Page<Librarian> getLibrariansPage(String continuationToken, int limit) {
+        return getLibrariansPage("id", continuationToken, limit);
+    }
 
+
+    /**
+     * Retrieves a librarian with its user. A librarian found in the second-level cache comes without
+     * its user, which is then read by id.
+     */
     public Librarian getLibrarianById(int id) {
         EntityManager em = emf.createEntityManager();
         try {
-            return em.find(Librarian.class, id);
+            Librarian librarian = em.find(Librarian.class, id, EntityGraphs.fetch(em, Librarian.WITH_USER_GRAPH));
+            if (librarian != null) {
+                Hibernate.initialize(librarian.getUser());
+            }
+            return librarian;
         } finally {
             em.close();
         }
@@ -0,0 +1,45 @@
+package org.example.service;
+
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * One page of results returned by the paged methods of the services.
+ *
+ * <p>A page holds at most the number of items that was requested. When more rows follow,
+ * {@link #getNextToken()} returns a continuation token that is passed back to the same method
+ * to read the next page; on the last page the token is null.</p>
+ *
+ * @param <T> the type of the items in the page
+ */
+public class Page<T> {
+
+    private final List<T> items;
+    private final String nextToken;
+
+    public Page(List<T> items, String nextToken) {
+        this.items = Collections.unmodifiableList(items);
+        this.nextToken = nextToken;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public String getNextToken() {
+        return nextToken;
+    }
+
+    public boolean hasNext() {
+        return nextToken != null;
+    }
+
+    @Override
+    public String toString() {
+        return "Page{" +
+                "items=" + items.size() +
+                ", nextToken='" + nextToken + '\'' +
+                '}';
+    }
+}
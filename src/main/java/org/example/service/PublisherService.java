@@ -1,8 +1,11 @@
 package org.example.service;
 
 import org.example.model.Publisher;
+import org.example.persistence.PersistenceUnitRegistry;
+import org.hibernate.jpa.QueryHints;
 
 import javax.persistence.*;
+import java.util.Arrays;
 import java.util.List;
 
 
@@ -14,12 +17,20 @@ import java.util.List;
  * with the Publishers table and handles the persistence logic for
  * publisher related operations.</p>
  *
+ * <p>Publishers and the list of all publishers are served from the second-level and query
+ * caches until a publisher changes.</p>
  */
 public class PublisherService {
-    private EntityManagerFactory emf;
+    private static final List<String> SORT_KEYS = Arrays.asList("id", "name");
+
+    private final EntityManagerFactory emf;
 
     public PublisherService(String persistenceUnitName) {
-        emf = Persistence.createEntityManagerFactory(persistenceUnitName);
+        this(PersistenceUnitRegistry.getEntityManagerFactory(persistenceUnitName));
+    }
+
+    public PublisherService(EntityManagerFactory emf) {
+        this.emf = emf;
     }
 
     public PublisherService() {
@@ -43,12 +54,31 @@ public class PublisherService {
     public List<Publisher> getAllPublishers() {
         EntityManager em = emf.createEntityManager();
         try {
-            return em.createQuery("SELECT p FROM Publisher p", Publisher.class).getResultList();
+            return em.createQuery("SELECT p FROM Publisher p", Publisher.class)
+                    .setHint(QueryHints.HINT_CACHEABLE, true)
+                    .getResultList();
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Reads one page of publishers sorted by id or name. Pass null as the token to read the
+     * first page, and the token of the returned page to read the next one.
+     */
+    public Page<Publisher> getPublishersPage(String sortBy, String continuationToken, int limit) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return KeysetPager.fetch(em, Publisher.class, sortBy, SORT_KEYS, continuationToken, limit);
         } finally {
             em.close();
         }
     }
 
+    public Page<Publisher> getPublishersPage(String continuationToken, int limit) {
+        return getPublishersPage("id", continuationToken, limit);
+    }
+
 
     public Publisher getPublisherById(int id) {
         EntityManager em = emf.createEntityManager();
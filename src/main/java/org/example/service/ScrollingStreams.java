@@ -0,0 +1,112 @@
+package org.example.service;
+
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+
+/**
+ * Builds streams over the rows of a query without loading them all at once, shared by the
+ * streaming methods of the services.
+ *
+ * <p>The query runs read only through a forward only Hibernate {@link ScrollableResults} cursor,
+ * reading {@code fetchSize} rows per JDBC round trip. Every {@code fetchSize} rows the persistence
+ * context is cleared, so the entities already handed out become detached and can be garbage
+ * collected, and memory stays flat regardless of the size of the table.</p>
+ *
+ * <p>The stream keeps an {@link EntityManager} and a read only transaction open until it is closed,
+ * so callers must close it, preferably with try-with-resources.</p>
+ */
+final class ScrollingStreams {
+
+    static final int DEFAULT_FETCH_SIZE = 500;
+
+    private ScrollingStreams() {
+    }
+
+    static <T> Stream<T> stream(EntityManagerFactory emf, String query, Class<T> resultClass, int fetchSize) {
+        if (fetchSize <= 0) {
+            throw new IllegalArgumentException("Fetch size must be positive.");
+        }
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            Session session = em.unwrap(Session.class);
+            session.setDefaultReadOnly(true);
+            ScrollableResults results = session.createQuery(query, resultClass)
+                    .setFetchSize(fetchSize)
+                    .setReadOnly(true)
+                    .setCacheable(false)
+                    .scroll(ScrollMode.FORWARD_ONLY);
+
+            Iterator<T> iterator = new ClearingIterator<>(session, results, resultClass, fetchSize);
+            return StreamSupport.stream(
+                            Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                    .onClose(() -> close(em, results));
+        } catch (RuntimeException e) {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            em.close();
+            throw e;
+        }
+    }
+
+    private static void close(EntityManager em, ScrollableResults results) {
+        try {
+            results.close();
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+        } finally {
+            em.close();
+        }
+    }
+
+    private static final class ClearingIterator<T> implements Iterator<T> {
+        private final Session session;
+        private final ScrollableResults results;
+        private final Class<T> resultClass;
+        private final int clearInterval;
+        private int sinceClear;
+        private Boolean hasNext;
+
+        private ClearingIterator(Session session, ScrollableResults results, Class<T> resultClass, int clearInterval) {
+            this.session = session;
+            this.results = results;
+            this.resultClass = resultClass;
+            this.clearInterval = clearInterval;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (hasNext == null) {
+                if (sinceClear >= clearInterval) {
+                    session.clear();
+                    sinceClear = 0;
+                }
+                hasNext = results.next();
+            }
+            return hasNext;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            hasNext = null;
+            sinceClear++;
+            return resultClass.cast(results.get(0));
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package org.example.service;
+
+import org.example.persistence.PersistenceUnitRegistry;
+import org.example.search.Suggestion;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+
+
+/**
+ * Service class for type ahead: completes what the user has typed so far to book titles, authors and
+ * user names.
+ *
+ * <p>The completions come from in memory {@link org.example.search.CompletionIndex indexes} built from
+ * the database on first use and kept up to date with the committed changes of books and users, so a
+ * completion does not touch the database. Every word of a text can be completed, ignoring case and
+ * accents.</p>
+ */
+public class SuggestionService {
+
+    public static final int DEFAULT_LIMIT = 10;
+
+    private final EntityManagerFactory emf;
+
+    public SuggestionService(String persistenceUnitName) {
+        this(PersistenceUnitRegistry.getEntityManagerFactory(persistenceUnitName));
+    }
+
+    public SuggestionService(EntityManagerFactory emf) {
+        this.emf = emf;
+    }
+
+    public SuggestionService() {
+        this("libraryPU");
+    }
+
+    /**
+     * Starts loading the texts to complete in the background, so that the first completion does not
+     * wait for them. Completions asked before the load is done wait for it.
+     */
+    public void prepare() {
+        CompletionIndexes.prepare(emf);
+    }
+
+    /**
+     * Completes the prefix to book titles, one suggestion per book with the book id.
+     */
+    public List<Suggestion> suggestTitles(String prefix, int limit) {
+        return CompletionIndexes.get(emf).titles.suggest(prefix, limit);
+    }
+
+    public List<Suggestion> suggestTitles(String prefix) {
+        return suggestTitles(prefix, DEFAULT_LIMIT);
+    }
+
+    /**
+     * Completes the prefix to authors, one suggestion per author weighted by the number of their books.
+     */
+    public List<Suggestion> suggestAuthors(String prefix, int limit) {
+        return CompletionIndexes.get(emf).authors.suggest(prefix, limit);
+    }
+
+    public List<Suggestion> suggestAuthors(String prefix) {
+        return suggestAuthors(prefix, DEFAULT_LIMIT);
+    }
+
+    /**
+     * Completes the prefix to user names, one suggestion per user with the user id.
+     */
+    public List<Suggestion> suggestUsers(String prefix, int limit) {
+        return CompletionIndexes.get(emf).users.suggest(prefix, limit);
+    }
+
+    public List<Suggestion> suggestUsers(String prefix) {
+        return suggestUsers(prefix, DEFAULT_LIMIT);
+    }
+}
@@ -1,8 +1,10 @@
 package org.example.service;
 
 import org.example.model.User;
+import org.example.persistence.PersistenceUnitRegistry;
 
 import javax.persistence.*;
+import java.util.Arrays;
 import java.util.List;
 
 
@@ -17,10 +19,16 @@ import java.util.List;
  * managed according to the application's requirements.</p>
  */
 public class UserService {
-    private EntityManagerFactory emf;
+    private static final List<String> SORT_KEYS = Arrays.asList("id", "name", "email");
+
+    private final EntityManagerFactory emf;
 
     public UserService(String persistenceUnitName) {
-        emf = Persistence.createEntityManagerFactory(persistenceUnitName);
+        this(PersistenceUnitRegistry.getEntityManagerFactory(persistenceUnitName));
+    }
+
+    public UserService(EntityManagerFactory emf) {
+        this.emf = emf;
     }
 
     public UserService() {
@@ -90,6 +98,23 @@ public class UserService {
         }
     }
 
+    /**
+     * Reads one page of users sorted by id, name or email. Pass null as the token to read the
+     * first page, and the token of the returned page to read the next one.
+     */
+    public Page<User> getUsersPage(String sortBy, String continuationToken, int limit) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return KeysetPager.fetch(em, User.class, sortBy, SORT_KEYS, continuationToken, limit);
+        } finally {
+            em.close();
+        }
+    }
+
+    public Page<User> getUsersPage(String continuationToken, int limit) {
+        return getUsersPage("id", continuationToken, limit);
+    }
+
     public User getUserByName(String name) {
         EntityManager em = emf.createEntityManager();
         try {
@@ -0,0 +1,170 @@
+import org.example.model.Book;
+import org.example.model.User;
+import org.example.persistence.ChangeEventBus;
+import org.example.persistence.EntityChange;
+import org.example.persistence.PersistenceUnitRegistry;
+import org.example.search.CompletionIndex;
+import org.example.search.Suggestion;
+import org.example.service.BookService;
+import org.example.service.SuggestionService;
+import org.example.service.UserService;
+import org.junit.jupiter.api.*;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class AutocompleteTests {
+
+    private BookService bookService;
+    private UserService userService;
+    private SuggestionService suggestionService;
+
+    @BeforeAll
+    void setup() {
+        bookService = new BookService("testPU");
+        userService = new UserService("testPU");
+        suggestionService = new SuggestionService("testPU");
+    }
+
+    @BeforeEach
+    void cleanDatabase() {
+        EntityManager em = PersistenceUnitRegistry.getEntityManagerFactory("testPU").createEntityManager();
+        em.getTransaction().begin();
+        em.createQuery("DELETE FROM Borrowing").executeUpdate();
+        em.createQuery("DELETE FROM Librarian").executeUpdate();
+        em.createQuery("DELETE FROM Copy").executeUpdate();
+        em.createQuery("DELETE FROM Book").executeUpdate();
+        em.createQuery("DELETE FROM User").executeUpdate();
+        em.getTransaction().commit();
+        em.close();
+    }
+
+    @Test
+    void testCompletesEveryWordIgnoringCaseAndAccents() {
+        CompletionIndex index = CompletionIndex.perRow();
+        index.update(Collections.emptyMap(), rows("The Hobbit", "Hobbies of Émile", "A Theory of Everything"));
+
+        assertEquals(Arrays.asList("Hobbies of Émile", "The Hobbit"), texts(index.suggest("HOB", 10)),
+                "A match from the start of the text comes before a match of a later word");
+        assertEquals(Arrays.asList("Hobbies of Émile"), texts(index.suggest("emi", 10)));
+        assertEquals(Arrays.asList("The Hobbit"), texts(index.suggest("the hob", 10)), "Several words complete as a phrase");
+        assertEquals(Arrays.asList("Hobbies of Émile", "A Theory of Everything"), texts(index.suggest("of", 10)),
+                "A text matching through two words is suggested once");
+        assertTrue(index.suggest("xyz", 10).isEmpty());
+        assertTrue(index.suggest(" - ", 10).isEmpty());
+    }
+
+    @Test
+    void testBestSuggestionsComeFirst() {
+        CompletionIndex authors = CompletionIndex.perText();
+        Map<Integer, String> books = new HashMap<>();
+        books.put(1, "Terry Pratchett");
+        books.put(2, "Terry Brooks");
+        books.put(3, "Terry Pratchett");
+        books.put(4, "terry pratchett");
+        books.put(5, "Terry Goodkind");
+        authors.update(Collections.emptyMap(), books);
+
+        List<Suggestion> suggestions = authors.suggest("terry", 2);
+        assertEquals(Arrays.asList("Terry Pratchett", "Terry Brooks"), texts(suggestions),
+                "The author of the most books comes first, then in alphabetical order, up to the limit");
+        assertEquals(3, suggestions.get(0).getWeight());
+
+        authors.update(Collections.singletonMap(1, "Terry Pratchett"), Collections.singletonMap(6, "Terry Goodkind"));
+        authors.update(Collections.singletonMap(3, "Terry Pratchett"), Collections.emptyMap());
+        assertEquals(Arrays.asList("Terry Goodkind", "Terry Brooks", "Terry Pratchett"), texts(authors.suggest("ter", 10)));
+    }
+
+    @Test
+    void testUpdatesSwapInANewSnapshot() {
+        CompletionIndex index = CompletionIndex.perRow();
+        Map<Integer, String> rows = new HashMap<>();
+        for (int i = 0; i < 2000; i++) {
+            rows.put(i, String.format("Title %04d", i));
+        }
+        index.update(Collections.emptyMap(), rows);
+        assertEquals(4000, index.size());
+        assertEquals(Arrays.asList("Title 0000", "Title 0001", "Title 0002"), texts(index.suggest("title", 3)));
+
+        index.update(Collections.singletonMap(1, "Title 0001"), Collections.singletonMap(1, "Renamed"));
+        assertEquals(Arrays.asList("Title 0000", "Title 0002"), texts(index.suggest("title", 2)));
+        assertEquals(1, index.suggest("renamed", 10).get(0).getId());
+        assertEquals(Arrays.asList("Title 1999"), texts(index.suggest("1999", 10)));
+    }
+
+    @Test
+    void testServicesKeepSuggestionsInSync() {
+        bookService.createBook("Quixotic Quests", "Quentin Quill", "Publisher", 2000, "9784444400001");
+        userService.createUser("Quincy Quark", "quincy@example.com", "555", "Street", "pwd", "USER");
+
+        Book book = bookService.getBookByIsbn("9784444400001");
+        User user = userService.getUserByEmail("quincy@example.com");
+        assertEquals(book.getId(), suggestionService.suggestTitles("quix").get(0).getId());
+        assertEquals(Arrays.asList("Quentin Quill"), texts(suggestionService.suggestAuthors("quill")));
+        assertEquals(user.getId(), suggestionService.suggestUsers("quark").get(0).getId());
+
+        bookService.updateBook(book.getId(), "Quiet Quests", "Quentin Quill", "Publisher", 2000, "9784444400001");
+        userService.createUser("Quinn Quark", "quinn@example.com", "555", "Street", "pwd", "USER");
+        assertTrue(suggestionService.suggestTitles("quix").isEmpty(), "The old title is no longer suggested");
+        assertEquals(Arrays.asList("Quiet Quests"), texts(suggestionService.suggestTitles("qui")));
+        assertEquals(Arrays.asList("Quincy Quark", "Quinn Quark"), texts(suggestionService.suggestUsers("quark")));
+
+        bookService.deleteBook(book.getId());
+        userService.deleteUser(user.getId());
+        assertTrue(suggestionService.suggestTitles("quiet").isEmpty());
+        assertTrue(suggestionService.suggestAuthors("quentin").isEmpty());
+        assertEquals(Arrays.asList("Quinn Quark"), texts(suggestionService.suggestUsers("quark")));
+    }
+
+    @Test
+    void testChangesDeliveredOutOfOrderLeaveTheCurrentTexts() {
+        bookService.createBook("Xylophone Xanadu", "Xavier Xu", "Publisher", 2000, "9784444400002");
+        Book book = bookService.getBookByIsbn("9784444400002");
+        assertEquals(1, suggestionService.suggestTitles("xylo").size());
+
+        bookService.updateBook(book.getId(), "Xenon Xanadu", "Xena Xu", "Publisher", 2000, "9784444400002");
+        bookService.updateBook(book.getId(), "Xerox Xanadu", "Xena Xu", "Publisher", 2000, "9784444400002");
+        // the two renames delivered once more, in the opposite order, as concurrent commits may be
+        ChangeEventBus bus = ChangeEventBus.forFactory(PersistenceUnitRegistry.getEntityManagerFactory("testPU"));
+        bus.publish(new EntityChange(EntityChange.Type.UPDATE, Book.class, book.getId(),
+                state("Xerox Xanadu", "Xena Xu"), state("Xenon Xanadu", "Xena Xu")));
+        bus.publish(new EntityChange(EntityChange.Type.UPDATE, Book.class, book.getId(),
+                state("Xenon Xanadu", "Xena Xu"), state("Xylophone Xanadu", "Xavier Xu")));
+
+        assertEquals(Arrays.asList("Xerox Xanadu"), texts(suggestionService.suggestTitles("xanadu")));
+        List<Suggestion> authors = suggestionService.suggestAuthors("xu");
+        assertEquals(Arrays.asList("Xena Xu"), texts(authors));
+        assertEquals(1, authors.get(0).getWeight());
+    }
+
+    private static Map<String, Object> state(String title, String author) {
+        Map<String, Object> state = new HashMap<>();
+        state.put("title", title);
+        state.put("author", author);
+        return state;
+    }
+
+    private static Map<Integer, String> rows(String... texts) {
+        Map<Integer, String> rows = new HashMap<>();
+        for (int i = 0; i < texts.length; i++) {
+            rows.put(i + 1, texts[i]);
+        }
+        return rows;
+    }
+
+    private static List<String> texts(List<Suggestion> suggestions) {
+        List<String> texts = new ArrayList<>();
+        for (Suggestion suggestion : suggestions) {
+            texts.add(suggestion.getText());
+        }
+        return texts;
+    }
+}
@@ -0,0 +1,297 @@
+import org.example.dto.TitleAvailabilityRow;
+import org.example.model.Book;
+import org.example.model.Borrowing;
+import org.example.model.Copy;
+import org.example.model.CopyStatus;
+import org.example.model.User;
+import org.example.persistence.DataMigrations;
+import org.example.persistence.PersistenceUnitRegistry;
+import org.example.service.BookService;
+import org.example.service.BorrowingService;
+import org.example.service.CheckoutLockMode;
+import org.example.service.CopyService;
+import org.example.service.Page;
+import org.example.service.UserService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.*;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class AvailabilityTests {
+
+    private EntityManagerFactory emf;
+    private UserService userService;
+    private BookService bookService;
+    private CopyService copyService;
+    private BorrowingService borrowingService;
+
+    @BeforeAll
+    void setup() {
+        emf = PersistenceUnitRegistry.getEntityManagerFactory("testPU");
+        userService = new UserService("testPU");
+        bookService = new BookService("testPU");
+        copyService = new CopyService("testPU");
+        borrowingService = new BorrowingService("testPU");
+    }
+
+    @BeforeEach
+    void cleanDatabase() {
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        em.createQuery("DELETE FROM Borrowing").executeUpdate();
+        em.createQuery("DELETE FROM Librarian").executeUpdate();
+        em.createQuery("DELETE FROM Copy").executeUpdate();
+        em.createQuery("DELETE FROM BookAvailability").executeUpdate();
+        em.createQuery("DELETE FROM Book").executeUpdate();
+        em.createQuery("DELETE FROM User").executeUpdate();
+        em.getTransaction().commit();
+        em.close();
+    }
+
+    @Test
+    void testCheckoutsAndReturnsKeepTheSummary() throws Exception {
+        Book book = createBook("Dune", "9780000000201");
+        for (int i = 1; i <= 5; i++) {
+            copyService.createCopy(book.getId(), i, "Available");
+        }
+        int firstUser = createUser("first@example.com");
+        int secondUser = createUser("second@example.com");
+        List<Copy> copies = copyService.getAvailableCopies();
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+
+        borrowingService.createBorrowing(firstUser, copies.get(0).getId(), format.parse("2024-03-10"), null);
+        borrowingService.createBorrowing(secondUser, copies.get(1).getId(), format.parse("2024-03-01"), null);
+        TitleAvailabilityRow row = single();
+        assertEquals(3, row.getAvailableCopies());
+        assertEquals(5, row.getTotalCopies());
+        assertEquals("2024-03-15", format.format(row.getEarliestDueDate()), "Due 14 days after the oldest checkout");
+
+        Borrowing oldest = borrowingService.getBorrowingsByUserId(secondUser).get(0);
+        borrowingService.deleteBorrowing(oldest.getId());
+        row = single();
+        assertEquals(4, row.getAvailableCopies());
+        assertEquals("2024-03-24", format.format(row.getEarliestDueDate()));
+
+        Borrowing last = borrowingService.getBorrowingsByUserId(firstUser).get(0);
+        borrowingService.updateBorrowing(last.getId(), last.getBorrowDate(), format.parse("2024-03-20"));
+        assertNull(single().getEarliestDueDate(), "A returned borrowing is no longer due");
+    }
+
+    @Test
+    void testEveryCheckoutPathUpdatesTheSummary() {
+        Book book = createBook("Emma", "9780000000202");
+        for (int i = 1; i <= 3; i++) {
+            copyService.createCopy(book.getId(), i, "Available");
+        }
+        int copyId = copyService.getAvailableCopies().get(0).getId();
+
+        new BorrowingService(emf, CheckoutLockMode.OPTIMISTIC).createBorrowing(
+                createUser("optimistic@example.com"), copyId, new Date(), null);
+        borrowingService.borrowAnyAvailableCopy(createUser("any@example.com"), book.getId(), new Date(), null);
+        assertEquals(1, single().getAvailableCopies());
+
+        int thirdUser = createUser("third@example.com");
+        assertThrows(IllegalStateException.class,
+                () -> borrowingService.createBorrowing(thirdUser, copyId, new Date(), null));
+        assertEquals(1, single().getAvailableCopies(), "A failed checkout must not change the summary");
+    }
+
+    @Test
+    void testDeletingAReturnedBorrowingLeavesTheNextCheckoutAlone() {
+        Book book = createBook("Middlemarch", "9780000000205");
+        copyService.createCopy(book.getId(), 1, "Available");
+        int copyId = copyService.getAvailableCopies().get(0).getId();
+        int firstUser = createUser("earlier@example.com");
+        borrowingService.createBorrowing(firstUser, copyId, new Date(), null);
+        int returned = borrowingService.getBorrowingsByUserId(firstUser).get(0).getId();
+        borrowingService.returnBorrowing(returned, new Date());
+        borrowingService.createBorrowing(createUser("later@example.com"), copyId, new Date(), null);
+
+        borrowingService.deleteBorrowing(returned);
+        assertEquals(CopyStatus.BORROWED, copyService.getCopyById(copyId).getStatus());
+        assertEquals(0, single().getAvailableCopies());
+    }
+
+    @Test
+    void testDeletingABorrowingCreatedWithAReturnDateFreesTheCopy() {
+        Book book = createBook("Emma", "9780000000207");
+        copyService.createCopy(book.getId(), 1, "Available");
+        int copyId = copyService.getAvailableCopies().get(0).getId();
+        int userId = createUser("dated@example.com");
+        borrowingService.createBorrowing(userId, copyId, new Date(), new Date());
+        assertEquals(0, single().getAvailableCopies());
+
+        borrowingService.deleteBorrowing(borrowingService.getBorrowingsByUserId(userId).get(0).getId());
+        assertEquals(CopyStatus.AVAILABLE, copyService.getCopyById(copyId).getStatus());
+        assertEquals(1, single().getAvailableCopies());
+        assertEquals(0, userService.getUserById(userId).getActiveBorrowings());
+    }
+
+    @Test
+    void testChangingTheReturnDateMovesTheCopy() {
+        Book book = createBook("Persuasion", "9780000000206");
+        copyService.createCopy(book.getId(), 1, "Available");
+        int copyId = copyService.getAvailableCopies().get(0).getId();
+        int userId = createUser("dates@example.com");
+        borrowingService.createBorrowing(userId, copyId, new Date(), null);
+        Borrowing borrowing = borrowingService.getBorrowingsByUserId(userId).get(0);
+
+        borrowingService.updateBorrowing(borrowing.getId(), borrowing.getBorrowDate(), new Date());
+        assertEquals(CopyStatus.AVAILABLE, copyService.getCopyById(copyId).getStatus());
+        assertEquals(1, single().getAvailableCopies());
+
+        borrowingService.updateBorrowing(borrowing.getId(), borrowing.getBorrowDate(), null);
+        assertEquals(CopyStatus.BORROWED, copyService.getCopyById(copyId).getStatus());
+        assertEquals(0, single().getAvailableCopies());
+
+        borrowingService.updateBorrowing(borrowing.getId(), borrowing.getBorrowDate(), new Date());
+        borrowingService.createBorrowing(createUser("next@example.com"), copyId, new Date(), null);
+        assertThrows(IllegalStateException.class,
+                () -> borrowingService.updateBorrowing(borrowing.getId(), borrowing.getBorrowDate(), null),
+                "A returned borrowing cannot take back a copy lent to someone else");
+        assertEquals(0, single().getAvailableCopies());
+        assertEquals(0, userService.getUserById(userId).getActiveBorrowings());
+    }
+
+    @Test
+    void testCopyChangesUpdateTheSummary() {
+        Book book = createBook("Ulysses", "9780000000203");
+        copyService.createCopy(book.getId(), 1, "Available");
+        copyService.createCopy(book.getId(), 2, "Borrowed");
+        TitleAvailabilityRow row = single();
+        assertEquals(1, row.getAvailableCopies());
+        assertEquals(2, row.getTotalCopies());
+
+        Copy available = copyService.getAvailableCopies().get(0);
+        copyService.updateCopy(available.getId(), 1, "In Repair");
+        assertEquals(0, single().getAvailableCopies());
+
+        copyService.deleteCopy(available.getId());
+        row = single();
+        assertEquals(0, row.getAvailableCopies());
+        assertEquals(1, row.getTotalCopies());
+    }
+
+    @Test
+    void testPagesCoverTitlesWithCopiesInOneStatementEach() {
+        for (int i = 0; i < 12; i++) {
+            Book book = createBook("Title " + i, String.format("97800000003%02d", i));
+            if (i % 4 != 0) {
+                copyService.createCopy(book.getId(), 1, "Available");
+            }
+        }
+
+        Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        List<String> titles = new ArrayList<>();
+        int pages = 0;
+        String token = null;
+        do {
+            Page<TitleAvailabilityRow> page = copyService.getTitleAvailabilityPage(token, 4);
+            for (TitleAvailabilityRow row : page.getItems()) {
+                titles.add(row.getTitle());
+            }
+            token = page.getNextToken();
+            pages++;
+        } while (token != null);
+
+        assertEquals(9, titles.size(), "Titles without copies are left out");
+        assertFalse(titles.contains("Title 0"));
+        assertEquals(pages, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void testSummaryIsBackfilledAndRebuiltWhenMissing() {
+        Book book = createBook("Legacy", "9780000000204");
+        execute("DELETE FROM BookAvailability");
+        execute("INSERT INTO Copies (id, bookId, copyNumber, status, version) VALUES (NEXT VALUE FOR copies_seq, " + book.getId() + ", 1, 'A', 0)");
+        execute("INSERT INTO Copies (id, bookId, copyNumber, status, version) VALUES (NEXT VALUE FOR copies_seq, " + book.getId() + ", 2, 'B', 0)");
+
+        execute("DELETE FROM SchemaMigrations WHERE id = '002-book-availability'");
+        DataMigrations.apply(emf);
+        TitleAvailabilityRow row = single();
+        assertEquals(1, row.getAvailableCopies());
+        assertEquals(2, row.getTotalCopies());
+
+        execute("DELETE FROM BookAvailability");
+        copyService.createCopy(book.getId(), 3, "Available");
+        row = single();
+        assertEquals(2, row.getAvailableCopies(), "A missing summary is computed from the copies");
+        assertEquals(3, row.getTotalCopies());
+    }
+
+    @Test
+    void testConcurrentChangesCreateAMissingSummaryOnce() throws Exception {
+        Book book = createBook("Rebuilt", "9780000000207");
+        int copies = 8;
+        List<Integer> users = new ArrayList<>();
+        for (int i = 1; i <= copies; i++) {
+            copyService.createCopy(book.getId(), i, "Available");
+            users.add(createUser("rebuild" + i + "@example.com"));
+        }
+        execute("DELETE FROM BookAvailability");
+
+        ExecutorService executor = Executors.newFixedThreadPool(copies);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Integer>> checkouts = new ArrayList<>();
+            for (int userId : users) {
+                checkouts.add(executor.submit(() -> {
+                    start.await();
+                    return borrowingService.borrowAnyAvailableCopy(userId, book.getId(), new Date(), null);
+                }));
+            }
+            start.countDown();
+            for (Future<Integer> checkout : checkouts) {
+                checkout.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        TitleAvailabilityRow row = single();
+        assertEquals(copies, row.getTotalCopies());
+        assertEquals(0, row.getAvailableCopies());
+    }
+
+    private TitleAvailabilityRow single() {
+        List<TitleAvailabilityRow> rows = copyService.getTitleAvailabilityPage(null, 10).getItems();
+        assertEquals(1, rows.size());
+        return rows.get(0);
+    }
+
+    private Book createBook(String title, String isbn) {
+        bookService.createBook(title, "Author", "Publisher", 2000, isbn);
+        return bookService.getBookByIsbn(isbn);
+    }
+
+    private int createUser(String email) {
+        userService.createUser("Reader", email, "555", "Street", "pwd", "USER");
+        User user = userService.getUserByEmail(email);
+        return user.getId();
+    }
+
+    private void execute(String sql) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.createNativeQuery(sql).executeUpdate();
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+}
@@ -1,11 +1,15 @@
 
+import org.example.dto.TitleAvailabilityRow;
 import org.example.model.Book;
 import org.example.model.Copy;
+import org.example.model.CopyStatus;
 import org.example.service.BookService;
 import org.example.service.CopyService;
+import org.example.persistence.PersistenceUnitRegistry;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.*;
 import javax.persistence.EntityManager;
-import javax.persistence.Persistence;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -24,7 +28,7 @@ public class BookTests {
 
     @BeforeEach
     void cleanDatabase() {
-        EntityManager em = Persistence.createEntityManagerFactory("testPU").createEntityManager();
+        EntityManager em = PersistenceUnitRegistry.getEntityManagerFactory("testPU").createEntityManager();
         em.getTransaction().begin();
 
         em.createQuery("DELETE FROM Borrowing").executeUpdate();
@@ -114,6 +118,31 @@ public class BookTests {
         assertTrue(deleteFailed);
     }
 
+    @Test
+    void testCreateBookWithCopiesInBatches() {
+        Statistics statistics = PersistenceUnitRegistry.getEntityManagerFactory("testPU")
+                .unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        int bookId = bookService.createBookWithCopies("Batched Book", "Author", "Publisher", 2020, "9781111111111", 120);
+
+        assertEquals(1, statistics.getTransactionCount(), "The book and its copies are created in one transaction");
+        assertTrue(statistics.getPrepareStatementCount() < 12,
+                "Copies should be inserted in batches, not one statement each: " + statistics.getPrepareStatementCount());
+        List<Copy> copies = copyService.getAllCopies();
+        assertEquals(120, copies.size());
+        for (Copy copy : copies) {
+            assertEquals(bookId, copy.getBook().getId());
+            assertEquals(CopyStatus.AVAILABLE, copy.getStatus());
+        }
+        TitleAvailabilityRow row = copyService.getTitleAvailabilityPage(null, 10).getItems().get(0);
+        assertEquals(120, row.getTotalCopies());
+        assertEquals(120, row.getAvailableCopies());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> bookService.createBookWithCopies("Other", "Author", "Publisher", 2020, "9781111111112", -1));
+    }
+
 
 
 }
@@ -3,16 +3,17 @@
 import org.example.model.Book;
 import org.example.model.Borrowing;
 import org.example.model.Copy;
+import org.example.model.CopyStatus;
 import org.example.model.User;
 import org.example.service.BookService;
 import org.example.service.BorrowingService;
 import org.example.service.CopyService;
 import org.example.service.UserService;
+import org.example.persistence.PersistenceUnitRegistry;
 import org.junit.jupiter.api.*;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
-import javax.persistence.Persistence;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -31,7 +32,7 @@ public class BorrowingBusinessLogicTests {
 
     @BeforeAll
     void setupAll() {
-        emf = Persistence.createEntityManagerFactory("testPU");
+        emf = PersistenceUnitRegistry.getEntityManagerFactory("testPU");
         userService = new UserService("testPU");
         bookService = new BookService("testPU");
         copyService = new CopyService("testPU");
@@ -82,6 +83,9 @@ public class BorrowingBusinessLogicTests {
             borrowFailed = true;
         }
         assertTrue(borrowFailed, "3rd borrow should fail if max is 2 simultaneous borrowings");
+        assertThrows(IllegalStateException.class,
+                () -> borrowingService.createBorrowing(user.getId(), copies.get(2).getId(), new Date(), new Date()),
+                "A borrowing recorded with a return date also needs a free slot");
 
         List<Borrowing> userBorrowings = borrowingService.getBorrowingsByUserId(user.getId());
         assertEquals(2, userBorrowings.size());
@@ -115,6 +119,29 @@ public class BorrowingBusinessLogicTests {
         assertEquals(df.format(newReturnDate), df.format(updated.getReturnDate()), "Return date should be updated (date portion)");
     }
 
+    @Test
+    void testReturnMakesCopyAvailableAgain() {
+        userService.createUser("ReturnUser", "return@example.com", "555-2222", "102 St", "pwd", "USER");
+        User user = userService.getAllUsers().get(0);
+        bookService.createBook("Return Book", "Return Author", "Return Pub", 2022, "9785555555555");
+        Book book = bookService.getAllBooks().get(0);
+        copyService.createCopy(book.getId(), 1, "Available");
+        Copy copy = copyService.getAllCopies().get(0);
+
+        borrowingService.createBorrowing(user.getId(), copy.getId(), new Date(), null);
+        Borrowing b = borrowingService.getAllBorrowings().get(0);
+        borrowingService.returnBorrowing(b.getId(), new Date());
+
+        assertNotNull(borrowingService.getBorrowingById(b.getId()).getReturnDate());
+        assertEquals(CopyStatus.AVAILABLE, copyService.getCopyById(copy.getId()).getStatus());
+        assertEquals(0, userService.getUserById(user.getId()).getActiveBorrowings());
+        assertThrows(IllegalStateException.class, () -> borrowingService.returnBorrowing(b.getId(), new Date()),
+                "A borrowing can only be returned once");
+
+        borrowingService.createBorrowing(user.getId(), copy.getId(), new Date(), null);
+        assertEquals(2, borrowingService.getBorrowingsByUserId(user.getId()).size(), "The returned copy can be borrowed again");
+    }
+
     @Test
     void testLibrarianOnlyPerformCertainActions() {
         // 1) Create a normal user and a librarian
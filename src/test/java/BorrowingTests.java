@@ -7,11 +7,11 @@ import org.example.service.BorrowingService;
 import org.example.service.UserService;
 import org.example.service.BookService;
 import org.example.service.CopyService;
+import org.example.persistence.PersistenceUnitRegistry;
 import org.junit.jupiter.api.*;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
-import javax.persistence.Persistence;
 import java.text.SimpleDateFormat;  // For date comparison
 import java.util.Date;
 import java.util.List;
@@ -29,7 +29,7 @@ public class BorrowingTests {
 
     @BeforeAll
     void setUpAll() {
-        emf = Persistence.createEntityManagerFactory("testPU");
+        emf = PersistenceUnitRegistry.getEntityManagerFactory("testPU");
         borrowingService = new BorrowingService("testPU");
         userService = new UserService("testPU");
         bookService = new BookService("testPU");
@@ -0,0 +1,201 @@
+import org.example.model.Book;
+import org.example.model.BookAvailability;
+import org.example.persistence.PersistenceUnitRegistry;
+import org.example.service.BookService;
+import org.example.service.CatalogImporter;
+import org.example.service.ImportReport;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class CatalogImportTests {
+
+    private static final String UNIT = "testPooledPU";
+
+    private EntityManagerFactory emf;
+    private CatalogImporter importer;
+    private BookService bookService;
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    void setup() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(CatalogImporter.BATCH_SIZE_PROPERTY, "2");
+        properties.put(CatalogImporter.THREADS_PROPERTY, "2");
+        PersistenceUnitRegistry.close(UNIT);
+        PersistenceUnitRegistry.configure(UNIT, properties);
+        emf = PersistenceUnitRegistry.getEntityManagerFactory(UNIT);
+        importer = new CatalogImporter(emf);
+        bookService = new BookService(emf);
+    }
+
+    @AfterAll
+    void tearDown() {
+        PersistenceUnitRegistry.close(UNIT);
+        PersistenceUnitRegistry.configure(UNIT, new HashMap<String, Object>());
+    }
+
+    @BeforeEach
+    void cleanDatabase() {
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        em.createQuery("DELETE FROM Borrowing").executeUpdate();
+        em.createQuery("DELETE FROM Copy").executeUpdate();
+        em.createQuery("DELETE FROM BookAvailability").executeUpdate();
+        em.createQuery("DELETE FROM Book").executeUpdate();
+        em.getTransaction().commit();
+        em.close();
+    }
+
+    @Test
+    void testImportRejectsInvalidRowsAndSkipsDuplicates() throws IOException {
+        bookService.createBook("Already There", "Author", "Publisher", 1990, "9780000000099");
+        Path input = write("catalog.csv",
+                "title,author,publisher,publicationYear,isbn,copies",
+                "Dune,Frank Herbert,Chilton,1965,978-0-441-01359-3,3",
+                "\"War, and \"\"Peace\"\"\nVolume 1\",Leo Tolstoy,,1869,9780199232765,1",
+                "",
+                "No Author,,Publisher,2000,9780000000001,1",
+                "Bad Isbn,Author,Publisher,2000,12345,1",
+                "Dune Again,Frank Herbert,Chilton,1965,9780441013593,2",
+                "Already There,Author,Publisher,1990,9780000000099,4",
+                "Bad Copies,Author,Publisher,2000,9780000000002,two",
+                "Too,Many,Fields,2000,9780000000003,1,extra");
+
+        ImportReport report = importer.importFile(input);
+
+        assertEquals(8, report.getRows());
+        assertEquals(2, report.getBooks());
+        assertEquals(4, report.getCopies());
+        assertEquals(4, report.getRejected());
+        assertEquals(2, report.getDuplicates());
+
+        Book dune = bookService.getBookByIsbn("9780441013593");
+        assertEquals("Dune", dune.getTitle());
+        assertEquals(1965, dune.getPublicationYear());
+        assertEquals("War, and \"Peace\"\nVolume 1", bookService.getBookByIsbn("9780199232765").getTitle());
+        assertNull(bookService.getBookByIsbn("9780199232765").getPublisher());
+        EntityManager em = emf.createEntityManager();
+        try {
+            assertEquals(3L, em.createQuery("SELECT COUNT(c) FROM Copy c WHERE c.book.id = :id", Long.class)
+                    .setParameter("id", dune.getId())
+                    .getSingleResult());
+            assertEquals(3, em.find(BookAvailability.class, dune.getId()).getAvailableCopies());
+        } finally {
+            em.close();
+        }
+
+        List<String> rejects = Files.readAllLines(input.resolveSibling("catalog.csv.rejects.csv"), StandardCharsets.UTF_8);
+        assertEquals("line,reason,record", rejects.get(0));
+        assertTrue(rejects.get(1).startsWith("6,\"missing author\""), rejects.get(1));
+        assertTrue(rejects.get(2).startsWith("7,\"invalid ISBN 12345\""), rejects.get(2));
+        assertTrue(rejects.get(3).startsWith("8,\"duplicate ISBN 9780441013593\""), rejects.get(3));
+        assertTrue(rejects.get(4).startsWith("9,\"duplicate ISBN 9780000000099\""), rejects.get(4));
+        assertTrue(rejects.get(5).startsWith("10,\"invalid number of copies two\""), rejects.get(5));
+        assertTrue(rejects.get(6).startsWith("11,\"expected 6 fields, found 7\""), rejects.get(6));
+        assertFalse(Files.exists(input.resolveSibling("catalog.csv.checkpoint")), "A finished import leaves no checkpoint");
+    }
+
+    @Test
+    void testImportSkipsBooksCreatedWithHyphenatedIsbn() throws IOException {
+        bookService.createBook("Dune", "Frank Herbert", "Chilton", 1965, "978-0-441-01359-3");
+        Path input = write("hyphens.csv",
+                "title,author,isbn,copies",
+                "Dune,Frank Herbert,9780441013593,2",
+                "Dune,Frank Herbert,978-0441-013593,1");
+
+        ImportReport report = importer.importFile(input);
+
+        assertEquals(0, report.getBooks());
+        assertEquals(2, report.getDuplicates());
+        assertEquals(1, bookService.getAllBooks().size());
+        assertEquals("9780441013593", bookService.getBookByIsbn("978-0-441-01359-3").getIsbn());
+    }
+
+    @Test
+    void testImportResumesFromCheckpointAfterFailedBatch() throws IOException {
+        Path input = write("resume.csv",
+                "title,author,isbn,copies",
+                "First,Author,9781000000001,1",
+                "Second,Author,9781000000002,1",
+                "Third,Author,9781000000003,1",
+                "Broken,Author,,1",
+                "Poison,Author,9781000000005,1",
+                "Sixth,Author,9781000000006,1",
+                "Seventh,Author,9781000000007,1");
+        execute("ALTER TABLE Books ADD CONSTRAINT no_poison CHECK (title <> 'Poison')");
+        try {
+            assertThrows(PersistenceException.class, () -> importer.importFile(input));
+        } finally {
+            execute("ALTER TABLE Books DROP CONSTRAINT no_poison");
+        }
+        assertTrue(Files.exists(input.resolveSibling("resume.csv.checkpoint")));
+        assertEquals(3, bookService.getAllBooks().size(), "The batches before the failed one stay committed");
+
+        ImportReport report = importer.importFile(input);
+
+        assertEquals(6, report.getResumedAtLine(), "The run resumes at the first row of the failed batch");
+        assertEquals(3, report.getRows());
+        assertEquals(3, report.getBooks());
+        assertEquals(0, report.getDuplicates());
+        assertEquals(6, bookService.getAllBooks().size());
+        List<String> rejects = Files.readAllLines(input.resolveSibling("resume.csv.rejects.csv"), StandardCharsets.UTF_8);
+        assertEquals(Arrays.asList("line,reason,record", "5,\"missing ISBN\",\"Broken,Author,,1\""), rejects);
+        assertFalse(Files.exists(input.resolveSibling("resume.csv.checkpoint")));
+    }
+
+    @Test
+    void testTabSeparatedColumnsInAnyOrder() throws IOException {
+        Path input = write("catalog.tsv",
+                "ISBN\tYear\tTitle\tAuthor",
+                "9782000000001\t1851\tMoby Dick\tHerman Melville");
+
+        ImportReport report = importer.importFile(input);
+
+        assertEquals(1, report.getBooks());
+        assertEquals(0, report.getCopies());
+        Book book = bookService.getBookByIsbn("9782000000001");
+        assertEquals("Moby Dick", book.getTitle());
+        assertEquals(1851, book.getPublicationYear());
+    }
+
+    @Test
+    void testHeaderWithoutIsbnColumnIsRefused() throws IOException {
+        Path input = write("noisbn.csv", "title,author", "Title,Author");
+
+        assertThrows(IllegalArgumentException.class, () -> importer.importFile(input));
+    }
+
+    private Path write(String name, String... lines) throws IOException {
+        Path file = directory.resolve(name);
+        Files.write(file, (String.join("\n", lines) + "\n").getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private void execute(String sql) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.createNativeQuery(sql).executeUpdate();
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+}
@@ -0,0 +1,211 @@
+import org.example.model.Book;
+import org.example.model.Copy;
+import org.example.model.CopyStatus;
+import org.example.model.User;
+import org.example.persistence.ChangeEventBus;
+import org.example.persistence.ChangeSubscriber;
+import org.example.persistence.EntityChange;
+import org.example.persistence.PersistenceUnitRegistry;
+import org.example.service.BookService;
+import org.example.service.BorrowingService;
+import org.example.service.CopyService;
+import org.example.service.UserService;
+import org.junit.jupiter.api.*;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class ChangeEventTests {
+
+    private EntityManagerFactory emf;
+    private BookService bookService;
+    private CopyService copyService;
+    private UserService userService;
+    private BorrowingService borrowingService;
+    private ChangeEventBus bus;
+    private final List<EntityChange> received = Collections.synchronizedList(new ArrayList<>());
+    private final ChangeSubscriber recorder = received::addAll;
+
+    @BeforeAll
+    void setup() {
+        emf = PersistenceUnitRegistry.getEntityManagerFactory("testPU");
+        bookService = new BookService(emf);
+        copyService = new CopyService(emf);
+        userService = new UserService(emf);
+        borrowingService = new BorrowingService(emf);
+        bus = ChangeEventBus.forFactory(emf);
+        bus.subscribe(recorder);
+    }
+
+    @AfterAll
+    void tearDown() {
+        bus.unsubscribe(recorder);
+    }
+
+    @BeforeEach
+    void cleanDatabase() {
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        em.createQuery("DELETE FROM Borrowing").executeUpdate();
+        em.createQuery("DELETE FROM Librarian").executeUpdate();
+        em.createQuery("DELETE FROM Copy").executeUpdate();
+        em.createQuery("DELETE FROM Book").executeUpdate();
+        em.createQuery("DELETE FROM User").executeUpdate();
+        em.getTransaction().commit();
+        em.close();
+        bus.awaitDelivery();
+        received.clear();
+    }
+
+    @Test
+    void testCommittedChangesAreDeliveredInOrder() {
+        bookService.createBook("Event Book", "Author", "Publisher", 2000, "9785555500001");
+        Book book = bookService.getBookByIsbn("9785555500001");
+        bookService.updateBook(book.getId(), "Renamed Event Book", "Author", "Publisher", 2000, "9785555500001");
+        bookService.deleteBook(book.getId());
+        bus.awaitDelivery();
+
+        List<EntityChange> changes = changesOf(Book.class);
+        assertEquals(3, changes.size());
+        assertEquals(EntityChange.Type.INSERT, changes.get(0).getType());
+        assertEquals("Event Book", changes.get(0).getState().get("title"));
+        assertEquals(EntityChange.Type.UPDATE, changes.get(1).getType());
+        assertEquals("Event Book", changes.get(1).getOldState().get("title"));
+        assertEquals("Renamed Event Book", changes.get(1).getState().get("title"));
+        assertEquals(EntityChange.Type.DELETE, changes.get(2).getType());
+        assertNull(changes.get(2).getState());
+        assertEquals(book.getId(), changes.get(2).getId());
+        assertEquals("testPU", bus.getName());
+        assertTrue(changes.get(0).getSequence() < changes.get(1).getSequence()
+                && changes.get(1).getSequence() < changes.get(2).getSequence());
+    }
+
+    @Test
+    void testAssociationsAreIdsAndRollbacksAreNotPublished() {
+        bookService.createBook("Copy Event Book", "Author", "Publisher", 2000, "9785555500002");
+        Book book = bookService.getBookByIsbn("9785555500002");
+        copyService.createCopy(book.getId(), 1, "Available");
+        assertThrows(RuntimeException.class,
+                () -> bookService.createBook("Duplicate", "Author", "Publisher", 2000, "9785555500002"),
+                "A duplicate ISBN fails on commit");
+        bus.awaitDelivery();
+
+        List<EntityChange> copies = changesOf(Copy.class);
+        assertEquals(1, copies.size());
+        assertEquals(book.getId(), copies.get(0).getState().get("book"));
+        assertEquals(1, changesOf(Book.class).size(), "The rolled back insert is not published");
+    }
+
+    @Test
+    void testBulkCopyClaimIsPublished() {
+        userService.createUser("Event User", "event@example.com", "555", "Street", "pwd", "USER");
+        bookService.createBook("Claimed Book", "Author", "Publisher", 2000, "9785555500003");
+        User user = userService.getUserByEmail("event@example.com");
+        Book book = bookService.getBookByIsbn("9785555500003");
+        copyService.createCopy(book.getId(), 1, "Available");
+        bus.awaitDelivery();
+        received.clear();
+
+        int copyId = borrowingService.borrowAnyAvailableCopy(user.getId(), book.getId(), new Date(), null);
+        bus.awaitDelivery();
+
+        List<EntityChange> copies = changesOf(Copy.class);
+        assertEquals(1, copies.size(), "The conditional update claiming the copy is published");
+        assertEquals(copyId, copies.get(0).getId());
+        assertEquals(CopyStatus.BORROWED, copies.get(0).getState().get("status"));
+        assertEquals(book.getId(), copies.get(0).getState().get("book"));
+    }
+
+    @Test
+    void testBatchesAndBackpressure() throws Exception {
+        ChangeEventBus small = new ChangeEventBus("small", 4, 3);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        List<Long> sequences = Collections.synchronizedList(new ArrayList<>());
+        small.subscribe(changes -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            batchSizes.add(changes.size());
+            for (EntityChange change : changes) {
+                sequences.add(change.getSequence());
+            }
+        });
+
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 20; i++) {
+                small.publish(new EntityChange(EntityChange.Type.INSERT, Book.class, i, Collections.emptyMap(), null));
+            }
+        });
+        producer.start();
+        Thread.sleep(200);
+        assertTrue(producer.isAlive(), "The producer waits while the queue is full");
+        release.countDown();
+        producer.join(10_000);
+        small.awaitDelivery();
+
+        assertEquals(20, sequences.size());
+        for (int i = 0; i < sequences.size(); i++) {
+            assertEquals(i + 1, (long) sequences.get(i), "Changes are delivered in the order they were published");
+        }
+        assertTrue(batchSizes.stream().allMatch(size -> size <= 3));
+        assertTrue(small.getProducerWaits() > 0);
+        assertTrue(small.getMaxQueueDepth() <= 4);
+        assertEquals(20, small.getDelivered());
+        small.close();
+    }
+
+    @Test
+    void testFailingSubscriberIsToldItMissedChanges() {
+        ChangeEventBus small = new ChangeEventBus("failing", 4, 2);
+        List<RuntimeException> failures = Collections.synchronizedList(new ArrayList<>());
+        List<EntityChange> delivered = Collections.synchronizedList(new ArrayList<>());
+        small.subscribe(new ChangeSubscriber() {
+            @Override
+            public void onChanges(List<EntityChange> changes) {
+                throw new IllegalStateException("Broken index");
+            }
+
+            @Override
+            public void onFailure(RuntimeException failure) {
+                failures.add(failure);
+                small.unsubscribe(this);
+            }
+        });
+        small.subscribe(delivered::addAll);
+
+        small.publish(new EntityChange(EntityChange.Type.INSERT, Book.class, 1, Collections.emptyMap(), null));
+        small.awaitDelivery();
+        small.publish(new EntityChange(EntityChange.Type.INSERT, Book.class, 2, Collections.emptyMap(), null));
+        small.awaitDelivery();
+
+        assertEquals(1, failures.size(), "A subscriber that unsubscribes on failure is not called again");
+        assertEquals("Broken index", failures.get(0).getMessage());
+        assertEquals(1, small.getSubscriberFailures());
+        assertEquals(2, delivered.size(), "The other subscribers still receive every change");
+        small.close();
+    }
+
+    private List<EntityChange> changesOf(Class<?> entityClass) {
+        List<EntityChange> changes = new ArrayList<>();
+        synchronized (received) {
+            for (EntityChange change : received) {
+                if (change.isOf(entityClass)) {
+                    changes.add(change);
+                }
+            }
+        }
+        return changes;
+    }
+}
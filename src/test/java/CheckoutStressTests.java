@@ -0,0 +1,173 @@
+import org.example.model.Book;
+import org.example.model.Borrowing;
+import org.example.model.Copy;
+import org.example.model.User;
+import org.example.persistence.PersistenceUnitRegistry;
+import org.example.service.BookService;
+import org.example.service.BorrowingService;
+import org.example.service.CopyService;
+import org.example.service.UserService;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.*;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs checkouts from 1, 8 and 32 threads. Every thread borrows and returns copies for its own user,
+ * so the threads only meet on the per-user locks of other threads when they share a user. The throughput
+ * of every thread count is logged.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class CheckoutStressTests {
+
+    private static final Logger log = Logger.getLogger(CheckoutStressTests.class);
+
+    private static final int COPIES_PER_USER = 3;
+    private static final int CHECKOUTS_PER_THREAD = 20;
+
+    private UserService userService;
+    private BookService bookService;
+    private CopyService copyService;
+    private BorrowingService borrowingService;
+
+    @BeforeAll
+    void setup() {
+        userService = new UserService("testPU");
+        bookService = new BookService("testPU");
+        copyService = new CopyService("testPU");
+        borrowingService = new BorrowingService("testPU");
+    }
+
+    @BeforeEach
+    void cleanDatabase() {
+        EntityManager em = PersistenceUnitRegistry.getEntityManagerFactory("testPU").createEntityManager();
+        em.getTransaction().begin();
+        em.createQuery("DELETE FROM Borrowing").executeUpdate();
+        em.createQuery("DELETE FROM Librarian").executeUpdate();
+        em.createQuery("DELETE FROM Copy").executeUpdate();
+        em.createQuery("DELETE FROM Book").executeUpdate();
+        em.createQuery("DELETE FROM User").executeUpdate();
+        em.getTransaction().commit();
+        em.close();
+    }
+
+    @Test
+    void testCheckoutThroughputForSeparateUsers() throws Exception {
+        for (int threads : new int[]{1, 8, 32}) {
+            cleanDatabase();
+            List<Integer> userIds = createUsers(threads);
+            List<List<Integer>> copyIds = createCopies(threads);
+
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            AtomicInteger failures = new AtomicInteger();
+            List<Future<?>> futures = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                int userId = userIds.get(t);
+                List<Integer> copies = copyIds.get(t);
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < CHECKOUTS_PER_THREAD; i++) {
+                        try {
+                            borrowingService.createBorrowing(userId, copies.get(i % copies.size()), new Date(), null);
+                            Borrowing borrowing = borrowingService.getBorrowingsByUserId(userId).get(0);
+                            borrowingService.deleteBorrowing(borrowing.getId());
+                        } catch (RuntimeException e) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(2, TimeUnit.MINUTES);
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            executor.shutdown();
+
+            assertEquals(0, failures.get(), "Checkouts of different users must not block or fail each other");
+            log.infof("Checkout throughput with %d threads: %.0f checkouts/s",
+                    threads, threads * CHECKOUTS_PER_THREAD / seconds);
+        }
+    }
+
+    @Test
+    void testLimitHoldsWhenAllThreadsShareOneUser() throws Exception {
+        int threads = 32;
+        int userId = createUsers(1).get(0);
+        List<List<Integer>> copyIds = createCopies(threads);
+
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger overLimit = new AtomicInteger();
+        AtomicInteger unexpected = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            List<Integer> copies = copyIds.get(t);
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int copyId : copies) {
+                    try {
+                        borrowingService.createBorrowing(userId, copyId, new Date(), null);
+                        if (borrowingService.getBorrowingsByUserId(userId).size() > 2) {
+                            overLimit.incrementAndGet();
+                        }
+                    } catch (IllegalStateException e) {
+                        // the user already has 2 active borrowings
+                    } catch (RuntimeException e) {
+                        unexpected.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        assertEquals(0, overLimit.get());
+        assertEquals(0, unexpected.get(), "Checkouts of the same user should wait for each other, not fail");
+        assertEquals(2, borrowingService.getBorrowingsByUserId(userId).size());
+        assertEquals(2, userService.getUserById(userId).getActiveBorrowings());
+    }
+
+    private List<Integer> createUsers(int count) {
+        List<Integer> userIds = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            userService.createUser("Stress User " + i, "stress" + i + "@example.com", "555", "Street", "pwd", "USER");
+            User user = userService.getUserByEmail("stress" + i + "@example.com");
+            userIds.add(user.getId());
+        }
+        return userIds;
+    }
+
+    /**
+     * Creates {@value #COPIES_PER_USER} copies of a book for every user and returns their ids per user.
+     */
+    private List<List<Integer>> createCopies(int users) {
+        List<List<Integer>> copyIds = new ArrayList<>();
+        for (int i = 0; i < users; i++) {
+            String isbn = String.format("97877777%05d", i);
+            bookService.createBook("Stress Book " + i, "Author", "Publisher", 2021, isbn);
+            Book book = bookService.getBookByIsbn(isbn);
+            for (int c = 1; c <= COPIES_PER_USER; c++) {
+                copyService.createCopy(book.getId(), c, "Available");
+            }
+            List<Integer> ids = new ArrayList<>();
+            for (Copy copy : copyService.getAvailableCopies()) {
+                if (copy.getBook().getId() == book.getId()) {
+                    ids.add(copy.getId());
+                }
+            }
+            copyIds.add(ids);
+        }
+        return copyIds;
+    }
+}
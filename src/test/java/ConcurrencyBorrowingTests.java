@@ -1,18 +1,30 @@
 
 import org.example.model.Book;
+import org.example.model.Borrowing;
 import org.example.model.Copy;
+import org.example.model.CopyStatus;
 import org.example.model.User;
 import org.example.service.BookService;
 import org.example.service.BorrowingService;
+import org.example.service.CheckoutLockMode;
 import org.example.service.CopyService;
 import org.example.service.UserService;
+import org.example.persistence.PersistenceUnitRegistry;
 import org.junit.jupiter.api.*;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
-import javax.persistence.Persistence;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -27,7 +39,7 @@ public class ConcurrencyBorrowingTests {
 
     @BeforeAll
     void setUpAll() {
-        emf = Persistence.createEntityManagerFactory("testPU");
+        emf = PersistenceUnitRegistry.getEntityManagerFactory("testPU");
 
         bookService = new BookService("testPU");
         copyService = new CopyService("testPU");
@@ -90,7 +102,205 @@ public class ConcurrencyBorrowingTests {
                 "Only one Borrowing should exist if concurrency is handled properly");
 
         Copy updatedCopy = copyService.getAllCopies().get(0);
-        assertEquals("Borrowed", updatedCopy.getStatus(),
+        assertEquals(CopyStatus.BORROWED, updatedCopy.getStatus(),
                 "Copy should be 'Borrowed' after one successful borrowing attempt");
     }
+
+    @Test
+    void testConcurrentBorrowingsOfSameUserRespectLimit() throws Exception {
+        userService.createUser("Busy Reader", "busy@example.com", "555-0001", "Busy St", "pass123", "USER");
+        User user = userService.getUserByEmail("busy@example.com");
+        List<Integer> copyIds = createCopies(8);
+
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(copyIds.size());
+        List<Future<?>> futures = new ArrayList<>();
+        for (int copyId : copyIds) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                try {
+                    borrowingService.createBorrowing(user.getId(), copyId, new Date(), null);
+                } catch (IllegalStateException e) {
+                    rejected.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        assertEquals(2, borrowingService.getBorrowingsByUserId(user.getId()).size(),
+                "Concurrent checkouts on different copies must not exceed the limit of 2");
+        assertEquals(copyIds.size() - 2, rejected.get());
+        assertEquals(2, userService.getUserById(user.getId()).getActiveBorrowings());
+    }
+
+    @Test
+    void testActiveBorrowingsFollowReturnAndDelete() {
+        userService.createUser("Returning Reader", "returning@example.com", "555-0002", "Return St", "pass123", "USER");
+        User user = userService.getUserByEmail("returning@example.com");
+        List<Integer> copyIds = createCopies(3);
+
+        borrowingService.createBorrowing(user.getId(), copyIds.get(0), new Date(), null);
+        borrowingService.createBorrowing(user.getId(), copyIds.get(1), new Date(), null);
+        assertEquals(2, userService.getUserById(user.getId()).getActiveBorrowings());
+
+        Borrowing first = borrowingService.getBorrowingsByUserId(user.getId()).get(0);
+        borrowingService.updateBorrowing(first.getId(), first.getBorrowDate(), new Date());
+        assertEquals(1, userService.getUserById(user.getId()).getActiveBorrowings(), "Returning should free a slot");
+
+        borrowingService.createBorrowing(user.getId(), copyIds.get(2), new Date(), null);
+        assertEquals(2, userService.getUserById(user.getId()).getActiveBorrowings());
+        assertThrows(IllegalStateException.class,
+                () -> borrowingService.updateBorrowing(first.getId(), first.getBorrowDate(), null),
+                "Reopening a returned borrowing must respect the limit");
+
+        for (Borrowing borrowing : borrowingService.getBorrowingsByUserId(user.getId())) {
+            borrowingService.deleteBorrowing(borrowing.getId());
+        }
+        assertEquals(0, userService.getUserById(user.getId()).getActiveBorrowings());
+    }
+
+    @Test
+    void testConcurrentReturnAndDeleteCountOnce() throws Exception {
+        userService.createUser("Racing Reader", "racing@example.com", "555-0003", "Race St", "pass123", "USER");
+        User user = userService.getUserByEmail("racing@example.com");
+        int copyId = createCopies(1).get(0);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        for (int round = 0; round < 20; round++) {
+            borrowingService.createBorrowing(user.getId(), copyId, new Date(), null);
+            int borrowingId = borrowingService.getBorrowingsByUserId(user.getId()).get(0).getId();
+
+            CountDownLatch start = new CountDownLatch(1);
+            Future<?> returned = executor.submit(() -> {
+                start.await();
+                try {
+                    borrowingService.returnBorrowing(borrowingId, new Date());
+                } catch (IllegalStateException e) {
+                    // deleted before it could be returned
+                }
+                return null;
+            });
+            Future<?> deleted = executor.submit(() -> {
+                start.await();
+                borrowingService.deleteBorrowing(borrowingId);
+                return null;
+            });
+            start.countDown();
+            returned.get(1, TimeUnit.MINUTES);
+            deleted.get(1, TimeUnit.MINUTES);
+
+            assertEquals(0, userService.getUserById(user.getId()).getActiveBorrowings(),
+                    "The borrowing must be counted out once in round " + round);
+            assertEquals(CopyStatus.AVAILABLE, copyService.getCopyById(copyId).getStatus());
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    void testConcurrentOptimisticCheckoutsOnSameCopy() throws Exception {
+        BorrowingService optimistic = new BorrowingService(emf, CheckoutLockMode.OPTIMISTIC);
+        int copyId = createCopies(1).get(0);
+        long versionBefore = copyService.getCopyById(copyId).getVersion();
+        List<Integer> userIds = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            userService.createUser("Kiosk User " + i, "kiosk" + i + "@example.com", "555", "Kiosk St", "pass123", "USER");
+            userIds.add(userService.getUserByEmail("kiosk" + i + "@example.com").getId());
+        }
+
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger notAvailable = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(userIds.size());
+        List<Future<?>> futures = new ArrayList<>();
+        for (int userId : userIds) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                try {
+                    optimistic.createBorrowing(userId, copyId, new Date(), null);
+                } catch (IllegalStateException e) {
+                    notAvailable.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        assertEquals(1, borrowingService.getAllBorrowings().size(), "Only one kiosk may get the copy");
+        assertEquals(userIds.size() - 1, notAvailable.get(), "The others should be told the copy is taken");
+        Copy copy = copyService.getCopyById(copyId);
+        assertEquals(CopyStatus.BORROWED, copy.getStatus());
+        assertEquals(versionBefore + 1, copy.getVersion(), "Claiming the copy should bump its version");
+    }
+
+    @Test
+    void testConcurrentCheckoutsOfTitleSpreadAcrossCopies() throws Exception {
+        bookService.createBook("Popular Title", "Author", "Publisher", 2024, "9789999900001");
+        Book book = bookService.getBookByIsbn("9789999900001");
+        for (int c = 1; c <= 5; c++) {
+            copyService.createCopy(book.getId(), c, "Available");
+        }
+        List<Integer> userIds = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            userService.createUser("Title User " + i, "title" + i + "@example.com", "555", "Title St", "pass123", "USER");
+            userIds.add(userService.getUserByEmail("title" + i + "@example.com").getId());
+        }
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Integer> borrowedCopies = new CopyOnWriteArrayList<>();
+        AtomicInteger noCopyLeft = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(userIds.size());
+        List<Future<?>> futures = new ArrayList<>();
+        for (int userId : userIds) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                try {
+                    borrowedCopies.add(borrowingService.borrowAnyAvailableCopy(userId, book.getId(), new Date(), null));
+                } catch (IllegalStateException e) {
+                    noCopyLeft.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        assertEquals(5, borrowedCopies.size(), "Every copy of the title should be checked out once");
+        assertEquals(5, new HashSet<>(borrowedCopies).size());
+        assertEquals(5, noCopyLeft.get());
+        assertTrue(copyService.getAvailableCopies().isEmpty());
+        assertTrue(bookService.getBooksWithAvailableCopies().isEmpty());
+    }
+
+    @Test
+    void testLockModeProperty() {
+        assertEquals(CheckoutLockMode.PESSIMISTIC, CheckoutLockMode.fromProperty(null));
+        assertEquals(CheckoutLockMode.OPTIMISTIC, CheckoutLockMode.fromProperty(" optimistic "));
+        assertThrows(IllegalArgumentException.class, () -> CheckoutLockMode.fromProperty("eventually"));
+    }
+
+    private List<Integer> createCopies(int count) {
+        List<Integer> copyIds = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String isbn = String.format("97855555%05d", i);
+            bookService.createBook("Limit Book " + i, "Author", "Publisher", 2023, isbn);
+            Book book = bookService.getBookByIsbn(isbn);
+            copyService.createCopy(book.getId(), 1, "Available");
+        }
+        for (Copy copy : copyService.getAvailableCopies()) {
+            copyIds.add(copy.getId());
+        }
+        return copyIds;
+    }
 }
@@ -0,0 +1,126 @@
+import org.example.model.Book;
+import org.example.model.Borrowing;
+import org.example.model.Copy;
+import org.example.model.User;
+import org.example.persistence.ConnectionPoolMetrics;
+import org.example.persistence.PersistenceUnitRegistry;
+import org.example.service.BookService;
+import org.example.service.BorrowingService;
+import org.example.service.CopyService;
+import org.example.service.UserService;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.*;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class ConnectionPoolTests {
+
+    private static final Logger log = Logger.getLogger(ConnectionPoolTests.class);
+
+    private static final int THREADS = 8;
+    private static final int CHECKOUTS_PER_THREAD = 50;
+
+    @BeforeEach
+    void cleanDatabase() {
+        cleanDatabase("testPU");
+        cleanDatabase("testPooledPU");
+    }
+
+    @AfterAll
+    void tearDownAll() {
+        PersistenceUnitRegistry.close("testPooledPU");
+    }
+
+    @Test
+    void testPooledUnitRegistersPoolMetrics() {
+        PersistenceUnitRegistry.getEntityManagerFactory("testPooledPU");
+
+        ConnectionPoolMetrics.PoolMetrics metrics = ConnectionPoolMetrics.forPool("testPooledPU");
+        assertNotNull(metrics, "The pooled unit should register its pool metrics");
+        assertEquals(8, metrics.getMaxConnections());
+    }
+
+    @Test
+    void testPooledCheckoutLoad() throws Exception {
+        double unpooled = runCheckoutLoad("testPU");
+        cleanDatabase();
+        double pooled = runCheckoutLoad("testPooledPU");
+
+        ConnectionPoolMetrics.PoolMetrics metrics = ConnectionPoolMetrics.forPool("testPooledPU");
+        assertTrue(metrics.getAcquisitions() >= THREADS * CHECKOUTS_PER_THREAD * 2L);
+        assertEquals(0, metrics.getTimeouts(), "No checkout should time out waiting for a connection");
+        assertTrue(metrics.getTotalConnections() <= 8, "The pool must stay within its maximum size");
+
+        log.infof("Checkout throughput: pooled %.0f/s, built-in connection provider %.0f/s", pooled, unpooled);
+        log.info(metrics);
+    }
+
+    /**
+     * Every thread checks out and returns its own copy in a loop, returns checkouts per second.
+     */
+    private double runCheckoutLoad(String unit) throws Exception {
+        UserService userService = new UserService(unit);
+        BookService bookService = new BookService(unit);
+        CopyService copyService = new CopyService(unit);
+        BorrowingService borrowingService = new BorrowingService(unit);
+
+        List<int[]> userAndCopy = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            userService.createUser("Pool User " + i, "pool" + i + "@example.com", "555", "Pool St", "pwd", "USER");
+            bookService.createBook("Pool Book " + i, "Author", "Publisher", 2020, "97800000000" + (10 + i));
+            Book book = bookService.getBookByIsbn("97800000000" + (10 + i));
+            copyService.createCopy(book.getId(), 1, "Available");
+            User user = userService.getUserByEmail("pool" + i + "@example.com");
+            Copy copy = copyService.getAvailableCopies().stream()
+                    .filter(c -> c.getBook().getId() == book.getId())
+                    .findFirst().get();
+            userAndCopy.add(new int[]{user.getId(), copy.getId()});
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        AtomicInteger failures = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int[] ids : userAndCopy) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < CHECKOUTS_PER_THREAD; i++) {
+                    try {
+                        borrowingService.createBorrowing(ids[0], ids[1], new Date(), null);
+                        Borrowing borrowing = borrowingService.getBorrowingsByUserId(ids[0]).get(0);
+                        borrowingService.deleteBorrowing(borrowing.getId());
+                    } catch (RuntimeException e) {
+                        failures.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+
+        assertEquals(0, failures.get(), "Every checkout should succeed on " + unit);
+        return THREADS * CHECKOUTS_PER_THREAD / (elapsed / 1e9);
+    }
+
+    private void cleanDatabase(String unit) {
+        EntityManager em = PersistenceUnitRegistry.getEntityManagerFactory(unit).createEntityManager();
+        em.getTransaction().begin();
+        em.createQuery("DELETE FROM Borrowing").executeUpdate();
+        em.createQuery("DELETE FROM Librarian").executeUpdate();
+        em.createQuery("DELETE FROM Copy").executeUpdate();
+        em.createQuery("DELETE FROM Book").executeUpdate();
+        em.createQuery("DELETE FROM User").executeUpdate();
+        em.getTransaction().commit();
+        em.close();
+    }
+}
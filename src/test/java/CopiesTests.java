@@ -1,17 +1,18 @@
 
 
 import org.example.model.Copy;
+import org.example.model.CopyStatus;
 import org.example.model.Book;
 import org.example.service.CopyService;
 import org.example.service.BookService;
 import org.example.service.BorrowingService;
+import org.example.persistence.PersistenceUnitRegistry;
  // if needed for a "fails if referencing" test
 
 import org.junit.jupiter.api.*;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
-import javax.persistence.Persistence;
 
 import java.util.List;
  // Only if you do a referencing test with Borrowing's date
@@ -27,7 +28,7 @@ public class CopiesTests {
 
     @BeforeAll
     void setUpAll() {
-        emf = Persistence.createEntityManagerFactory("testPU");
+        emf = PersistenceUnitRegistry.getEntityManagerFactory("testPU");
 
         copyService = new CopyService("testPU");
         bookService = new BookService("testPU");
@@ -73,7 +74,7 @@ public class CopiesTests {
 
         Copy copy = allCopies.get(0);
         assertNotNull(copy.getId(), "Copy ID should be auto-generated.");
-        assertEquals("Available", copy.getStatus());
+        assertEquals(CopyStatus.AVAILABLE, copy.getStatus());
         assertEquals(1, copy.getCopyNumber());
         assertEquals(bookId, copy.getBook().getId(), "Copy should reference the correct Book.");
     }
@@ -89,7 +90,7 @@ public class CopiesTests {
         Copy retrieved = copyService.getCopyById(copyId);
         assertNotNull(retrieved, "Copy should be found by ID");
         assertEquals(2, retrieved.getCopyNumber());
-        assertEquals("Available", retrieved.getStatus());
+        assertEquals(CopyStatus.AVAILABLE, retrieved.getStatus());
         assertEquals(bookId, retrieved.getBook().getId());
     }
 
@@ -105,7 +106,7 @@ public class CopiesTests {
 
         Copy updated = copyService.getCopyById(copyId);
         assertEquals(5, updated.getCopyNumber(), "Copy number should be updated to 5");
-        assertEquals("Borrowed", updated.getStatus(), "Status should be updated to 'Borrowed'");
+        assertEquals(CopyStatus.BORROWED, updated.getStatus(), "Status should be updated to 'Borrowed'");
     }
 
     @Test
@@ -121,6 +122,29 @@ public class CopiesTests {
         assertNull(copyService.getCopyById(copyId), "Copy should be deleted from the DB.");
     }
 
+    @Test
+    void testStatusChangesFollowTheTransitions() {
+        int bookId = createTestBook();
+        copyService.createCopy(bookId, 1, CopyStatus.BORROWED);
+        int copyId = copyService.getAllCopies().get(0).getId();
+
+        assertThrows(IllegalStateException.class, () -> copyService.updateCopy(copyId, 1, CopyStatus.RESERVED),
+                "A borrowed copy cannot be reserved");
+        assertEquals(CopyStatus.BORROWED, copyService.getCopyById(copyId).getStatus());
+
+        copyService.updateCopy(copyId, 1, "lost");
+        copyService.updateCopy(copyId, 1, "IN_REPAIR");
+        copyService.updateCopy(copyId, 1, "Available");
+        assertEquals(CopyStatus.AVAILABLE, copyService.getCopyById(copyId).getStatus());
+    }
+
+    @Test
+    void testUnknownStatusIsRejected() {
+        int bookId = createTestBook();
+        assertThrows(IllegalArgumentException.class, () -> copyService.createCopy(bookId, 1, "Misplaced"));
+        assertTrue(copyService.getAllCopies().isEmpty());
+    }
+
 
 
 }
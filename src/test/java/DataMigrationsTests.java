@@ -0,0 +1,171 @@
+import org.example.model.Book;
+import org.example.model.Copy;
+import org.example.model.CopyStatus;
+import org.example.model.User;
+import org.example.persistence.DataMigrations;
+import org.example.persistence.PersistenceUnitRegistry;
+import org.example.service.BookService;
+import org.example.service.CopyService;
+import org.example.service.UserService;
+import org.junit.jupiter.api.*;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class DataMigrationsTests {
+
+    private EntityManagerFactory emf;
+    private UserService userService;
+    private BookService bookService;
+    private CopyService copyService;
+
+    @BeforeAll
+    void setup() {
+        emf = PersistenceUnitRegistry.getEntityManagerFactory("testPU");
+        userService = new UserService("testPU");
+        bookService = new BookService("testPU");
+        copyService = new CopyService("testPU");
+    }
+
+    @BeforeEach
+    void cleanDatabase() {
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        em.createQuery("DELETE FROM Borrowing").executeUpdate();
+        em.createQuery("DELETE FROM Librarian").executeUpdate();
+        em.createQuery("DELETE FROM Copy").executeUpdate();
+        em.createQuery("DELETE FROM Book").executeUpdate();
+        em.createQuery("DELETE FROM User").executeUpdate();
+        em.getTransaction().commit();
+        em.close();
+    }
+
+    @Test
+    void testActiveBorrowingsAreBackfilledOnce() {
+        userService.createUser("Legacy Reader", "legacy@example.com", "555", "Street", "pwd", "USER");
+        User user = userService.getUserByEmail("legacy@example.com");
+        bookService.createBook("Legacy Book", "Author", "Publisher", 1999, "9786666600001");
+        Book book = bookService.getBookByIsbn("9786666600001");
+        copyService.createCopy(book.getId(), 1, "Borrowed");
+        copyService.createCopy(book.getId(), 2, "Borrowed");
+        copyService.createCopy(book.getId(), 3, "Available");
+
+        // Borrowings written before the counter existed: two active, one returned
+        int active = 0;
+        for (Copy copy : copyService.getAllCopies()) {
+            boolean returned = copy.getStatus() == CopyStatus.AVAILABLE;
+            execute("INSERT INTO Borrowings (id, userId, copyId, borrowDate, returnDate) VALUES (NEXT VALUE FOR borrowings_seq, "
+                    + user.getId() + ", " + copy.getId() + ", CURRENT_DATE, " + (returned ? "CURRENT_DATE" : "NULL") + ")");
+            active += returned ? 0 : 1;
+        }
+        execute("DELETE FROM SchemaMigrations WHERE id = '001-user-active-borrowings'");
+
+        DataMigrations.apply(emf);
+        assertEquals(active, userService.getUserById(user.getId()).getActiveBorrowings());
+
+        execute("UPDATE Users SET activeBorrowings = 7");
+        DataMigrations.apply(emf);
+        assertEquals(7, userService.getUserById(user.getId()).getActiveBorrowings(),
+                "A migration that was applied must not run again");
+    }
+
+    @Test
+    void testLegacyStatusNamesAreConvertedToCodes() {
+        bookService.createBook("Legacy Book", "Author", "Publisher", 1999, "9786666600002");
+        Book book = bookService.getBookByIsbn("9786666600002");
+        execute("ALTER TABLE Copies ALTER COLUMN status SET DATA TYPE VARCHAR(255)");
+        String[] legacy = {"Available", "borrowed", "Reserved", "LOST", "Damaged"};
+        for (int i = 0; i < legacy.length; i++) {
+            execute("INSERT INTO Copies (id, bookId, copyNumber, status, version) VALUES (NEXT VALUE FOR copies_seq, "
+                    + book.getId() + ", " + (i + 1) + ", '" + legacy[i] + "', 0)");
+        }
+        execute("DELETE FROM SchemaMigrations WHERE id = '003-copy-status-codes'");
+
+        DataMigrations.apply(emf);
+        List<CopyStatus> statuses = new ArrayList<>();
+        for (Copy copy : copyService.getAllCopies()) {
+            statuses.add(copy.getStatus());
+        }
+        statuses.sort(null);
+        assertEquals(Arrays.asList(CopyStatus.AVAILABLE, CopyStatus.BORROWED, CopyStatus.RESERVED,
+                CopyStatus.LOST, CopyStatus.IN_REPAIR), statuses);
+
+        EntityManager em = emf.createEntityManager();
+        try {
+            Object type = em.createNativeQuery("SELECT DATA_TYPE FROM INFORMATION_SCHEMA.COLUMNS " +
+                    "WHERE TABLE_NAME = 'COPIES' AND COLUMN_NAME = 'STATUS'").getSingleResult();
+            assertEquals("CHARACTER", type);
+        } finally {
+            em.close();
+        }
+    }
+
+    @Test
+    void testAvailabilityCountsLegacyStatusNamesInAnyCase() {
+        bookService.createBook("Legacy Book", "Author", "Publisher", 1999, "9786666600003");
+        Book book = bookService.getBookByIsbn("9786666600003");
+        execute("ALTER TABLE Copies ALTER COLUMN status SET DATA TYPE VARCHAR(255)");
+        String[] legacy = {"AVAILABLE", "available", " Available ", "Borrowed"};
+        for (int i = 0; i < legacy.length; i++) {
+            execute("INSERT INTO Copies (id, bookId, copyNumber, status, version) VALUES (NEXT VALUE FOR copies_seq, "
+                    + book.getId() + ", " + (i + 1) + ", '" + legacy[i] + "', 0)");
+        }
+        execute("DELETE FROM SchemaMigrations WHERE id IN " +
+                "('002-book-availability', '003-copy-status-codes', '004-book-availability-recount')");
+
+        DataMigrations.apply(emf);
+        assertEquals(3, availableCopies(book.getId()));
+
+        // a database where 002 counted only the exact names gets its counts fixed by 004
+        execute("UPDATE BookAvailability SET availableCopies = 1");
+        execute("DELETE FROM SchemaMigrations WHERE id = '004-book-availability-recount'");
+        DataMigrations.apply(emf);
+        assertEquals(3, availableCopies(book.getId()));
+    }
+
+    @Test
+    void testHyphensAreRemovedFromStoredIsbns() {
+        execute("INSERT INTO Books (id, title, author, publicationYear, isbn) VALUES " +
+                "(NEXT VALUE FOR books_seq, 'Hyphenated', 'Author', 1999, '978-6-666-60000-4'), " +
+                "(NEXT VALUE FOR books_seq, 'Duplicate', 'Author', 1999, '978-6666600005'), " +
+                "(NEXT VALUE FOR books_seq, 'Imported', 'Author', 1999, '9786666600005')");
+        execute("DELETE FROM SchemaMigrations WHERE id = '005-isbn-without-hyphens'");
+
+        DataMigrations.apply(emf);
+        List<String> isbns = new ArrayList<>();
+        for (Book book : bookService.getAllBooks()) {
+            isbns.add(book.getIsbn());
+        }
+        isbns.sort(null);
+        assertEquals(Arrays.asList("978-6666600005", "9786666600004", "9786666600005"), isbns,
+                "An ISBN whose digits another book has must stay as it is");
+    }
+
+    private int availableCopies(int bookId) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return ((Number) em.createNativeQuery("SELECT availableCopies FROM BookAvailability WHERE bookId = ?1")
+                    .setParameter(1, bookId)
+                    .getSingleResult()).intValue();
+        } finally {
+            em.close();
+        }
+    }
+
+    private void execute(String sql) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.createNativeQuery(sql).executeUpdate();
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+}
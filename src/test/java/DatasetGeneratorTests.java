@@ -0,0 +1,138 @@
+import org.example.model.User;
+import org.example.persistence.DatasetGenerator;
+import org.example.persistence.PersistenceUnitRegistry;
+import org.example.service.UserService;
+import org.junit.jupiter.api.*;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class DatasetGeneratorTests {
+
+    private static final String UNIT = "testPooledPU";
+    private static final int USERS = 2000;
+
+    private EntityManagerFactory emf;
+
+    @BeforeAll
+    void setup() {
+        emf = PersistenceUnitRegistry.getEntityManagerFactory(UNIT);
+    }
+
+    @BeforeEach
+    @AfterAll
+    void cleanDatabase() {
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        for (String table : new String[]{"Borrowings", "BookAvailability", "Copies", "Books", "Librarians", "Users", "Publishers"}) {
+            em.createNativeQuery("DELETE FROM " + table).executeUpdate();
+        }
+        em.getTransaction().commit();
+        em.close();
+        emf.getCache().evictAll();
+    }
+
+    @Test
+    void testSameSeedGeneratesSameLibrary() {
+        DatasetGenerator.Summary summary = new DatasetGenerator(7, USERS).generate(emf);
+        assertEquals(USERS, summary.getUsers());
+        assertEquals(USERS / 2, summary.getBooks());
+        assertEquals(USERS * DatasetGenerator.DEFAULT_BORROWINGS_PER_USER + summary.getActiveBorrowings(),
+                summary.getBorrowings());
+        assertEquals(summary.getCopies(), count("SELECT COUNT(*) FROM Copies"));
+
+        String first = contents();
+        cleanDatabase();
+        new DatasetGenerator(7, USERS).generate(emf);
+        assertEquals(first, contents(), "The same seed must write the same rows");
+        cleanDatabase();
+        new DatasetGenerator(8, USERS).generate(emf);
+        assertNotEquals(first, contents(), "Another seed should write another library");
+    }
+
+    @Test
+    void testLoansAgreeWithCopiesUsersAndAvailability() {
+        DatasetGenerator.Summary summary = new DatasetGenerator(1, USERS).generate(emf);
+
+        assertTrue(summary.getActiveBorrowings() > 0);
+        assertEquals(summary.getActiveBorrowings(), count("SELECT COUNT(*) FROM Copies WHERE status = 'B'"));
+        assertEquals(0, count("SELECT COUNT(*) FROM Copies c WHERE (c.status = 'B') <> " +
+                "((SELECT COUNT(*) FROM Borrowings b WHERE b.copyId = c.id AND b.returnDate IS NULL) = 1)"),
+                "A copy must be on loan exactly when it has one active borrowing");
+        assertEquals(0, count("SELECT COUNT(*) FROM Users u WHERE u.activeBorrowings > 2 OR u.activeBorrowings <> " +
+                "(SELECT COUNT(*) FROM Borrowings b WHERE b.userId = u.id AND b.returnDate IS NULL)"),
+                "The counters of the users must match their active borrowings");
+        assertEquals(0, count("SELECT COUNT(*) FROM BookAvailability a WHERE " +
+                "a.totalCopies <> (SELECT COUNT(*) FROM Copies c WHERE c.bookId = a.bookId) OR " +
+                "a.availableCopies <> (SELECT COUNT(*) FROM Copies c WHERE c.bookId = a.bookId AND c.status = 'A')"),
+                "The availability must summarize the copies");
+        assertEquals(0, count("SELECT COUNT(*) FROM Borrowings WHERE returnDate < borrowDate"));
+    }
+
+    @Test
+    void testTitlePopularityIsSkewed() {
+        new DatasetGenerator(3, USERS).generate(emf);
+
+        EntityManager em = emf.createEntityManager();
+        try {
+            @SuppressWarnings("unchecked")
+            List<Number> loansByBook = em.createNativeQuery("SELECT COUNT(*) FROM Borrowings b " +
+                    "JOIN Copies c ON c.id = b.copyId GROUP BY c.bookId ORDER BY COUNT(*) DESC").getResultList();
+            long total = loansByBook.stream().mapToLong(Number::longValue).sum();
+            long top = loansByBook.stream().limit(USERS / 2 / 10).mapToLong(Number::longValue).sum();
+            assertTrue(top * 2 > total, "A tenth of the titles should make up most of the borrowings");
+        } finally {
+            em.close();
+        }
+    }
+
+    @Test
+    void testGeneratedUsersCanLogIn() {
+        new DatasetGenerator(5, USERS).generate(emf);
+
+        User user = new UserService(UNIT).authenticateUser(DatasetGenerator.email(42), DatasetGenerator.password(42));
+        assertNotNull(user);
+        assertEquals(42, user.getId());
+        assertEquals("9780000000422", DatasetGenerator.isbn(42), "The ISBN should end with its check digit");
+    }
+
+    @Test
+    void testRefusesNonEmptyDatabase() {
+        new DatasetGenerator(5, 10).generate(emf);
+        assertThrows(IllegalStateException.class, () -> new DatasetGenerator(5, 10).generate(emf));
+    }
+
+    private String contents() {
+        EntityManager em = emf.createEntityManager();
+        try {
+            StringBuilder contents = new StringBuilder();
+            for (String query : new String[]{
+                    "SELECT id, name, email, address, role, activeBorrowings FROM Users ORDER BY id",
+                    "SELECT id, title, author, publisher, publicationYear, isbn FROM Books ORDER BY id",
+                    "SELECT id, bookId, copyNumber, status FROM Copies ORDER BY id",
+                    "SELECT id, userId, copyId, returnDate IS NULL FROM Borrowings ORDER BY id",
+                    "SELECT id, name FROM Publishers ORDER BY id"}) {
+                for (Object row : em.createNativeQuery(query).getResultList()) {
+                    contents.append(Arrays.toString((Object[]) row)).append('\n');
+                }
+            }
+            return contents.toString();
+        } finally {
+            em.close();
+        }
+    }
+
+    private long count(String sql) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return ((Number) em.createNativeQuery(sql).getSingleResult()).longValue();
+        } finally {
+            em.close();
+        }
+    }
+}
@@ -9,11 +9,11 @@ import org.example.service.BorrowingService;
 import org.example.service.CopyService;
 import org.example.service.UserService;
 import org.example.service.LibrarianService;
+import org.example.persistence.PersistenceUnitRegistry;
 import org.junit.jupiter.api.*;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
-import javax.persistence.Persistence;
 import java.util.Date;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -30,7 +30,7 @@ public class DeleteReferencedRecordsTests {
 
     @BeforeAll
     void setupAll() {
-        emf = Persistence.createEntityManagerFactory("testPU");
+        emf = PersistenceUnitRegistry.getEntityManagerFactory("testPU");
         userService = new UserService("testPU");
         bookService = new BookService("testPU");
         copyService = new CopyService("testPU");
@@ -0,0 +1,112 @@
+import org.example.model.Book;
+import org.example.persistence.IdSequences;
+import org.example.persistence.PersistenceUnitRegistry;
+import org.example.persistence.PooledSequenceGenerator;
+import org.example.service.BookService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.*;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class IdSequencesTests {
+
+    private EntityManagerFactory emf;
+
+    @BeforeAll
+    void setup() {
+        emf = PersistenceUnitRegistry.getEntityManagerFactory("testPU");
+    }
+
+    @BeforeEach
+    void cleanDatabase() {
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        em.createQuery("DELETE FROM Borrowing").executeUpdate();
+        em.createQuery("DELETE FROM Copy").executeUpdate();
+        em.createQuery("DELETE FROM BookAvailability").executeUpdate();
+        em.createQuery("DELETE FROM Book").executeUpdate();
+        em.getTransaction().commit();
+        em.close();
+    }
+
+    @Test
+    void testSequenceRestartsAfterRowsLoadedWithSql() {
+        execute(emf, "INSERT INTO Books (id, title, author, publisher, publicationYear, isbn) " +
+                "VALUES (1000000, 'Loaded', 'Author', 'Publisher', 2000, '9782222222220')");
+
+        IdSequences.align(emf);
+
+        EntityManager em = emf.createEntityManager();
+        try {
+            Number next = (Number) em.createNativeQuery(
+                    "SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = 'BOOKS_SEQ'")
+                    .getSingleResult();
+            assertEquals(1000001, next.intValue(), "The next block must start after the ids already taken");
+        } finally {
+            em.close();
+        }
+    }
+
+    @Test
+    void testIdsAreTakenFromTheSequenceABlockAtATime() {
+        Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            statistics.clear();
+            for (int i = 0; i < PooledSequenceGenerator.DEFAULT_ALLOCATION_SIZE; i++) {
+                em.persist(new Book("Block " + i, "Author", "Publisher", 2000, String.format("97833333%05d", i)));
+            }
+            assertTrue(statistics.getPrepareStatementCount() <= 2,
+                    "One block of ids should need at most two reads of the sequence");
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+
+    @Test
+    void testAllocationSizeIsConfigurable() {
+        PersistenceUnitRegistry.close("testPooledPU");
+        PersistenceUnitRegistry.configure("testPooledPU",
+                Collections.singletonMap(PooledSequenceGenerator.ALLOCATION_SIZE_PROPERTY, "5"));
+        try {
+            EntityManagerFactory pooled = PersistenceUnitRegistry.getEntityManagerFactory("testPooledPU");
+            EntityManager em = pooled.createEntityManager();
+            try {
+                Number increment = (Number) em.createNativeQuery(
+                        "SELECT INCREMENT FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = 'BOOKS_SEQ'")
+                        .getSingleResult();
+                assertEquals(5, increment.intValue());
+            } finally {
+                em.close();
+            }
+
+            BookService pooledBooks = new BookService(pooled);
+            pooledBooks.createBook("First", "Author", "Publisher", 2000, "9784444444440");
+            pooledBooks.createBook("Second", "Author", "Publisher", 2000, "9784444444441");
+            assertEquals(pooledBooks.getBookByIsbn("9784444444440").getId() + 1,
+                    pooledBooks.getBookByIsbn("9784444444441").getId(), "Both ids come from the same block");
+        } finally {
+            PersistenceUnitRegistry.close("testPooledPU");
+            PersistenceUnitRegistry.configure("testPooledPU", Collections.<String, Object>emptyMap());
+        }
+    }
+
+    private static void execute(EntityManagerFactory emf, String sql) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.createNativeQuery(sql).executeUpdate();
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+}
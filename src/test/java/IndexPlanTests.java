@@ -0,0 +1,40 @@
+import org.example.persistence.PersistenceUnitRegistry;
+import org.junit.jupiter.api.*;
+
+import javax.persistence.EntityManager;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks with H2's EXPLAIN that the hot lookups are answered from an index instead of a table scan.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class IndexPlanTests {
+
+    @Test
+    void testActiveBorrowingCountUsesUserReturnIndex() {
+        String plan = explain("SELECT COUNT(*) FROM Borrowings WHERE userId = 1 AND returnDate IS NULL");
+        assertTrue(plan.contains("IDX_BORROWINGS_USER_RETURN"), plan);
+    }
+
+    @Test
+    void testAvailableCopiesUseStatusIndex() {
+        String plan = explain("SELECT * FROM Copies WHERE status = 'A'");
+        assertTrue(plan.contains("IDX_COPIES_STATUS"), plan);
+    }
+
+    @Test
+    void testUserByNameUsesNameIndex() {
+        String plan = explain("SELECT * FROM Users WHERE name = 'Reader'");
+        assertTrue(plan.contains("IDX_USERS_NAME"), plan);
+    }
+
+    private String explain(String sql) {
+        EntityManager em = PersistenceUnitRegistry.getEntityManagerFactory("testPU").createEntityManager();
+        try {
+            return String.valueOf(em.createNativeQuery("EXPLAIN " + sql).getSingleResult());
+        } finally {
+            em.close();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+import org.example.metrics.LatencyHistogram;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTests {
+
+    @Test
+    void testPercentilesAreWithinTheResolution() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 10_000; micros++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(micros));
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(10_000, snapshot.getCount());
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(10_000), snapshot.getMaxNanos());
+        assertEquals(5_000_500, snapshot.getMeanNanos(), 1);
+        for (double percentile : new double[]{50, 90, 99, 99.9}) {
+            double expected = TimeUnit.MICROSECONDS.toNanos((long) (percentile * 100));
+            assertEquals(expected, snapshot.getPercentileNanos(percentile), expected / 64,
+                    "p" + percentile + " should be exact to within a sub-bucket");
+        }
+        assertEquals(snapshot.getMaxNanos(), snapshot.getPercentileNanos(100));
+    }
+
+    @Test
+    void testSmallAndHugeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(3);
+        histogram.record(Long.MAX_VALUE / 2);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(0, snapshot.getPercentileNanos(1));
+        assertEquals(3, snapshot.getPercentileNanos(50));
+        assertEquals(Long.MAX_VALUE / 2, snapshot.getPercentileNanos(100));
+        histogram.reset();
+        assertEquals(0, histogram.snapshot().getCount());
+        assertEquals(0, histogram.snapshot().getPercentileNanos(99));
+    }
+
+    @Test
+    void testConcurrentRecordingLosesNothing() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        for (int t = 0; t < 4; t++) {
+            pool.submit(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    histogram.record(i);
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+        assertEquals(400_000, histogram.snapshot().getCount());
+    }
+}
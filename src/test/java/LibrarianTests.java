@@ -3,11 +3,11 @@ import org.example.model.Librarian;
 import org.example.model.User;
 import org.example.service.LibrarianService;
 import org.example.service.UserService;
+import org.example.persistence.PersistenceUnitRegistry;
 import org.junit.jupiter.api.*;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
-import javax.persistence.Persistence;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -24,7 +24,7 @@ public class LibrarianTests {
 
     @BeforeAll
     void setUpAll() {
-        emf = Persistence.createEntityManagerFactory("testPU");
+        emf = PersistenceUnitRegistry.getEntityManagerFactory("testPU");
 
         librarianService = new LibrarianService("testPU");
         userService = new UserService("testPU");
@@ -2,7 +2,9 @@
 import org.example.model.Book;
 import org.example.model.Borrowing;
 import org.example.model.Copy;
+import org.example.model.CopyStatus;
 import org.example.model.User;
+import org.example.persistence.PersistenceUnitRegistry;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -21,7 +23,7 @@ public class NullOrEmptyFieldsTests {
 
     @BeforeAll
     void setup() {
-        emf = Persistence.createEntityManagerFactory("testPU");
+        emf = PersistenceUnitRegistry.getEntityManagerFactory("testPU");
     }
 
     @AfterAll
@@ -38,10 +40,12 @@ public class NullOrEmptyFieldsTests {
 
         User user = new User("John Doe", null, "555-1234", "123 Main St", "password123", "USER");
 
-        assertThrows(ConstraintViolationException.class, () -> {
+        // the insert, and with it the validation, waits for the commit since ids come from a sequence
+        RollbackException e = assertThrows(RollbackException.class, () -> {
             em.persist(user);
             em.getTransaction().commit();
         });
+        assertInstanceOf(ConstraintViolationException.class, e.getCause());
 
         em.close();
     }
@@ -72,7 +76,7 @@ public class NullOrEmptyFieldsTests {
         Book book = new Book("Title", "Author", "Publisher", 2023, "1234567890");
         em.persist(book);
 
-        Copy copy = new Copy(book, 1, "Available");
+        Copy copy = new Copy(book, 1, CopyStatus.AVAILABLE);
         em.persist(copy);
 
         Borrowing borrowing = new Borrowing(user, copy, null, null);
@@ -96,7 +100,7 @@ public class NullOrEmptyFieldsTests {
         Book book = new Book("Test Book", "Author A", "Publisher X", 2025, "978-3-16-148410-0"); // Valid ISBN
         em.persist(book);
 
-        Copy copy = new Copy(book, 1, "Available");
+        Copy copy = new Copy(book, 1, CopyStatus.AVAILABLE);
         em.persist(copy);
 
         Borrowing borrowing = new Borrowing(user, copy, new Date(), null); // Null returnDate
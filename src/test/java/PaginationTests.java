@@ -0,0 +1,112 @@
+import org.example.model.Book;
+import org.example.model.User;
+import org.example.persistence.PersistenceUnitRegistry;
+import org.example.service.BookService;
+import org.example.service.Page;
+import org.example.service.UserService;
+import org.junit.jupiter.api.*;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class PaginationTests {
+
+    private BookService bookService;
+    private UserService userService;
+
+    @BeforeAll
+    void setup() {
+        bookService = new BookService("testPU");
+        userService = new UserService("testPU");
+    }
+
+    @BeforeEach
+    void cleanDatabase() {
+        EntityManager em = PersistenceUnitRegistry.getEntityManagerFactory("testPU").createEntityManager();
+        em.getTransaction().begin();
+        em.createQuery("DELETE FROM Borrowing").executeUpdate();
+        em.createQuery("DELETE FROM Librarian").executeUpdate();
+        em.createQuery("DELETE FROM Copy").executeUpdate();
+        em.createQuery("DELETE FROM Book").executeUpdate();
+        em.createQuery("DELETE FROM User").executeUpdate();
+        em.getTransaction().commit();
+        em.close();
+    }
+
+    @Test
+    void testPagesByIdCoverEveryRowOnce() {
+        for (int i = 0; i < 25; i++) {
+            bookService.createBook("Book " + i, "Author", "Publisher", 2000, String.format("97800000%05d", i));
+        }
+
+        List<Integer> seen = new ArrayList<>();
+        List<Integer> pageSizes = new ArrayList<>();
+        String token = null;
+        do {
+            Page<Book> page = bookService.getBooksPage(token, 10);
+            pageSizes.add(page.getItems().size());
+            for (Book book : page.getItems()) {
+                seen.add(book.getId());
+            }
+            token = page.getNextToken();
+        } while (token != null);
+
+        assertEquals(Arrays.asList(10, 10, 5), pageSizes);
+        assertEquals(25, seen.size());
+        for (int i = 1; i < seen.size(); i++) {
+            assertTrue(seen.get(i - 1) < seen.get(i), "Pages sorted by id should be in ascending id order");
+        }
+    }
+
+    @Test
+    void testPagesBySortKeyWithDuplicateValues() {
+        String[] titles = {"Dune", "Andromeda", "Dune", "Beloved", "Dune", "Carrie", "Andromeda"};
+        for (int i = 0; i < titles.length; i++) {
+            bookService.createBook(titles[i], "Author", "Publisher", 2000, String.format("97811111%05d", i));
+        }
+
+        List<String> read = new ArrayList<>();
+        Page<Book> page = bookService.getBooksPage("title", null, 2);
+        while (true) {
+            for (Book book : page.getItems()) {
+                read.add(book.getTitle());
+            }
+            if (!page.hasNext()) {
+                break;
+            }
+            page = bookService.getBooksPage("title", page.getNextToken(), 2);
+        }
+
+        assertEquals(Arrays.asList("Andromeda", "Andromeda", "Beloved", "Carrie", "Dune", "Dune", "Dune"), read);
+    }
+
+    @Test
+    void testLastPageHasNoToken() {
+        userService.createUser("Only User", "only@example.com", "555", "Street", "pwd", "USER");
+
+        Page<User> page = userService.getUsersPage("name", null, 10);
+        assertEquals(1, page.getItems().size());
+        assertFalse(page.hasNext());
+        assertNull(page.getNextToken());
+    }
+
+    @Test
+    void testInvalidPageRequestsAreRejected() {
+        for (int i = 0; i < 3; i++) {
+            bookService.createBook("Book " + i, "Author", "Publisher", 2000, String.format("97822222%05d", i));
+        }
+        String titleToken = bookService.getBooksPage("title", null, 1).getNextToken();
+
+        assertThrows(IllegalArgumentException.class, () -> bookService.getBooksPage("publisher", null, 10),
+                "Sorting by a nullable or unknown attribute should be rejected");
+        assertThrows(IllegalArgumentException.class, () -> bookService.getBooksPage(null, 0));
+        assertThrows(IllegalArgumentException.class, () -> bookService.getBooksPage("author", titleToken, 10),
+                "A token is only valid for the sort key it was created with");
+        assertThrows(IllegalArgumentException.class, () -> bookService.getBooksPage("not-a-token", 10));
+    }
+}
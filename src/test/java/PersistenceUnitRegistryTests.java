@@ -0,0 +1,47 @@
+import org.example.persistence.PersistenceUnitRegistry;
+import org.example.service.BookService;
+import org.example.service.CopyService;
+import org.junit.jupiter.api.*;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class PersistenceUnitRegistryTests {
+
+    @Test
+    void testSameFactoryIsReturnedForSameUnit() {
+        EntityManagerFactory first = PersistenceUnitRegistry.getEntityManagerFactory("testPU");
+        EntityManagerFactory second = PersistenceUnitRegistry.getEntityManagerFactory("testPU");
+
+        assertSame(first, second, "The registry should build only one factory per persistence unit");
+        assertTrue(PersistenceUnitRegistry.isOpen("testPU"));
+    }
+
+    @Test
+    void testServicesShareTheRegistryFactory() {
+        BookService writer = new BookService("testPU");
+        BookService reader = new BookService(PersistenceUnitRegistry.getEntityManagerFactory("testPU"));
+        new CopyService("testPU");
+
+        writer.createBook("Shared Factory", "Author", "Publisher", 2020, "9781111111111");
+        int bookId = reader.getBookByIsbn("9781111111111").getId();
+        assertEquals("Shared Factory", reader.getBookById(bookId).getTitle());
+
+        writer.deleteBook(bookId);
+    }
+
+    @Test
+    void testClosedFactoryIsRebuiltOnNextRequest() {
+        EntityManagerFactory first = PersistenceUnitRegistry.getEntityManagerFactory("testPU");
+        PersistenceUnitRegistry.close("testPU");
+
+        assertFalse(first.isOpen());
+        assertFalse(PersistenceUnitRegistry.isOpen("testPU"));
+
+        EntityManagerFactory rebuilt = PersistenceUnitRegistry.getEntityManagerFactory("testPU");
+        assertNotSame(first, rebuilt);
+        assertTrue(rebuilt.isOpen());
+    }
+}
@@ -1,10 +1,10 @@
 
 import org.example.model.*;
 import org.example.service.*;
+import org.example.persistence.PersistenceUnitRegistry;
 import org.junit.jupiter.api.*;
 
 import javax.persistence.EntityManager;
-import javax.persistence.Persistence;
 import java.util.Date;
 import java.util.List;
 
@@ -32,7 +32,7 @@ public class RelationshipTests {
 
     @BeforeEach
     void cleanDatabase() {
-        EntityManager em = Persistence.createEntityManagerFactory("testPU").createEntityManager();
+        EntityManager em = PersistenceUnitRegistry.getEntityManagerFactory("testPU").createEntityManager();
         em.getTransaction().begin();
         em.createQuery("DELETE FROM Borrowing").executeUpdate();
         em.createQuery("DELETE FROM Librarian").executeUpdate();
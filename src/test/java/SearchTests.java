@@ -0,0 +1,133 @@
+import org.example.model.Book;
+import org.example.persistence.PersistenceUnitRegistry;
+import org.example.search.CatalogIndex;
+import org.example.search.SearchHit;
+import org.example.service.BookService;
+import org.junit.jupiter.api.*;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class SearchTests {
+
+    private BookService bookService;
+
+    @BeforeAll
+    void setup() {
+        bookService = new BookService("testPU");
+    }
+
+    @BeforeEach
+    void cleanDatabase() {
+        EntityManager em = PersistenceUnitRegistry.getEntityManagerFactory("testPU").createEntityManager();
+        em.getTransaction().begin();
+        em.createQuery("DELETE FROM Borrowing").executeUpdate();
+        em.createQuery("DELETE FROM Librarian").executeUpdate();
+        em.createQuery("DELETE FROM Copy").executeUpdate();
+        em.createQuery("DELETE FROM Book").executeUpdate();
+        em.createQuery("DELETE FROM User").executeUpdate();
+        em.getTransaction().commit();
+        em.close();
+    }
+
+    @Test
+    void testCaseAndAccentsAreFolded() {
+        CatalogIndex index = new CatalogIndex();
+        index.put(1, "Le Café de la Gare", "Émile Zola", "Gallimard");
+
+        assertEquals(ids(index.search("cafe", 10)), Arrays.asList(1));
+        assertEquals(ids(index.search("EMILE zola", 10)), Arrays.asList(1));
+        assertEquals(ids(index.search("Gallimard Café", 10)), Arrays.asList(1));
+        assertTrue(index.search("cafes", 10).isEmpty());
+    }
+
+    @Test
+    void testEveryWordMustMatchAsWordOrPrefix() {
+        CatalogIndex index = new CatalogIndex();
+        index.put(1, "The Hobbit", "J. R. R. Tolkien", "Allen & Unwin");
+        index.put(2, "The Silmarillion", "J. R. R. Tolkien", "Allen & Unwin");
+        index.put(3, "The Hobbit Companion", "David Day", "Pavilion");
+
+        assertEquals(ids(index.search("tolk hob", 10)), Arrays.asList(1));
+        assertEquals(Arrays.asList(1, 2), sorted(ids(index.search("tolkien", 10))));
+        assertTrue(index.search("tolkien day", 10).isEmpty());
+        assertTrue(index.search("  -- ", 10).isEmpty(), "A query without words matches nothing");
+    }
+
+    @Test
+    void testRanking() {
+        CatalogIndex index = new CatalogIndex();
+        index.put(1, "Collected Stories", "Anne Author", "Orbit");
+        index.put(2, "Orbit", "Anne Author", "Penguin");
+        index.put(3, "Orbital Mechanics", "Anne Author", "Penguin");
+
+        List<Integer> ranked = ids(index.search("orbit", 10));
+        assertEquals(Arrays.asList(2, 3, 1), ranked,
+                "A whole word in the title ranks above a prefix of the title and above the publisher");
+        assertEquals(Arrays.asList(2, 3), ids(index.search("orbit", 2)), "The limit keeps the best matches");
+        assertThrows(IllegalArgumentException.class, () -> index.search("orbit", 0));
+    }
+
+    @Test
+    void testPutReplacesAndRemoveDrops() {
+        CatalogIndex index = new CatalogIndex();
+        for (int i = 0; i < 3000; i++) {
+            index.put(i, "Title " + i, "Author", "Publisher");
+        }
+        index.put(7, "Renamed", "Author", "Publisher");
+        for (int i = 100; i < 3000; i++) {
+            index.remove(i);
+        }
+
+        assertEquals(100, index.size());
+        assertEquals(Arrays.asList(7), ids(index.search("renamed", 10)));
+        assertFalse(ids(index.search("title 7", 10)).contains(7), "The old title of a replaced book is gone");
+        assertTrue(index.search("title 2999", 10).isEmpty(), "Removed books are gone");
+        assertEquals(Arrays.asList(42), ids(index.search("title 42", 10)));
+        assertEquals(100, index.search("author", 1000).size());
+    }
+
+    @Test
+    void testBookServiceKeepsIndexInSync() {
+        bookService.createBook("Zygomorphic Flowers", "Ada Bloom", "Botany Press", 2001, "9783333300001");
+        assertEquals(Arrays.asList("Zygomorphic Flowers"), titles(bookService.searchBooks("zygomorph", 10)));
+
+        bookService.createBook("Zygomorphic Insects", "Ada Bloom", "Botany Press", 2002, "9783333300002");
+        assertEquals(2, bookService.searchBooks("zygomorphic bloom", 10).size(), "Books created later are indexed");
+
+        Book flowers = bookService.getBookByIsbn("9783333300001");
+        bookService.updateBook(flowers.getId(), "Xerophytic Flowers", "Ada Bloom", "Botany Press", 2001, "9783333300001");
+        assertEquals(Arrays.asList("Zygomorphic Insects"), titles(bookService.searchBooks("zygomorphic", 10)));
+        assertEquals(Arrays.asList("Xerophytic Flowers"), titles(bookService.searchBooks("xerophytic", 10)));
+
+        bookService.deleteBook(flowers.getId());
+        assertTrue(bookService.searchBooks("xerophytic", 10).isEmpty());
+    }
+
+    private static List<Integer> ids(List<SearchHit> hits) {
+        List<Integer> ids = new ArrayList<>();
+        for (SearchHit hit : hits) {
+            ids.add(hit.getBookId());
+        }
+        return ids;
+    }
+
+    private static List<Integer> sorted(List<Integer> ids) {
+        List<Integer> sorted = new ArrayList<>(ids);
+        sorted.sort(null);
+        return sorted;
+    }
+
+    private static List<String> titles(List<Book> books) {
+        List<String> titles = new ArrayList<>();
+        for (Book book : books) {
+            titles.add(book.getTitle());
+        }
+        return titles;
+    }
+}
@@ -0,0 +1,162 @@
+import org.example.model.Book;
+import org.example.model.Librarian;
+import org.example.model.Publisher;
+import org.example.model.User;
+import org.example.persistence.CacheMetrics;
+import org.example.persistence.PersistenceUnitRegistry;
+import org.example.service.BookService;
+import org.example.service.LibrarianService;
+import org.example.service.PublisherService;
+import org.example.service.UserService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.*;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.NoResultException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class SecondLevelCacheTests {
+
+    private EntityManagerFactory emf;
+    private BookService bookService;
+    private PublisherService publisherService;
+    private LibrarianService librarianService;
+    private UserService userService;
+
+    @BeforeAll
+    void setup() {
+        emf = PersistenceUnitRegistry.getEntityManagerFactory("testPU");
+        bookService = new BookService("testPU");
+        publisherService = new PublisherService("testPU");
+        librarianService = new LibrarianService("testPU");
+        userService = new UserService("testPU");
+    }
+
+    @BeforeEach
+    void cleanDatabase() {
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        em.createQuery("DELETE FROM Borrowing").executeUpdate();
+        em.createQuery("DELETE FROM Librarian").executeUpdate();
+        em.createQuery("DELETE FROM Copy").executeUpdate();
+        em.createQuery("DELETE FROM Book").executeUpdate();
+        em.createQuery("DELETE FROM Publisher").executeUpdate();
+        em.createQuery("DELETE FROM User").executeUpdate();
+        em.getTransaction().commit();
+        em.close();
+    }
+
+    @Test
+    void testRepeatedLookupsAreServedFromTheCache() {
+        bookService.createBook("Cached Book", "Author", "Publisher", 2001, "9780000000101");
+        publisherService.createPublisher("Cached Publisher", "Street", "555");
+        int bookId = bookService.getBookByIsbn("9780000000101").getId();
+        int publisherId = publisherService.getAllPublishers().get(0).getId();
+        bookService.getBookById(bookId);
+        publisherService.getPublisherById(publisherId);
+
+        long bookHits = CacheMetrics.forRegion(emf, "book").getHits();
+        Statistics statistics = statistics();
+        statistics.clear();
+        for (int i = 0; i < 5; i++) {
+            assertEquals("Cached Book", bookService.getBookById(bookId).getTitle());
+            assertEquals("Cached Publisher", publisherService.getPublisherById(publisherId).getName());
+        }
+
+        assertEquals(0, statistics.getPrepareStatementCount(), "Cached entities should not be read from the database");
+        assertTrue(CacheMetrics.forRegion(emf, "book").getHits() >= bookHits + 5);
+    }
+
+    @Test
+    void testUpdatesAndDeletesInvalidateTheCache() {
+        bookService.createBook("Old Title", "Author", "Publisher", 2001, "9780000000102");
+        int bookId = bookService.getBookByIsbn("9780000000102").getId();
+        assertEquals("Old Title", bookService.getBookById(bookId).getTitle());
+
+        bookService.updateBook(bookId, "New Title", "Author", "Publisher", 2001, "9780000000105");
+        assertEquals("New Title", bookService.getBookById(bookId).getTitle());
+        assertEquals("New Title", bookService.getBookByIsbn("9780000000105").getTitle());
+        assertThrows(NoResultException.class, () -> bookService.getBookByIsbn("9780000000102"),
+                "The old ISBN must not resolve to the book any more");
+
+        bookService.deleteBook(bookId);
+        assertNull(bookService.getBookById(bookId));
+    }
+
+    @Test
+    void testQueryCacheFollowsChangesOfTheTable() {
+        bookService.createBook("Query Book", "Author", "Publisher", 2001, "9780000000103");
+        publisherService.createPublisher("First", "Street", "555");
+        bookService.getBookByIsbn("9780000000103");
+        publisherService.getAllPublishers();
+
+        Statistics statistics = statistics();
+        statistics.clear();
+        assertEquals("Query Book", bookService.getBookByIsbn("9780000000103").getTitle());
+        assertEquals(1, publisherService.getAllPublishers().size());
+        assertEquals(0, statistics.getPrepareStatementCount(), "Cached query results should not run the query again");
+        assertEquals(1, statistics.getQueryCacheHitCount());
+        assertEquals(1, statistics.getNaturalIdCacheHitCount(), "The ISBN should be resolved from the natural id cache");
+
+        publisherService.createPublisher("Second", "Street", "555");
+        List<String> names = new ArrayList<>();
+        for (Publisher publisher : publisherService.getAllPublishers()) {
+            names.add(publisher.getName());
+        }
+        assertTrue(names.contains("Second"), "A new publisher should make the cached list stale");
+    }
+
+    @Test
+    void testCachedLibrarianComesWithItsUser() {
+        userService.createUser("Cached Librarian", "cached@example.com", "555", "Street", "pwd", "LIBRARIAN");
+        User user = userService.getUserByEmail("cached@example.com");
+        librarianService.createLibrarian(user.getId(), "Head", new Date());
+        int librarianId = librarianService.getAllLibrarians().get(0).getId();
+        librarianService.getLibrarianById(librarianId);
+
+        long hits = CacheMetrics.forRegion(emf, "librarian").getHits();
+        Librarian librarian = librarianService.getLibrarianById(librarianId);
+
+        assertEquals(hits + 1, CacheMetrics.forRegion(emf, "librarian").getHits());
+        assertEquals("Cached Librarian", librarian.getUser().getName());
+    }
+
+    @Test
+    void testEveryRegionIsReported() {
+        List<String> regions = new ArrayList<>();
+        for (CacheMetrics.RegionMetrics metrics : CacheMetrics.forFactory(emf)) {
+            regions.add(metrics.getRegionName());
+            assertTrue(metrics.getEvictions() >= 0);
+        }
+
+        assertTrue(regions.containsAll(Arrays.asList("book", "publisher", "librarian",
+                "default-query-results-region", "default-update-timestamps-region")), regions.toString());
+    }
+
+    @Test
+    void testUnitsDoNotShareCachedRows() {
+        bookService.createBook("Only In Test Unit", "Author", "Publisher", 2001, "9780000000104");
+        Book book = bookService.getBookByIsbn("9780000000104");
+        bookService.getBookById(book.getId());
+
+        EntityManagerFactory pooled = PersistenceUnitRegistry.getEntityManagerFactory("testPooledPU");
+        try {
+            assertNull(new BookService(pooled).getBookById(book.getId()),
+                    "Another unit must not see the rows cached for this one");
+        } finally {
+            PersistenceUnitRegistry.close("testPooledPU");
+        }
+    }
+
+    private Statistics statistics() {
+        return emf.unwrap(SessionFactory.class).getStatistics();
+    }
+}
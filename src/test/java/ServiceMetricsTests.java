@@ -0,0 +1,121 @@
+import org.example.metrics.MetricsSnapshotWriter;
+import org.example.metrics.ServiceMetrics;
+import org.example.model.Book;
+import org.example.model.Copy;
+import org.example.model.User;
+import org.example.persistence.PersistenceUnitRegistry;
+import org.example.service.BookService;
+import org.example.service.BorrowingService;
+import org.example.service.CopyService;
+import org.example.service.UserService;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class ServiceMetricsTests {
+
+    private EntityManagerFactory emf;
+    private UserService userService;
+    private BookService bookService;
+    private CopyService copyService;
+    private BorrowingService borrowingService;
+
+    @BeforeAll
+    void setupAll() {
+        emf = PersistenceUnitRegistry.getEntityManagerFactory("testPU");
+        userService = ServiceMetrics.instrument(UserService.class, emf);
+        bookService = ServiceMetrics.instrument(BookService.class, emf);
+        copyService = ServiceMetrics.instrument(CopyService.class, emf);
+        borrowingService = ServiceMetrics.instrument(BorrowingService.class, emf);
+    }
+
+    @BeforeEach
+    void clearDatabase() {
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        em.createQuery("DELETE FROM Borrowing").executeUpdate();
+        em.createQuery("DELETE FROM Copy").executeUpdate();
+        em.createQuery("DELETE FROM Book").executeUpdate();
+        em.createQuery("DELETE FROM User").executeUpdate();
+        em.getTransaction().commit();
+        em.close();
+        ServiceMetrics.reset();
+    }
+
+    @Test
+    void testCountsCallsTransactionsStatementsAndLockWaits() {
+        Copy copy = createCopy();
+        userService.createUser("Metered", "metered@example.com", "555-0000", "1 St", "pwd", "USER");
+        User user = userService.getUserByEmail("metered@example.com");
+        ServiceMetrics.reset();
+
+        borrowingService.createBorrowing(user.getId(), copy.getId(), new Date(), null);
+
+        ServiceMetrics.MethodMetrics checkout = ServiceMetrics.forMethod("BorrowingService.createBorrowing");
+        assertEquals(1, checkout.getLatency().getCount());
+        assertEquals(0, checkout.getErrors());
+        assertEquals(1, checkout.getCommits());
+        assertEquals(0, checkout.getRollbacks());
+        assertTrue(checkout.getStatements() >= 3, "The checkout reads the user and the copy and inserts the borrowing");
+        assertEquals(1, checkout.getLockWaits(), "The checkout locks the copy once");
+        assertEquals(1, checkout.getLockWait().getCount());
+
+        assertThrows(IllegalStateException.class,
+                () -> borrowingService.createBorrowing(user.getId(), copy.getId(), new Date(), null));
+        assertEquals(2, checkout.getLatency().getCount());
+        assertEquals(1, checkout.getErrors());
+        assertEquals(1, checkout.getRollbacks());
+    }
+
+    @Test
+    void testCountsNestedCallsForTheOuterMethod() {
+        bookService.createBook("LIBRARIAN", "Nested Book", "Author", "Publisher", 2024, "9782222222222");
+
+        ServiceMetrics.MethodMetrics createBook = ServiceMetrics.forMethod("BookService.createBook");
+        assertEquals(1, createBook.getLatency().getCount(), "The overload called by the other one is not counted again");
+        assertEquals(1, createBook.getCommits());
+        assertEquals(1, ServiceMetrics.getAll().size());
+    }
+
+    @Test
+    void testPlainServiceWhenDisabled() {
+        UserService plain = ServiceMetrics.create(UserService.class, emf);
+        assertEquals(UserService.class, plain.getClass());
+        plain.getAllUsers();
+        assertNull(ServiceMetrics.forMethod("UserService.getAllUsers"));
+    }
+
+    @Test
+    void testWritesSnapshots(@TempDir Path directory) throws Exception {
+        userService.getAllUsers();
+        userService.getAllUsers();
+
+        Path json = directory.resolve("metrics.json");
+        new MetricsSnapshotWriter(json, "json", 60).write();
+        String written = new String(Files.readAllBytes(json), StandardCharsets.UTF_8);
+        assertTrue(written.contains("\"method\": \"UserService.getAllUsers\", \"calls\": 2"), written);
+
+        Path text = directory.resolve("metrics.txt");
+        new MetricsSnapshotWriter(text, "text", 60).write();
+        written = new String(Files.readAllBytes(text), StandardCharsets.UTF_8);
+        assertTrue(written.contains("UserService.getAllUsers"), written);
+
+        assertThrows(IllegalArgumentException.class, () -> new MetricsSnapshotWriter(json, "xml", 60));
+    }
+
+    private Copy createCopy() {
+        bookService.createBook("Metered Book", "Author", "Publisher", 2024, "9781111111111");
+        Book book = bookService.getAllBooks().get(0);
+        copyService.createCopy(book.getId(), 1, "Available");
+        return copyService.getAllCopies().get(0);
+    }
+}
@@ -0,0 +1,107 @@
+import org.example.metrics.SlowQueryLog;
+import org.example.persistence.PersistenceUnitRegistry;
+import org.example.service.UserService;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class SlowQueryLogTests {
+
+    private static final String UNIT = "testPooledPU";
+
+    @TempDir
+    static Path directory;
+
+    private Path file;
+    private EntityManagerFactory emf;
+
+    @BeforeAll
+    void setup() {
+        file = directory.resolve("slow-queries.log");
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(SlowQueryLog.ENABLED_PROPERTY, "true");
+        properties.put(SlowQueryLog.FILE_PROPERTY, file.toString());
+        properties.put(SlowQueryLog.THRESHOLD_PROPERTY, "0");
+        PersistenceUnitRegistry.close(UNIT);
+        PersistenceUnitRegistry.configure(UNIT, properties);
+        emf = PersistenceUnitRegistry.getEntityManagerFactory(UNIT);
+    }
+
+    @AfterAll
+    void tearDown() {
+        PersistenceUnitRegistry.close(UNIT);
+        PersistenceUnitRegistry.configure(UNIT, new HashMap<String, Object>());
+    }
+
+    @Test
+    void testFingerprintHidesValuesAndGroupsExecutions() {
+        String first = SlowQueryLog.fingerprint(
+                "/* load */ SELECT id FROM Users\n  WHERE email = 'ann@example.org' AND id IN (1, 2, 3) -- note");
+        String second = SlowQueryLog.fingerprint(
+                "select id from users where email = 'bob@example.org' and id in (42)");
+        assertEquals("select id from users where email = ? and id in (?+)", first);
+        assertEquals(first, second);
+        assertEquals("select book0_.id from books book0_ where book0_.year>? limit ?",
+                SlowQueryLog.fingerprint("select book0_.id from Books book0_ where book0_.year>1999 limit ?"));
+        assertEquals("insert into t values (?+)", SlowQueryLog.fingerprint("insert into t values (?, ?, ?)"));
+    }
+
+    @Test
+    void testLogsStatementsOfTheUnitWithoutTheirValues() throws Exception {
+        SlowQueryLog log = SlowQueryLog.forFactory(emf);
+        assertNotNull(log);
+        UserService userService = new UserService(emf);
+        userService.createUser("Hidden", "hidden@example.org", "555-9999", "9 St", "pwd", "USER");
+        for (int i = 0; i < 5; i++) {
+            userService.getUserByEmail("hidden@example.org");
+        }
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.createNativeQuery("SELECT COUNT(*) FROM Users WHERE email = 'literal@example.org'").getSingleResult();
+        } finally {
+            em.close();
+        }
+        log.awaitWritten();
+
+        List<SlowQueryLog.Fingerprint> fingerprints = log.getFingerprints();
+        assertTrue(fingerprints.stream().anyMatch(f -> f.getSql().startsWith("select") && f.getCount() >= 5),
+                "The lookups by email share a fingerprint: " + fingerprints.size());
+        assertTrue(fingerprints.stream().anyMatch(f -> f.getSql().equals("select count(*) from users where email = ?")));
+        String written = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        assertTrue(written.contains(" slow "), written);
+        assertFalse(written.contains("example.org"), "No value reaches the log");
+        assertEquals(0, log.getDropped());
+    }
+
+    @Test
+    void testDropsInsteadOfWaitingAndSummarizesOnClose() throws Exception {
+        Path own = directory.resolve("own.log");
+        SlowQueryLog log = new SlowQueryLog("own", own, 0, 0.0, 1, 3600);
+        for (int i = 0; i < 10_000; i++) {
+            log.executed("select " + (i % 3) + " from dual", 1_000_000);
+        }
+        log.executed("select fast", -1);
+        log.awaitWritten();
+        log.close();
+
+        assertEquals(10_000, log.getAccepted() + log.getDropped());
+        assertEquals(0, log.getSampled(), "A sample rate of 0 writes no single statements");
+        assertEquals(1, log.getFingerprints().size());
+        assertEquals(log.getAccepted(), log.getFingerprints().get(0).getCount());
+        String written = new String(Files.readAllBytes(own), StandardCharsets.UTF_8);
+        assertTrue(written.contains(" summary fingerprint=") && written.contains("sql=select ? from dual"), written);
+
+        assertThrows(IllegalArgumentException.class, () -> new SlowQueryLog("bad", own, 0, 2.0, 1, 1));
+    }
+}
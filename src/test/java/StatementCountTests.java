@@ -0,0 +1,139 @@
+import org.example.dto.BorrowingHistoryRow;
+import org.example.dto.BorrowingRow;
+import org.example.model.Book;
+import org.example.model.Borrowing;
+import org.example.model.Copy;
+import org.example.model.User;
+import org.example.persistence.PersistenceUnitRegistry;
+import org.example.service.BookService;
+import org.example.service.BorrowingService;
+import org.example.service.CopyService;
+import org.example.service.Page;
+import org.example.service.UserService;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.*;
+
+import javax.persistence.EntityManager;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class StatementCountTests {
+
+    private UserService userService;
+    private BookService bookService;
+    private CopyService copyService;
+    private BorrowingService borrowingService;
+
+    @BeforeAll
+    void setup() {
+        userService = new UserService("testPU");
+        bookService = new BookService("testPU");
+        copyService = new CopyService("testPU");
+        borrowingService = new BorrowingService("testPU");
+    }
+
+    @BeforeEach
+    void cleanDatabase() {
+        EntityManager em = PersistenceUnitRegistry.getEntityManagerFactory("testPU").createEntityManager();
+        em.getTransaction().begin();
+        em.createQuery("DELETE FROM Borrowing").executeUpdate();
+        em.createQuery("DELETE FROM Librarian").executeUpdate();
+        em.createQuery("DELETE FROM Copy").executeUpdate();
+        em.createQuery("DELETE FROM Book").executeUpdate();
+        em.createQuery("DELETE FROM User").executeUpdate();
+        em.getTransaction().commit();
+        em.close();
+    }
+
+    @Test
+    void testBorrowingHistoryIsOneStatement() {
+        User user = createUserWithReturnedBorrowings(6);
+
+        Statistics statistics = statistics();
+        statistics.clear();
+        List<BorrowingHistoryRow> history = borrowingService.getBorrowingHistory(user.getId());
+
+        assertEquals(6, history.size());
+        assertEquals(1, statistics.getPrepareStatementCount(), "The history should be read with a single statement");
+        assertNotNull(history.get(0).getTitle());
+    }
+
+    @Test
+    void testBorrowingRowsPageIsOneStatement() {
+        createUserWithReturnedBorrowings(6);
+
+        Statistics statistics = statistics();
+        statistics.clear();
+        Page<BorrowingRow> page = borrowingService.getBorrowingRowsPage(null, 4);
+
+        assertEquals(4, page.getItems().size());
+        assertTrue(page.hasNext());
+        assertEquals(1, statistics.getPrepareStatementCount(), "A page of rows should be read with a single statement");
+        assertEquals("History User", page.getItems().get(0).getUserName());
+
+        statistics.clear();
+        Page<BorrowingRow> next = borrowingService.getBorrowingRowsPage(page.getNextToken(), 4);
+        assertEquals(2, next.getItems().size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void testBorrowingDetailGraphLoadsCopyAndBookInOneStatement() {
+        createUserWithReturnedBorrowings(1);
+        int borrowingId = borrowingService.getAllBorrowings().get(0).getId();
+
+        Statistics statistics = statistics();
+        statistics.clear();
+        Borrowing borrowing = borrowingService.getBorrowingById(borrowingId);
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals("History User", borrowing.getUser().getName());
+        assertEquals("History Book 0", borrowing.getCopy().getBook().getTitle(),
+                "The detail graph should load the book before the entity manager is closed");
+    }
+
+    @Test
+    void testBorrowingListLeavesBookUnloaded() {
+        createUserWithReturnedBorrowings(3);
+
+        Statistics statistics = statistics();
+        statistics.clear();
+        List<Borrowing> borrowings = borrowingService.getAllBorrowings();
+
+        assertEquals(3, borrowings.size());
+        assertEquals(1, statistics.getPrepareStatementCount(), "The list graph should join the user and the copy");
+        for (Borrowing borrowing : borrowings) {
+            assertTrue(Hibernate.isInitialized(borrowing.getUser()));
+            assertTrue(Hibernate.isInitialized(borrowing.getCopy()));
+            assertFalse(Hibernate.isInitialized(borrowing.getCopy().getBook()), "The list graph should not load books");
+        }
+    }
+
+    /**
+     * Creates a user who borrowed and returned one copy of each of {@code count} different books.
+     */
+    private User createUserWithReturnedBorrowings(int count) {
+        userService.createUser("History User", "history@example.com", "555", "Street", "pwd", "USER");
+        User user = userService.getUserByEmail("history@example.com");
+        for (int i = 0; i < count; i++) {
+            String isbn = String.format("97833333%05d", i);
+            bookService.createBook("History Book " + i, "Author", "Publisher", 2000, isbn);
+            Book book = bookService.getBookByIsbn(isbn);
+            copyService.createCopy(book.getId(), 1, "Available");
+            Copy copy = copyService.getAvailableCopies().stream()
+                    .filter(c -> c.getBook().getId() == book.getId())
+                    .findFirst().get();
+            borrowingService.createBorrowing(user.getId(), copy.getId(), new Date(), new Date());
+        }
+        return user;
+    }
+
+    private Statistics statistics() {
+        return PersistenceUnitRegistry.getEntityManagerFactory("testPU").unwrap(SessionFactory.class).getStatistics();
+    }
+}
@@ -0,0 +1,103 @@
+import org.example.model.Book;
+import org.example.model.Borrowing;
+import org.example.model.Copy;
+import org.example.model.CopyStatus;
+import org.example.model.User;
+import org.example.persistence.IdSequences;
+import org.example.persistence.PersistenceUnitRegistry;
+import org.example.service.BookService;
+import org.example.service.BorrowingService;
+import org.example.service.CopyService;
+import org.example.service.UserService;
+import org.junit.jupiter.api.*;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Streams a large synthetic borrowing history. The default run uses 100 000 rows, the
+ * streaming-soak profile runs 1 000 000 rows with a 64 MB heap.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class StreamingTests {
+
+    private static final int ROWS = Integer.getInteger("streaming.rows", 100_000);
+    private static final int INSERT_CHUNK = 50_000;
+
+    private EntityManagerFactory emf;
+    private BorrowingService borrowingService;
+    private CopyService copyService;
+
+    @BeforeAll
+    void setupAll() {
+        emf = PersistenceUnitRegistry.getEntityManagerFactory("testFilePU");
+        UserService userService = new UserService(emf);
+        BookService bookService = new BookService(emf);
+        copyService = new CopyService(emf);
+        borrowingService = new BorrowingService(emf);
+
+        userService.createUser("Heavy Borrower", "heavy@example.com", "555", "Street", "pwd", "USER");
+        bookService.createBook("Streamed Book", "Author", "Publisher", 2020, "9780000000001");
+        Book book = bookService.getBookByIsbn("9780000000001");
+        copyService.createCopy(book.getId(), 1, "Available");
+        User user = userService.getUserByEmail("heavy@example.com");
+        Copy copy = copyService.getAllCopies().get(0);
+
+        for (int from = 1; from <= ROWS; from += INSERT_CHUNK) {
+            EntityManager em = emf.createEntityManager();
+            em.getTransaction().begin();
+            em.createNativeQuery("INSERT INTO Borrowings (id, userId, copyId, borrowDate, returnDate) " +
+                            "SELECT X, ?1, ?2, DATEADD('DAY', -MOD(X, 3650), CURRENT_DATE), CURRENT_DATE " +
+                            "FROM SYSTEM_RANGE(?3, ?4)")
+                    .setParameter(1, user.getId())
+                    .setParameter(2, copy.getId())
+                    .setParameter(3, from)
+                    .setParameter(4, Math.min(from + INSERT_CHUNK - 1, ROWS))
+                    .executeUpdate();
+            em.getTransaction().commit();
+            em.close();
+        }
+        IdSequences.align(emf);
+    }
+
+    @AfterAll
+    void tearDownAll() {
+        PersistenceUnitRegistry.close("testFilePU");
+    }
+
+    @Test
+    void testStreamsEveryBorrowingInIdOrder() {
+        long count = 0;
+        int lastId = 0;
+        try (Stream<Borrowing> borrowings = borrowingService.streamAllBorrowings(1000)) {
+            Iterator<Borrowing> iterator = borrowings.iterator();
+            while (iterator.hasNext()) {
+                Borrowing borrowing = iterator.next();
+                assertTrue(borrowing.getId() > lastId, "Borrowings should be streamed in id order");
+                assertEquals("Streamed Book", borrowing.getCopy().getBook().getTitle());
+                lastId = borrowing.getId();
+                count++;
+            }
+        }
+        assertEquals(ROWS, count);
+    }
+
+    @Test
+    void testStreamCanBeAggregatedAndStoppedEarly() {
+        try (Stream<Borrowing> borrowings = borrowingService.streamAllBorrowings()) {
+            assertEquals(10, borrowings.limit(10).count());
+        }
+        try (Stream<Copy> copies = copyService.streamAllCopies(10)) {
+            assertEquals(1, copies.filter(c -> c.getStatus() == CopyStatus.AVAILABLE).count());
+        }
+    }
+
+    @Test
+    void testInvalidFetchSizeIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> copyService.streamAllCopies(0));
+    }
+}
@@ -1,9 +1,9 @@
 import org.example.model.User;
 import org.example.service.UserService;
+import org.example.persistence.PersistenceUnitRegistry;
 import org.junit.jupiter.api.*;
 
 import javax.persistence.EntityManager;
-import javax.persistence.Persistence;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -20,7 +20,7 @@ public class UserTests {
 
     @BeforeEach
     void cleanDatabase() {
-        EntityManager em = Persistence.createEntityManagerFactory("testPU").createEntityManager();
+        EntityManager em = PersistenceUnitRegistry.getEntityManagerFactory("testPU").createEntityManager();
         em.getTransaction().begin();
 
         em.createQuery("DELETE FROM Borrowing").executeUpdate();